@@ -1,7 +1,10 @@
 package com.adopt.config;
 
 import com.adopt.models.gametheory.GameTheoryModel;
+import com.adopt.models.gametheory.MultiAgentLearningModel;
 import com.adopt.models.gametheory.NashEquilibriumModel;
+import com.adopt.models.gametheory.ReinforcementLearningModel;
+import com.adopt.models.gametheory.StackelbergModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -19,13 +22,25 @@ public class GameTheoryConfig {
      */
     @Bean
     public Map<GameTheoryModel.GameTheoryType, GameTheoryModel> gameTheoryModels(
-            NashEquilibriumModel nashEquilibriumModel) {
+            NashEquilibriumModel nashEquilibriumModel,
+            StackelbergModel stackelbergModel,
+            ReinforcementLearningModel reinforcementLearningModel,
+            MultiAgentLearningModel multiAgentLearningModel) {
         
         Map<GameTheoryModel.GameTheoryType, GameTheoryModel> models = new HashMap<>();
         
         // Register the Nash Equilibrium model
         models.put(GameTheoryModel.GameTheoryType.NASH_EQUILIBRIUM, nashEquilibriumModel);
         
+        // Register the Stackelberg leader-follower model
+        models.put(GameTheoryModel.GameTheoryType.STACKELBERG, stackelbergModel);
+        
+        // Register the online reinforcement learning bidder
+        models.put(GameTheoryModel.GameTheoryType.REINFORCEMENT_LEARNING, reinforcementLearningModel);
+        
+        // Register the n-player self-play equilibrium model
+        models.put(GameTheoryModel.GameTheoryType.MULTI_AGENT_LEARNING, multiAgentLearningModel);
+        
         // Additional game theory models can be registered here
         
         return models;
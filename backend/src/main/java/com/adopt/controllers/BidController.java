@@ -5,6 +5,7 @@ import com.adopt.models.BidRequest;
 import com.adopt.models.BidResponse;
 import com.adopt.services.BidOptimizationService;
 import com.adopt.services.CampaignService;
+import com.adopt.services.PredictionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +13,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for RTB bidding operations
@@ -24,6 +26,7 @@ public class BidController {
 
     private final BidOptimizationService bidOptimizationService;
     private final CampaignService campaignService;
+    private final PredictionService predictionService;
 
     /**
      * Generate an optimal bid for a given bid request
@@ -47,6 +50,9 @@ public class BidController {
         // Generate the bid response
         BidResponse bidResponse = bidOptimizationService.generateBidResponse(bidRequest, campaign);
         
+        // Keep the response so win/loss/click notifications can find it by ID
+        campaignService.saveBidResponse(bidResponse);
+        
         return ResponseEntity.ok(bidResponse);
     }
     
@@ -75,6 +81,9 @@ public class BidController {
         // Update campaign metrics
         campaignService.updateCampaignMetrics(bidResponse, true, clicked, converted);
         
+        // Train the online CTR model on the impression
+        predictionService.recordImpression(bidResponse, clicked);
+        
         return ResponseEntity.ok().build();
     }
     
@@ -118,6 +127,9 @@ public class BidController {
         bidResponse.setIsClicked(true);
         campaignService.updateCampaignMetrics(bidResponse, true, true, false);
         
+        // Label the impression as clicked for the online CTR model
+        predictionService.recordClick(bidResponse);
+        
         return ResponseEntity.ok().build();
     }
     
@@ -142,4 +154,12 @@ public class BidController {
         
         return ResponseEntity.ok().build();
     }
+    
+    /**
+     * Get size, hit rate, eviction and expiry statistics of the bids awaiting notifications
+     */
+    @GetMapping("/pending/stats")
+    public ResponseEntity<Map<String, Object>> getPendingStats() {
+        return ResponseEntity.ok(campaignService.getBidResponseStats());
+    }
 } 
\ No newline at end of file
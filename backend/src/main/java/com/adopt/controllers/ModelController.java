@@ -0,0 +1,132 @@
+package com.adopt.controllers;
+
+import com.adopt.models.prediction.ModelRegistry;
+import com.adopt.services.BidStageExecutor;
+import com.adopt.services.CompetitorAnalysisService;
+import com.adopt.services.ModelSelectionService;
+import com.adopt.services.PredictionService;
+import com.adopt.services.ShadowEvaluationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * REST controller for inspecting game theory model selection
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/models")
+@RequiredArgsConstructor
+public class ModelController {
+
+    private final ModelSelectionService modelSelectionService;
+    private final ShadowEvaluationService shadowEvaluationService;
+    private final PredictionService predictionService;
+    private final BidStageExecutor bidStageExecutor;
+    private final CompetitorAnalysisService competitorAnalysisService;
+
+    /**
+     * Get the current tier ladder with measured model cost, quality and load signals
+     */
+    @GetMapping("/tiers")
+    public ResponseEntity<Map<String, Object>> getTiers() {
+        return ResponseEntity.ok(modelSelectionService.getTierSummary());
+    }
+    
+    /**
+     * Get the active tier of every campaign
+     */
+    @GetMapping("/tiers/campaigns")
+    public ResponseEntity<Map<Long, Map<String, Object>>> getCampaignTiers() {
+        return ResponseEntity.ok(modelSelectionService.getCampaignTiers());
+    }
+    
+    /**
+     * Get the active tier of a single campaign
+     */
+    @GetMapping("/tiers/campaigns/{campaignId}")
+    public ResponseEntity<Map<String, Object>> getCampaignTier(@PathVariable Long campaignId) {
+        return ResponseEntity.ok(modelSelectionService.getCampaignTier(campaignId));
+    }
+    
+    /**
+     * Get estimated win rate and surplus of candidate models evaluated in shadow
+     */
+    @GetMapping("/shadow")
+    public ResponseEntity<Map<String, Object>> getShadowEvaluation() {
+        return ResponseEntity.ok(shadowEvaluationService.getShadowSummary());
+    }
+    
+    /**
+     * Get micro-batching statistics of the prediction models
+     */
+    @GetMapping("/inference")
+    public ResponseEntity<Map<String, Object>> getInferenceStats() {
+        return ResponseEntity.ok(predictionService.getInferenceStats());
+    }
+    
+    /**
+     * Get measured cost and inline/concurrent runs of each bid stage
+     */
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStats() {
+        return ResponseEntity.ok(bidStageExecutor.getStageStats());
+    }
+    
+    /**
+     * Get tracked competitor and observation counts
+     */
+    @GetMapping("/competitors")
+    public ResponseEntity<Map<String, Object>> getCompetitorStats() {
+        return ResponseEntity.ok(competitorAnalysisService.getCompetitorStats());
+    }
+    
+    /**
+     * Promote a prediction model's canary version to primary
+     */
+    @PostMapping("/{name}/promote")
+    public ResponseEntity<Map<String, Object>> promoteModel(@PathVariable String name) {
+        ModelRegistry registry = predictionService.getModelRegistry(name);
+        if (registry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!registry.promote()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "No canary version to promote"));
+        }
+        return ResponseEntity.ok(registry.getStats());
+    }
+    
+    /**
+     * Drop a prediction model's canary version, or return to the previous primary
+     */
+    @PostMapping("/{name}/rollback")
+    public ResponseEntity<Map<String, Object>> rollbackModel(@PathVariable String name) {
+        ModelRegistry registry = predictionService.getModelRegistry(name);
+        if (registry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!registry.rollback()) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "No version to roll back to"));
+        }
+        return ResponseEntity.ok(registry.getStats());
+    }
+    
+    /**
+     * Set the share of traffic served by a prediction model's canary version
+     */
+    @PostMapping("/{name}/split")
+    public ResponseEntity<Map<String, Object>> setModelSplit(@PathVariable String name, @RequestParam int canaryPercent) {
+        ModelRegistry registry = predictionService.getModelRegistry(name);
+        if (registry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!registry.setCanaryPercent(canaryPercent)) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "No canary version, or percent outside 0-100"));
+        }
+        return ResponseEntity.ok(registry.getStats());
+    }
+}
\ No newline at end of file
@@ -3,12 +3,12 @@ package com.adopt.controllers;
 import com.adopt.models.BidOptimization;
 import com.adopt.repositories.BidOptimizationRepository;
 import com.adopt.services.BidOptimizationScheduler;
+import com.adopt.services.ClockService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,6 +24,7 @@ public class OptimizationController {
 
     private final BidOptimizationRepository optimizationRepository;
     private final BidOptimizationScheduler optimizationScheduler;
+    private final ClockService clockService;
     
     /**
      * Get all optimization recommendations
@@ -74,7 +75,7 @@ public class OptimizationController {
         
         // Apply the optimization
         optimization.setStatus(BidOptimization.OptimizationStatus.APPLIED);
-        optimization.setAppliedAt(LocalDateTime.now());
+        optimization.setAppliedAt(clockService.now());
         
         // Update the campaign with the optimized bid
         optimization.getCampaign().setMaxBidPrice(optimization.getOptimizedBid());
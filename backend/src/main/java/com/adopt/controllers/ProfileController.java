@@ -0,0 +1,91 @@
+package com.adopt.controllers;
+
+import com.adopt.services.UserProfileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for user profile storage and identity resolution
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/profiles")
+@RequiredArgsConstructor
+public class ProfileController {
+
+    private final UserProfileService userProfileService;
+
+    /**
+     * Get profile cache size, hit rate, admission and eviction statistics
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(userProfileService.getCacheStats());
+    }
+
+    /**
+     * Get snapshot size and timing and restore progress and throughput
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> getSnapshotStats() {
+        return ResponseEntity.ok(userProfileService.getSnapshotStats());
+    }
+
+    /**
+     * Snapshot the profile store now
+     */
+    @PostMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> snapshot() {
+        userProfileService.snapshotProfiles();
+        return ResponseEntity.ok(userProfileService.getSnapshotStats());
+    }
+
+    /**
+     * Link identifiers of the same person, e.g. from a login or ID sync event
+     */
+    @PostMapping("/identities/link")
+    public ResponseEntity<Void> linkIdentities(@RequestBody List<String> ids) {
+        userProfileService.linkIdentities(ids);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Track a user event; it is applied to the profile asynchronously
+     */
+    @PostMapping("/events")
+    public ResponseEntity<Void> trackEvent(
+            @RequestParam(required = false) String cookieId,
+            @RequestParam(required = false) String deviceId,
+            @RequestParam String type,
+            @RequestBody(required = false) Map<String, Object> data) {
+        if ((cookieId == null || cookieId.isEmpty()) && (deviceId == null || deviceId.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Not accepted means the event buffer is full
+        boolean accepted = userProfileService.trackUserEvent(cookieId, deviceId, type, data);
+        return accepted ? ResponseEntity.accepted().build() : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    /**
+     * Get event buffer and folding statistics
+     */
+    @GetMapping("/events")
+    public ResponseEntity<Map<String, Object>> getEventStats() {
+        return ResponseEntity.ok(userProfileService.getEventStats());
+    }
+
+    /**
+     * Get identity graph size and merge statistics
+     */
+    @GetMapping("/identities")
+    public ResponseEntity<Map<String, Object>> getIdentityStats() {
+        return ResponseEntity.ok(userProfileService.getIdentityStats());
+    }
+}
@@ -47,14 +47,17 @@ public class AdCampaign {
     @OneToMany(mappedBy = "campaign", cascade = CascadeType.ALL, orphanRemoval = true)
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
+    @Builder.Default
     private Set<AdCreative> creatives = new HashSet<>();
     
     @ElementCollection
     @CollectionTable(name = "campaign_target_audiences", joinColumns = @JoinColumn(name = "campaign_id"))
+    @Builder.Default
     private Set<String> targetAudiences = new HashSet<>();
     
     @ElementCollection
     @CollectionTable(name = "campaign_metrics", joinColumns = @JoinColumn(name = "campaign_id"))
+    @Builder.Default
     private Set<CampaignMetric> metrics = new HashSet<>();
     
     public enum CampaignType {
@@ -63,7 +63,10 @@ public class BidOptimization {
     
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Set from the application clock by whoever creates the recommendation
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
         if (status == null) {
             status = OptimizationStatus.PENDING;
         }
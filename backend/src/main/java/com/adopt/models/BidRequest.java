@@ -1,5 +1,6 @@
 package com.adopt.models;
 
+import com.adopt.models.profile.UserProfile;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -50,6 +51,6 @@ public class BidRequest {
     private LocalDateTime timestamp;
     
     // Transient properties for runtime use (not persisted)
-    private transient Map<String, Object> userProfile;
+    private transient UserProfile userProfile;
     private transient Map<String, Double> competitorPredictions;
 } 
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.adopt.models.gametheory;
+
+import java.util.Arrays;
+
+/**
+ * Hour-of-day shape of one competitor's bids on one slot, learned from observations.
+ *
+ * Each hour keeps a plain count and sum. Bids are not recorded here directly: the
+ * scheduler adds each hour's totals from the {@link CompetitorWindow} once the hour has
+ * closed, so the curve needs no concurrent accumulators. The curve is a factor per hour
+ * relative to the all-time average bid, starting from a prior shape and moving to the
+ * observed one as the hour collects bids. It is computed only when profiles are
+ * materialized; bids then pick the current hour's precomputed view with
+ * {@link CompetitorProfile#atHour}.
+ */
+public class CompetitorBidCurve {
+
+    public static final int HOURS = 24;
+
+    // Observations an hour needs before its own average outweighs the prior shape
+    private static final double PRIOR_OBSERVATIONS = 30.0;
+
+    private final double[] priorFactors;
+    private final long[] counts = new long[HOURS];
+    private final double[] sums = new double[HOURS];
+
+    /**
+     * @param priorFactors the prior bid factor of each hour of the day, relative to the average
+     */
+    public CompetitorBidCurve(double[] priorFactors) {
+        if (priorFactors.length != HOURS) {
+            throw new IllegalArgumentException("Expected " + HOURS + " hourly factors, got " + priorFactors.length);
+        }
+        this.priorFactors = priorFactors.clone();
+    }
+
+    /**
+     * Get a curve with the same factor at every hour
+     */
+    public static double[] flat() {
+        double[] factors = new double[HOURS];
+        Arrays.fill(factors, 1.0);
+        return factors;
+    }
+
+    /**
+     * Add the bids of a closed hour
+     *
+     * @param hourOfDay the hour of the day they were observed in
+     * @param count number of bids
+     * @param sum sum of the bids
+     */
+    public synchronized void add(int hourOfDay, long count, double sum) {
+        counts[hourOfDay] += count;
+        sums[hourOfDay] += sum;
+    }
+
+    /**
+     * Compute the bid factor of each hour relative to the given all-time average bid
+     */
+    public synchronized double[] factors(double averageBid) {
+        double[] factors = new double[HOURS];
+        for (int h = 0; h < HOURS; h++) {
+            long count = counts[h];
+            double observed = count > 0 && averageBid > 0 ? sums[h] / count / averageBid : 1.0;
+            factors[h] = (PRIOR_OBSERVATIONS * priorFactors[h] + count * observed) / (PRIOR_OBSERVATIONS + count);
+        }
+        return factors;
+    }
+}
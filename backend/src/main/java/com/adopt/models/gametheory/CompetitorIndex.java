@@ -0,0 +1,186 @@
+package com.adopt.models.gametheory;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded index of the competitors tracked on each ad slot.
+ *
+ * The index is a Guava cache: lookups read a concurrent table without taking a lock, and
+ * record the access in a buffer that writers and periodic clean-ups drain into the
+ * recency order. Slots not accessed within the idle time expire, and when the index is
+ * full its least recently used slots are evicted, so memory stays bounded however many
+ * slots are seen. Evicted and expired slots are handed to a listener, which persists the
+ * ones with unsaved observations; an evicted slot is reloaded from there when it is seen
+ * again.
+ */
+public class CompetitorIndex {
+
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private final Cache<String, Slot> slots;
+    private final int capacity;
+    private final long expireAfterAccessMillis;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param capacity maximum number of slots
+     * @param expireAfterAccessMillis how long a slot stays indexed after it was last accessed
+     * @param clockMillis source of the current time in milliseconds
+     * @param evictionListener called with each evicted or expired slot, outside the index's
+     *                         locks but on the thread that triggered the removal, so it
+     *                         should only hand the slot off
+     */
+    public CompetitorIndex(int capacity, long expireAfterAccessMillis, LongSupplier clockMillis,
+                           Consumer<Slot> evictionListener) {
+        this.capacity = capacity;
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+        this.slots = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumSize(capacity)
+                .expireAfterAccess(expireAfterAccessMillis, TimeUnit.MILLISECONDS)
+                .ticker(new Ticker() {
+                    @Override
+                    public long read() {
+                        return TimeUnit.MILLISECONDS.toNanos(clockMillis.getAsLong());
+                    }
+                })
+                .recordStats()
+                .removalListener((RemovalNotification<String, Slot> notification) -> {
+                    if (notification.getCause() == RemovalCause.EXPIRED) {
+                        expirations.increment();
+                    } else if (notification.wasEvicted()) {
+                        evictions.increment();
+                    } else {
+                        return;
+                    }
+                    evictionListener.accept(notification.getValue());
+                })
+                .build();
+    }
+
+    /**
+     * Get an indexed slot
+     *
+     * @return the slot, or null if it is not indexed or has expired
+     */
+    public Slot get(String adSlotId) {
+        return slots.getIfPresent(adSlotId);
+    }
+
+    /**
+     * Index a slot unless one is indexed already, evicting the least recently used slot if
+     * the index is full
+     *
+     * @return the slot now indexed under the ID
+     */
+    public Slot putIfAbsent(Slot slot) {
+        Slot existing = slots.asMap().putIfAbsent(slot.adSlotId, slot);
+        return existing != null ? existing : slot;
+    }
+
+    /**
+     * Expire idle slots now, rather than on the next writes; the index does no work of its own
+     */
+    public void cleanUp() {
+        slots.cleanUp();
+    }
+
+    /**
+     * Copy the indexed slots; the slots themselves are live
+     */
+    public List<Slot> slots() {
+        return new ArrayList<>(slots.asMap().values());
+    }
+
+    public int size() {
+        return (int) slots.size();
+    }
+
+    /**
+     * Get size, hit rate, eviction and expiry statistics
+     */
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = slots.stats();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("slots", size());
+        stats.put("capacity", capacity);
+        stats.put("expireAfterAccessMillis", expireAfterAccessMillis);
+        stats.put("hits", cacheStats.hitCount());
+        stats.put("misses", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.requestCount() > 0 ? cacheStats.hitRate() : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    /**
+     * The competitors of one slot: the profile views bids read and the statistics they are
+     * materialized from, both by competitor type
+     */
+    public static final class Slot {
+        private final String adSlotId;
+        private final Map<String, CompetitorProfile> profiles = new ConcurrentHashMap<>();
+        private final Map<String, CompetitorStats> stats = new ConcurrentHashMap<>();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        public Slot(String adSlotId) {
+            this.adSlotId = adSlotId;
+        }
+
+        public String getAdSlotId() {
+            return adSlotId;
+        }
+
+        /**
+         * Profile views by competitor type
+         */
+        public Map<String, CompetitorProfile> getProfiles() {
+            return profiles;
+        }
+
+        /**
+         * Live statistics by competitor type
+         */
+        public Map<String, CompetitorStats> getStats() {
+            return stats;
+        }
+
+        /**
+         * Check whether views were refreshed from new observations since the slot was last persisted
+         */
+        public boolean isDirty() {
+            return dirty.get();
+        }
+
+        public void markDirty() {
+            dirty.set(true);
+        }
+
+        /**
+         * Clear the dirty flag, returning whether it was set
+         */
+        public boolean clearDirty() {
+            // Atomically, so a concurrent markDirty is either reported here or kept for next time
+            return dirty.getAndSet(false);
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.adopt.models.gametheory;
 
+import com.adopt.utils.QuantileSketch;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -13,12 +19,19 @@ import java.time.LocalDateTime;
  * Entity representing a competitor's bidding profile for game theory analysis
  */
 @Entity
-@Table(name = "competitor_profiles")
+@Table(name = "competitor_profiles", indexes = @Index(name = "idx_competitor_profiles_ad_slot", columnList = "ad_slot_id"))
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class CompetitorProfile {
+    
+    // Observations needed before the bid distribution is trusted over the min/average/max summary
+    public static final int MIN_DISTRIBUTION_OBSERVATIONS = 30;
+    
+    // Largest deviation of any hour's bid factor for the curve to count as flat
+    public static final double FLAT_CURVE_TOLERANCE = 0.02;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -41,26 +54,102 @@ public class CompetitorProfile {
     private LocalDateTime lastUpdated;
     private LocalDateTime firstSeen;
     
+    // Distribution of observed bids; created on the first observation and not persisted
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private QuantileSketch bidDistribution;
+    
+    // Recent bid windows as of the last materialization; not persisted
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private CompetitorWindow.Summary recentBids;
+    
+    // Hour-of-day bid factors and a view of this profile for each hour; null when flat, not persisted
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private double[] hourlyFactors;
+    
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private CompetitorProfile[] hourlyViews;
+    
+    // Bid factor of the hour this profile is a view for, which its bid distribution is scaled
+    // by; 0 for the profile itself, whose distribution is read as observed
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private double hourFactor;
+    
+    // Running average in double arithmetic; read through getAverageBidPrice and only written
+    // back to averageBidPrice by the persist hooks
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private double runningAverageBid;
+    
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean averageBidPending;
+    
+    // Timestamps come from the callers, who read the application clock; the persist hooks
+    // only flush the running average and fill in a missing first-seen time
     @PrePersist
     protected void onCreate() {
+        flushAverageBid();
         if (firstSeen == null) {
-            firstSeen = LocalDateTime.now();
+            firstSeen = lastUpdated;
         }
-        lastUpdated = LocalDateTime.now();
     }
     
     @PreUpdate
     protected void onUpdate() {
-        lastUpdated = LocalDateTime.now();
+        flushAverageBid();
+    }
+    
+    public BigDecimal getAverageBidPrice() {
+        return averageBidPending ? BigDecimal.valueOf(runningAverageBid) : averageBidPrice;
+    }
+    
+    public void setAverageBidPrice(BigDecimal averageBidPrice) {
+        this.averageBidPrice = averageBidPrice;
+        averageBidPending = false;
     }
     
     /**
-     * Add a new bid observation to update the profile
+     * Add a new bid observation to update the profile; not thread-safe, so concurrently
+     * observed competitors are tracked in {@link CompetitorStats} and materialized instead
+     * 
+     * @param observedAt the time of the observation, from the application clock
      */
-    public void addBidObservation(BigDecimal bidPrice, String adSlotId, boolean wonAuction) {
+    public void addBidObservation(BigDecimal bidPrice, String adSlotId, boolean wonAuction, LocalDateTime observedAt) {
         // Update statistics based on new observation
         bidCount = (bidCount == null) ? 1 : bidCount + 1;
         
+        double bid = bidPrice.doubleValue();
+        if (bidDistribution == null) {
+            bidDistribution = new QuantileSketch();
+        }
+        bidDistribution.add(bid);
+        
         // Update min/max
         if (minBidPrice == null || bidPrice.compareTo(minBidPrice) < 0) {
             minBidPrice = bidPrice;
@@ -70,14 +159,12 @@ public class CompetitorProfile {
             maxBidPrice = bidPrice;
         }
         
-        // Update average (simple rolling average)
-        if (averageBidPrice == null) {
-            averageBidPrice = bidPrice;
-        } else {
-            BigDecimal totalBefore = averageBidPrice.multiply(BigDecimal.valueOf(bidCount - 1));
-            averageBidPrice = totalBefore.add(bidPrice).divide(BigDecimal.valueOf(bidCount), 
-                                                            java.math.RoundingMode.HALF_UP);
-        }
+        // Update average (simple rolling average, in double arithmetic; converted back to
+        // BigDecimal when read or persisted)
+        double previous = averageBidPending ? runningAverageBid
+                : averageBidPrice != null ? averageBidPrice.doubleValue() : bid;
+        runningAverageBid = previous + (bid - previous) / bidCount;
+        averageBidPending = true;
         
         // Update win rate
         if (winRate == null) {
@@ -88,6 +175,191 @@ public class CompetitorProfile {
         }
         
         // Update last updated timestamp
-        lastUpdated = LocalDateTime.now();
+        lastUpdated = observedAt;
+    }
+    
+    /**
+     * Check whether enough bids were observed to use the bid distribution
+     */
+    public boolean hasBidDistribution() {
+        return bidDistribution != null && bidDistribution.count() >= MIN_DISTRIBUTION_OBSERVATIONS;
+    }
+    
+    /**
+     * Estimate the bid price below which a fraction q of this competitor's bids fall
+     * 
+     * @return the estimate, or NaN if no bids were observed
+     */
+    public double bidQuantile(double q) {
+        if (bidDistribution == null) {
+            return Double.NaN;
+        }
+        double quantile = bidDistribution.quantile(q);
+        return hourFactor > 0 ? quantile * hourFactor : quantile;
+    }
+    
+    /**
+     * Estimate the probability that this competitor bids at most the given price
+     * 
+     * @return the probability, or NaN if no bids were observed
+     */
+    public double bidCdf(double price) {
+        if (bidDistribution == null) {
+            return Double.NaN;
+        }
+        return bidDistribution.cdf(hourFactor > 0 ? price / hourFactor : price);
+    }
+    
+    void setBidDistribution(QuantileSketch bidDistribution) {
+        this.bidDistribution = bidDistribution;
+    }
+    
+    void setRecentBids(CompetitorWindow.Summary recentBids) {
+        this.recentBids = recentBids;
+    }
+    
+    /**
+     * Get recent bid counts and averages at each horizon, or null if none were tracked
+     */
+    public CompetitorWindow.Summary recentBids() {
+        return recentBids;
+    }
+    
+    /**
+     * Get the average bid with recent bids weighted over the horizon, falling back to the
+     * all-time average if there were no bids recently
+     */
+    public double recentAverageBid(CompetitorWindow.Horizon horizon) {
+        double recent = recentBids != null ? recentBids.decayedAverage(horizon) : Double.NaN;
+        if (!Double.isNaN(recent)) {
+            return recent;
+        }
+        BigDecimal average = getAverageBidPrice();
+        return average != null ? average.doubleValue() : 0.0;
+    }
+    
+    /**
+     * Get the average bid the models price against: recent bids weighted over the last hour,
+     * which already reflect the time of day, or the average bid if there were none
+     */
+    public double recentAverageBid() {
+        return recentAverageBid(CompetitorWindow.Horizon.HOUR);
+    }
+    
+    /**
+     * Get the view of this profile for the given hour of the day, whose average bid follows
+     * the hourly curve; the profile itself if its bids do not vary by hour
+     */
+    public CompetitorProfile atHour(int hourOfDay) {
+        return hourlyViews != null ? hourlyViews[hourOfDay] : this;
+    }
+    
+    /**
+     * Check whether this profile's bids vary by hour, i.e. it has hourly views
+     */
+    public boolean hasHourlyCurve() {
+        return hourlyViews != null;
+    }
+    
+    /**
+     * Get the bid factor of each hour of the day relative to the average bid
+     */
+    public double[] hourlyFactors() {
+        return hourlyFactors != null ? hourlyFactors.clone() : CompetitorBidCurve.flat();
+    }
+    
+    /**
+     * Copy this profile with a view for each hour of the day, whose average bid is scaled by
+     * the hour's factor and kept within the observed range. The copy and its views share this
+     * profile's bid distribution and recent bids, and the views scale its quantiles by the
+     * same factor. A curve within {@link #FLAT_CURVE_TOLERANCE} of flat attaches no views.
+     */
+    public CompetitorProfile withHourlyFactors(double[] factors) {
+        CompetitorProfile copy = copy(competitorStrategy, getAverageBidPrice());
+        copy.attachHourlyViews(factors);
+        return copy;
+    }
+    
+    /**
+     * Copy this profile with another strategy label, sharing its bid distribution and recent
+     * bids and rebuilding its hourly views, so the label is published without changing a
+     * profile bids may be reading
+     */
+    public CompetitorProfile withStrategy(String strategy) {
+        CompetitorProfile copy = copy(strategy, getAverageBidPrice());
+        copy.attachHourlyViews(hourlyFactors != null ? hourlyFactors : CompetitorBidCurve.flat());
+        return copy;
+    }
+    
+    /**
+     * Fold another profile's observed bid distribution into this one, e.g. the same
+     * competitor seen on another slot or server. The merge goes into a new sketch, as a
+     * materialized view's distribution is a snapshot its hourly views share.
+     */
+    public void mergeBidDistribution(CompetitorProfile other) {
+        if (other.bidDistribution == null) {
+            return;
+        }
+        QuantileSketch merged = new QuantileSketch();
+        if (bidDistribution != null) {
+            merged.merge(bidDistribution);
+        }
+        merged.merge(other.bidDistribution);
+        bidDistribution = merged;
+    }
+    
+    // Helper methods
+    
+    private void flushAverageBid() {
+        if (averageBidPending) {
+            averageBidPrice = BigDecimal.valueOf(runningAverageBid);
+            averageBidPending = false;
+        }
+    }
+    
+    private CompetitorProfile copy(String strategy, BigDecimal averageBid) {
+        CompetitorProfile copy = CompetitorProfile.builder()
+                .id(id)
+                .competitorId(competitorId)
+                .competitorName(competitorName)
+                .adSlotId(adSlotId)
+                .averageBidPrice(averageBid)
+                .minBidPrice(minBidPrice)
+                .maxBidPrice(maxBidPrice)
+                .bidCount(bidCount)
+                .estimatedQualityScore(estimatedQualityScore)
+                .winRate(winRate)
+                .competitorStrategy(strategy)
+                .notes(notes)
+                .firstSeen(firstSeen)
+                .lastUpdated(lastUpdated)
+                .build();
+        copy.bidDistribution = bidDistribution;
+        copy.recentBids = recentBids;
+        return copy;
+    }
+    
+    // Only called on a copy that has not been published yet
+    private void attachHourlyViews(double[] factors) {
+        BigDecimal average = getAverageBidPrice();
+        boolean flat = true;
+        for (double factor : factors) {
+            flat &= Math.abs(factor - 1.0) <= FLAT_CURVE_TOLERANCE;
+        }
+        if (flat || average == null) {
+            return;
+        }
+        
+        double low = minBidPrice != null ? minBidPrice.doubleValue() : 0.0;
+        double high = maxBidPrice != null ? maxBidPrice.doubleValue() : Double.MAX_VALUE;
+        CompetitorProfile[] views = new CompetitorProfile[factors.length];
+        for (int h = 0; h < factors.length; h++) {
+            double hourly = Math.min(high, Math.max(low, average.doubleValue() * factors[h]));
+            CompetitorProfile view = copy(competitorStrategy, BigDecimal.valueOf(hourly));
+            view.hourFactor = factors[h];
+            views[h] = view;
+        }
+        hourlyFactors = factors.clone();
+        hourlyViews = views;
     }
-} 
\ No newline at end of file
+}
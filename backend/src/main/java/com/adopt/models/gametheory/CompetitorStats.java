@@ -0,0 +1,184 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.utils.QuantileSketch;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live bid statistics of one competitor on one slot, safe to update from many threads.
+ *
+ * Counts and sums are striped adders, extremes are CAS-updated, and the bid distribution
+ * is split over several sketches picked by thread so concurrent writers rarely share a
+ * lock. A {@link CompetitorProfile} is a point-in-time view of these statistics, built by
+ * {@link #materialize} together with its hourly views; its bid distribution is the stripes
+ * merged into a sketch of its own, which nothing writes to afterwards, so bids reading it
+ * never wait on a writer. The snapshot is reused while no bids were recorded. The
+ * hour-of-day curve is folded from the recent-bid window's closed hours by {@link #roll},
+ * so bids only touch the window. The statistics start from the prior in the profile they
+ * seed from, including its hour-of-day curve.
+ */
+public class CompetitorStats {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final LongAdder observations = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final DoubleAdder bidSum = new DoubleAdder();
+    private final AtomicLong minBits;
+    private final AtomicLong maxBits;
+    private final QuantileSketch[] sketches;
+    private final CompetitorWindow window = new CompetitorWindow();
+    private final CompetitorBidCurve hourlyCurve;
+
+    // Last hour since the epoch folded into the hourly curve; only touched by roll
+    private long foldedHour = -1;
+
+    // Prior carried over from the seed profile
+    private final int priorCount;
+    private final double priorSum;
+    private final Double priorWinRate;
+
+    // Observation count at the last materialization, and the distribution it merged
+    private volatile long materializedObservations = -1;
+    private QuantileSketch snapshot;
+
+    /**
+     * @param seed the profile whose summary is the prior
+     * @param stripes number of bid sketches, rounded up to a power of two
+     */
+    public CompetitorStats(CompetitorProfile seed, int stripes) {
+        this.priorCount = seed.getBidCount() != null ? seed.getBidCount() : 0;
+        this.priorSum = seed.getAverageBidPrice() != null ? seed.getAverageBidPrice().doubleValue() * priorCount : 0.0;
+        this.priorWinRate = seed.getWinRate();
+        this.hourlyCurve = new CompetitorBidCurve(seed.hourlyFactors());
+        this.minBits = new AtomicLong(Double.doubleToRawLongBits(
+                seed.getMinBidPrice() != null ? seed.getMinBidPrice().doubleValue() : Double.POSITIVE_INFINITY));
+        this.maxBits = new AtomicLong(Double.doubleToRawLongBits(
+                seed.getMaxBidPrice() != null ? seed.getMaxBidPrice().doubleValue() : Double.NEGATIVE_INFINITY));
+
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.sketches = new QuantileSketch[size];
+        for (int i = 0; i < size; i++) {
+            sketches[i] = new QuantileSketch();
+        }
+    }
+
+    /**
+     * Record one observed (or estimated) competitor bid
+     */
+    public void record(double bid, boolean won, long nowMillis) {
+        // Into the sketch before the count, so a materialization that sees the count has the bid
+        sketches[(int) Thread.currentThread().getId() & (sketches.length - 1)].add(bid);
+        observations.increment();
+        if (won) {
+            wins.increment();
+        }
+        bidSum.add(bid);
+        updateMin(bid);
+        updateMax(bid);
+        window.record(bid, nowMillis);
+    }
+
+    /**
+     * Advance the recent-bid windows and fold closed hours into the hour-of-day curve;
+     * call at least once a minute, from one thread
+     *
+     * @param hourOfDay the current hour of the day, to place the closed hours on the curve
+     * @return true if a minute or an hour closed, so the view changed
+     */
+    public boolean roll(long nowMillis, int hourOfDay) {
+        boolean rolled = window.roll(nowMillis);
+
+        long hour = nowMillis / HOUR_MILLIS;
+        if (foldedHour < 0) {
+            foldedHour = hour - 1;
+        }
+        int offset = Math.floorMod(hourOfDay - hour, CompetitorBidCurve.HOURS);
+        for (long closed = Math.max(foldedHour + 1, hour - CompetitorBidCurve.HOURS); closed < hour; closed++) {
+            long count = window.hourCount(closed);
+            if (count > 0) {
+                hourlyCurve.add(Math.floorMod(closed + offset, CompetitorBidCurve.HOURS), count, window.hourSum(closed));
+                rolled = true;
+            }
+        }
+        foldedHour = hour - 1;
+        return rolled;
+    }
+
+    /**
+     * Check whether bids were recorded since the last materialization
+     */
+    public boolean isDirty() {
+        return observations.sum() != materializedObservations;
+    }
+
+    public long getObservations() {
+        return observations.sum();
+    }
+
+    /**
+     * Build a profile view of the current statistics, keeping the identity and strategy
+     * fields of the given view. Synchronized, as evicted slots are materialized by the
+     * writer while the materializer may still hold them.
+     */
+    public synchronized CompetitorProfile materialize(CompetitorProfile view, LocalDateTime now, long nowMillis) {
+        long count = observations.sum();
+        double sum = bidSum.sum();
+        long total = priorCount + count;
+        double average = total > 0 ? (priorSum + sum) / total : Double.NaN;
+
+        if (snapshot == null || count != materializedObservations) {
+            QuantileSketch distribution = new QuantileSketch();
+            for (QuantileSketch sketch : sketches) {
+                distribution.merge(sketch);
+            }
+            snapshot = distribution;
+        }
+
+        double min = Double.longBitsToDouble(minBits.get());
+        double max = Double.longBitsToDouble(maxBits.get());
+        CompetitorProfile profile = CompetitorProfile.builder()
+                .id(view.getId())
+                .competitorId(view.getCompetitorId())
+                .competitorName(view.getCompetitorName())
+                .adSlotId(view.getAdSlotId())
+                .averageBidPrice(total > 0 ? BigDecimal.valueOf(average) : view.getAverageBidPrice())
+                .minBidPrice(Double.isInfinite(min) ? view.getMinBidPrice() : BigDecimal.valueOf(min))
+                .maxBidPrice(Double.isInfinite(max) ? view.getMaxBidPrice() : BigDecimal.valueOf(max))
+                .bidCount((int) Math.min(Integer.MAX_VALUE, total))
+                .estimatedQualityScore(view.getEstimatedQualityScore())
+                .winRate(count > 0 ? (double) wins.sum() / count : priorWinRate)
+                .competitorStrategy(view.getCompetitorStrategy())
+                .notes(view.getNotes())
+                .firstSeen(view.getFirstSeen())
+                .lastUpdated(count != materializedObservations ? now : view.getLastUpdated())
+                .build();
+        profile.setBidDistribution(snapshot);
+        profile.setRecentBids(window.summarize(nowMillis));
+
+        materializedObservations = count;
+        return profile.withHourlyFactors(hourlyCurve.factors(total > 0 ? average : 0.0));
+    }
+
+    // Helper methods
+
+    private void updateMin(double bid) {
+        long current = minBits.get();
+        while (bid < Double.longBitsToDouble(current)
+                && !minBits.compareAndSet(current, Double.doubleToRawLongBits(bid))) {
+            current = minBits.get();
+        }
+    }
+
+    private void updateMax(double bid) {
+        long current = maxBits.get();
+        while (bid > Double.longBitsToDouble(current)
+                && !maxBits.compareAndSet(current, Double.doubleToRawLongBits(bid))) {
+            current = maxBits.get();
+        }
+    }
+}
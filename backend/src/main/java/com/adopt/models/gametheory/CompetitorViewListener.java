@@ -0,0 +1,23 @@
+package com.adopt.models.gametheory;
+
+import java.util.Map;
+
+/**
+ * Receives the competitor profile views of a slot when they are published, so state
+ * derived from them is refreshed once per change instead of being checked on every bid
+ */
+public interface CompetitorViewListener {
+
+    /**
+     * Called after a slot's views were replaced, loaded, or moved to a new hour of the day
+     *
+     * @param adSlotId the slot
+     * @param profiles the views bids on the slot now read, for the current hour, by competitor type
+     */
+    void onProfilesPublished(String adSlotId, Map<String, CompetitorProfile> profiles);
+
+    /**
+     * Called after a slot left the competitor index
+     */
+    void onSlotEvicted(String adSlotId);
+}
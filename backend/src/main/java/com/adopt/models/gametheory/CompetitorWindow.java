@@ -0,0 +1,308 @@
+package com.adopt.models.gametheory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Recent bid statistics of one competitor: fixed windows over rings of per-minute and
+ * per-hour buckets, and exponentially decayed averages, at each {@link Horizon}.
+ *
+ * Recording a bid adds to the current minute and hour buckets, lock-free and in O(1).
+ * Decayed averages are folded forward a closed minute at a time by {@link #roll}, which
+ * also clears the next buckets before writers reach them. Memory is fixed: about 2 KB
+ * per competitor, however many bids it makes.
+ */
+public class CompetitorWindow {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final int MINUTE_BUCKETS = 61; // An hour, plus the next minute cleared ahead
+    private static final int HOUR_BUCKETS = 25; // A day, plus the next hour cleared ahead
+    private static final double MICROS = 1_000_000.0; // Bids are summed as integer micro-units
+    private static final int MAX_CATCH_UP_MINUTES = 7 * 24 * 60; // Past this gap the decayed state is reset
+
+    // Each bucket is (period stamp, bid count, bid sum in micros)
+    private static final int STAMP = 0;
+    private static final int COUNT = 1;
+    private static final int SUM = 2;
+    private static final int STRIDE = 3;
+
+    private final AtomicLongArray minutes = new AtomicLongArray(MINUTE_BUCKETS * STRIDE);
+    private final AtomicLongArray hours = new AtomicLongArray(HOUR_BUCKETS * STRIDE);
+
+    // Decayed bid counts and sums over closed minutes, by horizon; replaced as a whole on roll
+    private volatile double[] decayed = new double[Horizon.VALUES.length * 2];
+    private long rolledMinute = -1;
+
+    public CompetitorWindow() {
+        for (int i = 0; i < MINUTE_BUCKETS; i++) {
+            minutes.set(i * STRIDE + STAMP, -1);
+        }
+        for (int i = 0; i < HOUR_BUCKETS; i++) {
+            hours.set(i * STRIDE + STAMP, -1);
+        }
+    }
+
+    /**
+     * Record a bid observed at the given time
+     */
+    public void record(double bid, long nowMillis) {
+        long minute = nowMillis / MINUTE_MILLIS;
+        long micros = Math.round(bid * MICROS);
+        add(minutes, minute, MINUTE_BUCKETS, micros);
+        add(hours, minute / 60, HOUR_BUCKETS, micros);
+    }
+
+    /**
+     * Fold closed minutes into the decayed averages and clear the next buckets; called
+     * periodically, at least once a minute, by a single thread
+     *
+     * @return true if the summary changed other than by the current minute's bids: a
+     *         closed minute had bids, or bids left one of the fixed windows
+     */
+    public synchronized boolean roll(long nowMillis) {
+        long minute = nowMillis / MINUTE_MILLIS;
+        if (rolledMinute < 0 || minute - rolledMinute > MAX_CATCH_UP_MINUTES) {
+            boolean reset = rolledMinute >= 0;
+            if (reset) {
+                decayed = new double[Horizon.VALUES.length * 2];
+            }
+            rolledMinute = minute - 1;
+            clearAhead(minute);
+            return reset;
+        }
+        if (minute - 1 <= rolledMinute) {
+            clearAhead(minute);
+            return false;
+        }
+
+        // Decay alone scales counts and sums alike, so only closed minutes with bids move
+        // the decayed averages
+        boolean changed = false;
+        double[] next = decayed.clone();
+        for (long closed = rolledMinute + 1; closed < minute; closed++) {
+            int base = bucketBase(closed, MINUTE_BUCKETS);
+            boolean valid = minutes.get(base + STAMP) == closed;
+            long count = valid ? minutes.get(base + COUNT) : 0;
+            double sum = valid ? minutes.get(base + SUM) / MICROS : 0.0;
+            for (Horizon horizon : Horizon.VALUES) {
+                int index = horizon.ordinal() * 2;
+                next[index] = next[index] * horizon.minuteDecay + count;
+                next[index + 1] = next[index + 1] * horizon.minuteDecay + sum;
+            }
+            changed |= count > 0;
+        }
+        decayed = next;
+        changed |= expired(rolledMinute + 1, minute);
+        rolledMinute = minute - 1;
+        clearAhead(minute);
+        return changed;
+    }
+
+    /**
+     * Get the number of bids in an hour the ring still holds
+     *
+     * @param hour hours since the epoch
+     * @return the count, or 0 if the hour has left the ring
+     */
+    public long hourCount(long hour) {
+        int base = bucketBase(hour, HOUR_BUCKETS);
+        return hours.get(base + STAMP) == hour ? hours.get(base + COUNT) : 0;
+    }
+
+    /**
+     * Get the sum of the bids in an hour the ring still holds
+     *
+     * @param hour hours since the epoch
+     * @return the sum, or 0 if the hour has left the ring
+     */
+    public double hourSum(long hour) {
+        int base = bucketBase(hour, HOUR_BUCKETS);
+        return hours.get(base + STAMP) == hour ? hours.get(base + SUM) / MICROS : 0.0;
+    }
+
+    /**
+     * Summarize the windows as of the given time
+     */
+    public Summary summarize(long nowMillis) {
+        long minute = nowMillis / MINUTE_MILLIS;
+        long[] counts = new long[Horizon.VALUES.length];
+        double[] averages = new double[Horizon.VALUES.length];
+        double[] decayedAverages = new double[Horizon.VALUES.length];
+
+        // The current minute is not folded into the decayed state yet
+        int currentBase = bucketBase(minute, MINUTE_BUCKETS);
+        boolean currentValid = minutes.get(currentBase + STAMP) == minute;
+        long currentCount = currentValid ? minutes.get(currentBase + COUNT) : 0;
+        double currentSum = currentValid ? minutes.get(currentBase + SUM) / MICROS : 0.0;
+        double[] decayedState = decayed;
+
+        for (Horizon horizon : Horizon.VALUES) {
+            long count = 0;
+            long sumMicros = 0;
+            if (horizon.minutes <= 60) {
+                for (long m = minute - horizon.minutes + 1; m <= minute; m++) {
+                    int base = bucketBase(m, MINUTE_BUCKETS);
+                    if (minutes.get(base + STAMP) == m) {
+                        count += minutes.get(base + COUNT);
+                        sumMicros += minutes.get(base + SUM);
+                    }
+                }
+            } else {
+                long hour = minute / 60;
+                for (long h = hour - horizon.minutes / 60 + 1; h <= hour; h++) {
+                    int base = bucketBase(h, HOUR_BUCKETS);
+                    if (hours.get(base + STAMP) == h) {
+                        count += hours.get(base + COUNT);
+                        sumMicros += hours.get(base + SUM);
+                    }
+                }
+            }
+
+            int h = horizon.ordinal();
+            counts[h] = count;
+            averages[h] = count > 0 ? sumMicros / MICROS / count : Double.NaN;
+            double decayedCount = decayedState[h * 2] + currentCount;
+            decayedAverages[h] = decayedCount > 0 ? (decayedState[h * 2 + 1] + currentSum) / decayedCount : Double.NaN;
+        }
+        return new Summary(counts, averages, decayedAverages);
+    }
+
+    // Helper methods
+
+    private static int bucketBase(long period, int buckets) {
+        return (int) (period % buckets) * STRIDE;
+    }
+
+    private static void add(AtomicLongArray ring, long period, int buckets, long micros) {
+        int base = bucketBase(period, buckets);
+        long stamp = ring.get(base + STAMP);
+        if (stamp != period) {
+            if (stamp > period) {
+                return; // A late observation for a period already overwritten
+            }
+            // Normally roll clears buckets ahead of time; if it fell behind, the first writer
+            // of the period resets the bucket, and a racing writer may lose the odd sample
+            if (ring.compareAndSet(base + STAMP, stamp, period)) {
+                ring.set(base + COUNT, 0);
+                ring.set(base + SUM, 0);
+            }
+        }
+        ring.getAndIncrement(base + COUNT);
+        ring.getAndAdd(base + SUM, micros);
+    }
+
+    /**
+     * Check whether moving the windows from ending at one minute to ending at a later one
+     * drops periods with bids; checked before those buckets are cleared for reuse
+     */
+    private boolean expired(long previousMinute, long minute) {
+        for (Horizon horizon : Horizon.VALUES) {
+            if (horizon.minutes <= 60) {
+                for (long m = previousMinute - horizon.minutes + 1; m <= minute - horizon.minutes; m++) {
+                    if (hasBids(minutes, m, MINUTE_BUCKETS)) {
+                        return true;
+                    }
+                }
+            } else {
+                int span = horizon.minutes / 60;
+                for (long h = previousMinute / 60 - span + 1; h <= minute / 60 - span; h++) {
+                    if (hasBids(hours, h, HOUR_BUCKETS)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasBids(AtomicLongArray ring, long period, int buckets) {
+        int base = bucketBase(period, buckets);
+        return ring.get(base + STAMP) == period && ring.get(base + COUNT) > 0;
+    }
+
+    private void clearAhead(long minute) {
+        clear(minutes, minute + 1, MINUTE_BUCKETS);
+        clear(hours, minute / 60 + 1, HOUR_BUCKETS);
+    }
+
+    private static void clear(AtomicLongArray ring, long period, int buckets) {
+        int base = bucketBase(period, buckets);
+        if (ring.get(base + STAMP) < period) {
+            ring.set(base + COUNT, 0);
+            ring.set(base + SUM, 0);
+            ring.set(base + STAMP, period);
+        }
+    }
+
+    /**
+     * Time horizons competitor statistics are kept at
+     */
+    public enum Horizon {
+        FIVE_MINUTES(5),
+        HOUR(60),
+        DAY(24 * 60);
+
+        static final Horizon[] VALUES = values();
+
+        private final int minutes;
+        private final double minuteDecay; // Weight a minute keeps after another minute passes
+
+        Horizon(int minutes) {
+            this.minutes = minutes;
+            this.minuteDecay = Math.exp(-1.0 / minutes);
+        }
+
+        public int getMinutes() {
+            return minutes;
+        }
+    }
+
+    /**
+     * Immutable window statistics at one point in time
+     */
+    public static final class Summary {
+        private final long[] counts;
+        private final double[] averages;
+        private final double[] decayedAverages;
+
+        private Summary(long[] counts, double[] averages, double[] decayedAverages) {
+            this.counts = counts;
+            this.averages = averages;
+            this.decayedAverages = decayedAverages;
+        }
+
+        /**
+         * Get the number of bids in the horizon's window
+         */
+        public long count(Horizon horizon) {
+            return counts[horizon.ordinal()];
+        }
+
+        /**
+         * Get the average bid in the horizon's window, or NaN if there were none
+         */
+        public double average(Horizon horizon) {
+            return averages[horizon.ordinal()];
+        }
+
+        /**
+         * Get the average bid with weights decaying over the horizon, or NaN if there were none
+         */
+        public double decayedAverage(Horizon horizon) {
+            return decayedAverages[horizon.ordinal()];
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> summary = new HashMap<>();
+            for (Horizon horizon : Horizon.VALUES) {
+                Map<String, Object> window = new HashMap<>();
+                window.put("count", count(horizon));
+                window.put("average", average(horizon));
+                window.put("decayedAverage", decayedAverage(horizon));
+                summary.put(horizon.name(), window);
+            }
+            return summary;
+        }
+    }
+}
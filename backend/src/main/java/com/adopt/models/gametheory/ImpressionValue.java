@@ -0,0 +1,93 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidResponse;
+
+/**
+ * Values impressions in the currency bids are priced in, so what an impression was worth
+ * can be weighed against what was paid for it.
+ *
+ * A campaign's max bid is the most it pays for one impression, so an impression performing
+ * at the campaign's target click-through and conversion rates is valued at the max bid. A
+ * click is worth the max bid spread over the clicks expected per impression at target, and
+ * a conversion adds the campaign objective's weight in clicks.
+ */
+public final class ImpressionValue {
+
+    // Targets assumed for campaigns that do not set their own
+    public static final double DEFAULT_TARGET_CTR = 0.02;
+    public static final double DEFAULT_TARGET_CONVERSION_RATE = 0.1;
+
+    private ImpressionValue() {
+    }
+
+    /**
+     * Value of the impression a bid bought. The value expected at the rates predicted for the
+     * bid is on the same scale as the realized value, and far less noisy than one impression's
+     * clicks, so it is used whenever the response carries a prediction
+     */
+    public static double of(BidResponse bidResponse) {
+        AdCampaign campaign = bidResponse.getCampaign();
+        if (bidResponse.getPredictedCtr() != null) {
+            return expected(campaign, bidResponse.getPredictedCtr(),
+                    bidResponse.getPredictedCvr() != null ? bidResponse.getPredictedCvr() : 0.0);
+        }
+        return realized(campaign, Boolean.TRUE.equals(bidResponse.getIsClicked()),
+                Boolean.TRUE.equals(bidResponse.getIsConverted()));
+    }
+
+    /**
+     * Value of an impression's realized outcome
+     */
+    public static double realized(AdCampaign campaign, boolean clicked, boolean converted) {
+        if (!clicked) {
+            return 0.0;
+        }
+        return clickValue(campaign) * (1.0 + (converted ? objectiveWeight(campaign) : 0));
+    }
+
+    /**
+     * Expected value of an impression at the given rates
+     *
+     * @param ctr probability of a click
+     * @param cvr probability of a conversion after a click
+     */
+    public static double expected(AdCampaign campaign, double ctr, double cvr) {
+        return clickValue(campaign) * ctr * (1.0 + cvr * objectiveWeight(campaign));
+    }
+
+    /**
+     * Value of a click without a conversion
+     */
+    public static double clickValue(AdCampaign campaign) {
+        double maxBid = campaign.getMaxBidPrice() != null ? campaign.getMaxBidPrice().doubleValue() : 0.0;
+        double targetCtr = positiveOr(campaign.getTargetCTR(), DEFAULT_TARGET_CTR);
+        double targetCvr = positiveOr(campaign.getTargetConversionRate(), DEFAULT_TARGET_CONVERSION_RATE);
+        return maxBid / (targetCtr * (1.0 + targetCvr * objectiveWeight(campaign)));
+    }
+
+    /**
+     * Weight of a conversion relative to a click, by campaign objective
+     */
+    public static int objectiveWeight(AdCampaign campaign) {
+        if (campaign.getCampaignType() == null) {
+            return 5;
+        }
+        switch (campaign.getCampaignType()) {
+            case CPC:
+                return 1; // Focus on clicks
+            case CPA:
+                return 20; // Focus on conversions
+            case HYBRID:
+                return 10; // Balance clicks and conversions
+            default:
+                return 5; // Default balanced approach
+        }
+    }
+
+    // Helper methods
+
+    private static double positiveOr(Double value, double fallback) {
+        return value != null && value > 0 ? value : fallback;
+    }
+}
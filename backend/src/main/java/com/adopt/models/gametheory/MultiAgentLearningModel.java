@@ -0,0 +1,411 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of a bidding strategy based on an n-player equilibrium found by self-play.
+ *
+ * Unlike the Nash model, every competitor in a slot is a separate player. Each player has a
+ * discretized private valuation and best-responds to the empirical bid distribution of all
+ * other players (fictitious play) until strategies stop changing. Games for every
+ * (slot, campaign) pair are solved offline on the fork-join pool and the resulting equilibrium
+ * bid tables are published atomically, so the bid path does a single lookup.
+ */
+@Slf4j
+@Component
+public class MultiAgentLearningModel implements GameTheoryModel {
+
+    private static final int BID_LEVELS = 32; // Number of discrete bid levels in the grid
+    private static final int VALUE_TYPES = 8; // Number of discrete valuations per player
+    private static final int MAX_ITERATIONS = 100; // Upper bound on best-response rounds per game
+    private static final double GRID_HEADROOM = 1.5; // Grid spans up to 1.5x the highest max bid
+    private static final double MAX_USER_VALUE = 2.0; // User value estimates are bucketed over [0, 2)
+
+    // Latest equilibrium tables keyed by (slot, campaign), replaced as a whole after each solve
+    private volatile Map<TableKey, EquilibriumTable> equilibriumTables = Collections.emptyMap();
+
+    private volatile long lastSolveMillis;
+    private volatile int lastGamesSolved;
+
+    @Override
+    public BigDecimal calculateOptimalBid(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> parameters) {
+
+        // Extract user value estimate from parameters
+        Double userValueEstimate = parameters.containsKey("userValueEstimate")
+                ? (Double) parameters.get("userValueEstimate")
+                : 0.0;
+
+        EquilibriumTable table = equilibriumTables.get(new TableKey(bidRequest.getAdSlotId(), campaign.getId()));
+
+        double bid;
+        if (table != null) {
+            bid = table.bids[valueType(userValueEstimate)];
+        } else {
+            bid = fallbackBid(campaign, userValueEstimate, competitorProfiles);
+        }
+
+        BigDecimal optimalBid = BigDecimal.valueOf(bid).setScale(2, RoundingMode.HALF_UP);
+        return enforceBidConstraints(optimalBid, campaign, bidRequest);
+    }
+
+    @Override
+    public GameTheoryType getType() {
+        return GameTheoryType.MULTI_AGENT_LEARNING;
+    }
+
+    @Override
+    public double calculateUtility(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            BigDecimal bidPrice,
+            Map<String, Object> parameters) {
+
+        // Get expected CTR and CVR
+        Double expectedCtr = parameters.containsKey("predictedCtr")
+                ? (Double) parameters.get("predictedCtr")
+                : 0.01; // Default 1% CTR
+
+        Double expectedCvr = parameters.containsKey("predictedCvr")
+                ? (Double) parameters.get("predictedCvr")
+                : 0.1; // Default 10% conversion rate
+
+        int campaignObjectiveWeight = getCampaignObjectiveWeight(campaign);
+        double expectedValue = expectedCtr + (campaignObjectiveWeight * expectedCtr * expectedCvr);
+
+        // Weight the profit by the equilibrium probability of winning at this price
+        EquilibriumTable table = equilibriumTables.get(new TableKey(bidRequest.getAdSlotId(), campaign.getId()));
+        double winProbability = table != null
+                ? table.winProbabilityAt(bidPrice.doubleValue())
+                : 1.0;
+
+        return winProbability * (expectedValue - bidPrice.doubleValue());
+    }
+
+    @Override
+    public void updateModel(BidResponse bidResponse, Map<String, CompetitorProfile> competitorProfiles) {
+        // Auction outcomes reach this model through the competitor profiles, which are
+        // folded in on the next offline solve
+    }
+
+    /**
+     * Solve the n-player game for every (slot, campaign) pair in parallel and publish the tables
+     *
+     * @param competitorProfilesBySlot competitor profiles grouped by ad slot ID
+     * @param campaigns the campaigns we bid for
+     */
+    public void solveEquilibria(
+            Map<String, Map<String, CompetitorProfile>> competitorProfilesBySlot,
+            Collection<AdCampaign> campaigns) {
+
+        long start = System.currentTimeMillis();
+
+        List<Game> games = new ArrayList<>();
+        for (Map.Entry<String, Map<String, CompetitorProfile>> slot : competitorProfilesBySlot.entrySet()) {
+            for (AdCampaign campaign : campaigns) {
+                if (campaign.getId() != null && campaign.getMaxBidPrice() != null && !slot.getValue().isEmpty()) {
+                    games.add(new Game(slot.getKey(), campaign, new ArrayList<>(slot.getValue().values())));
+                }
+            }
+        }
+
+        // Parallel streams run on the common fork-join pool
+        Map<TableKey, EquilibriumTable> tables = games.parallelStream()
+                .map(this::solveGame)
+                .collect(Collectors.toMap(
+                        table -> new TableKey(table.adSlotId, table.campaignId),
+                        table -> table,
+                        (first, second) -> first)); // Only if a campaign is listed twice
+
+        equilibriumTables = tables;
+        lastGamesSolved = tables.size();
+        lastSolveMillis = System.currentTimeMillis() - start;
+
+        log.debug("Solved {} multi-agent equilibria in {} ms", lastGamesSolved, lastSolveMillis);
+    }
+
+    /**
+     * Get solver statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tables", equilibriumTables.size());
+        stats.put("lastGamesSolved", lastGamesSolved);
+        stats.put("lastSolveMillis", lastSolveMillis);
+        return stats;
+    }
+
+    // Helper methods
+
+    private EquilibriumTable solveGame(Game game) {
+        List<CompetitorProfile> competitors = game.competitors;
+        int players = competitors.size() + 1; // Player 0 is us
+
+        // The grid spans every player's bid range with some headroom
+        double highestBid = game.campaign.getMaxBidPrice().doubleValue();
+        for (CompetitorProfile competitor : competitors) {
+            highestBid = Math.max(highestBid, toDouble(competitor.getMaxBidPrice()));
+        }
+        double step = highestBid * GRID_HEADROOM / (BID_LEVELS - 1);
+        if (step <= 0) {
+            step = 1.0 / (BID_LEVELS - 1);
+        }
+
+        // Each player's valuation types (equally likely)
+        double[][] values = new double[players][VALUE_TYPES];
+        for (int t = 0; t < VALUE_TYPES; t++) {
+            double quantile = (t + 0.5) / VALUE_TYPES;
+            values[0][t] = game.campaign.getMaxBidPrice().doubleValue() * (1.0 + quantile * MAX_USER_VALUE);
+        }
+        for (int p = 1; p < players; p++) {
+            CompetitorProfile competitor = competitors.get(p - 1);
+            if (competitor.hasBidDistribution()) {
+                // Valuation types at the quantiles of the observed bid distribution
+                for (int t = 0; t < VALUE_TYPES; t++) {
+                    values[p][t] = competitor.bidQuantile((t + 0.5) / VALUE_TYPES);
+                }
+            } else {
+                // Too few observations: triangular over the bid range, peaking at the recent average
+                double low = toDouble(competitor.getMinBidPrice());
+                double high = Math.max(low, toDouble(competitor.getMaxBidPrice()));
+                double mode = Math.min(high, Math.max(low, competitor.recentAverageBid()));
+                for (int t = 0; t < VALUE_TYPES; t++) {
+                    values[p][t] = triangularQuantile((t + 0.5) / VALUE_TYPES, low, mode, high);
+                }
+            }
+        }
+
+        // Start every player shading their valuation by half
+        int[][] strategies = new int[players][VALUE_TYPES];
+        for (int p = 0; p < players; p++) {
+            for (int t = 0; t < VALUE_TYPES; t++) {
+                strategies[p][t] = levelFor(values[p][t] * 0.5, step);
+            }
+        }
+
+        // Empirical bid distribution of each player over the play history
+        double[][] averageDistribution = new double[players][BID_LEVELS];
+        accumulate(averageDistribution, strategies, 0);
+
+        double[] winProbability = new double[BID_LEVELS];
+        int[][] nextStrategies = new int[players][VALUE_TYPES];
+
+        for (int iteration = 1; iteration <= MAX_ITERATIONS; iteration++) {
+            boolean changed = false;
+
+            for (int p = 0; p < players; p++) {
+                opponentWinProbability(averageDistribution, p, winProbability);
+
+                for (int t = 0; t < VALUE_TYPES; t++) {
+                    int best = bestResponse(values[p][t], winProbability, step);
+                    nextStrategies[p][t] = best;
+                    changed |= best != strategies[p][t];
+                }
+            }
+
+            for (int p = 0; p < players; p++) {
+                System.arraycopy(nextStrategies[p], 0, strategies[p], 0, VALUE_TYPES);
+            }
+            accumulate(averageDistribution, strategies, iteration);
+
+            if (!changed) {
+                break;
+            }
+        }
+
+        // Our equilibrium bid for each valuation type, and the win curve we face
+        double[] bids = new double[VALUE_TYPES];
+        for (int t = 0; t < VALUE_TYPES; t++) {
+            bids[t] = strategies[0][t] * step;
+        }
+        opponentWinProbability(averageDistribution, 0, winProbability);
+
+        return new EquilibriumTable(game.adSlotId, game.campaign.getId(), step, bids, winProbability.clone());
+    }
+
+    private void accumulate(double[][] averageDistribution, int[][] strategies, int iteration) {
+        // Running average of each player's bid distribution across rounds
+        double weight = 1.0 / (iteration + 1);
+        for (int p = 0; p < strategies.length; p++) {
+            for (int level = 0; level < BID_LEVELS; level++) {
+                averageDistribution[p][level] *= 1.0 - weight;
+            }
+            for (int t = 0; t < VALUE_TYPES; t++) {
+                averageDistribution[p][strategies[p][t]] += weight / VALUE_TYPES;
+            }
+        }
+    }
+
+    private void opponentWinProbability(double[][] averageDistribution, int player, double[] winProbability) {
+        // Probability that every other player bids below us at each level (ties split evenly)
+        for (int level = 0; level < BID_LEVELS; level++) {
+            winProbability[level] = 1.0;
+        }
+        for (int opponent = 0; opponent < averageDistribution.length; opponent++) {
+            if (opponent == player) {
+                continue;
+            }
+            double below = 0.0;
+            for (int level = 0; level < BID_LEVELS; level++) {
+                double atLevel = averageDistribution[opponent][level];
+                winProbability[level] *= below + 0.5 * atLevel;
+                below += atLevel;
+            }
+        }
+    }
+
+    private int bestResponse(double value, double[] winProbability, double step) {
+        int bestLevel = 0;
+        double bestSurplus = 0.0;
+        for (int level = 0; level < BID_LEVELS && level * step <= value; level++) {
+            double surplus = winProbability[level] * (value - level * step);
+            if (surplus > bestSurplus) {
+                bestSurplus = surplus;
+                bestLevel = level;
+            }
+        }
+        return bestLevel;
+    }
+
+    private double fallbackBid(AdCampaign campaign, double userValueEstimate,
+                               Map<String, CompetitorProfile> competitorProfiles) {
+        // No table yet: bid just over the strongest competitor's average, never above our value
+        double value = campaign.getMaxBidPrice().doubleValue() * (1.0 + Math.max(0.0, userValueEstimate));
+        double highestAverage = 0.0;
+        if (competitorProfiles != null) {
+            for (CompetitorProfile profile : competitorProfiles.values()) {
+                highestAverage = Math.max(highestAverage, profile.recentAverageBid());
+            }
+        }
+        return Math.min(value, highestAverage * 1.05);
+    }
+
+    private BigDecimal enforceBidConstraints(BigDecimal bid, AdCampaign campaign, BidRequest bidRequest) {
+        // Ensure bid is at least the floor price
+        BigDecimal floorPrice = bidRequest.getAdSlotFloorPrice();
+        if (floorPrice != null && bid.compareTo(floorPrice) < 0) {
+            bid = floorPrice;
+        }
+
+        // Ensure bid doesn't exceed campaign max
+        if (campaign.getMaxBidPrice() != null && bid.compareTo(campaign.getMaxBidPrice()) > 0) {
+            bid = campaign.getMaxBidPrice();
+        }
+
+        // Ensure bid doesn't go below campaign minimum
+        if (campaign.getBidFloor() != null && bid.compareTo(campaign.getBidFloor()) < 0) {
+            bid = campaign.getBidFloor();
+        }
+
+        return bid;
+    }
+
+    private int getCampaignObjectiveWeight(AdCampaign campaign) {
+        switch (campaign.getCampaignType()) {
+            case CPC:
+                return 1; // Focus on clicks
+            case CPA:
+                return 20; // Focus on conversions
+            case HYBRID:
+                return 10; // Balance clicks and conversions
+            default:
+                return 5; // Default balanced approach
+        }
+    }
+
+    private static int valueType(double userValueEstimate) {
+        int type = (int) (Math.max(0.0, userValueEstimate) / MAX_USER_VALUE * VALUE_TYPES);
+        return Math.min(type, VALUE_TYPES - 1);
+    }
+
+    private static int levelFor(double price, double step) {
+        int level = (int) (price / step);
+        return Math.min(Math.max(level, 0), BID_LEVELS - 1);
+    }
+
+    private static double triangularQuantile(double q, double low, double mode, double high) {
+        if (high <= low) {
+            return low;
+        }
+        double split = (mode - low) / (high - low);
+        if (q < split) {
+            return low + Math.sqrt(q * (high - low) * (mode - low));
+        }
+        return high - Math.sqrt((1 - q) * (high - low) * (high - mode));
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+
+    /**
+     * Equilibrium table key: the ad slot ID and campaign ID themselves, so distinct pairs never collide
+     */
+    @EqualsAndHashCode
+    private static final class TableKey {
+        private final String adSlotId;
+        private final Long campaignId;
+
+        private TableKey(String adSlotId, Long campaignId) {
+            this.adSlotId = adSlotId;
+            this.campaignId = campaignId;
+        }
+    }
+
+    /**
+     * One (slot, campaign) game to solve
+     */
+    private static final class Game {
+        private final String adSlotId;
+        private final AdCampaign campaign;
+        private final List<CompetitorProfile> competitors;
+
+        private Game(String adSlotId, AdCampaign campaign, List<CompetitorProfile> competitors) {
+            this.adSlotId = adSlotId;
+            this.campaign = campaign;
+            this.competitors = competitors;
+        }
+    }
+
+    /**
+     * Compact equilibrium bid table for one (slot, campaign) pair
+     */
+    private static final class EquilibriumTable {
+        private final String adSlotId;
+        private final Long campaignId;
+        private final double step;
+        private final double[] bids;
+        private final double[] winProbability;
+
+        private EquilibriumTable(String adSlotId, Long campaignId, double step,
+                                 double[] bids, double[] winProbability) {
+            this.adSlotId = adSlotId;
+            this.campaignId = campaignId;
+            this.step = step;
+            this.bids = bids;
+            this.winProbability = winProbability;
+        }
+
+        private double winProbabilityAt(double bidPrice) {
+            return winProbability[levelFor(bidPrice, step)];
+        }
+    }
+}
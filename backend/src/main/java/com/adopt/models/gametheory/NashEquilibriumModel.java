@@ -3,6 +3,7 @@ package com.adopt.models.gametheory;
 import com.adopt.models.AdCampaign;
 import com.adopt.models.BidRequest;
 import com.adopt.models.BidResponse;
+import com.adopt.models.prediction.BidLandscape;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
@@ -93,8 +94,13 @@ public class NashEquilibriumModel implements GameTheoryModel {
         // Calculate cost (as a positive number)
         double cost = bidPrice.doubleValue();
         
-        // Calculate utility as profit (value - cost)
-        return expectedValue - cost;
+        // Weight the profit by the chance of winning at this price, from the slot's bid landscape
+        double winProbability = parameters.get("winProbabilities") instanceof BidLandscape
+                ? ((BidLandscape) parameters.get("winProbabilities")).winProbability(cost)
+                : 1.0;
+        
+        // Calculate utility as expected profit (value - cost)
+        return winProbability * (expectedValue - cost);
     }
 
     @Override
@@ -0,0 +1,248 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of a bidding strategy based on online reinforcement learning.
+ *
+ * The model is an epsilon-greedy contextual bandit over discrete bid actions. The reward
+ * of a bid is the surplus of the impression, its value (see {@link ImpressionValue}) less
+ * the price paid, or zero if the auction was lost; action values are kept as a fraction of
+ * the campaign max bid, so contexts sharing a row learn on one scale. Values start
+ * optimistic, at the surplus of a free impression performing at target, so every bid level
+ * is tried until its outcomes pull it below the others. Action values live in a flat
+ * primitive array and are updated Hogwild-style: notification threads write without locks
+ * and tolerate the occasional lost update, which keeps updates scaling with cores.
+ * Selecting an action does not allocate.
+ */
+@Slf4j
+@Component
+public class ReinforcementLearningModel implements GameTheoryModel {
+
+    private static final int BID_ACTIONS = 16; // Bid levels as fractions of the campaign max bid
+    private static final int CONTEXT_BITS = 12; // 4096 context buckets
+    private static final int CONTEXTS = 1 << CONTEXT_BITS;
+    private static final double LEARNING_RATE = 0.1; // Step size for action value updates
+    private static final double EXPLORATION_RATE = 0.05; // Probability of trying a random bid level
+    private static final float INITIAL_VALUE = 1.0f; // Optimistic: a free impression at target, in max bids
+
+    // Action values in max bids, one row of BID_ACTIONS floats (a cache line) per context
+    private final float[] actionValues = new float[CONTEXTS * BID_ACTIONS];
+
+    // Precomputed bid prices per campaign, so turning an action into a bid does not allocate
+    private final Map<Long, BidLadder> bidLadders = new ConcurrentHashMap<>();
+
+    // Ladder of a campaign without a max bid; every action bids zero, raised to the floors
+    private static final BidLadder EMPTY_LADDER = new BidLadder(BigDecimal.ZERO);
+
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder explorationCount = new LongAdder();
+
+    public ReinforcementLearningModel() {
+        Arrays.fill(actionValues, INITIAL_VALUE);
+    }
+
+    @Override
+    public BigDecimal calculateOptimalBid(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> parameters) {
+
+        int context = contextFor(bidRequest, campaign);
+        int action = selectAction(context);
+
+        BigDecimal bid = bidLadderFor(campaign).prices[action];
+        return enforceBidConstraints(bid, campaign, bidRequest);
+    }
+
+    @Override
+    public GameTheoryType getType() {
+        return GameTheoryType.REINFORCEMENT_LEARNING;
+    }
+
+    @Override
+    public double calculateUtility(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            BigDecimal bidPrice,
+            Map<String, Object> parameters) {
+
+        // The learned action value is already an estimate of expected surplus at this bid
+        int context = contextFor(bidRequest, campaign);
+        int action = actionFor(bidPrice, campaign);
+
+        return actionValues[context * BID_ACTIONS + action] * maxBid(campaign);
+    }
+
+    @Override
+    public void updateModel(BidResponse bidResponse, Map<String, CompetitorProfile> competitorProfiles) {
+        if (bidResponse == null || bidResponse.getCampaign() == null
+                || bidResponse.getBidRequest() == null || bidResponse.getBidPrice() == null) {
+            return;
+        }
+
+        AdCampaign campaign = bidResponse.getCampaign();
+        double maxBid = maxBid(campaign);
+        if (maxBid <= 0) {
+            return;
+        }
+        int context = contextFor(bidResponse.getBidRequest(), campaign);
+        int action = actionFor(bidResponse.getBidPrice(), campaign);
+
+        // Lock-free update: a racing writer may overwrite us, which the learner tolerates
+        int index = context * BID_ACTIONS + action;
+        float current = actionValues[index];
+        double reward = calculateReward(bidResponse) / maxBid;
+        actionValues[index] = current + (float) (LEARNING_RATE * (reward - current));
+
+        updateCount.increment();
+    }
+
+    /**
+     * Get learning statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("contexts", CONTEXTS);
+        stats.put("bidActions", BID_ACTIONS);
+        stats.put("updates", updateCount.sum());
+        stats.put("explorations", explorationCount.sum());
+        return stats;
+    }
+
+    // Helper methods
+
+    private int selectAction(int context) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < EXPLORATION_RATE) {
+            explorationCount.increment();
+            return random.nextInt(BID_ACTIONS);
+        }
+
+        // Greedy action: highest learned value in this context's row
+        int offset = context * BID_ACTIONS;
+        int bestAction = 0;
+        float bestValue = actionValues[offset];
+        for (int action = 1; action < BID_ACTIONS; action++) {
+            float value = actionValues[offset + action];
+            if (value > bestValue) {
+                bestValue = value;
+                bestAction = action;
+            }
+        }
+
+        return bestAction;
+    }
+
+    private int contextFor(BidRequest bidRequest, AdCampaign campaign) {
+        // Context is the (ad slot, campaign) pair, which is known both at bid time and
+        // when the outcome arrives. String hash codes are cached, so this does not allocate
+        int hash = bidRequest.getAdSlotId() != null ? bidRequest.getAdSlotId().hashCode() : 0;
+        hash = 31 * hash + (campaign.getId() != null ? Long.hashCode(campaign.getId()) : 0);
+
+        // Spread the bits before masking so nearby slot IDs land in different rows
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        return hash & (CONTEXTS - 1);
+    }
+
+    private int actionFor(BigDecimal bidPrice, AdCampaign campaign) {
+        double maxBid = maxBid(campaign);
+        if (maxBid <= 0) {
+            return 0;
+        }
+
+        int action = (int) Math.round(bidPrice.doubleValue() / maxBid * BID_ACTIONS) - 1;
+        return Math.min(Math.max(action, 0), BID_ACTIONS - 1);
+    }
+
+    private double calculateReward(BidResponse bidResponse) {
+        if (!Boolean.TRUE.equals(bidResponse.getIsWon())) {
+            return 0.0; // We lost - no value, no cost
+        }
+
+        // We won - reward is the impression's value minus what we paid
+        double value = ImpressionValue.of(bidResponse);
+
+        BigDecimal paid = bidResponse.getActualPrice() != null
+                ? bidResponse.getActualPrice()
+                : bidResponse.getBidPrice();
+        return value - paid.doubleValue();
+    }
+
+    private BidLadder bidLadderFor(AdCampaign campaign) {
+        BigDecimal maxBid = campaign.getMaxBidPrice() != null ? campaign.getMaxBidPrice() : BigDecimal.ZERO;
+
+        // Unsaved campaigns have no ID to cache under, so they get a ladder of their own each time
+        if (campaign.getId() == null) {
+            return maxBid.signum() == 0 ? EMPTY_LADDER : new BidLadder(maxBid);
+        }
+
+        BidLadder ladder = bidLadders.get(campaign.getId());
+
+        // Rebuild only when the campaign's max bid has been changed (e.g. by an applied optimization)
+        if (ladder == null || ladder.maxBid.compareTo(maxBid) != 0) {
+            ladder = new BidLadder(maxBid);
+            bidLadders.put(campaign.getId(), ladder);
+        }
+
+        return ladder;
+    }
+
+    private BigDecimal enforceBidConstraints(BigDecimal bid, AdCampaign campaign, BidRequest bidRequest) {
+        // Ensure bid is at least the floor price
+        BigDecimal floorPrice = bidRequest.getAdSlotFloorPrice();
+        if (floorPrice != null && bid.compareTo(floorPrice) < 0) {
+            bid = floorPrice;
+        }
+
+        // Ensure bid doesn't exceed campaign max
+        if (campaign.getMaxBidPrice() != null && bid.compareTo(campaign.getMaxBidPrice()) > 0) {
+            bid = campaign.getMaxBidPrice();
+        }
+
+        // Ensure bid doesn't go below campaign minimum
+        if (campaign.getBidFloor() != null && bid.compareTo(campaign.getBidFloor()) < 0) {
+            bid = campaign.getBidFloor();
+        }
+
+        return bid;
+    }
+
+    private static double maxBid(AdCampaign campaign) {
+        return campaign.getMaxBidPrice() != null ? campaign.getMaxBidPrice().doubleValue() : 0.0;
+    }
+
+    /**
+     * Bid prices for each action at a given campaign max bid
+     */
+    private static final class BidLadder {
+        private final BigDecimal maxBid;
+        private final BigDecimal[] prices = new BigDecimal[BID_ACTIONS];
+
+        private BidLadder(BigDecimal maxBid) {
+            this.maxBid = maxBid;
+            for (int action = 0; action < BID_ACTIONS; action++) {
+                double fraction = (action + 1.0) / BID_ACTIONS;
+                prices[action] = BigDecimal.valueOf(maxBid.doubleValue() * fraction)
+                        .setScale(2, RoundingMode.HALF_UP);
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementation of a bidding strategy based on a Stackelberg leader-follower game.
+ *
+ * We act as the leader and every competitor profile is treated as a follower that
+ * best-responds to our bid. Follower best-response tables are precomputed in the
+ * background over a discretized bid grid, so choosing the leader bid at bid time
+ * is a single table lookup. Tables are checked against the follower profiles when
+ * those are published, not per bid, and are dropped with the slot's competitors.
+ */
+@Slf4j
+@Component
+public class StackelbergModel implements GameTheoryModel, CompetitorViewListener {
+
+    private static final int BID_LEVELS = 64; // Number of discrete bid levels in the grid
+    private static final double GRID_HEADROOM = 1.5; // Grid spans up to 1.5x the highest follower max bid
+    private static final double PRICE_QUANTUM = 0.01; // Follower price changes below a cent keep the tables
+    private static final double[] FINGERPRINT_QUANTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+    // Same bound as the competitor index, whose evictions drop the tables of evicted slots
+    @Value("${adopt.competitor.index.max-slots:100000}")
+    private int maxSlots;
+
+    // Precomputed tables per ad slot, replaced atomically by the background builder
+    private final Map<String, SlotTables> slotTables = new ConcurrentHashMap<>();
+
+    // Slots with a rebuild queued, so a burst of stale lookups only schedules one rebuild
+    private final Set<String> pendingRebuilds = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService tableBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stackelberg-table-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Latency counters for table solves and bid-time lookups
+    private final LongAdder solveCount = new LongAdder();
+    private final LongAdder solveNanos = new LongAdder();
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    @Override
+    public BigDecimal calculateOptimalBid(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> parameters) {
+
+        long start = System.nanoTime();
+
+        // Extract user value estimate from parameters
+        Double userValueEstimate = parameters.containsKey("userValueEstimate")
+                ? (Double) parameters.get("userValueEstimate")
+                : 0.0;
+
+        // Our valuation of the impression, on the same scale the Nash model bids on
+        double leaderValue = campaign.getMaxBidPrice().doubleValue() * (1.0 + Math.max(0.0, userValueEstimate));
+
+        String slotKey = bidRequest.getAdSlotId();
+        SlotTables tables = slotTables.get(slotKey);
+
+        // Tables are built off the bid path and refreshed when the profiles are published;
+        // until the first build we bid on the fallback answer
+        if (tables == null) {
+            scheduleRebuild(slotKey, competitorProfiles);
+        }
+
+        double bid = tables != null
+                ? tables.leaderBid(leaderValue)
+                : fallbackBid(leaderValue, competitorProfiles);
+
+        lookupNanos.add(System.nanoTime() - start);
+        lookupCount.increment();
+
+        BigDecimal optimalBid = BigDecimal.valueOf(bid).setScale(2, RoundingMode.HALF_UP);
+        return enforceBidConstraints(optimalBid, campaign, bidRequest);
+    }
+
+    @Override
+    public GameTheoryType getType() {
+        return GameTheoryType.STACKELBERG;
+    }
+
+    @Override
+    public double calculateUtility(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            BigDecimal bidPrice,
+            Map<String, Object> parameters) {
+
+        // Get expected CTR and CVR
+        Double expectedCtr = parameters.containsKey("predictedCtr")
+                ? (Double) parameters.get("predictedCtr")
+                : 0.01; // Default 1% CTR
+
+        Double expectedCvr = parameters.containsKey("predictedCvr")
+                ? (Double) parameters.get("predictedCvr")
+                : 0.1; // Default 10% conversion rate
+
+        int campaignObjectiveWeight = getCampaignObjectiveWeight(campaign);
+        double expectedValue = expectedCtr + (campaignObjectiveWeight * expectedCtr * expectedCvr);
+
+        // Weight the profit by the probability that no follower outbids us at this price
+        SlotTables tables = slotTables.get(bidRequest.getAdSlotId());
+        double winProbability = tables != null ? tables.winProbability(bidPrice.doubleValue()) : 1.0;
+
+        return winProbability * (expectedValue - bidPrice.doubleValue());
+    }
+
+    @Override
+    public void updateModel(BidResponse bidResponse, Map<String, CompetitorProfile> competitorProfiles) {
+        if (bidResponse == null || bidResponse.getBidRequest() == null || competitorProfiles == null) {
+            return;
+        }
+
+        // Auction outcomes only reach this model through the follower profiles, whose
+        // published views refresh the tables, so all we need to do is build missing ones
+        String slotKey = bidResponse.getBidRequest().getAdSlotId();
+        if (!slotTables.containsKey(slotKey)) {
+            scheduleRebuild(slotKey, competitorProfiles);
+        }
+    }
+
+    @Override
+    public void onProfilesPublished(String adSlotId, Map<String, CompetitorProfile> profiles) {
+        // Only slots bid on have tables; the others are built on their first bid
+        SlotTables tables = slotTables.get(adSlotId);
+        if (tables != null && tables.isStale(profiles)) {
+            scheduleRebuild(adSlotId, profiles);
+        }
+    }
+
+    @Override
+    public void onSlotEvicted(String adSlotId) {
+        slotTables.remove(adSlotId);
+    }
+
+    /**
+     * Synchronously build (or incrementally refresh) the tables for an ad slot.
+     * Used by the background builder and for warm-up and benchmarking.
+     */
+    public void precompute(String adSlotId, Map<String, CompetitorProfile> competitorProfiles) {
+        long start = System.nanoTime();
+
+        SlotTables previous = slotTables.get(adSlotId);
+        slotTables.put(adSlotId, buildTables(previous, competitorProfiles));
+
+        solveNanos.add(System.nanoTime() - start);
+        solveCount.increment();
+    }
+
+    /**
+     * Get solve and lookup latency statistics
+     */
+    public Map<String, Object> getLatencyStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long solves = solveCount.sum();
+        long lookups = lookupCount.sum();
+
+        stats.put("slots", slotTables.size());
+        stats.put("solveCount", solves);
+        stats.put("avgSolveNanos", solves > 0 ? solveNanos.sum() / solves : 0L);
+        stats.put("lookupCount", lookups);
+        stats.put("avgLookupNanos", lookups > 0 ? lookupNanos.sum() / lookups : 0L);
+
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tableBuilder.shutdownNow();
+    }
+
+    // Helper methods
+
+    private void scheduleRebuild(String adSlotId, Map<String, CompetitorProfile> competitorProfiles) {
+        if (adSlotId == null || competitorProfiles == null || competitorProfiles.isEmpty()) {
+            return;
+        }
+
+        // Beyond the bound, slots not yet tabled keep bidding on the fallback answer
+        if (!slotTables.containsKey(adSlotId) && slotTables.size() >= maxSlots) {
+            return;
+        }
+
+        if (pendingRebuilds.add(adSlotId)) {
+            tableBuilder.execute(() -> {
+                // Clear the flag first so changes arriving during the solve trigger another pass
+                pendingRebuilds.remove(adSlotId);
+                try {
+                    precompute(adSlotId, competitorProfiles);
+                } catch (Exception e) {
+                    log.error("Error building Stackelberg tables for slot {}: {}", adSlotId, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private SlotTables buildTables(SlotTables previous, Map<String, CompetitorProfile> competitorProfiles) {
+        // The grid spans every follower's observed bid range with some headroom
+        double highestBid = 0.0;
+        for (CompetitorProfile profile : competitorProfiles.values()) {
+            highestBid = Math.max(highestBid, toDouble(profile.getMaxBidPrice()));
+        }
+        double gridMax = highestBid > 0 ? highestBid * GRID_HEADROOM : 1.0;
+        double step = gridMax / (BID_LEVELS - 1);
+
+        // Only followers whose profile moved need a new best-response table,
+        // unless the grid itself changed
+        boolean sameGrid = previous != null && previous.step == step;
+
+        Map<String, FollowerTable> followers = new HashMap<>();
+        for (Map.Entry<String, CompetitorProfile> entry : competitorProfiles.entrySet()) {
+            CompetitorProfile profile = entry.getValue();
+            FollowerTable existing = sameGrid ? previous.followers.get(entry.getKey()) : null;
+
+            if (existing != null && existing.fingerprint == fingerprint(profile)) {
+                followers.put(entry.getKey(), existing);
+            } else {
+                followers.put(entry.getKey(), buildFollowerTable(profile, step));
+            }
+        }
+
+        // Probability that we win at each level is the chance that no follower's best response outbids us
+        double[] winProbability = new double[BID_LEVELS];
+        for (int i = 0; i < BID_LEVELS; i++) {
+            double probability = 1.0;
+            for (FollowerTable follower : followers.values()) {
+                probability *= 1.0 - follower.outbidProbability[i];
+            }
+            winProbability[i] = probability;
+        }
+
+        // Leader best response for each valuation on the grid: maximize P(win) * (value - price)
+        double[] bestBid = new double[BID_LEVELS];
+        for (int k = 0; k < BID_LEVELS; k++) {
+            double value = k * step;
+            double bestSurplus = 0.0;
+            int bestLevel = 0;
+
+            for (int i = 0; i <= k; i++) {
+                double surplus = winProbability[i] * (value - i * step);
+                if (surplus > bestSurplus) {
+                    bestSurplus = surplus;
+                    bestLevel = i;
+                }
+            }
+
+            bestBid[k] = bestLevel * step;
+        }
+
+        return new SlotTables(step, followers, winProbability, bestBid);
+    }
+
+    private FollowerTable buildFollowerTable(CompetitorProfile profile, double step) {
+        // A follower's best response to our bid is to top it whenever its valuation allows,
+        // so it outbids us at a level with the probability its valuation exceeds that level
+        double[] outbidProbability = new double[BID_LEVELS];
+        if (profile.hasBidDistribution()) {
+            // Valuations follow the follower's observed bid distribution
+            for (int i = 0; i < BID_LEVELS; i++) {
+                outbidProbability[i] = 1.0 - profile.bidCdf((i + 1) * step);
+            }
+        } else {
+            // Too few observations: model the valuation as triangular over the bid range,
+            // peaking at the recent average bid
+            double low = toDouble(profile.getMinBidPrice());
+            double high = Math.max(low, toDouble(profile.getMaxBidPrice()));
+            double mode = Math.min(high, Math.max(low, profile.recentAverageBid()));
+            for (int i = 0; i < BID_LEVELS; i++) {
+                outbidProbability[i] = 1.0 - triangularCdf((i + 1) * step, low, mode, high);
+            }
+        }
+
+        return new FollowerTable(fingerprint(profile), outbidProbability);
+    }
+
+    private double fallbackBid(double leaderValue, Map<String, CompetitorProfile> competitorProfiles) {
+        // No tables yet: bid just over the strongest follower's average, never above our value
+        double highestAverage = 0.0;
+        if (competitorProfiles != null) {
+            for (CompetitorProfile profile : competitorProfiles.values()) {
+                highestAverage = Math.max(highestAverage, profile.recentAverageBid());
+            }
+        }
+        return Math.min(leaderValue, highestAverage * 1.05);
+    }
+
+    private BigDecimal enforceBidConstraints(BigDecimal bid, AdCampaign campaign, BidRequest bidRequest) {
+        // Ensure bid is at least the floor price
+        BigDecimal floorPrice = bidRequest.getAdSlotFloorPrice();
+        if (floorPrice != null && bid.compareTo(floorPrice) < 0) {
+            bid = floorPrice;
+        }
+
+        // Ensure bid doesn't exceed campaign max
+        if (campaign.getMaxBidPrice() != null && bid.compareTo(campaign.getMaxBidPrice()) > 0) {
+            bid = campaign.getMaxBidPrice();
+        }
+
+        // Ensure bid doesn't go below campaign minimum
+        if (campaign.getBidFloor() != null && bid.compareTo(campaign.getBidFloor()) < 0) {
+            bid = campaign.getBidFloor();
+        }
+
+        return bid;
+    }
+
+    private int getCampaignObjectiveWeight(AdCampaign campaign) {
+        switch (campaign.getCampaignType()) {
+            case CPC:
+                return 1; // Focus on clicks
+            case CPA:
+                return 20; // Focus on conversions
+            case HYBRID:
+                return 10; // Balance clicks and conversions
+            default:
+                return 5; // Default balanced approach
+        }
+    }
+
+    private static double triangularCdf(double x, double low, double mode, double high) {
+        if (x <= low) {
+            return 0.0;
+        }
+        if (x >= high) {
+            return 1.0;
+        }
+        if (x <= mode) {
+            return (x - low) * (x - low) / ((high - low) * (mode - low));
+        }
+        return 1.0 - (high - x) * (high - x) / ((high - low) * (high - mode));
+    }
+
+    private static long fingerprint(CompetitorProfile profile) {
+        // Only the prices a table is built from, quantized, so new observations that leave
+        // them where they were do not rebuild it
+        long hash = quantize(profile.recentAverageBid());
+        hash = 31 * hash + quantize(toDouble(profile.getMinBidPrice()));
+        hash = 31 * hash + quantize(toDouble(profile.getMaxBidPrice()));
+        if (profile.hasBidDistribution()) {
+            for (double q : FINGERPRINT_QUANTILES) {
+                hash = 31 * hash + quantize(profile.bidQuantile(q));
+            }
+        }
+        return hash;
+    }
+
+    private static long quantize(double price) {
+        return Math.round(price / PRICE_QUANTUM);
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+
+    /**
+     * Best-response table for a single follower
+     */
+    private static final class FollowerTable {
+        private final long fingerprint;
+        private final double[] outbidProbability;
+
+        private FollowerTable(long fingerprint, double[] outbidProbability) {
+            this.fingerprint = fingerprint;
+            this.outbidProbability = outbidProbability;
+        }
+    }
+
+    /**
+     * Immutable set of precomputed tables for one ad slot
+     */
+    private static final class SlotTables {
+        private final double step;
+        private final Map<String, FollowerTable> followers;
+        private final double[] winProbability;
+        private final double[] bestBid;
+
+        private SlotTables(double step, Map<String, FollowerTable> followers,
+                           double[] winProbability, double[] bestBid) {
+            this.step = step;
+            this.followers = followers;
+            this.winProbability = winProbability;
+            this.bestBid = bestBid;
+        }
+
+        private double leaderBid(double leaderValue) {
+            return bestBid[levelFor(leaderValue)];
+        }
+
+        private double winProbability(double bidPrice) {
+            return winProbability[levelFor(bidPrice)];
+        }
+
+        private int levelFor(double price) {
+            int level = (int) (price / step);
+            return Math.min(Math.max(level, 0), BID_LEVELS - 1);
+        }
+
+        private boolean isStale(Map<String, CompetitorProfile> competitorProfiles) {
+            if (competitorProfiles == null) {
+                return false;
+            }
+            if (competitorProfiles.size() != followers.size()) {
+                return true;
+            }
+            for (Map.Entry<String, CompetitorProfile> entry : competitorProfiles.entrySet()) {
+                FollowerTable follower = followers.get(entry.getKey());
+                if (follower == null || follower.fingerprint != fingerprint(entry.getValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
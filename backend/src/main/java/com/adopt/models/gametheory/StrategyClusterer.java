@@ -0,0 +1,465 @@
+package com.adopt.models.gametheory;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Clusters competitors by observed bidding behavior with k-means, and names each cluster
+ * with a strategy label.
+ *
+ * Each competitor is a row of a primitive, row-major feature matrix: its bid level over
+ * its minimum, the spread of its bid distribution, its win rate and its hour-of-day curve.
+ * Columns are standardized, and the 24 curve columns together weigh as much as one other
+ * feature. Centroids are seeded with k-means++ on a sample, and every Lloyd iteration
+ * assigns rows and sums them per cluster in one pass, split over the fork-join pool.
+ * Observations are already folded into each profile's sketch and curve, so the cost grows
+ * with the number of competitors, not of observed bids.
+ */
+public class StrategyClusterer {
+
+    // Feature columns
+    public static final int LEVEL = 0;          // log of average bid over minimum bid
+    public static final int LOW_SPREAD = 1;     // p10 over p50
+    public static final int HIGH_SPREAD = 2;    // p90 over p50
+    public static final int WIN_RATE = 3;
+    public static final int CURVE = 4;          // first of the hourly bid factors
+    public static final int FEATURES = CURVE + CompetitorBidCurve.HOURS;
+
+    public static final String AGGRESSIVE = "aggressive";
+    public static final String MODERATE = "moderate";
+    public static final String CONSERVATIVE = "conservative";
+    public static final String TIME_SENSITIVE = "time_sensitive";
+
+    private static final int LEAF_ROWS = 8192; // Rows a fork-join task handles without splitting
+    private static final int INIT_SAMPLE = 65536; // Rows k-means++ seeds from
+    private static final double CONVERGED_FRACTION = 0.001; // Stop when fewer rows than this change cluster
+    private static final double TIME_SENSITIVE_AMPLITUDE = 0.25; // Peak-to-trough hourly factor range
+    private static final double AGGRESSIVE_LEVEL = Math.log(1.5); // Level of a lone non-time-sensitive cluster
+    private static final long SEED = 0x5eedL; // Fixed, so reruns on the same data give the same clusters
+
+    private final int clusters;
+    private final int maxIterations;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param clusters number of clusters
+     * @param maxIterations upper bound on Lloyd iterations
+     * @param pool the pool assignment passes run on
+     */
+    public StrategyClusterer(int clusters, int maxIterations, ForkJoinPool pool) {
+        this.clusters = clusters;
+        this.maxIterations = maxIterations;
+        this.pool = pool;
+    }
+
+    /**
+     * Write a profile's features into one row of a feature matrix
+     */
+    public static void features(CompetitorProfile profile, double[] matrix, int row) {
+        int base = row * FEATURES;
+        double average = toDouble(profile.getAverageBidPrice());
+        double min = toDouble(profile.getMinBidPrice());
+        double max = toDouble(profile.getMaxBidPrice());
+
+        matrix[base + LEVEL] = average > 0 && min > 0 ? Math.log(average / min) : 0.0;
+        if (profile.hasBidDistribution()) {
+            double median = profile.bidQuantile(0.5);
+            matrix[base + LOW_SPREAD] = median > 0 ? profile.bidQuantile(0.1) / median : 1.0;
+            matrix[base + HIGH_SPREAD] = median > 0 ? profile.bidQuantile(0.9) / median : 1.0;
+        } else {
+            matrix[base + LOW_SPREAD] = average > 0 ? min / average : 1.0;
+            matrix[base + HIGH_SPREAD] = average > 0 ? max / average : 1.0;
+        }
+        matrix[base + WIN_RATE] = profile.getWinRate() != null ? profile.getWinRate() : 0.0;
+        System.arraycopy(profile.hourlyFactors(), 0, matrix, base + CURVE, CompetitorBidCurve.HOURS);
+    }
+
+    /**
+     * Cluster the first rows of a feature matrix
+     *
+     * @param matrix row-major features, {@link #FEATURES} per row
+     * @param rows number of rows; at least the number of clusters
+     */
+    public Result cluster(double[] matrix, int rows) {
+        int k = Math.min(clusters, rows);
+        double[] mean = new double[FEATURES];
+        double[] scale = new double[FEATURES];
+        double[] standardized = standardize(matrix, rows, mean, scale);
+
+        double[] centroids = seedCentroids(standardized, rows, k);
+        int[] assignments = new int[rows];
+        Arrays.fill(assignments, -1);
+
+        int iterations = 0;
+        Partial partial;
+        do {
+            partial = pool.invoke(new AssignTask(standardized, centroids, assignments, k, 0, rows));
+            iterations++;
+            for (int c = 0; c < k; c++) {
+                // An emptied cluster keeps its centroid
+                if (partial.counts[c] > 0) {
+                    for (int j = 0; j < FEATURES; j++) {
+                        centroids[c * FEATURES + j] = partial.sums[c * FEATURES + j] / partial.counts[c];
+                    }
+                }
+            }
+        } while (partial.changed > rows * CONVERGED_FRACTION && iterations < maxIterations);
+
+        // Label from centroids in the original units
+        Partial raw = pool.invoke(new SumTask(matrix, assignments, k, 0, rows));
+        double[] rawCentroids = new double[k * FEATURES];
+        int[] sizes = new int[k];
+        for (int c = 0; c < k; c++) {
+            sizes[c] = (int) raw.counts[c];
+            for (int j = 0; j < FEATURES; j++) {
+                rawCentroids[c * FEATURES + j] = raw.counts[c] > 0 ? raw.sums[c * FEATURES + j] / raw.counts[c] : 0.0;
+            }
+        }
+        return new Result(assignments, rawCentroids, centroids, mean, scale, sizes, label(rawCentroids, sizes, k),
+                iterations, partial.cost);
+    }
+
+    // Helper methods
+
+    private static double[] standardize(double[] matrix, int rows, double[] mean, double[] scale) {
+        for (int row = 0; row < rows; row++) {
+            for (int j = 0; j < FEATURES; j++) {
+                mean[j] += matrix[row * FEATURES + j];
+            }
+        }
+        for (int j = 0; j < FEATURES; j++) {
+            mean[j] /= rows;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int j = 0; j < FEATURES; j++) {
+                double d = matrix[row * FEATURES + j] - mean[j];
+                scale[j] += d * d;
+            }
+        }
+        double curveWeight = 1.0 / Math.sqrt(CompetitorBidCurve.HOURS);
+        for (int j = 0; j < FEATURES; j++) {
+            double std = Math.sqrt(scale[j] / rows);
+            scale[j] = (std > 1e-12 ? 1.0 / std : 0.0) * (j >= CURVE ? curveWeight : 1.0);
+        }
+
+        double[] standardized = new double[rows * FEATURES];
+        for (int row = 0; row < rows; row++) {
+            for (int j = 0; j < FEATURES; j++) {
+                int index = row * FEATURES + j;
+                standardized[index] = (matrix[index] - mean[j]) * scale[j];
+            }
+        }
+        return standardized;
+    }
+
+    private static double[] seedCentroids(double[] data, int rows, int k) {
+        // k-means++ over a sample: each next seed is drawn with probability proportional to
+        // its squared distance from the nearest seed so far
+        Random random = new Random(SEED);
+        int sampleSize = Math.min(rows, INIT_SAMPLE);
+        int[] sample = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            sample[i] = sampleSize == rows ? i : random.nextInt(rows);
+        }
+
+        double[] centroids = new double[k * FEATURES];
+        System.arraycopy(data, sample[random.nextInt(sampleSize)] * FEATURES, centroids, 0, FEATURES);
+        double[] nearest = new double[sampleSize];
+        Arrays.fill(nearest, Double.MAX_VALUE);
+        for (int c = 1; c < k; c++) {
+            double total = 0.0;
+            for (int i = 0; i < sampleSize; i++) {
+                nearest[i] = Math.min(nearest[i], distance(data, sample[i], centroids, c - 1));
+                total += nearest[i];
+            }
+            double target = random.nextDouble() * total;
+            int chosen = sampleSize - 1;
+            for (int i = 0; i < sampleSize; i++) {
+                target -= nearest[i];
+                if (target <= 0) {
+                    chosen = i;
+                    break;
+                }
+            }
+            System.arraycopy(data, sample[chosen] * FEATURES, centroids, c * FEATURES, FEATURES);
+        }
+        return centroids;
+    }
+
+    private static double distance(double[] data, int row, double[] centroids, int cluster) {
+        double sum = 0.0;
+        int rowBase = row * FEATURES;
+        int centroidBase = cluster * FEATURES;
+        for (int j = 0; j < FEATURES; j++) {
+            double d = data[rowBase + j] - centroids[centroidBase + j];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private static String[] label(double[] centroids, int[] sizes, int k) {
+        String[] labels = new String[k];
+        Integer[] levelOrder = new Integer[k];
+        int others = 0;
+        for (int c = 0; c < k; c++) {
+            double low = Double.MAX_VALUE;
+            double high = -Double.MAX_VALUE;
+            for (int h = 0; h < CompetitorBidCurve.HOURS; h++) {
+                double factor = centroids[c * FEATURES + CURVE + h];
+                low = Math.min(low, factor);
+                high = Math.max(high, factor);
+            }
+            if (high - low >= TIME_SENSITIVE_AMPLITUDE) {
+                labels[c] = TIME_SENSITIVE;
+            } else if (sizes[c] > 0) {
+                levelOrder[others++] = c;
+            } else {
+                labels[c] = MODERATE;
+            }
+        }
+
+        // The rest by bid level: the highest aggressive, the lowest conservative
+        Arrays.sort(levelOrder, 0, others,
+                (a, b) -> Double.compare(centroids[b * FEATURES + LEVEL], centroids[a * FEATURES + LEVEL]));
+        for (int i = 0; i < others; i++) {
+            int c = levelOrder[i];
+            if (others == 1) {
+                labels[c] = centroids[c * FEATURES + LEVEL] >= AGGRESSIVE_LEVEL ? AGGRESSIVE : CONSERVATIVE;
+            } else {
+                labels[c] = i == 0 ? AGGRESSIVE : i == others - 1 ? CONSERVATIVE : MODERATE;
+            }
+        }
+        return labels;
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : 0.0;
+    }
+
+    /**
+     * Per-cluster sums and counts of a range of rows, with its assignment cost and changes
+     */
+    private static final class Partial {
+        private final double[] sums;
+        private final long[] counts;
+        private double cost;
+        private int changed;
+
+        private Partial(int k) {
+            this.sums = new double[k * FEATURES];
+            this.counts = new long[k];
+        }
+
+        private Partial merge(Partial other) {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += other.sums[i];
+            }
+            for (int c = 0; c < counts.length; c++) {
+                counts[c] += other.counts[c];
+            }
+            cost += other.cost;
+            changed += other.changed;
+            return this;
+        }
+    }
+
+    /**
+     * Assign rows to their nearest centroid and sum them per cluster
+     */
+    private static final class AssignTask extends RecursiveTask<Partial> {
+        private final double[] data;
+        private final double[] centroids;
+        private final int[] assignments;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        private AssignTask(double[] data, double[] centroids, int[] assignments, int k, int from, int to) {
+            this.data = data;
+            this.centroids = centroids;
+            this.assignments = assignments;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                AssignTask left = new AssignTask(data, centroids, assignments, k, from, middle);
+                left.fork();
+                Partial right = new AssignTask(data, centroids, assignments, k, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            Partial partial = new Partial(k);
+            for (int row = from; row < to; row++) {
+                int best = 0;
+                double bestDistance = Double.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    double d = distance(data, row, centroids, c);
+                    if (d < bestDistance) {
+                        bestDistance = d;
+                        best = c;
+                    }
+                }
+                if (assignments[row] != best) {
+                    assignments[row] = best;
+                    partial.changed++;
+                }
+                partial.counts[best]++;
+                partial.cost += bestDistance;
+                int rowBase = row * FEATURES;
+                int sumBase = best * FEATURES;
+                for (int j = 0; j < FEATURES; j++) {
+                    partial.sums[sumBase + j] += data[rowBase + j];
+                }
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Sum rows per assigned cluster
+     */
+    private static final class SumTask extends RecursiveTask<Partial> {
+        private final double[] data;
+        private final int[] assignments;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        private SumTask(double[] data, int[] assignments, int k, int from, int to) {
+            this.data = data;
+            this.assignments = assignments;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > LEAF_ROWS) {
+                int middle = (from + to) >>> 1;
+                SumTask left = new SumTask(data, assignments, k, from, middle);
+                left.fork();
+                Partial right = new SumTask(data, assignments, k, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            Partial partial = new Partial(k);
+            for (int row = from; row < to; row++) {
+                int cluster = assignments[row];
+                partial.counts[cluster]++;
+                int rowBase = row * FEATURES;
+                int sumBase = cluster * FEATURES;
+                for (int j = 0; j < FEATURES; j++) {
+                    partial.sums[sumBase + j] += data[rowBase + j];
+                }
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Cluster assignments, centroids in the original feature units, and strategy labels
+     */
+    public static final class Result {
+        private final int[] assignments;
+        private final double[] centroids;
+        private final double[] standardizedCentroids;
+        private final double[] mean;
+        private final double[] scale;
+        private final int[] sizes;
+        private final String[] labels;
+        private final int iterations;
+        private final double cost;
+
+        private Result(int[] assignments, double[] centroids, double[] standardizedCentroids, double[] mean,
+                       double[] scale, int[] sizes, String[] labels, int iterations, double cost) {
+            this.assignments = assignments;
+            this.centroids = centroids;
+            this.standardizedCentroids = standardizedCentroids;
+            this.mean = mean;
+            this.scale = scale;
+            this.sizes = sizes;
+            this.labels = labels;
+            this.iterations = iterations;
+            this.cost = cost;
+        }
+
+        public int clusterCount() {
+            return labels.length;
+        }
+
+        /**
+         * Get the cluster a row was assigned to
+         */
+        public int clusterOf(int row) {
+            return assignments[row];
+        }
+
+        public String label(int cluster) {
+            return labels[cluster];
+        }
+
+        /**
+         * Assign a row that was not clustered to the nearest centroid, standardized as the
+         * clustered rows were, without moving the centroids
+         *
+         * @param matrix row-major features, {@link #FEATURES} per row
+         * @param columns number of leading columns compared, e.g. {@link #CURVE} for a
+         *                competitor whose hourly curve is not known
+         */
+        public int assign(double[] matrix, int row, int columns) {
+            int rowBase = row * FEATURES;
+            int nearest = 0;
+            double nearestDistance = Double.MAX_VALUE;
+            for (int c = 0; c < labels.length; c++) {
+                double sum = 0.0;
+                for (int j = 0; j < columns; j++) {
+                    double d = (matrix[rowBase + j] - mean[j]) * scale[j] - standardizedCentroids[c * FEATURES + j];
+                    sum += d * d;
+                }
+                if (sum < nearestDistance) {
+                    nearestDistance = sum;
+                    nearest = c;
+                }
+            }
+            return nearest;
+        }
+
+        public int size(int cluster) {
+            return sizes[cluster];
+        }
+
+        /**
+         * Get a centroid feature in the original units
+         */
+        public double centroid(int cluster, int feature) {
+            return centroids[cluster * FEATURES + feature];
+        }
+
+        /**
+         * Get the hourly bid factors of a cluster's centroid
+         */
+        public double[] hourlyFactors(int cluster) {
+            return Arrays.copyOfRange(centroids, cluster * FEATURES + CURVE, cluster * FEATURES + FEATURES);
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Get the sum of squared standardized distances to the assigned centroids
+         */
+        public double getCost() {
+            return cost;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.adopt.models.prediction;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Win probability as a function of bid price for one ad slot or publisher.
+ *
+ * Wins and losses are counted in fixed histograms over price buckets. Every few outcomes
+ * the counts are smoothed toward a prior curve and made monotone with pool-adjacent-violators
+ * (a higher bid never wins less often), and the result is published as a precomputed array.
+ * Reading the curve is a bucket index and a linear interpolation.
+ */
+public final class BidLandscape {
+
+    public static final int PRICE_BUCKETS = 100; // Price grid resolution
+    public static final double BUCKET_WIDTH = 0.05; // Grid step in currency units, so the grid spans 0 to 5.00
+    public static final long BYTES = 3L * PRICE_BUCKETS * Integer.BYTES + 128; // Histograms, curve and headers
+
+    private static final double PRIOR_WEIGHT = 20.0; // Pseudo-observations of the prior per bucket
+    private static final int REBUILD_INTERVAL = 32; // Outcomes between curve rebuilds
+
+    private final AtomicIntegerArray wins = new AtomicIntegerArray(PRICE_BUCKETS);
+    private final AtomicIntegerArray losses = new AtomicIntegerArray(PRICE_BUCKETS);
+    private final AtomicInteger sinceRebuild = new AtomicInteger();
+    private volatile float[] curve;
+    private volatile int observations;
+
+    private BidLandscape(float[] curve) {
+        this.curve = curve;
+    }
+
+    /**
+     * Create an empty landscape that starts out equal to a prior curve
+     */
+    public static BidLandscape fromPrior(BidLandscape prior) {
+        return new BidLandscape(prior.curve);
+    }
+
+    /**
+     * Create a fixed landscape rising as a sigmoid from the floor price to three times the floor
+     */
+    public static BidLandscape floorPrior(double floorPrice) {
+        float[] curve = new float[PRICE_BUCKETS];
+        double floor = Math.max(floorPrice, BUCKET_WIDTH);
+        for (int i = 0; i < PRICE_BUCKETS; i++) {
+            double ratio = (i * BUCKET_WIDTH - floor) / (2.0 * floor);
+            curve[i] = i * BUCKET_WIDTH < floor ? 0.0f : (float) (1.0 / (1.0 + Math.exp(-10 * (ratio - 0.5))));
+        }
+        return new BidLandscape(curve);
+    }
+
+    /**
+     * Probability of winning at the given bid price
+     */
+    public double winProbability(double price) {
+        float[] current = curve;
+        double position = price / BUCKET_WIDTH;
+        if (position <= 0) {
+            return current[0];
+        }
+        if (position >= PRICE_BUCKETS - 1) {
+            return current[PRICE_BUCKETS - 1];
+        }
+
+        int bucket = (int) position;
+        double fraction = position - bucket;
+        return current[bucket] + fraction * (current[bucket + 1] - current[bucket]);
+    }
+
+    /**
+     * Count an auction outcome at our bid price
+     *
+     * @return true when enough outcomes have accumulated that the curve should be rebuilt
+     */
+    public boolean record(double bidPrice, boolean won) {
+        int bucket = Math.min(PRICE_BUCKETS - 1, Math.max(0, (int) Math.round(bidPrice / BUCKET_WIDTH)));
+        if (won) {
+            wins.incrementAndGet(bucket);
+        } else {
+            losses.incrementAndGet(bucket);
+        }
+        observations++; // Approximate under races; only reported
+
+        // Only the thread that crosses the interval rebuilds
+        return sinceRebuild.incrementAndGet() == REBUILD_INTERVAL;
+    }
+
+    /**
+     * Rebuild the published curve from the histograms, smoothed toward a prior
+     */
+    public void rebuild(BidLandscape prior) {
+        sinceRebuild.set(0);
+
+        double[] rate = new double[PRICE_BUCKETS];
+        double[] weight = new double[PRICE_BUCKETS];
+        for (int i = 0; i < PRICE_BUCKETS; i++) {
+            int w = wins.get(i);
+            int n = w + losses.get(i);
+            double priorRate = prior.curve[i];
+            rate[i] = (w + PRIOR_WEIGHT * priorRate) / (n + PRIOR_WEIGHT);
+            weight[i] = n + PRIOR_WEIGHT;
+        }
+
+        curve = isotonic(rate, weight);
+    }
+
+    public int getObservations() {
+        return observations;
+    }
+
+    // Helper methods
+
+    private static float[] isotonic(double[] rate, double[] weight) {
+        // Pool adjacent violators: merge neighbouring blocks until rates are non-decreasing
+        int[] blockStart = new int[PRICE_BUCKETS];
+        double[] blockRate = new double[PRICE_BUCKETS];
+        double[] blockWeight = new double[PRICE_BUCKETS];
+        int blocks = 0;
+
+        for (int i = 0; i < PRICE_BUCKETS; i++) {
+            blockStart[blocks] = i;
+            blockRate[blocks] = rate[i];
+            blockWeight[blocks] = weight[i];
+            blocks++;
+
+            while (blocks > 1 && blockRate[blocks - 2] > blockRate[blocks - 1]) {
+                double merged = blockWeight[blocks - 2] + blockWeight[blocks - 1];
+                blockRate[blocks - 2] = (blockRate[blocks - 2] * blockWeight[blocks - 2]
+                        + blockRate[blocks - 1] * blockWeight[blocks - 1]) / merged;
+                blockWeight[blocks - 2] = merged;
+                blocks--;
+            }
+        }
+
+        float[] result = new float[PRICE_BUCKETS];
+        for (int b = 0; b < blocks; b++) {
+            int end = b + 1 < blocks ? blockStart[b + 1] : PRICE_BUCKETS;
+            for (int i = blockStart[b]; i < end; i++) {
+                result[i] = (float) blockRate[b];
+            }
+        }
+        return result;
+    }
+}
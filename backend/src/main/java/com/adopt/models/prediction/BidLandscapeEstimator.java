@@ -0,0 +1,138 @@
+package com.adopt.models.prediction;
+
+import com.adopt.models.BidRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Learns bid landscapes per ad slot and per publisher from our own auction outcomes.
+ *
+ * Landscapes are hierarchical: a slot's curve is smoothed toward its publisher's curve,
+ * and a publisher's curve toward a sigmoid prior around the floor price, so a slot with
+ * few outcomes borrows from its publisher. The numbers of slot and publisher landscapes
+ * are capped; beyond the caps, outcomes train the next level up that has one.
+ */
+@Component
+public class BidLandscapeEstimator {
+
+    @Value("${adopt.prediction.landscape.max-slots:100000}")
+    private int maxSlots;
+
+    @Value("${adopt.prediction.landscape.max-publishers:10000}")
+    private int maxPublishers;
+
+    private final Map<String, BidLandscape> slotLandscapes = new ConcurrentHashMap<>();
+    private final Map<String, BidLandscape> publisherLandscapes = new ConcurrentHashMap<>();
+
+    // Floor price priors, one per price bucket, built on first use
+    private final AtomicReferenceArray<BidLandscape> floorPriors =
+            new AtomicReferenceArray<>(BidLandscape.PRICE_BUCKETS);
+
+    private final LongAdder outcomes = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder slotsOverCapacity = new LongAdder();
+    private final LongAdder publishersOverCapacity = new LongAdder();
+
+    /**
+     * Get the most specific landscape available for a request; never allocates once warm
+     */
+    public BidLandscape getLandscape(BidRequest bidRequest) {
+        if (bidRequest.getAdSlotId() != null) {
+            BidLandscape slot = slotLandscapes.get(bidRequest.getAdSlotId());
+            if (slot != null) {
+                return slot;
+            }
+        }
+        if (bidRequest.getPublisherDomain() != null) {
+            BidLandscape publisher = publisherLandscapes.get(bidRequest.getPublisherDomain());
+            if (publisher != null) {
+                return publisher;
+            }
+        }
+        return floorPrior(bidRequest.getAdSlotFloorPrice());
+    }
+
+    /**
+     * Count an auction outcome at our bid price
+     */
+    public void recordOutcome(BidRequest bidRequest, BigDecimal bidPrice, boolean won) {
+        if (bidPrice == null) {
+            return;
+        }
+        outcomes.increment();
+
+        BidLandscape floorPrior = floorPrior(bidRequest.getAdSlotFloorPrice());
+        BidLandscape publisher = null;
+        if (bidRequest.getPublisherDomain() != null) {
+            publisher = publisherLandscapes.get(bidRequest.getPublisherDomain());
+            if (publisher == null) {
+                if (publisherLandscapes.size() >= maxPublishers) {
+                    publishersOverCapacity.increment();
+                } else {
+                    publisher = publisherLandscapes.computeIfAbsent(bidRequest.getPublisherDomain(),
+                            key -> BidLandscape.fromPrior(floorPrior));
+                }
+            }
+            if (publisher != null && publisher.record(bidPrice.doubleValue(), won)) {
+                publisher.rebuild(floorPrior);
+                rebuilds.increment();
+            }
+        }
+
+        if (bidRequest.getAdSlotId() != null) {
+            BidLandscape slotPrior = publisher != null ? publisher : floorPrior;
+            BidLandscape slot = slotLandscapes.get(bidRequest.getAdSlotId());
+            if (slot == null) {
+                if (slotLandscapes.size() >= maxSlots) {
+                    slotsOverCapacity.increment();
+                    return;
+                }
+                slot = slotLandscapes.computeIfAbsent(bidRequest.getAdSlotId(),
+                        key -> BidLandscape.fromPrior(slotPrior));
+            }
+            if (slot.record(bidPrice.doubleValue(), won)) {
+                slot.rebuild(slotPrior);
+                rebuilds.increment();
+            }
+        }
+    }
+
+    /**
+     * Get landscape counts and memory usage
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("slots", slotLandscapes.size());
+        stats.put("maxSlots", maxSlots);
+        stats.put("publishers", publisherLandscapes.size());
+        stats.put("maxPublishers", maxPublishers);
+        stats.put("outcomes", outcomes.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("slotsOverCapacity", slotsOverCapacity.sum());
+        stats.put("publishersOverCapacity", publishersOverCapacity.sum());
+        stats.put("bytesPerLandscape", BidLandscape.BYTES);
+        stats.put("totalBytes", (slotLandscapes.size() + publisherLandscapes.size()) * BidLandscape.BYTES);
+        return stats;
+    }
+
+    // Helper methods
+
+    private BidLandscape floorPrior(BigDecimal floorPrice) {
+        double floor = floorPrice != null ? floorPrice.doubleValue() : 0.0;
+        int bucket = Math.min(BidLandscape.PRICE_BUCKETS - 1, (int) Math.round(floor / BidLandscape.BUCKET_WIDTH));
+
+        BidLandscape prior = floorPriors.get(bucket);
+        if (prior == null) {
+            prior = BidLandscape.floorPrior(bucket * BidLandscape.BUCKET_WIDTH);
+            floorPriors.compareAndSet(bucket, null, prior);
+        }
+        return prior;
+    }
+}
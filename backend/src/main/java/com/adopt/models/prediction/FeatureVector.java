@@ -0,0 +1,82 @@
+package com.adopt.models.prediction;
+
+/**
+ * Reusable sparse feature vector of hashed indices and values.
+ *
+ * Backed by fixed primitive arrays and cleared between uses, so filling it does not
+ * allocate. Instances are not thread-safe; each thread reuses its own.
+ */
+public final class FeatureVector {
+
+    private final int[] indices;
+    private final float[] values;
+    private int size;
+
+    public FeatureVector(int capacity) {
+        this.indices = new int[capacity];
+        this.values = new float[capacity];
+    }
+
+    /**
+     * Remove all features
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a feature; features past the capacity are dropped
+     */
+    public void add(int index, float value) {
+        if (size < indices.length) {
+            indices[size] = index;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int index(int position) {
+        return indices[position];
+    }
+
+    public float value(int position) {
+        return values[position];
+    }
+
+    /**
+     * Copy the current features into a new vector sized to fit them, e.g. to keep them
+     * past the next reuse of this one
+     */
+    public FeatureVector copy() {
+        FeatureVector copy = new FeatureVector(size);
+        System.arraycopy(indices, 0, copy.indices, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Dot product with a dense weight vector indexed by feature index
+     */
+    public double dot(float[] weights) {
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += weights[indices[i]] * values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Add this vector into a dense row, folding indices into the row length (a power of two)
+     */
+    public void foldInto(float[] row, int offset, int length) {
+        int mask = length - 1;
+        for (int i = 0; i < size; i++) {
+            row[offset + (indices[i] & mask)] += values[i];
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.adopt.models.prediction;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.profile.InterestDictionary;
+import com.adopt.models.profile.UserProfile;
+import com.adopt.services.ClockService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Feature extraction shared by all predictors.
+ *
+ * Request, campaign and user profile fields are hashed into a sparse vector over a
+ * 2^FEATURE_BITS index space (the hashing trick). Each field has its own namespace seed,
+ * so equal values in different fields land on different indices. Strings are hashed
+ * character by character and the vector is reused per thread, so extraction does not
+ * allocate.
+ */
+@Component
+@RequiredArgsConstructor
+public class FeatureVectorizer {
+
+    public static final int FEATURE_BITS = 20; // 1M hashed feature indices
+    public static final int FEATURE_SPACE = 1 << FEATURE_BITS;
+    public static final int MAX_FEATURES = 64; // Upper bound on features per request
+
+    private static final int FEATURE_MASK = FEATURE_SPACE - 1;
+
+    // Namespace seeds, one per field
+    private static final int NS_BIAS = 1;
+    private static final int NS_EXCHANGE = 2;
+    private static final int NS_GEO_REGION = 3;
+    private static final int NS_GEO_CITY = 4;
+    private static final int NS_PUBLISHER = 5;
+    private static final int NS_AD_SLOT = 6;
+    private static final int NS_SLOT_SIZE = 7;
+    private static final int NS_FLOOR_PRICE = 8;
+    private static final int NS_HOUR = 9;
+    private static final int NS_DEVICE = 10;
+    private static final int NS_CAMPAIGN = 11;
+    private static final int NS_CAMPAIGN_TYPE = 12;
+    private static final int NS_CAMPAIGN_PUBLISHER = 13;
+    private static final int NS_CAMPAIGN_HOUR = 14;
+    private static final int NS_AGE_GROUP = 15;
+    private static final int NS_GENDER = 16;
+    private static final int NS_INCOME = 17;
+    private static final int NS_TARGET_AUDIENCE = 18;
+    private static final int NS_PREVIOUS_CONVERSION = 19;
+    private static final int NS_DAYS_SINCE_VISIT = 20;
+    private static final int NS_DAYS_SINCE_INTEREST = 21;
+    private static final int NS_PURCHASING_POWER = 22;
+    private static final int NS_ENGAGEMENT = 23;
+    private static final int NS_INTEREST = 24;
+
+    // Feature indices of profile enums, hashed from their labels once
+    private static final int[] AGE_GROUP_INDICES = labelIndices(NS_AGE_GROUP,
+            Arrays.stream(UserProfile.AgeGroup.values()).map(UserProfile.AgeGroup::getLabel).toArray(String[]::new));
+    private static final int[] GENDER_INDICES = labelIndices(NS_GENDER,
+            Arrays.stream(UserProfile.Gender.values()).map(UserProfile.Gender::getLabel).toArray(String[]::new));
+
+    private static final int DEVICE_UNKNOWN = 0;
+    private static final int DEVICE_DESKTOP = 1;
+    private static final int DEVICE_MOBILE = 2;
+    private static final int DEVICE_TABLET = 3;
+
+    private final ClockService clockService;
+
+    // Feature index + 1 of each interest bit, filled on first use; 0 when not yet computed
+    private final int[] interestIndices = new int[InterestDictionary.MAX_INTERESTS];
+
+    private final ThreadLocal<FeatureVector> vectors =
+            ThreadLocal.withInitial(() -> new FeatureVector(MAX_FEATURES));
+
+    /**
+     * Extract features for a request and campaign into this thread's vector.
+     * The returned vector is overwritten by the next call on the same thread.
+     */
+    public FeatureVector vectorize(BidRequest bidRequest, AdCampaign campaign) {
+        FeatureVector vector = vectors.get();
+        vector.clear();
+
+        int hour = bidRequest.getTimestamp() != null
+                ? bidRequest.getTimestamp().getHour()
+                : clockService.hourOfDay();
+
+        // Request context
+        vector.add(index(NS_BIAS, 0L), 1.0f);
+        addCategorical(vector, NS_EXCHANGE, bidRequest.getExchangeId());
+        addCategorical(vector, NS_GEO_REGION, bidRequest.getGeoRegion());
+        addCategorical(vector, NS_GEO_CITY, bidRequest.getGeoCity());
+        addCategorical(vector, NS_PUBLISHER, bidRequest.getPublisherDomain());
+        addCategorical(vector, NS_AD_SLOT, bidRequest.getAdSlotId());
+        if (bidRequest.getAdSlotWidth() != null && bidRequest.getAdSlotHeight() != null) {
+            long slotSize = ((long) bidRequest.getAdSlotWidth() << 32) | bidRequest.getAdSlotHeight();
+            vector.add(index(NS_SLOT_SIZE, slotSize), 1.0f);
+        }
+        vector.add(index(NS_FLOOR_PRICE, floorPriceBucket(bidRequest.getAdSlotFloorPrice())), 1.0f);
+        vector.add(index(NS_HOUR, hour), 1.0f);
+        vector.add(index(NS_DEVICE, deviceClass(bidRequest.getUserAgent())), 1.0f);
+
+        // Campaign, and campaign crossed with the context it performs differently in
+        long campaignId = campaign.getId() != null ? campaign.getId() : -1L;
+        vector.add(index(NS_CAMPAIGN, campaignId), 1.0f);
+        if (campaign.getCampaignType() != null) {
+            vector.add(index(NS_CAMPAIGN_TYPE, campaign.getCampaignType().ordinal()), 1.0f);
+        }
+        if (bidRequest.getPublisherDomain() != null) {
+            vector.add(index(NS_CAMPAIGN_PUBLISHER,
+                    campaignId * 31 + hash(NS_PUBLISHER, bidRequest.getPublisherDomain())), 1.0f);
+        }
+        vector.add(index(NS_CAMPAIGN_HOUR, campaignId * 24 + hour), 1.0f);
+
+        // User profile attributes
+        UserProfile userProfile = bidRequest.getUserProfile();
+        if (userProfile != null) {
+            addUserProfile(vector, userProfile);
+        }
+
+        return vector;
+    }
+
+    /**
+     * Fingerprint the context predictions mostly depend on: campaign, slot size, publisher,
+     * hour and a coarse user segment. Requests with the same fingerprint can share predictions.
+     */
+    public long segmentFingerprint(BidRequest bidRequest, AdCampaign campaign) {
+        int hour = bidRequest.getTimestamp() != null
+                ? bidRequest.getTimestamp().getHour()
+                : clockService.hourOfDay();
+
+        long fingerprint = campaign.getId() != null ? campaign.getId() : -1L;
+        fingerprint = fingerprint * 31 + (bidRequest.getAdSlotWidth() != null ? bidRequest.getAdSlotWidth() : 0);
+        fingerprint = fingerprint * 31 + (bidRequest.getAdSlotHeight() != null ? bidRequest.getAdSlotHeight() : 0);
+        fingerprint = fingerprint * 31 + (bidRequest.getPublisherDomain() != null
+                ? hash(NS_PUBLISHER, bidRequest.getPublisherDomain()) : 0);
+        fingerprint = fingerprint * 31 + hour;
+
+        // User segment: demographics, intent flags and bucketed scores
+        UserProfile userProfile = bidRequest.getUserProfile();
+        if (userProfile != null) {
+            fingerprint = fingerprint * 31 + userProfile.getAgeGroup().ordinal() + 1;
+            fingerprint = fingerprint * 31 + userProfile.getGender().ordinal() + 1;
+
+            int segment = userProfile.isTargetAudience() ? 1 : 0;
+            segment = segment * 2 + (userProfile.isPreviousConversion() ? 1 : 0);
+            segment = segment * 4 + scoreBucket(userProfile.getPurchasingPower());
+            segment = segment * 4 + scoreBucket(userProfile.getEngagementLevel());
+            segment = segment * 4 + recencyBucket(userProfile.getDaysSinceLastVisit());
+            segment = segment * 4 + recencyBucket(userProfile.getDaysSinceLastInterest());
+            fingerprint = fingerprint * 31 + segment;
+        }
+
+        // 64-bit finalizer (SplitMix64), so the low bits are well distributed
+        fingerprint = (fingerprint ^ (fingerprint >>> 30)) * 0xbf58476d1ce4e5b9L;
+        fingerprint = (fingerprint ^ (fingerprint >>> 27)) * 0x94d049bb133111ebL;
+        return fingerprint ^ (fingerprint >>> 31);
+    }
+
+    /**
+     * Hash a string into the index space of a namespace, without allocating
+     */
+    public static int hash(int namespace, String value) {
+        int hash = 0x811c9dc5 ^ (namespace * 0x9e3779b9);
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    // Helper methods
+
+    private void addUserProfile(FeatureVector vector, UserProfile userProfile) {
+        int ageGroupIndex = AGE_GROUP_INDICES[userProfile.getAgeGroup().ordinal()];
+        if (ageGroupIndex >= 0) {
+            vector.add(ageGroupIndex, 1.0f);
+        }
+        vector.add(GENDER_INDICES[userProfile.getGender().ordinal()], 1.0f);
+
+        if (userProfile.getIncome() > 0) {
+            vector.add(index(NS_INCOME, userProfile.getIncome() / 20000), 1.0f);
+        }
+
+        vector.add(index(NS_TARGET_AUDIENCE, userProfile.isTargetAudience() ? 1 : 0), 1.0f);
+        vector.add(index(NS_PREVIOUS_CONVERSION, userProfile.isPreviousConversion() ? 1 : 0), 1.0f);
+
+        if (userProfile.getDaysSinceLastVisit() != UserProfile.UNKNOWN_DAYS) {
+            vector.add(index(NS_DAYS_SINCE_VISIT, recencyBucket(userProfile.getDaysSinceLastVisit())), 1.0f);
+        }
+        if (userProfile.getDaysSinceLastInterest() != UserProfile.UNKNOWN_DAYS) {
+            vector.add(index(NS_DAYS_SINCE_INTEREST, recencyBucket(userProfile.getDaysSinceLastInterest())), 1.0f);
+        }
+
+        // Continuous scores are kept as values on a single index
+        vector.add(index(NS_PURCHASING_POWER, 0L), userProfile.getPurchasingPower());
+        vector.add(index(NS_ENGAGEMENT, 0L), userProfile.getEngagementLevel());
+
+        long interests = userProfile.getInterestMask();
+        while (interests != 0) {
+            vector.add(interestIndex(Long.numberOfTrailingZeros(interests)), 1.0f);
+            interests &= interests - 1;
+        }
+    }
+
+    private int interestIndex(int interest) {
+        // Same index as hashing the interest name, so models are unaffected by the dictionary order
+        int index = interestIndices[interest];
+        if (index == 0) {
+            index = (hash(NS_INTEREST, InterestDictionary.nameOf(interest)) & FEATURE_MASK) + 1;
+            interestIndices[interest] = index;
+        }
+        return index - 1;
+    }
+
+    private void addCategorical(FeatureVector vector, int namespace, Object value) {
+        if (value instanceof String && !((String) value).isEmpty()) {
+            vector.add(hash(namespace, (String) value) & FEATURE_MASK, 1.0f);
+        }
+    }
+
+    private static int index(int namespace, long value) {
+        int hash = (int) (value ^ (value >>> 32)) * 0x9e3779b9 ^ (namespace * 0x85ebca6b);
+        return mix(hash) & FEATURE_MASK;
+    }
+
+    private static int mix(int hash) {
+        // Murmur3 finalizer, so the low bits used as the index are well distributed
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int floorPriceBucket(BigDecimal floorPrice) {
+        if (floorPrice == null) {
+            return -1;
+        }
+        // Roughly logarithmic buckets: fine around cents, coarse around dollars
+        return (int) Math.round(Math.log1p(floorPrice.doubleValue() * 100.0) * 4.0);
+    }
+
+    private static int[] labelIndices(int namespace, String[] labels) {
+        int[] indices = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            indices[i] = labels[i] != null ? hash(namespace, labels[i]) & FEATURE_MASK : -1;
+        }
+        return indices;
+    }
+
+    private static int scoreBucket(float score) {
+        // Quartiles of a 0 to 1 score
+        return Math.min(3, Math.max(0, (int) (score * 4)));
+    }
+
+    private static int recencyBucket(int days) {
+        if (days < 0) {
+            return 3; // Unknown, treated as lapsed
+        } else if (days <= 1) {
+            return 0; // Today or yesterday
+        } else if (days <= 7) {
+            return 1; // This week
+        } else if (days <= 30) {
+            return 2; // This month
+        } else {
+            return 3; // Lapsed
+        }
+    }
+
+    private static int deviceClass(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return DEVICE_UNKNOWN;
+        } else if (userAgent.contains("iPad") || userAgent.contains("Tablet")) {
+            return DEVICE_TABLET;
+        } else if (userAgent.contains("Mobile") || userAgent.contains("Android")) {
+            return DEVICE_MOBILE;
+        } else {
+            return DEVICE_DESKTOP;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.adopt.models.prediction;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.services.ClockService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Online logistic regression trained with FTRL-Proximal (McMahan et al., 2013).
+ *
+ * Per-coordinate state and weights live in primitive arrays over the hashed feature space,
+ * and a prediction is a sparse dot product. All training happens on one writer thread fed
+ * by a bounded queue, so bid threads only read weights; a reader may see a weight from
+ * just before the latest update, which the model tolerates.
+ *
+ * Won impressions are labelled by joining them with click events. An impression that
+ * arrives already clicked trains a positive immediately; otherwise it waits for a click
+ * for up to the click window and trains a negative if none comes. The window is measured
+ * on the shared clock, so a replay on a simulated clock labels impressions as they were
+ * labelled live. Its features are taken when it is recorded, so the example matches what
+ * was known at the impression even if the clock, campaign or user profile have moved on
+ * by the time it is labelled.
+ */
+@Slf4j
+public class FtrlModel {
+
+    private static final long IDLE_POLL_MILLIS = 100; // How often an idle writer expires pending impressions
+    private static final int MAX_PENDING_IMPRESSIONS = 100000; // Oldest are trained as negatives beyond this
+    private static final double LOG_LOSS_SMOOTHING = 0.001; // Weight of each example in the running log loss
+
+    private final FeatureVectorizer featureVectorizer;
+    private final ClockService clockService;
+    private final double alpha;
+    private final double beta;
+    private final double l1;
+    private final double l2;
+    private final long clickWindowMillis;
+
+    // Per-coordinate FTRL state (writer only) and the resulting weights (read by bid threads)
+    private final float[] z = new float[FeatureVectorizer.FEATURE_SPACE];
+    private final float[] n = new float[FeatureVectorizer.FEATURE_SPACE];
+    private final float[] weights = new float[FeatureVectorizer.FEATURE_SPACE];
+
+    private final BlockingQueue<TrainingEvent> events;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Won, unclicked impressions waiting for a click, in arrival order (writer only)
+    private final LinkedHashMap<String, TrainingEvent> pendingImpressions = new LinkedHashMap<>();
+
+    private final LongAdder droppedEvents = new LongAdder();
+    private volatile long examples;
+    private volatile long positives;
+    private volatile long lateClicks;
+    private volatile long nonZeroWeights;
+    private volatile double logLoss = Math.log(2);
+
+    public FtrlModel(FeatureVectorizer featureVectorizer, ClockService clockService,
+                     double alpha, double beta, double l1, double l2,
+                     long clickWindowSeconds, int queueCapacity) {
+        this.featureVectorizer = featureVectorizer;
+        this.clockService = clockService;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.clickWindowMillis = TimeUnit.SECONDS.toMillis(clickWindowSeconds);
+        this.events = new ArrayBlockingQueue<>(queueCapacity);
+
+        writer = new Thread(this::trainLoop, "ftrl-trainer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Predict the click probability for a feature vector
+     */
+    public double predict(FeatureVector features) {
+        return sigmoid(features.dot(weights));
+    }
+
+    /**
+     * Record a won impression; trains immediately when already clicked, otherwise waits for a click
+     */
+    public void recordImpression(String responseId, BidRequest bidRequest, AdCampaign campaign, boolean clicked) {
+        FeatureVector features = featureVectorizer.vectorize(bidRequest, campaign).copy();
+        offer(new TrainingEvent(clicked ? EventType.CLICKED_IMPRESSION : EventType.IMPRESSION,
+                responseId, features, clockService.currentTimeMillis()));
+    }
+
+    /**
+     * Record a click on a previously won impression
+     */
+    public void recordClick(String responseId) {
+        offer(new TrainingEvent(EventType.CLICK, responseId, null, clockService.currentTimeMillis()));
+    }
+
+    /**
+     * Number of examples trained so far
+     */
+    public long getExamples() {
+        return examples;
+    }
+
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+    }
+
+    /**
+     * Get training statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("examples", examples);
+        stats.put("positives", positives);
+        stats.put("observedCtr", examples > 0 ? (double) positives / examples : 0.0);
+        stats.put("logLoss", logLoss);
+        stats.put("nonZeroWeights", nonZeroWeights);
+        stats.put("queued", events.size());
+        stats.put("droppedEvents", droppedEvents.sum());
+        stats.put("lateClicks", lateClicks);
+        return stats;
+    }
+
+    // Helper methods
+
+    private void offer(TrainingEvent event) {
+        // Never block a notification thread; under overload we train on fewer examples
+        if (!events.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+
+    private void trainLoop() {
+        while (running) {
+            try {
+                TrainingEvent event = events.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    handle(event);
+                }
+                expirePendingImpressions(clockService.currentTimeMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("FTRL training event failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handle(TrainingEvent event) {
+        switch (event.type) {
+            case CLICKED_IMPRESSION:
+                train(event, true);
+                break;
+
+            case IMPRESSION:
+                pendingImpressions.put(event.responseId, event);
+                if (pendingImpressions.size() > MAX_PENDING_IMPRESSIONS) {
+                    Iterator<TrainingEvent> oldest = pendingImpressions.values().iterator();
+                    train(oldest.next(), false);
+                    oldest.remove();
+                }
+                break;
+
+            case CLICK:
+                TrainingEvent impression = pendingImpressions.remove(event.responseId);
+                if (impression != null) {
+                    train(impression, true);
+                } else {
+                    lateClicks++; // Already trained (clicked on arrival or expired as a negative)
+                }
+                break;
+        }
+    }
+
+    private void expirePendingImpressions(long now) {
+        Iterator<TrainingEvent> iterator = pendingImpressions.values().iterator();
+        while (iterator.hasNext()) {
+            TrainingEvent impression = iterator.next();
+            if (now - impression.receivedAt < clickWindowMillis) {
+                return; // Arrival order, so the rest are younger
+            }
+            train(impression, false);
+            iterator.remove();
+        }
+    }
+
+    private void train(TrainingEvent impression, boolean clicked) {
+        FeatureVector features = impression.features;
+        double label = clicked ? 1.0 : 0.0;
+        double p = predict(features);
+
+        for (int k = 0; k < features.size(); k++) {
+            int i = features.index(k);
+            double g = (p - label) * features.value(k);
+            double sigma = (Math.sqrt(n[i] + g * g) - Math.sqrt(n[i])) / alpha;
+            z[i] += (float) (g - sigma * weights[i]);
+            n[i] += (float) (g * g);
+
+            // Closed-form proximal step; L1 keeps most weights at exactly zero
+            float weight = 0.0f;
+            if (Math.abs(z[i]) > l1) {
+                weight = (float) (-(z[i] - Math.signum(z[i]) * l1) / ((beta + Math.sqrt(n[i])) / alpha + l2));
+            }
+            if ((weights[i] == 0.0f) != (weight == 0.0f)) {
+                nonZeroWeights += weight != 0.0f ? 1 : -1;
+            }
+            weights[i] = weight;
+        }
+
+        double clipped = Math.min(Math.max(p, 1e-7), 1 - 1e-7);
+        double loss = clicked ? -Math.log(clipped) : -Math.log(1 - clipped);
+        logLoss += LOG_LOSS_SMOOTHING * (loss - logLoss);
+        examples++;
+        if (clicked) {
+            positives++;
+        }
+    }
+
+    private static double sigmoid(double x) {
+        x = Math.max(-35.0, Math.min(35.0, x));
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    private enum EventType {
+        IMPRESSION,
+        CLICKED_IMPRESSION,
+        CLICK
+    }
+
+    /**
+     * An impression or click waiting to be trained on
+     */
+    private static final class TrainingEvent {
+        private final EventType type;
+        private final String responseId;
+        private final FeatureVector features; // Snapshot taken when the impression was recorded
+        private final long receivedAt; // Clock millis when the event was recorded
+
+        private TrainingEvent(EventType type, String responseId, FeatureVector features, long receivedAt) {
+            this.type = type;
+            this.responseId = responseId;
+            this.features = features;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.adopt.models.prediction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Micro-batcher for neural network inference.
+ *
+ * Bid threads submit single sparse feature vectors and park. One dispatcher thread owns the
+ * network: it collects requests until the batch is full or the oldest request has waited
+ * the maximum batch wait, then runs a single batched forward pass and wakes each caller
+ * with its row of the output. Sparse features are folded into the network's dense input
+ * width, which must be a power of two. A network forward pass costs nearly the same for
+ * one row as for a few dozen, so batching trades a few hundred microseconds of latency
+ * for many times the throughput.
+ */
+@Slf4j
+public class InferenceBatcher {
+
+    private static final int LATENCY_BUCKETS = 40; // log2 nanosecond buckets, up to ~9 minutes
+    private static final long IDLE_POLL_MILLIS = 100; // How often an idle dispatcher checks for shutdown
+
+    private final String name;
+    private final MultiLayerNetwork network;
+    private final int inputSize;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<InferenceRequest> queue;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchNanos = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+    private final AtomicLongArray batchLatencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+    public InferenceBatcher(String name, MultiLayerNetwork network, int inputSize,
+                            int maxBatchSize, long maxWaitMicros, int queueCapacity) {
+        if (Integer.bitCount(inputSize) != 1) {
+            throw new IllegalArgumentException("Network input size must be a power of two: " + inputSize);
+        }
+
+        this.name = name;
+        this.network = network;
+        this.inputSize = inputSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        dispatcher = new Thread(this::dispatchLoop, "inference-" + name);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Run the network on one feature vector as part of the next batch
+     *
+     * @param features hashed input features; must not change until this call returns
+     * @param timeoutNanos how long to wait for the batch to complete
+     * @return the first network output, or NaN if the request was rejected, timed out or failed
+     */
+    public double predict(FeatureVector features, long timeoutNanos) {
+        InferenceRequest request = new InferenceRequest(features, Thread.currentThread());
+        if (!queue.offer(request)) {
+            rejectedCount.increment();
+            return Double.NaN;
+        }
+        requestCount.increment();
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!request.done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timeoutCount.increment();
+                return Double.NaN;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+
+        return request.result;
+    }
+
+    /**
+     * Stop the dispatcher; requests still queued are abandoned and their callers time out
+     */
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    /**
+     * Get batching and latency statistics
+     */
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        long requests = requestCount.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos));
+        stats.put("requests", requests);
+        stats.put("batches", batches);
+        stats.put("avgBatchSize", batches > 0 ? (double) requests / batches : 0.0);
+        stats.put("avgBatchMicros", batches > 0 ? batchNanos.sum() / batches / 1000 : 0L);
+        stats.put("p99BatchMicros", batchLatencyPercentile(0.99) / 1000);
+        stats.put("maxBatchMicros", maxBatchNanos.get() / 1000);
+        stats.put("queued", queue.size());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("timeouts", timeoutCount.sum());
+        stats.put("failures", failureCount.sum());
+        return stats;
+    }
+
+    // Helper methods
+
+    private void dispatchLoop() {
+        InferenceRequest[] batch = new InferenceRequest[maxBatchSize];
+
+        while (running) {
+            try {
+                InferenceRequest first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Fill the batch until it is full or the first request has waited long enough
+                batch[0] = first;
+                int size = 1;
+                long deadline = first.enqueuedAt + maxWaitNanos;
+                while (size < maxBatchSize) {
+                    InferenceRequest next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch[size++] = next;
+                }
+
+                runBatch(batch, size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runBatch(InferenceRequest[] batch, int size) {
+        long start = System.nanoTime();
+
+        try {
+            float[] data = new float[size * inputSize];
+            for (int i = 0; i < size; i++) {
+                // A caller that timed out may already be reusing its vector; only its own,
+                // discarded row can be affected
+                batch[i].features.foldInto(data, i * inputSize, inputSize);
+            }
+
+            INDArray output = network.output(Nd4j.create(data, new int[]{size, inputSize}, 'c'), false);
+            for (int i = 0; i < size; i++) {
+                batch[i].complete(output.getDouble(i, 0));
+            }
+        } catch (Exception e) {
+            failureCount.increment();
+            log.warn("Inference batch of {} failed for {}: {}", size, name, e.getMessage());
+            for (int i = 0; i < size; i++) {
+                batch[i].complete(Double.NaN);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            batch[i] = null;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        batchCount.increment();
+        batchNanos.add(elapsed);
+        maxBatchNanos.accumulateAndGet(elapsed, Math::max);
+        batchLatencyHistogram.incrementAndGet(
+                Math.min(64 - Long.numberOfLeadingZeros(Math.max(1L, elapsed)), LATENCY_BUCKETS - 1));
+    }
+
+    private long batchLatencyPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            total += batchLatencyHistogram.get(i);
+        }
+        if (total == 0) {
+            return 0L;
+        }
+
+        // Upper bound of the bucket holding the percentile
+        long threshold = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += batchLatencyHistogram.get(i);
+            if (seen >= threshold) {
+                return 1L << i;
+            }
+        }
+        return 1L << (LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * One caller's feature vector, waiting for its row of a batch
+     */
+    private static final class InferenceRequest {
+        private final FeatureVector features;
+        private final Thread caller;
+        private final long enqueuedAt = System.nanoTime();
+        private double result;
+        private volatile boolean done;
+
+        private InferenceRequest(FeatureVector features, Thread caller) {
+            this.features = features;
+            this.caller = caller;
+        }
+
+        private void complete(double value) {
+            result = value;
+            done = true; // Volatile write publishes the result
+            LockSupport.unpark(caller);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.adopt.models.prediction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Versioned deployments of one prediction network, swapped without downtime.
+ *
+ * Model files are named {@code <base>.zip} (version 0) or {@code <base>-<version>.zip}.
+ * When a scan finds a version newer than any deployed, it is loaded, validated and
+ * pre-warmed with sample batches on the registry's background thread, and only then
+ * published with a single atomic reference swap. A new version goes live as a canary on
+ * a share of traffic when a canary share is configured, otherwise as the primary. The
+ * replaced version keeps serving requests already queued on it for a grace period before
+ * it is shut down, and the previous primary stays loaded for instant rollback. Every
+ * change to the deployment bumps a generation number, so callers caching predictions can
+ * key them by it and stop serving results of versions taken out of service.
+ */
+@Slf4j
+public class ModelRegistry {
+
+    private static final long RETIRE_GRACE_SECONDS = 30; // Time for in-flight requests to drain from a replaced version
+    private static final String EXTENSION = ".zip";
+
+    private final String name;
+    private final File directory;
+    private final String baseName;
+    private final int inputSize;
+    private final int maxBatchSize;
+    private final long maxWaitMicros;
+    private final int queueCapacity;
+    private final int warmupBatches;
+    private final int defaultCanaryPercent;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicReference<Deployment> deployment = new AtomicReference<>(Deployment.EMPTY);
+
+    // Bumped under the registry lock after each deployment change, so a reader of the new
+    // generation sees the new deployment
+    private volatile long generation;
+
+    // Files that failed to load, by name and modification time, so they are not retried every scan
+    private final Set<String> failedFiles = new HashSet<>();
+
+    // Versions taken out of service by a rollback, so the next scan does not redeploy them
+    private final Set<String> rolledBackVersions = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failedLoads = new LongAdder();
+    private final LongAdder canaryRequests = new LongAdder();
+
+    public ModelRegistry(String name, String directory, String fileName, int inputSize,
+                         int maxBatchSize, long maxWaitMicros, int queueCapacity,
+                         int warmupBatches, int defaultCanaryPercent, ScheduledExecutorService executor) {
+        this.name = name;
+        this.directory = new File(directory);
+        this.baseName = fileName.endsWith(EXTENSION)
+                ? fileName.substring(0, fileName.length() - EXTENSION.length())
+                : fileName;
+        this.inputSize = inputSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMicros = maxWaitMicros;
+        this.queueCapacity = queueCapacity;
+        this.warmupBatches = warmupBatches;
+        this.defaultCanaryPercent = defaultCanaryPercent;
+        this.executor = executor;
+    }
+
+    /**
+     * Pick the version to serve one request: the canary for its share of traffic, otherwise the primary
+     *
+     * @return the version's batcher, or null when no version is deployed
+     */
+    public InferenceBatcher select() {
+        Deployment current = deployment.get();
+        if (current.canary != null && ThreadLocalRandom.current().nextInt(100) < current.canaryPercent) {
+            canaryRequests.increment();
+            return current.canary.batcher;
+        }
+        return current.primary != null ? current.primary.batcher : null;
+    }
+
+    /**
+     * Pick the version for a routing key, e.g. a context segment: the canary for its share of
+     * keys, otherwise the primary. A key keeps its version until the deployment changes, so
+     * predictions cached by key stay consistent with the traffic split.
+     *
+     * @return the version's batcher, or null when no version is deployed
+     */
+    public InferenceBatcher select(long routingKey) {
+        Deployment current = deployment.get();
+        if (current.canary != null && Long.remainderUnsigned(routingKey * 0x9e3779b97f4a7c15L, 100) < current.canaryPercent) {
+            canaryRequests.increment();
+            return current.canary.batcher;
+        }
+        return current.primary != null ? current.primary.batcher : null;
+    }
+
+    /**
+     * Get the number of deployment changes so far: deploys, promotions, rollbacks and split changes
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Look for a newer model file and deploy it. Runs on the registry thread.
+     */
+    public synchronized void scan() {
+        File[] files = directory.listFiles((dir, file) -> file.startsWith(baseName) && file.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        File newest = null;
+        String newestVersion = null;
+        for (File file : files) {
+            String version = versionOf(file.getName());
+            if (version != null && !rolledBackVersions.contains(version)
+                    && !failedFiles.contains(file.getName() + "@" + file.lastModified())
+                    && (newestVersion == null || compareVersions(version, newestVersion) > 0)) {
+                newest = file;
+                newestVersion = version;
+            }
+        }
+
+        Deployment current = deployment.get();
+        if (newest == null || !isNewer(newestVersion, current)) {
+            return;
+        }
+
+        ModelVersion loaded = load(newest, newestVersion);
+        if (loaded == null) {
+            failedFiles.add(newest.getName() + "@" + newest.lastModified());
+            return;
+        }
+
+        if (current.primary != null && defaultCanaryPercent > 0) {
+            // Trial the new version on a share of traffic; a replaced canary is retired
+            publish(new Deployment(current.primary, loaded, defaultCanaryPercent, current.previous), current.canary);
+            log.info("Deployed {} model version {} as canary on {}% of traffic", name, newestVersion, defaultCanaryPercent);
+        } else {
+            publish(new Deployment(loaded, null, 0, current.primary), current.previous, current.canary);
+            log.info("Deployed {} model version {} as primary", name, newestVersion);
+        }
+    }
+
+    /**
+     * Make the canary the primary
+     */
+    public synchronized boolean promote() {
+        Deployment current = deployment.get();
+        if (current.canary == null) {
+            return false;
+        }
+        publish(new Deployment(current.canary, null, 0, current.primary), current.previous);
+        log.info("Promoted {} model version {} to primary", name, current.canary.version);
+        return true;
+    }
+
+    /**
+     * Drop the canary if there is one, otherwise go back to the previous primary. The version
+     * taken out of service is not redeployed; a fixed model must ship under a new version.
+     */
+    public synchronized boolean rollback() {
+        Deployment current = deployment.get();
+        if (current.canary != null) {
+            publish(new Deployment(current.primary, null, 0, current.previous), current.canary);
+            rolledBackVersions.add(current.canary.version);
+            log.info("Rolled back {} model canary {}", name, current.canary.version);
+            return true;
+        }
+        if (current.previous != null) {
+            publish(new Deployment(current.previous, null, 0, null), current.primary);
+            rolledBackVersions.add(current.primary.version);
+            log.info("Rolled back {} model to version {}", name, current.previous.version);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Change the share of traffic served by the canary
+     */
+    public synchronized boolean setCanaryPercent(int percent) {
+        Deployment current = deployment.get();
+        if (current.canary == null || percent < 0 || percent > 100) {
+            return false;
+        }
+        deployment.set(new Deployment(current.primary, current.canary, percent, current.previous));
+        generation++;
+        return true;
+    }
+
+    public synchronized void shutdown() {
+        Deployment current = deployment.getAndSet(Deployment.EMPTY);
+        for (ModelVersion version : new ModelVersion[]{current.primary, current.canary, current.previous}) {
+            if (version != null) {
+                version.batcher.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Get deployed versions, traffic split and per-version batching statistics
+     */
+    public Map<String, Object> getStats() {
+        Deployment current = deployment.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primary", current.primary != null ? current.primary.describe() : "none");
+        stats.put("canary", current.canary != null ? current.canary.describe() : "none");
+        stats.put("canaryPercent", current.canaryPercent);
+        stats.put("previous", current.previous != null ? current.previous.version : "none");
+        stats.put("canaryRequests", canaryRequests.sum());
+        stats.put("loads", loads.sum());
+        stats.put("failedLoads", failedLoads.sum());
+        stats.put("rolledBack", new ArrayList<>(rolledBackVersions));
+        return stats;
+    }
+
+    // Helper methods
+
+    private ModelVersion load(File file, String version) {
+        long start = System.nanoTime();
+        try {
+            MultiLayerNetwork network = ModelSerializer.restoreMultiLayerNetwork(file, false);
+
+            // Validate the input size and output range, and warm up the forward pass before taking traffic
+            INDArray sample = Nd4j.rand(maxBatchSize, inputSize);
+            for (int i = 0; i < Math.max(1, warmupBatches); i++) {
+                INDArray output = network.output(sample, false);
+                if (i == 0) {
+                    double value = output.getDouble(0, 0);
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        throw new IllegalStateException("Model produces non-finite output: " + value);
+                    }
+                }
+            }
+
+            loads.increment();
+            log.info("Loaded {} model version {} from {} ({} parameters) in {} ms", name, version,
+                    file.getPath(), network.numParams(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return new ModelVersion(version, new InferenceBatcher(name + "-" + version, network, inputSize,
+                    maxBatchSize, maxWaitMicros, queueCapacity));
+        } catch (Exception e) {
+            failedLoads.increment();
+            log.error("Failed to load {} model version {} from {}: {}", name, version, file.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void publish(Deployment next, ModelVersion... retired) {
+        deployment.set(next);
+        generation++;
+
+        // Requests that already picked a retired version finish on it before it shuts down
+        for (ModelVersion version : retired) {
+            if (version != null) {
+                executor.schedule(version.batcher::shutdown, RETIRE_GRACE_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private boolean isNewer(String version, Deployment current) {
+        for (ModelVersion deployed : new ModelVersion[]{current.primary, current.canary}) {
+            if (deployed != null && compareVersions(version, deployed.version) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String versionOf(String fileName) {
+        String stem = fileName.substring(0, fileName.length() - EXTENSION.length());
+        if (stem.equals(baseName)) {
+            return "0";
+        }
+        if (stem.startsWith(baseName + "-") && stem.length() > baseName.length() + 1) {
+            return stem.substring(baseName.length() + 1);
+        }
+        return null;
+    }
+
+    private static int compareVersions(String a, String b) {
+        // Numeric versions (1, 2, 10, or dates like 20261018) compare by value, others by name
+        if (a.chars().allMatch(Character::isDigit) && b.chars().allMatch(Character::isDigit)) {
+            return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * One loaded version of the network
+     */
+    private static final class ModelVersion {
+        private final String version;
+        private final InferenceBatcher batcher;
+        private final long deployedAt = System.currentTimeMillis();
+
+        private ModelVersion(String version, InferenceBatcher batcher) {
+            this.version = version;
+            this.batcher = batcher;
+        }
+
+        private Map<String, Object> describe() {
+            Map<String, Object> description = new HashMap<>(batcher.getStats());
+            description.put("version", version);
+            description.put("deployedAt", deployedAt);
+            return description;
+        }
+    }
+
+    /**
+     * The versions serving traffic, published as one immutable snapshot
+     */
+    private static final class Deployment {
+        private static final Deployment EMPTY = new Deployment(null, null, 0, null);
+
+        private final ModelVersion primary;
+        private final ModelVersion canary;
+        private final int canaryPercent;
+        private final ModelVersion previous;
+
+        private Deployment(ModelVersion primary, ModelVersion canary, int canaryPercent, ModelVersion previous) {
+            this.primary = primary;
+            this.canary = canary;
+            this.canaryPercent = canaryPercent;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.adopt.models.prediction;
+
+import com.adopt.utils.FrequencySketch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of predictions keyed by a 64-bit context fingerprint.
+ *
+ * Entries live in flat primitive arrays organised as 4-way sets, so lookups and inserts do
+ * not allocate. Admission is frequency-aware in the TinyLFU style: a count-min sketch of
+ * recent key frequencies decides whether a new key may evict the least frequent entry of
+ * its set, so a burst of one-off contexts cannot flush the hot ones. Entries expire after
+ * a fixed time to live. Each set is guarded by one of a small number of striped locks.
+ */
+public class PredictionCache {
+
+    public static final int FIELD_CTR = 0;
+    public static final int FIELD_CVR = 1;
+    public static final int FIELD_USER_VALUE = 2;
+
+    private static final int FIELDS = 3;
+    private static final int WAYS = 4; // Entries per set
+    private static final int LOCK_STRIPES = 64;
+
+    private final int setMask;
+    private final long ttlMillis;
+
+    private final long[] keys;
+    private final long[] expiresAt;
+    private final float[] values;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries, rounded up to a power of two
+     * @param ttlMillis how long an entry stays valid after it is written
+     */
+    public PredictionCache(int capacity, long ttlMillis) {
+        int entries = Integer.highestOneBit(Math.max(WAYS, capacity - 1)) << 1;
+        this.setMask = entries / WAYS - 1;
+        this.ttlMillis = ttlMillis;
+        this.keys = new long[entries];
+        this.expiresAt = new long[entries];
+        this.values = new float[entries * FIELDS];
+        this.sketch = new FrequencySketch(entries);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get a cached prediction
+     *
+     * @return the prediction, or NaN on a miss
+     */
+    public double get(long key, int field, long now) {
+        key = nonZero(key);
+        sketch.increment(key);
+
+        int set = (int) (key ^ (key >>> 32)) & setMask;
+        synchronized (locks[set & (LOCK_STRIPES - 1)]) {
+            int base = set * WAYS;
+            for (int way = base; way < base + WAYS; way++) {
+                if (keys[way] == key) {
+                    if (expiresAt[way] <= now) {
+                        keys[way] = 0;
+                        expirations.increment();
+                        break;
+                    }
+                    float value = values[way * FIELDS + field];
+                    if (!Float.isNaN(value)) {
+                        hits.increment();
+                        return value;
+                    }
+                    break;
+                }
+            }
+        }
+
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Store a prediction, if the key is admitted
+     */
+    public void put(long key, int field, double value, long now) {
+        key = nonZero(key);
+
+        int set = (int) (key ^ (key >>> 32)) & setMask;
+        synchronized (locks[set & (LOCK_STRIPES - 1)]) {
+            int base = set * WAYS;
+            int target = -1;
+            int victim = base;
+            int victimFrequency = Integer.MAX_VALUE;
+
+            for (int way = base; way < base + WAYS; way++) {
+                if (keys[way] == key && expiresAt[way] > now) {
+                    // Another prediction for a cached context
+                    values[way * FIELDS + field] = (float) value;
+                    return;
+                }
+                if (target < 0 && (keys[way] == 0 || expiresAt[way] <= now)) {
+                    target = way;
+                }
+                int frequency = frequency(keys[way]);
+                if (frequency < victimFrequency) {
+                    victimFrequency = frequency;
+                    victim = way;
+                }
+            }
+
+            if (target < 0) {
+                // Set is full: the newcomer must be more frequent than the coldest entry
+                if (frequency(key) <= victimFrequency) {
+                    rejections.increment();
+                    return;
+                }
+                target = victim;
+                evictions.increment();
+            }
+
+            keys[target] = key;
+            expiresAt[target] = now + ttlMillis;
+            int offset = target * FIELDS;
+            for (int f = 0; f < FIELDS; f++) {
+                values[offset + f] = Float.NaN;
+            }
+            values[offset + field] = (float) value;
+            admissions.increment();
+        }
+    }
+
+    /**
+     * Get hit rate, admission and memory statistics
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", keys.length);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("admissions", admissions.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("bytes", (long) keys.length * Long.BYTES * 2
+                + (long) values.length * Float.BYTES + sketch.bytes());
+        return stats;
+    }
+
+    // Helper methods
+
+    private int frequency(long key) {
+        return key != 0 ? sketch.frequency(key) : 0;
+    }
+
+    private static long nonZero(long key) {
+        return key != 0 ? key : 1; // Zero marks an empty way
+    }
+}
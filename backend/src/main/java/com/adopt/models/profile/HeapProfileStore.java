@@ -0,0 +1,63 @@
+package com.adopt.models.profile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profile store on the Java heap: a bounded, frequency-aware {@link ProfileCache}.
+ * Profiles are returned by reference, so in-place changes are visible immediately.
+ */
+public class HeapProfileStore implements ProfileStore {
+
+    private final ProfileCache<UserProfile> cache;
+
+    public HeapProfileStore(int maxProfiles, long expireAfterAccessMillis) {
+        this.cache = new ProfileCache<>(maxProfiles, expireAfterAccessMillis);
+    }
+
+    @Override
+    public UserProfile get(String id, UserProfile reuse, long now) {
+        // Profiles are held by reference, so there is nothing to copy into reuse
+        return cache.get(id, now);
+    }
+
+    @Override
+    public boolean put(String id, UserProfile profile, long now) {
+        return cache.put(id, profile, now);
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return cache.remove(id);
+    }
+
+    public int segmentCount() {
+        return cache.segmentCount();
+    }
+
+    /**
+     * Copy the profiles of one segment, least recently used first
+     */
+    public List<Map.Entry<String, UserProfile>> segmentProfiles(int index) {
+        return cache.segmentEntries(index);
+    }
+
+    /**
+     * Add a restored profile, unless one has been stored since
+     */
+    public boolean restore(String id, UserProfile profile, long now) {
+        return cache.putIfAbsent(id, profile, now);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = cache.getStats();
+        stats.put("type", "heap");
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,150 @@
+package com.adopt.models.profile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identity graph linking cookie, device and user-profile IDs of the same person to one
+ * canonical profile ID.
+ *
+ * An ID that was never linked is its own canonical ID. Linked IDs form disjoint sets that
+ * are merged union-find style, the smaller set joining the larger. Rather than walking
+ * parent pointers at lookup time, every ID in the joining set is re-pointed at the
+ * surviving canonical ID, so resolution at bid time is a single lock-free hash lookup and
+ * each ID is re-pointed at most log2(n) times. Links are applied by one writer at a time.
+ */
+public class IdentityGraph {
+
+    private final int maxIds;
+
+    // Any ID to the canonical ID of its set; read without locking
+    private final ConcurrentHashMap<String, String> canonicalIds = new ConcurrentHashMap<>();
+
+    // Canonical ID to all IDs in its set, guarded by this
+    private final Map<String, List<String>> members = new HashMap<>();
+
+    private long links;
+    private long merges;
+    private long rejections;
+
+    /**
+     * @param maxIds maximum number of IDs to track; unseen IDs beyond it are not linked
+     */
+    public IdentityGraph(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Get the canonical profile ID of an identifier
+     *
+     * @return the canonical ID, or null if the identifier has never been linked, in which
+     *         case it is its own canonical ID
+     */
+    public String resolve(String id) {
+        return canonicalIds.get(id);
+    }
+
+    /**
+     * Record that two identifiers belong to the same person
+     *
+     * @return the canonical ID whose set was absorbed, whose profile should be merged into
+     *         the survivor's; null if the IDs were already linked or the graph is full
+     */
+    public synchronized String link(String first, String second) {
+        links++;
+        String firstRoot = canonicalIds.getOrDefault(first, first);
+        String secondRoot = canonicalIds.getOrDefault(second, second);
+        if (firstRoot.equals(secondRoot)) {
+            return null;
+        }
+        if (!register(first) || !register(second)) {
+            rejections++;
+            return null;
+        }
+
+        // Union by size: re-point the smaller set at the larger one's canonical ID
+        List<String> firstMembers = members.get(firstRoot);
+        List<String> secondMembers = members.get(secondRoot);
+        String survivor = firstMembers.size() >= secondMembers.size() ? firstRoot : secondRoot;
+        String absorbed = survivor.equals(firstRoot) ? secondRoot : firstRoot;
+
+        List<String> absorbedMembers = members.remove(absorbed);
+        for (String id : absorbedMembers) {
+            canonicalIds.put(id, survivor);
+        }
+        members.get(survivor).addAll(absorbedMembers);
+        merges++;
+        return absorbed;
+    }
+
+    /**
+     * Copy every set of linked IDs, canonical ID first, e.g. for a snapshot
+     */
+    public synchronized List<List<String>> linkedSets() {
+        List<List<String>> sets = new ArrayList<>(members.size());
+        for (List<String> set : members.values()) {
+            sets.add(new ArrayList<>(set)); // A set's own canonical ID was registered first
+        }
+        return sets;
+    }
+
+    /**
+     * Restore a set of linked IDs from a snapshot, keeping its canonical ID so profiles
+     * stored under it resolve from every ID again. Meant for a graph that has not linked
+     * anything yet; IDs it already has are left where they are.
+     *
+     * @param set the IDs, canonical ID first
+     * @return false if the graph has no room for the set
+     */
+    public synchronized boolean restore(List<String> set) {
+        String canonical = set.get(0);
+        if (canonicalIds.containsKey(canonical)) {
+            return true;
+        }
+        if (canonicalIds.size() + set.size() > maxIds) {
+            rejections++;
+            return false;
+        }
+        List<String> restored = new ArrayList<>(set.size());
+        for (String id : set) {
+            if (canonicalIds.putIfAbsent(id, canonical) == null) {
+                restored.add(id);
+            }
+        }
+        members.put(canonical, restored);
+        return true;
+    }
+
+    /**
+     * Get ID, set and merge counts
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ids", canonicalIds.size());
+        stats.put("profiles", members.size());
+        stats.put("maxIds", maxIds);
+        stats.put("links", links);
+        stats.put("merges", merges);
+        stats.put("rejections", rejections);
+        return stats;
+    }
+
+    // Helper methods
+
+    private boolean register(String id) {
+        if (canonicalIds.containsKey(id)) {
+            return true;
+        }
+        if (canonicalIds.size() >= maxIds) {
+            return false;
+        }
+        List<String> set = new ArrayList<>(2);
+        set.add(id);
+        members.put(id, set);
+        canonicalIds.put(id, id);
+        return true;
+    }
+}
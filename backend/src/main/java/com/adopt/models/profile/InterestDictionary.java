@@ -0,0 +1,79 @@
+package com.adopt.models.profile;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared dictionary of interest categories, so a profile can hold its interests as a
+ * 64-bit mask. Only trusted categories are registered: the built-in ones, those configured
+ * at startup, and those found in our own snapshots. Lookups never register, so unknown
+ * names from requests or events cannot take up the 64 bits; they are dropped.
+ */
+public final class InterestDictionary {
+
+    public static final int MAX_INTERESTS = Long.SIZE;
+
+    private static final String[] KNOWN_INTERESTS = {
+        "technology", "travel", "fashion", "sports", "food", "gaming",
+        "automotive", "finance", "health", "education", "entertainment",
+        "home", "beauty", "business", "family"
+    };
+
+    // Copy-on-write, so lookups need no lock
+    private static volatile Map<String, Integer> ids = new HashMap<>();
+    private static volatile String[] names = new String[0];
+
+    static {
+        for (String interest : KNOWN_INTERESTS) {
+            register(interest);
+        }
+    }
+
+    private InterestDictionary() {
+    }
+
+    /**
+     * Get the bit of a registered interest
+     *
+     * @return the bit index, or -1 if the interest is not registered
+     */
+    public static int idOf(String interest) {
+        Integer id = interest != null ? ids.get(interest) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Register a trusted interest category, e.g. from configuration or a snapshot
+     *
+     * @return the bit index, or -1 if the dictionary is full
+     */
+    public static synchronized int register(String interest) {
+        Integer id = ids.get(interest);
+        if (id != null) {
+            return id;
+        }
+        if (names.length >= MAX_INTERESTS) {
+            return -1;
+        }
+
+        Map<String, Integer> nextIds = new HashMap<>(ids);
+        nextIds.put(interest, names.length);
+        String[] nextNames = Arrays.copyOf(names, names.length + 1);
+        nextNames[names.length] = interest;
+        names = nextNames;
+        ids = nextIds;
+        return names.length - 1;
+    }
+
+    /**
+     * Get the name of an interest bit
+     */
+    public static String nameOf(int id) {
+        return names[id];
+    }
+
+    public static int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,578 @@
+package com.adopt.models.profile;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Off-heap profile store in memory-mapped files, for identity counts the heap cannot hold.
+ *
+ * Profiles are fixed 80-byte records in open-addressing hash tables keyed by a 64-bit hash
+ * of the cookie or device ID, split across stripe files. Each stripe has a single writer
+ * at a time; readers take no lock and use a per-record sequence number to retry if they
+ * overlap a write. A delete shifts later records back into the freed slot, so a slot a
+ * reader matched may hold another profile by the time the record is read; readers check
+ * the key again once the record is read and restart the lookup if it changed, so a lookup
+ * racing a delete may miss a moved profile but never returns another one. Lookups into a caller-supplied profile and in-place updates do not
+ * allocate. The files are reopened as they are on restart, so no reload is needed.
+ * Attributes outside the fixed profile layout are not stored.
+ *
+ * Interest masks are only meaningful against the dictionary that assigned their bits, so
+ * the dictionary is kept next to the stripes and stored masks are remapped on open if the
+ * bits were assigned differently since. A stripe not closed cleanly may hold a record whose
+ * write was cut off with an odd sequence number; those are reset on open, so readers do not
+ * wait on a write that will never finish.
+ */
+@Slf4j
+public class MappedProfileStore implements ProfileStore {
+
+    public static final int RECORD_BYTES = 80;
+    public static final int MAX_SLOTS_PER_STRIPE = 1 << 24; // Keeps each mapping under 2 GB
+
+    private static final int STRIPES = 16;
+    private static final double MAX_LOAD = 0.75; // Linear probing degrades quickly above this
+
+    private static final long MAGIC = 0x41444f5050524f46L; // "ADOPPROF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_RECORD_BYTES = 12;
+    private static final int HEADER_SLOTS = 16;
+    private static final int HEADER_COUNT = 20;
+    private static final int HEADER_CLEAN = 24; // CLEAN once closed, zero while open
+
+    private static final int CLEAN = 1;
+
+    private static final String INTERESTS_FILE = "interests.dat";
+    private static final int INTERESTS_MAGIC = 0x41494e54; // "AINT"
+
+    // Record layout; the key is written last on insert, and zero marks an empty slot
+    private static final int KEY = 0;
+    private static final int SEQUENCE = 8; // Odd while a write is in progress
+    private static final int INCOME = 12;
+    private static final int LAST_CLICK = 16;
+    private static final int LAST_CONVERSION = 24;
+    private static final int LAST_PAGEVIEW = 32;
+    private static final int INTEREST_MASK = 40;
+    private static final int TOTAL_CLICKS = 48;
+    private static final int TOTAL_CONVERSIONS = 52;
+    private static final int TOTAL_PAGEVIEWS = 56;
+    private static final int PURCHASING_POWER = 60;
+    private static final int ENGAGEMENT_LEVEL = 64;
+    private static final int DAYS_SINCE_VISIT = 68;
+    private static final int DAYS_SINCE_INTEREST = 70;
+    private static final int AGE_GROUP = 72;
+    private static final int GENDER = 73;
+    private static final int FLAGS = 74;
+
+    private static final int FLAG_TARGET_AUDIENCE = 1;
+    private static final int FLAG_PREVIOUS_CONVERSION = 2;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final File directory;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Open the store in a directory, creating its files if needed
+     *
+     * @param capacity number of profiles the store must hold
+     * @throws IllegalStateException if existing files were created with a different capacity
+     */
+    public MappedProfileStore(String directory, long capacity) {
+        long slots = Long.highestOneBit(Math.max(2, (long) Math.ceil(capacity / MAX_LOAD / STRIPES)) - 1) << 1;
+        if (slots > MAX_SLOTS_PER_STRIPE) {
+            throw new IllegalArgumentException("Capacity " + capacity + " exceeds the store maximum of "
+                    + (long) (MAX_SLOTS_PER_STRIPE * MAX_LOAD) * STRIPES + " profiles");
+        }
+
+        this.directory = new File(directory);
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Cannot create profile store directory " + directory));
+        }
+
+        long existing = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = openStripe(new File(this.directory, "profiles-" + i + ".dat"), (int) slots);
+            existing += stripes[i].count;
+        }
+
+        // Bring stored interest bits in line with this process's dictionary, then record it
+        int[] interestIds = loadInterests(existing);
+        if (interestIds != null) {
+            long remapped = remapInterests(interestIds);
+            log.info("Remapped interests of {} profiles to the current interest dictionary", remapped);
+        }
+        saveInterests();
+
+        log.info("Opened profile store at {} with {} profiles, {} slots of {} bytes per stripe",
+                directory, existing, slots, RECORD_BYTES);
+    }
+
+    @Override
+    public UserProfile get(String id, UserProfile reuse, long now) {
+        UserProfile profile = reuse != null ? reuse : new UserProfile();
+        return read(hashId(id), profile) ? profile : null;
+    }
+
+    @Override
+    public boolean put(String id, UserProfile profile, long now) {
+        return write(hashId(id), profile);
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return delete(hashId(id));
+    }
+
+    /**
+     * Read a profile into a caller-supplied instance, without allocating
+     *
+     * @return false if no profile is stored under the key
+     */
+    public boolean read(long key, UserProfile into) {
+        Stripe stripe = stripeFor(key);
+        MappedByteBuffer buffer = stripe.buffer;
+
+        for (int slot = (int) key & stripe.mask; ; slot = (slot + 1) & stripe.mask) {
+            int offset = HEADER_BYTES + slot * RECORD_BYTES;
+            long stored = (long) LONGS.getAcquire(buffer, offset + KEY);
+            if (stored == 0) {
+                misses.increment();
+                return false;
+            }
+            if (stored == key) {
+                if (readRecord(buffer, offset, key, into)) {
+                    hits.increment();
+                    return true;
+                }
+                // A delete moved another record into the slot; the profile may have moved back
+                slot = ((int) key & stripe.mask) - 1;
+            }
+        }
+    }
+
+    /**
+     * Insert or update a profile in place
+     *
+     * @return false if the key is new and its stripe is full
+     */
+    public boolean write(long key, UserProfile profile) {
+        Stripe stripe = stripeFor(key);
+        MappedByteBuffer buffer = stripe.buffer;
+
+        synchronized (stripe) {
+            for (int slot = (int) key & stripe.mask; ; slot = (slot + 1) & stripe.mask) {
+                int offset = HEADER_BYTES + slot * RECORD_BYTES;
+                long stored = buffer.getLong(offset + KEY);
+                if (stored == key) {
+                    writeRecord(buffer, offset, profile);
+                    updates.increment();
+                    return true;
+                }
+                if (stored == 0) {
+                    if (stripe.count >= stripe.maxCount) {
+                        rejections.increment();
+                        return false;
+                    }
+                    writeRecord(buffer, offset, profile);
+                    LONGS.setRelease(buffer, offset + KEY, key); // Publish only once the record is complete
+                    stripe.count++;
+                    buffer.putInt(HEADER_COUNT, stripe.count);
+                    inserts.increment();
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a profile, shifting the later records of its probe run back into the gap so no
+     * tombstones are needed. A lookup racing the shift may briefly miss a moved profile.
+     *
+     * @return false if no profile is stored under the key
+     */
+    public boolean delete(long key) {
+        Stripe stripe = stripeFor(key);
+        MappedByteBuffer buffer = stripe.buffer;
+
+        synchronized (stripe) {
+            int hole = (int) key & stripe.mask;
+            for (long stored; (stored = buffer.getLong(HEADER_BYTES + hole * RECORD_BYTES + KEY)) != key;
+                    hole = (hole + 1) & stripe.mask) {
+                if (stored == 0) {
+                    return false;
+                }
+            }
+
+            for (int slot = (hole + 1) & stripe.mask; ; slot = (slot + 1) & stripe.mask) {
+                int offset = HEADER_BYTES + slot * RECORD_BYTES;
+                long stored = buffer.getLong(offset + KEY);
+                if (stored == 0) {
+                    break;
+                }
+                // A record moves back if the hole lies between its home slot and where it is now
+                int home = (int) stored & stripe.mask;
+                if (((slot - home) & stripe.mask) >= ((slot - hole) & stripe.mask)) {
+                    moveRecord(buffer, offset, HEADER_BYTES + hole * RECORD_BYTES, stored);
+                    hole = slot;
+                }
+            }
+
+            LONGS.setRelease(buffer, HEADER_BYTES + hole * RECORD_BYTES + KEY, 0L);
+            stripe.count--;
+            buffer.putInt(HEADER_COUNT, stripe.count);
+            deletes.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Write dirty pages and the interest dictionary to disk
+     */
+    public void flush() {
+        saveInterests();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long size = 0;
+        long capacity = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.count;
+            capacity += stripe.maxCount;
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("type", "mapped");
+        stats.put("directory", directory.getPath());
+        stats.put("size", size);
+        stats.put("capacity", capacity);
+        stats.put("fileBytes", (long) STRIPES * stripes[0].buffer.capacity());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("inserts", inserts.sum());
+        stats.put("updates", updates.sum());
+        stats.put("deletes", deletes.sum());
+        stats.put("rejections", rejections.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.buffer.putInt(HEADER_CLEAN, CLEAN);
+                stripe.buffer.force();
+            }
+            try {
+                stripe.channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close profile store file: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hash a cookie or device ID to a non-zero 64-bit key, without allocating
+     */
+    public static long hashId(String id) {
+        // FNV-1a over the characters, then the SplitMix64 finalizer
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        hash ^= hash >>> 31;
+        return hash != 0 ? hash : 1;
+    }
+
+    // Helper methods
+
+    private Stripe openStripe(File file, int slots) {
+        long bytes = HEADER_BYTES + (long) slots * RECORD_BYTES;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            boolean created = raf.length() == 0;
+            if (created) {
+                raf.setLength(bytes); // Sparse until records are written
+            }
+
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            buffer.order(ByteOrder.nativeOrder());
+
+            if (created) {
+                buffer.putLong(HEADER_MAGIC, MAGIC);
+                buffer.putInt(HEADER_VERSION, VERSION);
+                buffer.putInt(HEADER_RECORD_BYTES, RECORD_BYTES);
+                buffer.putInt(HEADER_SLOTS, slots);
+                buffer.putInt(HEADER_COUNT, 0);
+            } else if (buffer.getLong(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION
+                    || buffer.getInt(HEADER_RECORD_BYTES) != RECORD_BYTES || buffer.getInt(HEADER_SLOTS) != slots) {
+                channel.close();
+                throw new IllegalStateException("Profile store file " + file.getPath()
+                        + " has a different format or capacity; restore the configured capacity or remove the store");
+            } else if (buffer.getInt(HEADER_CLEAN) != CLEAN) {
+                int repaired = repairSequences(buffer, slots);
+                if (repaired > 0) {
+                    log.warn("Profile store file {} was not closed cleanly; reset {} interrupted records",
+                            file.getPath(), repaired);
+                }
+            }
+            buffer.putInt(HEADER_CLEAN, 0);
+            return new Stripe(channel, buffer, slots, buffer.getInt(HEADER_COUNT));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open profile store file " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Make every odd sequence number even again, after a process stopped mid-write. The
+     * record keeps whatever the write had stored, a mix of the old and the new values.
+     *
+     * @return the number of records reset
+     */
+    private static int repairSequences(MappedByteBuffer buffer, int slots) {
+        int repaired = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            // Empty slots too: an insert writes the record before its key
+            int offset = HEADER_BYTES + slot * RECORD_BYTES;
+            int sequence = buffer.getInt(offset + SEQUENCE);
+            if ((sequence & 1) != 0) {
+                buffer.putInt(offset + SEQUENCE, sequence + 1);
+                repaired++;
+            }
+        }
+        return repaired;
+    }
+
+    /**
+     * Register the interests of the dictionary the stored masks were written with
+     *
+     * @return the current bit of each stored bit, or null if the stored bits are current
+     */
+    private int[] loadInterests(long existing) {
+        File file = new File(directory, INTERESTS_FILE);
+        if (!file.isFile()) {
+            // Profiles from before the dictionary was kept: keep the bits it has, drop the rest
+            return existing > 0 ? identityInterests() : null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != INTERESTS_MAGIC) {
+                throw new IllegalStateException("Interest dictionary " + file.getPath() + " has an unknown format");
+            }
+            int interests = in.readUnsignedByte();
+            int[] interestIds = new int[interests];
+            boolean sameDictionary = true;
+            for (int i = 0; i < interests; i++) {
+                interestIds[i] = InterestDictionary.register(in.readUTF());
+                sameDictionary &= interestIds[i] == i;
+            }
+            return sameDictionary ? null : interestIds;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read interest dictionary " + file.getPath(), e);
+        }
+    }
+
+    private static int[] identityInterests() {
+        int[] interestIds = new int[InterestDictionary.MAX_INTERESTS];
+        for (int i = 0; i < interestIds.length; i++) {
+            interestIds[i] = i < InterestDictionary.size() ? i : -1;
+        }
+        return interestIds;
+    }
+
+    private void saveInterests() {
+        File file = new File(directory, INTERESTS_FILE);
+        File temp = new File(directory, INTERESTS_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                int interests = InterestDictionary.size();
+                out.writeInt(INTERESTS_MAGIC);
+                out.writeByte(interests);
+                for (int i = 0; i < interests; i++) {
+                    out.writeUTF(InterestDictionary.nameOf(i));
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write interest dictionary {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite stored interest masks with the current bits; stored bits the dictionary no
+     * longer has room for are dropped
+     *
+     * @return the number of profiles changed
+     */
+    private long remapInterests(int[] interestIds) {
+        long remapped = 0;
+        for (Stripe stripe : stripes) {
+            MappedByteBuffer buffer = stripe.buffer;
+            synchronized (stripe) {
+                for (int slot = 0; slot <= stripe.mask; slot++) {
+                    int offset = HEADER_BYTES + slot * RECORD_BYTES;
+                    long mask = buffer.getLong(offset + INTEREST_MASK);
+                    if (buffer.getLong(offset + KEY) == 0 || mask == 0) {
+                        continue;
+                    }
+                    long current = 0;
+                    for (long bits = mask; bits != 0; bits &= bits - 1) {
+                        int bit = Long.numberOfTrailingZeros(bits);
+                        int id = bit < interestIds.length ? interestIds[bit] : -1;
+                        if (id >= 0) {
+                            current |= 1L << id;
+                        }
+                    }
+                    if (current != mask) {
+                        buffer.putLong(offset + INTEREST_MASK, current);
+                        remapped++;
+                    }
+                }
+            }
+        }
+        return remapped;
+    }
+
+    private Stripe stripeFor(long key) {
+        return stripes[(int) (key >>> 60) & (STRIPES - 1)];
+    }
+
+    /**
+     * Read the record at an offset into a profile
+     *
+     * @return false if the slot no longer holds the key once the record is read
+     */
+    private static boolean readRecord(MappedByteBuffer buffer, int offset, long key, UserProfile into) {
+        while (true) {
+            int sequence = (int) INTS.getAcquire(buffer, offset + SEQUENCE);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait(); // A write is in progress
+                continue;
+            }
+
+            into.setIncome(buffer.getInt(offset + INCOME));
+            into.setLastClickTimestamp(buffer.getLong(offset + LAST_CLICK));
+            into.setLastConversionTimestamp(buffer.getLong(offset + LAST_CONVERSION));
+            into.setLastPageviewTimestamp(buffer.getLong(offset + LAST_PAGEVIEW));
+            into.setInterestMask(buffer.getLong(offset + INTEREST_MASK));
+            into.setTotalClicks(buffer.getInt(offset + TOTAL_CLICKS));
+            into.setTotalConversions(buffer.getInt(offset + TOTAL_CONVERSIONS));
+            into.setTotalPageviews(buffer.getInt(offset + TOTAL_PAGEVIEWS));
+            into.setPurchasingPower(buffer.getFloat(offset + PURCHASING_POWER));
+            into.setEngagementLevel(buffer.getFloat(offset + ENGAGEMENT_LEVEL));
+            into.setDaysSinceLastVisit(buffer.getShort(offset + DAYS_SINCE_VISIT));
+            into.setDaysSinceLastInterest(buffer.getShort(offset + DAYS_SINCE_INTEREST));
+            into.setAgeGroupOrdinal(buffer.get(offset + AGE_GROUP));
+            into.setGenderOrdinal(buffer.get(offset + GENDER));
+            byte flags = buffer.get(offset + FLAGS);
+            into.setTargetAudience((flags & FLAG_TARGET_AUDIENCE) != 0);
+            into.setPreviousConversion((flags & FLAG_PREVIOUS_CONVERSION) != 0);
+
+            // Retry if a write started while we were reading, then check the slot still holds
+            // the key: a delete may have moved another record into it meanwhile
+            VarHandle.loadLoadFence();
+            if ((int) INTS.getAcquire(buffer, offset + SEQUENCE) == sequence) {
+                return (long) LONGS.getAcquire(buffer, offset + KEY) == key;
+            }
+        }
+    }
+
+    private static void writeRecord(MappedByteBuffer buffer, int offset, UserProfile profile) {
+        int sequence = buffer.getInt(offset + SEQUENCE);
+        INTS.setOpaque(buffer, offset + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putInt(offset + INCOME, profile.getIncome());
+        buffer.putLong(offset + LAST_CLICK, profile.getLastClickTimestamp());
+        buffer.putLong(offset + LAST_CONVERSION, profile.getLastConversionTimestamp());
+        buffer.putLong(offset + LAST_PAGEVIEW, profile.getLastPageviewTimestamp());
+        buffer.putLong(offset + INTEREST_MASK, profile.getInterestMask());
+        buffer.putInt(offset + TOTAL_CLICKS, profile.getTotalClicks());
+        buffer.putInt(offset + TOTAL_CONVERSIONS, profile.getTotalConversions());
+        buffer.putInt(offset + TOTAL_PAGEVIEWS, profile.getTotalPageviews());
+        buffer.putFloat(offset + PURCHASING_POWER, profile.getPurchasingPower());
+        buffer.putFloat(offset + ENGAGEMENT_LEVEL, profile.getEngagementLevel());
+        buffer.putShort(offset + DAYS_SINCE_VISIT, profile.getDaysSinceLastVisit());
+        buffer.putShort(offset + DAYS_SINCE_INTEREST, profile.getDaysSinceLastInterest());
+        buffer.put(offset + AGE_GROUP, profile.getAgeGroupOrdinal());
+        buffer.put(offset + GENDER, profile.getGenderOrdinal());
+        buffer.put(offset + FLAGS, (byte) ((profile.isTargetAudience() ? FLAG_TARGET_AUDIENCE : 0)
+                | (profile.isPreviousConversion() ? FLAG_PREVIOUS_CONVERSION : 0)));
+
+        INTS.setRelease(buffer, offset + SEQUENCE, sequence + 2);
+    }
+
+    private static void moveRecord(MappedByteBuffer buffer, int from, int to, long key) {
+        int sequence = buffer.getInt(to + SEQUENCE);
+        INTS.setOpaque(buffer, to + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        buffer.putInt(to + INCOME, buffer.getInt(from + INCOME));
+        for (int field = LAST_CLICK; field < RECORD_BYTES; field += Long.BYTES) {
+            buffer.putLong(to + field, buffer.getLong(from + field));
+        }
+
+        // The key changes inside the write, so a reader that saw the old key retries and sees it
+        LONGS.setRelease(buffer, to + KEY, key);
+        INTS.setRelease(buffer, to + SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * One mapped file and its hash table bookkeeping; writes are serialized on the stripe
+     */
+    private static final class Stripe {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int mask;
+        private final int maxCount;
+        private int count;
+
+        private Stripe(FileChannel channel, MappedByteBuffer buffer, int slots, int count) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.mask = slots - 1;
+            this.maxCount = (int) (slots * MAX_LOAD);
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.adopt.models.profile;
+
+import com.adopt.utils.FrequencySketch;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of user profiles keyed by cookie or device ID.
+ *
+ * The cache is split into segments. Lookups read a segment's concurrent map without a
+ * lock and drop the entry into a small lossy buffer; the buffered reads are applied to the
+ * segment's access order under its lock, by a sampled reader that finds the lock free or by
+ * the next write, so the order is approximate but reads never wait. When a segment is
+ * full, a new ID is only admitted if a frequency sketch says it is seen more often than
+ * the segment's least recently used profile, which it then evicts, so a flood of one-off
+ * IDs cannot push out regular users. Profiles not accessed within the time to live expire.
+ *
+ * @param <V> the profile type
+ */
+public class ProfileCache<V> {
+
+    private static final int SEGMENTS = 16;
+    private static final int READ_BUFFER_SIZE = 16; // Reads buffered per segment, a power of two
+    private static final int DRAIN_SAMPLE_BITS = 4; // One read in 16 tries to apply the buffer
+
+    private final Segment<V>[] segments;
+    private final int segmentCapacity;
+    private final long expireAfterAccessMillis;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param capacity maximum number of profiles
+     * @param expireAfterAccessMillis how long a profile stays cached after it was last read or written
+     */
+    @SuppressWarnings("unchecked")
+    public ProfileCache(int capacity, long expireAfterAccessMillis) {
+        this.segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+        this.sketch = new FrequencySketch(capacity);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Get a cached profile, counting the access toward the ID's admission frequency
+     *
+     * @return the profile, or null if it is not cached or has expired
+     */
+    public V get(String key, long now) {
+        long hash = spread(key);
+        sketch.increment(hash);
+
+        Segment<V> segment = segmentFor(hash);
+        Entry<V> entry = segment.entries.get(key);
+        if (entry != null) {
+            if (now - entry.lastAccess > expireAfterAccessMillis) {
+                expire(segment, entry);
+            } else {
+                if (entry.lastAccess != now) {
+                    entry.lastAccess = now;
+                }
+                recordRead(segment, entry);
+                hits.increment();
+                return entry.value;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache a profile, if the ID is admitted
+     *
+     * @return true if the profile is now cached
+     */
+    public boolean put(String key, V value, long now) {
+        return put(key, value, now, true);
+    }
+
+    /**
+     * Cache a profile if the ID is admitted and not already cached, e.g. when restoring a
+     * snapshot that may be older than profiles cached since
+     *
+     * @return true if the profile was added
+     */
+    public boolean putIfAbsent(String key, V value, long now) {
+        return put(key, value, now, false);
+    }
+
+    /**
+     * Remove a cached profile
+     *
+     * @return true if it was cached
+     */
+    public boolean remove(String key) {
+        Segment<V> segment = segmentFor(spread(key));
+        segment.lock.lock();
+        try {
+            if (segment.entries.remove(key) == null) {
+                return false;
+            }
+            segment.order.remove(key);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        return SEGMENTS;
+    }
+
+    /**
+     * Copy the profiles of one segment, least recently used first
+     */
+    public List<Map.Entry<String, V>> segmentEntries(int index) {
+        Segment<V> segment = segments[index];
+        segment.lock.lock();
+        try {
+            drainReads(segment);
+            List<Map.Entry<String, V>> entries = new ArrayList<>(segment.order.size());
+            for (Map.Entry<String, Entry<V>> entry : segment.order.entrySet()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().value));
+            }
+            return entries;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get size, hit rate, admission, eviction and expiry statistics
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("capacity", segmentCapacity * SEGMENTS);
+        stats.put("expireAfterAccessMillis", expireAfterAccessMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("admissions", admissions.sum());
+        stats.put("rejections", rejections.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+
+    // Helper methods
+
+    private boolean put(String key, V value, long now, boolean replace) {
+        long hash = spread(key);
+        Segment<V> segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            drainReads(segment);
+            Entry<V> entry = segment.order.get(key);
+            if (entry != null) {
+                if (!replace) {
+                    return false;
+                }
+                entry.value = value;
+                entry.lastAccess = now;
+                return true;
+            }
+
+            if (segment.order.size() >= segmentCapacity) {
+                expireEldest(segment, now);
+            }
+            if (segment.order.size() >= segmentCapacity) {
+                // Full: the newcomer must be more frequent than the least recently used profile
+                Iterator<Map.Entry<String, Entry<V>>> eldest = segment.order.entrySet().iterator();
+                Map.Entry<String, Entry<V>> victim = eldest.next();
+                if (sketch.frequency(hash) <= sketch.frequency(spread(victim.getKey()))) {
+                    rejections.increment();
+                    return false;
+                }
+                eldest.remove();
+                segment.entries.remove(victim.getKey());
+                evictions.increment();
+            }
+
+            entry = new Entry<>(key, value, now);
+            segment.order.put(key, entry);
+            segment.entries.put(key, entry);
+            admissions.increment();
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private void recordRead(Segment<V> segment, Entry<V> entry) {
+        // Lossy: a slot overwritten before it is drained only loses one access from the order
+        int random = ThreadLocalRandom.current().nextInt();
+        segment.reads.lazySet(random & (READ_BUFFER_SIZE - 1), entry);
+        if ((random >>> (Integer.SIZE - DRAIN_SAMPLE_BITS)) == 0 && segment.lock.tryLock()) {
+            try {
+                drainReads(segment);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    private void drainReads(Segment<V> segment) {
+        // Under the segment lock; the lookup moves a still-cached entry to the back of the access order
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Entry<V> entry = segment.reads.getAndSet(i, null);
+            if (entry != null) {
+                segment.order.get(entry.key);
+            }
+        }
+    }
+
+    private void expire(Segment<V> segment, Entry<V> entry) {
+        segment.lock.lock();
+        try {
+            // Unless it was replaced or removed since the lookup
+            if (segment.entries.remove(entry.key, entry)) {
+                segment.order.remove(entry.key);
+                expirations.increment();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private void expireEldest(Segment<V> segment, long now) {
+        // Access order puts the stalest profiles first, so expired ones are found without a full scan
+        Iterator<Entry<V>> iterator = segment.order.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+            if (now - entry.lastAccess <= expireAfterAccessMillis) {
+                return;
+            }
+            iterator.remove();
+            segment.entries.remove(entry.key);
+            expirations.increment();
+        }
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long spread(String key) {
+        // SplitMix64 finalizer, so nearby string hash codes land in unrelated segments and sketch counters
+        long hash = key.hashCode() * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static final class Segment<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // Lookups, read without the lock; written together with the order under it
+        private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+        // Recency order, least recently used first; guarded by the lock
+        private final LinkedHashMap<String, Entry<V>> order = new LinkedHashMap<>(16, 0.75f, true);
+
+        // Reads not yet applied to the order
+        private final AtomicReferenceArray<Entry<V>> reads = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    }
+
+    private static final class Entry<V> {
+        private final String key;
+        private volatile V value;
+        private volatile long lastAccess;
+
+        private Entry(String key, V value, long lastAccess) {
+            this.key = key;
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
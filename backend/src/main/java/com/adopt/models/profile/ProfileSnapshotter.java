@@ -0,0 +1,383 @@
+package com.adopt.models.profile;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshots a {@link HeapProfileStore} to local disk and restores it after a restart.
+ *
+ * Each store segment is written to its own file in a compact binary format: a header with
+ * the record count and the interest dictionary, then one fixed-layout record per profile,
+ * least recently used first. Files are written next to the old ones and renamed into
+ * place, so a crash mid-snapshot leaves the previous snapshot intact. Segments are
+ * restored in parallel, and callers can wait until a fraction of the profiles is loaded
+ * while the rest continues in the background.
+ *
+ * Profiles are keyed by the canonical ID of their identity set, so the sets of the
+ * {@link IdentityGraph} are snapshotted alongside; without them a restored profile would
+ * only be found from its canonical ID.
+ */
+@Slf4j
+public class ProfileSnapshotter {
+
+    private static final int MAGIC = 0x4150534e; // "APSN"
+    private static final int VERSION = 1;
+    private static final int IDENTITIES_MAGIC = 0x41504944; // "APID"
+    private static final String IDENTITIES_FILE = "identities.snap";
+
+    private static final int FLAG_TARGET_AUDIENCE = 1;
+    private static final int FLAG_PREVIOUS_CONVERSION = 2;
+
+    private final File directory;
+
+    private volatile long lastSnapshotProfiles;
+    private volatile long lastSnapshotBytes;
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotIdentitySets;
+    private volatile long restoredIdentitySets;
+
+    private final AtomicLong restoredProfiles = new AtomicLong();
+    private final AtomicLong rejectedProfiles = new AtomicLong();
+    private final AtomicInteger pendingSegments = new AtomicInteger();
+    private volatile long expectedProfiles;
+    private volatile long restoreMillis = -1;
+
+    public ProfileSnapshotter(String directory) {
+        this.directory = new File(directory);
+    }
+
+    /**
+     * Write a snapshot of every segment of the store
+     *
+     * @return the number of profiles written
+     */
+    public synchronized long write(HeapProfileStore store) {
+        if (pendingSegments.get() > 0) {
+            // A partial store would overwrite the complete snapshot still being restored
+            log.info("Skipping profile snapshot while a restore is in progress");
+            return 0;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Cannot create profile snapshot directory {}", directory);
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        long profiles = 0;
+        long bytes = 0;
+        for (int i = 0; i < store.segmentCount(); i++) {
+            File file = segmentFile(i);
+            File temp = new File(directory, file.getName() + ".tmp");
+            List<Map.Entry<String, UserProfile>> entries = store.segmentProfiles(i);
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                    writeHeader(out, entries.size());
+                    for (Map.Entry<String, UserProfile> entry : entries) {
+                        writeRecord(out, entry.getKey(), entry.getValue());
+                    }
+                }
+                Files.move(temp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                profiles += entries.size();
+                bytes += file.length();
+            } catch (IOException e) {
+                log.warn("Failed to snapshot profile segment {}: {}", i, e.getMessage());
+            }
+        }
+
+        lastSnapshotProfiles = profiles;
+        lastSnapshotBytes = bytes;
+        lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Wrote profile snapshot: {} profiles, {} KB in {} ms", profiles, bytes >> 10, lastSnapshotMillis);
+        return profiles;
+    }
+
+    /**
+     * Write a snapshot of the identity graph's linked sets
+     *
+     * @return the number of sets written
+     */
+    public synchronized long writeIdentities(IdentityGraph graph) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.warn("Cannot create profile snapshot directory {}", directory);
+            return 0;
+        }
+
+        List<List<String>> sets = graph.linkedSets();
+        File file = new File(directory, IDENTITIES_FILE);
+        File temp = new File(directory, IDENTITIES_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(IDENTITIES_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sets.size());
+                for (List<String> set : sets) {
+                    out.writeInt(set.size());
+                    for (String id : set) {
+                        out.writeUTF(id);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to snapshot identity graph: {}", e.getMessage());
+            return 0;
+        }
+        lastSnapshotIdentitySets = sets.size();
+        return sets.size();
+    }
+
+    /**
+     * Restore the identity graph's linked sets from the latest snapshot; call before any
+     * links are applied
+     *
+     * @return the number of sets restored
+     */
+    public long restoreIdentities(IdentityGraph graph) {
+        File file = new File(directory, IDENTITIES_FILE);
+        if (!file.isFile()) {
+            return 0;
+        }
+        long restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != IDENTITIES_MAGIC || in.readInt() != VERSION) {
+                log.warn("Skipping identity snapshot {} with an unknown format", file.getName());
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int size = in.readInt();
+                List<String> set = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    set.add(in.readUTF());
+                }
+                if (graph.restore(set)) {
+                    restored++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to restore identity snapshot: {}", e.getMessage());
+        }
+        restoredIdentitySets = restored;
+        log.info("Restored {} linked identity sets", restored);
+        return restored;
+    }
+
+    /**
+     * Start restoring the latest snapshot into the store, one task per segment file
+     *
+     * @param threads restore threads; 0 uses one per core
+     * @return the number of profiles in the snapshot
+     */
+    public long restore(HeapProfileStore store, int threads, long now) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("profiles-") && name.endsWith(".snap"));
+        if (files == null || files.length == 0) {
+            return 0;
+        }
+
+        long expected = 0;
+        for (File file : files) {
+            expected += readCount(file);
+        }
+        expectedProfiles = expected;
+        pendingSegments.set(files.length);
+
+        long start = System.nanoTime();
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService restoreExecutor = Executors.newFixedThreadPool(Math.min(poolSize, files.length), runnable -> {
+            Thread thread = new Thread(runnable, "profile-restore-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (File file : files) {
+            restoreExecutor.execute(() -> {
+                restoreSegment(file, store, now);
+                if (pendingSegments.decrementAndGet() == 0) {
+                    long elapsedNanos = Math.max(1, System.nanoTime() - start);
+                    restoreMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+                    log.info("Restored {} profiles ({} rejected) from {} segments in {} ms ({} profiles/sec)",
+                            restoredProfiles.get(), rejectedProfiles.get(), files.length, restoreMillis,
+                            restoredProfiles.get() * 1_000_000_000L / elapsedNanos);
+                }
+            });
+        }
+        restoreExecutor.shutdown(); // Threads exit once the queued segments are done
+        return expected;
+    }
+
+    /**
+     * Wait until a fraction of the snapshot's profiles is restored. Profiles the store rejects
+     * do not count, so if too many are rejected to reach the fraction this waits for the
+     * whole restore.
+     *
+     * @return true if the fraction was reached or the restore finished within the timeout
+     */
+    public boolean awaitRestored(double fraction, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (pendingSegments.get() > 0 && restoredProfiles.get() < fraction * expectedProfiles) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Get size and timing of the last snapshot and of the restore
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("directory", directory.getPath());
+        stats.put("lastSnapshotProfiles", lastSnapshotProfiles);
+        stats.put("lastSnapshotBytes", lastSnapshotBytes);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("lastSnapshotIdentitySets", lastSnapshotIdentitySets);
+        stats.put("restoredIdentitySets", restoredIdentitySets);
+        stats.put("restoreExpectedProfiles", expectedProfiles);
+        stats.put("restoredProfiles", restoredProfiles.get());
+        stats.put("restoreRejectedProfiles", rejectedProfiles.get());
+        stats.put("restorePendingSegments", pendingSegments.get());
+        stats.put("restoreMillis", restoreMillis);
+        if (restoreMillis > 0) {
+            stats.put("restoreProfilesPerSecond", restoredProfiles.get() * 1000 / restoreMillis);
+        }
+        return stats;
+    }
+
+    // Helper methods
+
+    private File segmentFile(int index) {
+        return new File(directory, "profiles-" + index + ".snap");
+    }
+
+    private void writeHeader(DataOutputStream out, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(count);
+
+        // Interest bits are only meaningful against the dictionary that assigned them
+        int interests = InterestDictionary.size();
+        out.writeByte(interests);
+        for (int i = 0; i < interests; i++) {
+            out.writeUTF(InterestDictionary.nameOf(i));
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, String id, UserProfile profile) throws IOException {
+        out.writeUTF(id);
+        out.writeLong(profile.getLastClickTimestamp());
+        out.writeLong(profile.getLastConversionTimestamp());
+        out.writeLong(profile.getLastPageviewTimestamp());
+        out.writeLong(profile.getInterestMask());
+        out.writeInt(profile.getIncome());
+        out.writeInt(profile.getTotalClicks());
+        out.writeInt(profile.getTotalConversions());
+        out.writeInt(profile.getTotalPageviews());
+        out.writeFloat(profile.getPurchasingPower());
+        out.writeFloat(profile.getEngagementLevel());
+        out.writeShort(profile.getDaysSinceLastVisit());
+        out.writeShort(profile.getDaysSinceLastInterest());
+        out.writeByte(profile.getAgeGroupOrdinal());
+        out.writeByte(profile.getGenderOrdinal());
+        out.writeByte((profile.isTargetAudience() ? FLAG_TARGET_AUDIENCE : 0)
+                | (profile.isPreviousConversion() ? FLAG_PREVIOUS_CONVERSION : 0));
+    }
+
+    private long readCount(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION ? in.readInt() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void restoreSegment(File file, HeapProfileStore store, long now) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Skipping profile snapshot {} with an unknown format", file.getName());
+                return;
+            }
+            int count = in.readInt();
+
+            // Map the snapshot's interest bits onto the current dictionary
+            int interests = in.readUnsignedByte();
+            int[] interestIds = new int[interests];
+            boolean sameDictionary = true;
+            for (int i = 0; i < interests; i++) {
+                interestIds[i] = InterestDictionary.register(in.readUTF());
+                sameDictionary &= interestIds[i] == i;
+            }
+
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                UserProfile profile = readRecord(in, sameDictionary ? null : interestIds);
+                // Only profiles the store admitted count toward readiness and throughput
+                if (store.restore(id, profile, now)) {
+                    restoredProfiles.incrementAndGet();
+                } else {
+                    rejectedProfiles.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to restore profile snapshot {}: {}", file.getName(), e.getMessage());
+        }
+    }
+
+    private UserProfile readRecord(DataInputStream in, int[] interestIds) throws IOException {
+        UserProfile profile = new UserProfile();
+        profile.setLastClickTimestamp(in.readLong());
+        profile.setLastConversionTimestamp(in.readLong());
+        profile.setLastPageviewTimestamp(in.readLong());
+        long interestMask = in.readLong();
+        profile.setIncome(in.readInt());
+        profile.setTotalClicks(in.readInt());
+        profile.setTotalConversions(in.readInt());
+        profile.setTotalPageviews(in.readInt());
+        profile.setPurchasingPower(in.readFloat());
+        profile.setEngagementLevel(in.readFloat());
+        profile.setDaysSinceLastVisit(in.readShort());
+        profile.setDaysSinceLastInterest(in.readShort());
+        profile.setAgeGroupOrdinal(in.readByte());
+        profile.setGenderOrdinal(in.readByte());
+        byte flags = in.readByte();
+        profile.setTargetAudience((flags & FLAG_TARGET_AUDIENCE) != 0);
+        profile.setPreviousConversion((flags & FLAG_PREVIOUS_CONVERSION) != 0);
+
+        if (interestIds != null) {
+            long remapped = 0;
+            for (long mask = interestMask; mask != 0; mask &= mask - 1) {
+                int id = interestIds[Long.numberOfTrailingZeros(mask)];
+                if (id >= 0) {
+                    remapped |= 1L << id;
+                }
+            }
+            interestMask = remapped;
+        }
+        profile.setInterestMask(interestMask);
+        return profile;
+    }
+}
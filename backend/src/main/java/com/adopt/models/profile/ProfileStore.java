@@ -0,0 +1,55 @@
+package com.adopt.models.profile;
+
+import java.util.Map;
+
+/**
+ * Storage backend for user profiles keyed by cookie or device ID
+ */
+public interface ProfileStore {
+
+    /**
+     * Get a profile
+     *
+     * @param now current time in epoch milliseconds, for access-based expiry
+     * @return the profile, or null if it is not stored
+     */
+    default UserProfile get(String id, long now) {
+        return get(id, null, now);
+    }
+
+    /**
+     * Get a profile, reading it into a caller-supplied instance where the store copies
+     * profiles out rather than returning them by reference
+     *
+     * @param reuse instance to read into, or null to allocate one; callers must not keep it,
+     *        or a profile read into it, past their next lookup with the same instance
+     * @param now current time in epoch milliseconds, for access-based expiry
+     * @return the profile, which may or may not be {@code reuse}, or null if it is not stored
+     */
+    UserProfile get(String id, UserProfile reuse, long now);
+
+    /**
+     * Store a new or changed profile; changes to a profile returned by {@link #get} are only
+     * guaranteed to persist once it is put back
+     *
+     * @return true if the profile is now stored, false if the store declined it
+     */
+    boolean put(String id, UserProfile profile, long now);
+
+    /**
+     * Remove a profile, e.g. one merged into another
+     *
+     * @return false if no profile was stored
+     */
+    boolean remove(String id);
+
+    /**
+     * Get size, capacity and access statistics
+     */
+    Map<String, Object> getStats();
+
+    /**
+     * Flush and release resources
+     */
+    void close();
+}
@@ -0,0 +1,53 @@
+package com.adopt.models.profile;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * A user event waiting to be folded into the user's profile
+ */
+@Getter
+@AllArgsConstructor
+public class UserEvent {
+
+    private final String cookieId;
+    private final String deviceId;
+    private final Type type;
+    private final long timestamp;
+
+    // Whitelisted profile attributes carried by the event, or null
+    private final Map<String, Object> data;
+
+    /**
+     * Get the ID the event is grouped and ordered by
+     */
+    public String getPrimaryId() {
+        return cookieId != null && !cookieId.isEmpty() ? cookieId : deviceId;
+    }
+
+    public enum Type {
+        CLICK,
+        CONVERSION,
+        PAGEVIEW,
+        OTHER,
+
+        // Queued by the profile service itself: the cookie and device ID fields hold two
+        // identifiers of the same person, to be linked by the folder
+        LINK;
+
+        public static Type fromName(String name) {
+            switch (name) {
+                case "click":
+                    return CLICK;
+                case "conversion":
+                    return CONVERSION;
+                case "pageview":
+                    return PAGEVIEW;
+                default:
+                    return OTHER;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.adopt.models.profile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Striped, bounded append buffer for user events.
+ *
+ * Events are striped by their primary ID, so one user's events stay in order while
+ * writers for different users rarely share a lock. Appending holds a stripe lock only for
+ * a list add; a consumer drains a stripe by swapping its list. A stripe filling past half
+ * its capacity wakes the consumer early, and a full stripe drops new events rather than
+ * blocking the caller.
+ */
+public class UserEventBuffer {
+
+    private final Stripe[] stripes;
+    private final int stripeCapacity;
+    private volatile Thread consumer;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param stripeCount number of stripes, rounded up to a power of two
+     * @param stripeCapacity maximum events buffered per stripe
+     */
+    public UserEventBuffer(int stripeCount, int stripeCapacity) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeCapacity = stripeCapacity;
+    }
+
+    /**
+     * Append an event
+     *
+     * @return false if its stripe is full and the event was dropped
+     */
+    public boolean append(UserEvent event) {
+        int hash = event.getPrimaryId().hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        int size;
+        synchronized (stripe) {
+            size = stripe.events.size();
+            if (size >= stripeCapacity) {
+                dropped.increment();
+                return false;
+            }
+            stripe.events.add(event);
+        }
+        appended.increment();
+
+        if (size + 1 == stripeCapacity / 2 && consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Set the thread to wake when a stripe fills up; it should wait with
+     * {@link LockSupport#parkNanos}
+     */
+    public void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Move all buffered events to a list
+     *
+     * @return the number of events moved
+     */
+    public int drainTo(List<UserEvent> sink) {
+        int drained = 0;
+        for (Stripe stripe : stripes) {
+            List<UserEvent> events;
+            synchronized (stripe) {
+                if (stripe.events.isEmpty()) {
+                    continue;
+                }
+                events = stripe.events;
+                stripe.events = new ArrayList<>(events.size());
+            }
+            sink.addAll(events);
+            drained += events.size();
+        }
+        return drained;
+    }
+
+    /**
+     * Get append, drop and backlog counts
+     */
+    public Map<String, Object> getStats() {
+        int buffered = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                buffered += stripe.events.size();
+            }
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("stripes", stripes.length);
+        stats.put("stripeCapacity", stripeCapacity);
+        stats.put("buffered", buffered);
+        stats.put("appended", appended.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    private static final class Stripe {
+        private List<UserEvent> events = new ArrayList<>();
+    }
+}
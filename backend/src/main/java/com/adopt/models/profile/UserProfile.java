@@ -0,0 +1,345 @@
+package com.adopt.models.profile;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fixed-layout user profile: primitive fields, enum ordinals and an interest bitmask
+ * against the shared {@link InterestDictionary}, about 80 bytes per profile with
+ * compressed references. Attributes outside the fixed layout are not kept.
+ */
+@Getter
+@Setter
+public class UserProfile {
+
+    public static final int UNKNOWN_DAYS = -1;
+
+    // Attributes that map onto the fixed layout; anything else is dropped on merge
+    public static final Set<String> MERGEABLE_ATTRIBUTES = Set.of(
+            "ageGroup", "gender", "income", "isTargetAudience", "hasPreviousConversion",
+            "purchasingPower", "engagementLevel", "daysSinceLastVisit", "daysSinceLastInterest",
+            "interests");
+
+    private long lastClickTimestamp;
+    private long lastConversionTimestamp;
+    private long lastPageviewTimestamp;
+
+    private int income; // 0 when unknown
+    private int totalClicks;
+    private int totalConversions;
+    private int totalPageviews;
+
+    private float purchasingPower = 0.5f; // 0.0 to 1.0
+    private float engagementLevel = 0.5f; // 0.0 to 1.0
+
+    private short daysSinceLastVisit = UNKNOWN_DAYS;
+    private short daysSinceLastInterest = UNKNOWN_DAYS;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private byte ageGroup = (byte) AgeGroup.UNKNOWN.ordinal();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private byte gender = (byte) Gender.UNKNOWN.ordinal();
+
+    private boolean targetAudience;
+    private boolean previousConversion;
+
+    @Setter(AccessLevel.NONE)
+    private long interestMask;
+
+    public AgeGroup getAgeGroup() {
+        return AgeGroup.VALUES[ageGroup];
+    }
+
+    public void setAgeGroup(AgeGroup ageGroup) {
+        this.ageGroup = (byte) ageGroup.ordinal();
+    }
+
+    public Gender getGender() {
+        return Gender.VALUES[gender];
+    }
+
+    public void setGender(Gender gender) {
+        this.gender = (byte) gender.ordinal();
+    }
+
+    public void setDaysSinceLastVisit(int days) {
+        this.daysSinceLastVisit = (short) Math.min(days, Short.MAX_VALUE);
+    }
+
+    public void setDaysSinceLastInterest(int days) {
+        this.daysSinceLastInterest = (short) Math.min(days, Short.MAX_VALUE);
+    }
+
+    // Raw layout access for off-heap stores
+
+    byte getAgeGroupOrdinal() {
+        return ageGroup;
+    }
+
+    void setAgeGroupOrdinal(byte ageGroup) {
+        this.ageGroup = ageGroup;
+    }
+
+    byte getGenderOrdinal() {
+        return gender;
+    }
+
+    void setGenderOrdinal(byte gender) {
+        this.gender = gender;
+    }
+
+    void setInterestMask(long interestMask) {
+        this.interestMask = interestMask;
+    }
+
+    /**
+     * Add an interest; names not registered in the {@link InterestDictionary} are ignored
+     */
+    public void addInterest(String interest) {
+        int id = InterestDictionary.idOf(interest);
+        if (id >= 0) {
+            interestMask |= 1L << id;
+        }
+    }
+
+    public boolean hasInterest(String interest) {
+        int id = InterestDictionary.idOf(interest);
+        return id >= 0 && (interestMask & (1L << id)) != 0;
+    }
+
+    /**
+     * Get interest names; allocates, so the bid path reads {@link #getInterestMask()} instead
+     */
+    public String[] getInterests() {
+        String[] interests = new String[Long.bitCount(interestMask)];
+        long mask = interestMask;
+        for (int i = 0; mask != 0; i++) {
+            interests[i] = InterestDictionary.nameOf(Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+        return interests;
+    }
+
+    /**
+     * Merge loosely typed data into the profile, e.g. from a profile update or event payload.
+     * Known attribute names set the typed fields; unknown names and values that cannot be
+     * converted are skipped, so arbitrary payloads cannot grow the profile.
+     */
+    public void merge(Map<String, Object> data) {
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            Object value = MERGEABLE_ATTRIBUTES.contains(entry.getKey())
+                    ? normalizeAttribute(entry.getKey(), entry.getValue())
+                    : null;
+            if (value == null) {
+                continue;
+            }
+            switch (entry.getKey()) {
+                case "ageGroup":
+                    setAgeGroup(AgeGroup.fromLabel(String.valueOf(value)));
+                    break;
+                case "gender":
+                    setGender(Gender.fromLabel(String.valueOf(value)));
+                    break;
+                case "income":
+                    income = ((Number) value).intValue();
+                    break;
+                case "isTargetAudience":
+                    targetAudience = Boolean.TRUE.equals(value);
+                    break;
+                case "hasPreviousConversion":
+                    previousConversion = Boolean.TRUE.equals(value);
+                    break;
+                case "purchasingPower":
+                    purchasingPower = ((Number) value).floatValue();
+                    break;
+                case "engagementLevel":
+                    engagementLevel = ((Number) value).floatValue();
+                    break;
+                case "daysSinceLastVisit":
+                    setDaysSinceLastVisit(((Number) value).intValue());
+                    break;
+                case "daysSinceLastInterest":
+                    setDaysSinceLastInterest(((Number) value).intValue());
+                    break;
+                case "interests":
+                    for (Object interest : (List<?>) value) {
+                        addInterest((String) interest);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Convert a loosely typed value of a mergeable attribute to the type the profile holds,
+     * e.g. an income sent as a string or interests as a comma-separated list
+     *
+     * @return the converted value, or null if it cannot be converted
+     */
+    public static Object normalizeAttribute(String name, Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (name) {
+            case "ageGroup":
+            case "gender":
+                return String.valueOf(value);
+            case "income":
+            case "daysSinceLastVisit":
+            case "daysSinceLastInterest":
+                Number whole = toNumber(value);
+                return whole != null ? (Object) whole.intValue() : null;
+            case "purchasingPower":
+            case "engagementLevel":
+                Number fraction = toNumber(value);
+                return fraction != null ? (Object) fraction.floatValue() : null;
+            case "isTargetAudience":
+            case "hasPreviousConversion":
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                String flag = String.valueOf(value).trim();
+                return "true".equalsIgnoreCase(flag) ? Boolean.TRUE
+                        : "false".equalsIgnoreCase(flag) ? Boolean.FALSE : null;
+            case "interests":
+                Iterable<?> items = value instanceof Object[] ? Arrays.asList((Object[]) value)
+                        : value instanceof Collection ? (Collection<?>) value
+                        : value instanceof String ? Arrays.asList(((String) value).split(","))
+                        : null;
+                if (items == null) {
+                    return null;
+                }
+                List<String> interests = new ArrayList<>();
+                for (Object item : items) {
+                    if (item != null && !String.valueOf(item).isBlank()) {
+                        interests.add(String.valueOf(item).trim());
+                    }
+                }
+                return interests;
+            default:
+                return value;
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return Double.isFinite(number) ? (Number) value : null;
+        }
+        if (value instanceof String) {
+            try {
+                double number = Double.parseDouble(((String) value).trim());
+                return Double.isFinite(number) ? number : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merge another profile of the same person into this one, e.g. when the identity graph
+     * links two IDs that each had a profile. Activity is combined; known demographics on
+     * this profile take precedence.
+     */
+    public void merge(UserProfile other) {
+        lastClickTimestamp = Math.max(lastClickTimestamp, other.lastClickTimestamp);
+        lastConversionTimestamp = Math.max(lastConversionTimestamp, other.lastConversionTimestamp);
+        lastPageviewTimestamp = Math.max(lastPageviewTimestamp, other.lastPageviewTimestamp);
+        totalClicks += other.totalClicks;
+        totalConversions += other.totalConversions;
+        totalPageviews += other.totalPageviews;
+        previousConversion |= other.previousConversion;
+        targetAudience |= other.targetAudience;
+        interestMask |= other.interestMask;
+        daysSinceLastVisit = mostRecentDays(daysSinceLastVisit, other.daysSinceLastVisit);
+        daysSinceLastInterest = mostRecentDays(daysSinceLastInterest, other.daysSinceLastInterest);
+
+        if (income == 0) {
+            income = other.income;
+        }
+        if (ageGroup == AgeGroup.UNKNOWN.ordinal()) {
+            ageGroup = other.ageGroup;
+        }
+        if (gender == Gender.UNKNOWN.ordinal()) {
+            gender = other.gender;
+        }
+    }
+
+    private static short mostRecentDays(short days, short otherDays) {
+        if (days == UNKNOWN_DAYS) {
+            return otherDays;
+        }
+        return otherDays == UNKNOWN_DAYS ? days : (short) Math.min(days, otherDays);
+    }
+
+    public enum AgeGroup {
+        AGE_18_24("18-24"),
+        AGE_25_34("25-34"),
+        AGE_35_44("35-44"),
+        AGE_45_54("45-54"),
+        AGE_55_64("55-64"),
+        AGE_65_PLUS("65+"),
+        UNKNOWN(null);
+
+        private static final AgeGroup[] VALUES = values();
+
+        private final String label;
+
+        AgeGroup(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static AgeGroup fromLabel(String label) {
+            for (AgeGroup ageGroup : VALUES) {
+                if (ageGroup.label != null && ageGroup.label.equals(label)) {
+                    return ageGroup;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
+
+    public enum Gender {
+        MALE("male"),
+        FEMALE("female"),
+        OTHER("other"),
+        UNKNOWN("unknown");
+
+        private static final Gender[] VALUES = values();
+
+        private final String label;
+
+        Gender(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Gender fromLabel(String label) {
+            for (Gender gender : VALUES) {
+                if (gender.label.equals(label)) {
+                    return gender;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.adopt.repositories;
+
+import com.adopt.models.gametheory.CompetitorProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for persisting competitor profiles, written behind from the in-memory index
+ */
+@Repository
+public interface CompetitorProfileRepository extends JpaRepository<CompetitorProfile, Long> {
+
+    /**
+     * Find the competitor profiles of an ad slot
+     */
+    List<CompetitorProfile> findByAdSlotId(String adSlotId);
+}
@@ -3,6 +3,7 @@ package com.adopt.services;
 import com.adopt.models.AdCampaign;
 import com.adopt.models.BidOptimization;
 import com.adopt.models.gametheory.GameTheoryModel;
+import com.adopt.models.gametheory.MultiAgentLearningModel;
 import com.adopt.repositories.BidOptimizationRepository;
 import com.adopt.repositories.CampaignRepository;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +15,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 /**
  * Service for scheduling automatic bid optimizations
@@ -26,6 +28,10 @@ public class BidOptimizationScheduler {
     private final CampaignRepository campaignRepository;
     private final BidOptimizationRepository bidOptimizationRepository;
     private final BidOptimizationService bidOptimizationService;
+    private final CampaignService campaignService;
+    private final CompetitorAnalysisService competitorAnalysisService;
+    private final MultiAgentLearningModel multiAgentLearningModel;
+    private final ClockService clockService;
     private final Random random = new Random();
 
     /**
@@ -36,7 +42,7 @@ public class BidOptimizationScheduler {
         log.info("Generating bid optimizations...");
         
         // Find active campaigns
-        List<AdCampaign> activeCampaigns = campaignRepository.findRunningCampaigns(LocalDateTime.now());
+        List<AdCampaign> activeCampaigns = campaignRepository.findRunningCampaigns(clockService.now());
         
         for (AdCampaign campaign : activeCampaigns) {
             try {
@@ -74,6 +80,23 @@ public class BidOptimizationScheduler {
         }
     }
     
+    /**
+     * Re-solve the multi-agent equilibrium tables every minute from the latest competitor profiles
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 10000)
+    public void refreshEquilibriumTables() {
+        try {
+            List<AdCampaign> activeCampaigns = campaignService.findAllCampaigns().stream()
+                    .filter(campaign -> campaign.getStatus() == AdCampaign.CampaignStatus.ACTIVE)
+                    .collect(Collectors.toList());
+            
+            multiAgentLearningModel.solveEquilibria(
+                    competitorAnalysisService.getCompetitorProfilesBySlot(), activeCampaigns);
+        } catch (Exception e) {
+            log.error("Error refreshing equilibrium tables: {}", e.getMessage(), e);
+        }
+    }
+    
     /**
      * Determine if a campaign should be optimized
      */
@@ -105,6 +128,7 @@ public class BidOptimizationScheduler {
                 .status(BidOptimization.OptimizationStatus.PENDING)
                 .optimizationReason(getOptimizationReason(currentBid, optimizedBid))
                 .gameTheoryModel(GameTheoryModel.GameTheoryType.NASH_EQUILIBRIUM.name())
+                .createdAt(clockService.now())
                 .build();
         
         bidOptimizationRepository.save(optimization);
@@ -182,7 +206,7 @@ public class BidOptimizationScheduler {
         
         // Update the optimization status
         optimization.setStatus(BidOptimization.OptimizationStatus.APPLIED);
-        optimization.setAppliedAt(LocalDateTime.now());
+        optimization.setAppliedAt(clockService.now());
         bidOptimizationRepository.save(optimization);
         
         log.info("Applied optimization {} to campaign {}", optimization.getId(), campaign.getId());
@@ -5,14 +5,14 @@ import com.adopt.models.BidRequest;
 import com.adopt.models.BidResponse;
 import com.adopt.models.gametheory.CompetitorProfile;
 import com.adopt.models.gametheory.GameTheoryModel;
-import com.adopt.models.gametheory.NashEquilibriumModel;
+import com.adopt.models.gametheory.ImpressionValue;
+import com.adopt.models.prediction.BidLandscape;
+import com.adopt.models.profile.UserProfile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -28,6 +28,10 @@ public class BidOptimizationService {
     private final UserProfileService userProfileService;
     private final CompetitorAnalysisService competitorAnalysisService;
     private final PredictionService predictionService;
+    private final ModelSelectionService modelSelectionService;
+    private final ShadowEvaluationService shadowEvaluationService;
+    private final ClockService clockService;
+    private final BidStageExecutor bidStageExecutor;
 
     /**
      * Generate an optimal bid response for the given bid request and campaign
@@ -45,30 +49,13 @@ public class BidOptimizationService {
             return createNoBidResponse(bidRequest, campaign);
         }
         
-        // Enrich bid request with user profile data
-        enrichBidRequestWithUserProfile(bidRequest);
-        
-        // Get competitor profiles for this auction
-        Map<String, CompetitorProfile> competitorProfiles = 
-                competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign);
-        
-        // Get predictions for this auction
-        Map<String, Object> predictionParams = getPredictions(bidRequest, campaign);
-        
-        // Select game theory model based on campaign and request characteristics
-        GameTheoryModel model = selectGameTheoryModel(bidRequest, campaign);
-        
-        // Calculate the optimal bid price
-        BigDecimal optimalBidPrice = model.calculateOptimalBid(
-                bidRequest, campaign, competitorProfiles, predictionParams);
-        
-        // Calculate utility score for the bid
-        double utilityScore = model.calculateUtility(
-                bidRequest, campaign, optimalBidPrice, predictionParams);
-        
-        // Create and return bid response
-        return createBidResponse(bidRequest, campaign, optimalBidPrice, utilityScore, 
-                model.getType(), predictionParams);
+        long start = System.nanoTime();
+        modelSelectionService.bidStarted();
+        try {
+            return calculateBidResponse(bidRequest, campaign);
+        } finally {
+            modelSelectionService.bidFinished(campaign.getId(), System.nanoTime() - start);
+        }
     }
     
     /**
@@ -79,17 +66,35 @@ public class BidOptimizationService {
         bidResponse.setIsWon(won);
         bidResponse.setIsClicked(clicked);
         bidResponse.setIsConverted(converted);
-        bidResponse.setProcessedAt(LocalDateTime.now());
+        bidResponse.setProcessedAt(clockService.now());
+        
+        // Win notifications may not carry a clearing price; fall back to what we bid
+        if (won && bidResponse.getActualPrice() == null) {
+            bidResponse.setActualPrice(bidResponse.getBidPrice());
+        }
         
         // Update bid status
         bidResponse.setStatus(won ? BidResponse.BidStatus.WON : BidResponse.BidStatus.LOST);
         
-        // Get the game theory model that was used
+        // Learn the slot's bid landscape from the outcome
+        predictionService.recordAuctionOutcome(bidResponse);
+        
+        // Get the game theory model that was used; no-bids were not made by one
+        if (bidResponse.getGameTheoryModelType() == null) {
+            return;
+        }
         GameTheoryModel.GameTheoryType modelType = 
                 GameTheoryModel.GameTheoryType.valueOf(bidResponse.getGameTheoryModelType());
         GameTheoryModel model = gameTheoryModels.get(modelType);
         
         if (model != null) {
+            // Feed the surplus back into the model's measured quality, and score any shadow
+            // bids placed alongside this one; both weigh value and price in bid currency
+            double impressionValue = ImpressionValue.of(bidResponse);
+            modelSelectionService.recordModelOutcome(
+                    modelType, won, calculateSurplus(bidResponse, impressionValue));
+            shadowEvaluationService.recordOutcome(bidResponse, impressionValue);
+            
             // Get competitor profiles
             Map<String, CompetitorProfile> competitorProfiles = 
                     competitorAnalysisService.getCompetitorProfiles(bidResponse.getBidRequest(), bidResponse.getCampaign());
@@ -108,6 +113,56 @@ public class BidOptimizationService {
     
     // Private helper methods
     
+    private BidResponse calculateBidResponse(BidRequest bidRequest, AdCampaign campaign) {
+        // Competitor profiles and the bid landscape do not depend on the user, so start them
+        // first; they overlap the profile and predictions if their measured cost is worth it
+        long deadline = bidStageExecutor.deadline();
+        BidStageExecutor.Stage<Map<String, CompetitorProfile>> competitorStage = bidStageExecutor.fork(
+                "competitors", deadline, () -> competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign));
+        BidStageExecutor.Stage<BidLandscape> landscapeStage = bidStageExecutor.fork(
+                "landscape", deadline, () -> predictionService.predictWinProbabilities(bidRequest, campaign));
+        
+        Map<String, CompetitorProfile> competitorProfiles;
+        Map<String, Object> predictionParams;
+        try {
+            // Enrich bid request with user profile data, then predict for this user
+            bidStageExecutor.run("profile", deadline, () -> enrichBidRequestWithUserProfile(bidRequest));
+            predictionParams = bidStageExecutor.run("predictions", deadline, () -> getPredictions(bidRequest, campaign));
+            
+            predictionParams.put("winProbabilities", landscapeStage.join());
+            competitorProfiles = competitorStage.join();
+        } catch (BidStageExecutor.DeadlineExceededException e) {
+            log.debug("No bid for request {}: {}", bidRequest.getRequestId(), e.getMessage());
+            return createNoBidResponse(bidRequest, campaign);
+        } finally {
+            // No-ops for stages that completed
+            competitorStage.cancel();
+            landscapeStage.cancel();
+        }
+        
+        // Select game theory model based on campaign and current load
+        GameTheoryModel model = selectGameTheoryModel(bidRequest, campaign);
+        
+        // Calculate the optimal bid price
+        long modelStart = System.nanoTime();
+        BigDecimal optimalBidPrice = model.calculateOptimalBid(
+                bidRequest, campaign, competitorProfiles, predictionParams);
+        modelSelectionService.recordModelCost(model.getType(), System.nanoTime() - modelStart);
+        
+        // Calculate utility score for the bid
+        double utilityScore = model.calculateUtility(
+                bidRequest, campaign, optimalBidPrice, predictionParams);
+        
+        // Create bid response
+        BidResponse bidResponse = createBidResponse(bidRequest, campaign, optimalBidPrice, utilityScore, 
+                model.getType(), predictionParams);
+        
+        // Hand a sample of bids to candidate models; this only enqueues work off the bid path
+        shadowEvaluationService.submit(bidRequest, campaign, competitorProfiles, predictionParams, bidResponse);
+        
+        return bidResponse;
+    }
+    
     private boolean shouldBid(BidRequest bidRequest, AdCampaign campaign) {
         // Check if campaign is active
         if (campaign.getStatus() != AdCampaign.CampaignStatus.ACTIVE) {
@@ -137,42 +192,38 @@ public class BidOptimizationService {
         return true;
     }
     
-    private void enrichBidRequestWithUserProfile(BidRequest bidRequest) {
-        // Get user profile data based on cookie ID or device ID
-        Map<String, Object> userProfile = userProfileService.getUserProfile(
-                bidRequest.getCookieId(), bidRequest.getDeviceId());
+    private UserProfile enrichBidRequestWithUserProfile(BidRequest bidRequest) {
+        // Resolve the cookie, device and user-profile IDs to one profile
+        UserProfile userProfile = userProfileService.getUserProfile(
+                bidRequest.getCookieId(), bidRequest.getDeviceId(), bidRequest.getUserProfileIds());
         
         // Attach to bid request
         bidRequest.setUserProfile(userProfile);
+        return userProfile;
     }
     
     private Map<String, Object> getPredictions(BidRequest bidRequest, AdCampaign campaign) {
-        Map<String, Object> predictions = new HashMap<>();
-        
-        // Predict CTR (click-through rate)
-        double predictedCtr = predictionService.predictCtr(bidRequest, campaign);
-        predictions.put("predictedCtr", predictedCtr);
-        
-        // Predict CVR (conversion rate)
-        double predictedCvr = predictionService.predictCvr(bidRequest, campaign);
-        predictions.put("predictedCvr", predictedCvr);
-        
-        // Estimate user value
-        double userValueEstimate = predictionService.estimateUserValue(bidRequest, campaign);
-        predictions.put("userValueEstimate", userValueEstimate);
-        
-        // Predict win probability at different bid levels
-        Map<BigDecimal, Double> winProbabilities = predictionService.predictWinProbabilities(bidRequest, campaign);
-        predictions.put("winProbabilities", winProbabilities);
-        
-        return predictions;
+        // CTR, CVR and user value from one feature extraction; win probabilities at different
+        // bid levels come from the separate landscape stage
+        return predictionService.predict(bidRequest, campaign);
     }
     
     private GameTheoryModel selectGameTheoryModel(BidRequest bidRequest, AdCampaign campaign) {
-        // For now, always use Nash Equilibrium model as default
-        // In a more sophisticated system, we could select different models based on
-        // campaign characteristics, auction type, or other factors
-        return gameTheoryModels.get(GameTheoryModel.GameTheoryType.NASH_EQUILIBRIUM);
+        // The selector degrades to cheaper models under load and recovers with hysteresis
+        GameTheoryModel model = modelSelectionService.selectModel(campaign.getId());
+        return model != null ? model : gameTheoryModels.get(GameTheoryModel.GameTheoryType.NASH_EQUILIBRIUM);
+    }
+    
+    private double calculateSurplus(BidResponse bidResponse, double impressionValue) {
+        if (!Boolean.TRUE.equals(bidResponse.getIsWon())) {
+            return 0.0; // We lost - no value, no cost
+        }
+        
+        // We won - the impression's value minus what we paid
+        BigDecimal paid = bidResponse.getActualPrice() != null 
+                ? bidResponse.getActualPrice() 
+                : bidResponse.getBidPrice();
+        return impressionValue - (paid != null ? paid.doubleValue() : 0.0);
     }
     
     private BidResponse createBidResponse(
@@ -194,7 +245,7 @@ public class BidOptimizationService {
                 .predictedCvr((Double) predictionParams.get("predictedCvr"))
                 .gameTheoryModelType(modelType.name())
                 .utilityScore(utilityScore)
-                .timestamp(LocalDateTime.now())
+                .timestamp(clockService.now())
                 .build();
     }
     
@@ -205,7 +256,7 @@ public class BidOptimizationService {
                 .campaign(campaign)
                 .bidPrice(BigDecimal.ZERO)
                 .status(BidResponse.BidStatus.PENDING) // Will not be sent
-                .timestamp(LocalDateTime.now())
+                .timestamp(clockService.now())
                 .build();
     }
     
@@ -0,0 +1,222 @@
+package com.adopt.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs the stages of a bid under a deadline, overlapping independent ones.
+ *
+ * A forked stage goes to a small worker pool only if its measured cost is above a
+ * threshold; cheaper stages, or any stage while the pool is saturated, run inline on the
+ * bid thread when joined, since handing them off would cost more than it saves. Waiting
+ * past the bid's deadline cancels the stage and fails the bid.
+ */
+@Service
+public class BidStageExecutor {
+
+    private static final double COST_SMOOTHING = 0.05; // Weight of the latest run in a stage's cost average
+
+    @Value("${adopt.bid-optimization.pipeline.threads:4}")
+    private int threads;
+
+    @Value("${adopt.bid-optimization.pipeline.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${adopt.bid-optimization.pipeline.concurrent-threshold-micros:200}")
+    private long concurrentThresholdMicros;
+
+    @Value("${adopt.bid-optimization.pipeline.deadline-millis:50}")
+    private long deadlineMillis;
+
+    private final Map<String, StageStats> stageStats = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor stageExecutor;
+    private long concurrentThresholdNanos;
+    private long deadlineNanos;
+
+    @PostConstruct
+    public void init() {
+        concurrentThresholdNanos = TimeUnit.MICROSECONDS.toNanos(concurrentThresholdMicros);
+        deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        stageExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bid-stage-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    throw new RejectedExecutionException("Bid stage queue full");
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stageExecutor.shutdownNow();
+    }
+
+    /**
+     * Get the deadline for a bid starting now, in {@link System#nanoTime()} terms
+     */
+    public long deadline() {
+        return System.nanoTime() + deadlineNanos;
+    }
+
+    /**
+     * Start a stage that does not depend on the caller's next steps
+     *
+     * @return a handle to join once the result is needed
+     */
+    public <T> Stage<T> fork(String name, long deadline, Supplier<T> task) {
+        StageStats stats = stageStats.computeIfAbsent(name, StageStats::new);
+        if (stats.smoothedCostNanos >= concurrentThresholdNanos) {
+            try {
+                Future<T> future = stageExecutor.submit(() -> stats.run(task));
+                stats.concurrentRuns.increment();
+                return new Stage<>(stats, task, future, deadline);
+            } catch (RejectedExecutionException e) {
+                // Saturated; run it inline rather than queue behind other bids
+            }
+        }
+        return new Stage<>(stats, task, null, deadline);
+    }
+
+    /**
+     * Run a stage inline on the calling thread
+     *
+     * @throws DeadlineExceededException if the deadline has already passed
+     */
+    public <T> T run(String name, long deadline, Supplier<T> task) {
+        StageStats stats = stageStats.computeIfAbsent(name, StageStats::new);
+        return new Stage<>(stats, task, null, deadline).join();
+    }
+
+    /**
+     * Get per-stage cost and concurrency statistics
+     */
+    public Map<String, Object> getStageStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("concurrentThresholdMicros", concurrentThresholdMicros);
+        stats.put("deadlineMillis", deadlineMillis);
+        stats.put("queued", stageExecutor.getQueue().size());
+        for (StageStats stage : stageStats.values()) {
+            Map<String, Object> stageSummary = new HashMap<>();
+            stageSummary.put("smoothedCostMicros", stage.smoothedCostNanos / 1000.0);
+            stageSummary.put("inlineRuns", stage.inlineRuns.sum());
+            stageSummary.put("concurrentRuns", stage.concurrentRuns.sum());
+            stageSummary.put("deadlineMisses", stage.deadlineMisses.sum());
+            stats.put(stage.name, stageSummary);
+        }
+        return stats;
+    }
+
+    /**
+     * A started stage; inline stages run when joined
+     */
+    public static final class Stage<T> {
+        private final StageStats stats;
+        private final Supplier<T> task;
+        private final Future<T> future;
+        private final long deadline;
+
+        private Stage(StageStats stats, Supplier<T> task, Future<T> future, long deadline) {
+            this.stats = stats;
+            this.task = task;
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Wait for the stage's result
+         *
+         * @throws DeadlineExceededException if the deadline passes first; the stage is cancelled
+         */
+        public T join() {
+            long remaining = deadline - System.nanoTime();
+            if (future == null) {
+                if (remaining <= 0) {
+                    stats.deadlineMisses.increment();
+                    throw new DeadlineExceededException(stats.name);
+                }
+                stats.inlineRuns.increment();
+                return stats.run(task);
+            }
+
+            try {
+                return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                stats.deadlineMisses.increment();
+                throw new DeadlineExceededException(stats.name);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new DeadlineExceededException(stats.name);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Bid stage " + stats.name + " failed", e.getCause());
+            }
+        }
+
+        /**
+         * Cancel the stage if it has not finished, e.g. when the bid failed before joining it
+         */
+        public void cancel() {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Thrown when a bid stage does not finish before the bid's deadline
+     */
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException(String stage) {
+            super("Bid deadline exceeded in stage " + stage);
+        }
+    }
+
+    private static final class StageStats {
+        private final String name;
+        private final LongAdder inlineRuns = new LongAdder();
+        private final LongAdder concurrentRuns = new LongAdder();
+        private final LongAdder deadlineMisses = new LongAdder();
+
+        // Racy updates only lose the odd sample
+        private volatile double smoothedCostNanos;
+
+        private StageStats(String name) {
+            this.name = name;
+        }
+
+        private <T> T run(Supplier<T> task) {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                smoothedCostNanos += COST_SMOOTHING * ((System.nanoTime() - start) - smoothedCostNanos);
+            }
+        }
+    }
+}
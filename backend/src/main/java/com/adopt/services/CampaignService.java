@@ -4,10 +4,13 @@ import com.adopt.models.AdCampaign;
 import com.adopt.models.BidRequest;
 import com.adopt.models.BidResponse;
 import com.adopt.models.CampaignMetric;
+import com.adopt.utils.ExpiringCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -18,7 +21,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -30,14 +33,29 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CampaignService {
 
+    private final ClockService clockService;
+    
     // ID generator for new campaigns
     private final AtomicLong campaignIdGenerator = new AtomicLong(3); // Start from 3 since we have 2 sample campaigns
     
     // In-memory storage of campaigns (in a real system, this would be a database)
     private final Map<Long, AdCampaign> campaignCache = new HashMap<>();
     
-    // In-memory storage of bid responses by ID
-    private final Map<String, BidResponse> bidResponseCache = new ConcurrentHashMap<>();
+    @Value("${adopt.bid.responses.max-pending:1000000}")
+    private int maxPendingResponses;
+    
+    @Value("${adopt.bid.responses.ttl-minutes:60}")
+    private long responseTtlMinutes;
+    
+    // Bids awaiting win/loss/click/conversion notifications by response ID; bounded, and
+    // expired once notifications can no longer be expected
+    private ExpiringCache<BidResponse> bidResponseCache;
+    
+    @PostConstruct
+    public void init() {
+        bidResponseCache = new ExpiringCache<>(maxPendingResponses, TimeUnit.MINUTES.toMillis(responseTtlMinutes),
+                clockService::currentTimeMillis);
+    }
     
     /**
      * Find all campaigns
@@ -221,12 +239,23 @@ public class CampaignService {
     }
     
     /**
-     * Save a bid response
+     * Save a bid response so its notifications can find it; no-bids are never notified, so
+     * they are not kept
      */
     public void saveBidResponse(BidResponse bidResponse) {
+        if (bidResponse.getGameTheoryModelType() == null) {
+            return;
+        }
         bidResponseCache.put(bidResponse.getResponseId(), bidResponse);
     }
     
+    /**
+     * Get size, hit rate, eviction and expiry statistics of the pending bid responses
+     */
+    public Map<String, Object> getBidResponseStats() {
+        return bidResponseCache.getStats();
+    }
+    
     /**
      * Update campaign metrics based on auction results
      */
@@ -242,7 +271,7 @@ public class CampaignService {
         }
         
         // Get today's metric record or create a new one
-        LocalDate today = LocalDate.now();
+        LocalDate today = clockService.today();
         CampaignMetric todayMetric = campaign.getMetrics().stream()
                 .filter(metric -> today.equals(metric.getDate()))
                 .findFirst()
@@ -308,7 +337,7 @@ public class CampaignService {
         }
         
         // Check if campaign is within its scheduled time period
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = clockService.now();
         if (campaign.getStartDate() != null && now.isBefore(campaign.getStartDate())) {
             return false;
         }
@@ -0,0 +1,183 @@
+package com.adopt.services;
+
+import com.adopt.utils.SimulatedClock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared coarse clock for the bid pipeline.
+ *
+ * The current time is read from the underlying clock once per tick and cached together
+ * with its date, hour of day and epoch day, so request handling gets the time with a
+ * volatile read instead of timezone arithmetic and allocation on every call. The
+ * underlying clock is the system clock, or a simulated clock for replays and load tests
+ * that run faster than real time.
+ */
+@Slf4j
+@Service
+public class ClockService {
+
+    @Value("${adopt.clock.tick-millis:10}")
+    private long tickMillis;
+
+    @Value("${adopt.clock.simulated.enabled:false}")
+    private boolean simulatedEnabled;
+
+    @Value("${adopt.clock.simulated.start:}")
+    private String simulatedStart;
+
+    @Value("${adopt.clock.simulated.speed:1.0}")
+    private double simulatedSpeed;
+
+    private volatile Clock source = Clock.systemDefaultZone();
+    private volatile Tick tick;
+
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void init() {
+        if (simulatedEnabled) {
+            Instant start = simulatedStart.isEmpty()
+                    ? Instant.now()
+                    : LocalDateTime.parse(simulatedStart).atZone(ZoneId.systemDefault()).toInstant();
+            useSimulatedClock(start, simulatedSpeed);
+        } else {
+            tick();
+        }
+
+        // Ticks run on their own thread so a busy scheduler pool cannot stall the clock
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "clock-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Current time in epoch milliseconds, accurate to one tick
+     */
+    public long currentTimeMillis() {
+        return tick.epochMillis;
+    }
+
+    /**
+     * Current local date and time, accurate to one tick; the same instance is shared by all callers within a tick
+     */
+    public LocalDateTime now() {
+        return tick.dateTime;
+    }
+
+    /**
+     * Current local date
+     */
+    public LocalDate today() {
+        return tick.date;
+    }
+
+    /**
+     * Current local hour of day, 0-23
+     */
+    public int hourOfDay() {
+        return tick.hour;
+    }
+
+    /**
+     * Current local date as days since the epoch
+     */
+    public long epochDay() {
+        return tick.epochDay;
+    }
+
+    /**
+     * Switch to a simulated clock starting at the given instant
+     *
+     * @param speed simulated time per unit of real time; 0 stops the clock between manual advances
+     * @return the simulated clock, which callers can advance by hand
+     */
+    public SimulatedClock useSimulatedClock(Instant start, double speed) {
+        SimulatedClock clock = new SimulatedClock(start, speed, ZoneId.systemDefault());
+        source = clock;
+        tick();
+        log.info("Using simulated clock from {} at {}x real time", start, speed);
+        return clock;
+    }
+
+    /**
+     * Switch back to the system clock
+     */
+    public void useSystemClock() {
+        source = Clock.systemDefaultZone();
+        tick();
+        log.info("Using system clock");
+    }
+
+    /**
+     * Jump the simulated clock ahead
+     *
+     * @throws IllegalStateException if the system clock is in use
+     */
+    public void advance(Duration duration) {
+        Clock clock = source;
+        if (!(clock instanceof SimulatedClock)) {
+            throw new IllegalStateException("Only a simulated clock can be advanced");
+        }
+        ((SimulatedClock) clock).advance(duration);
+        tick();
+    }
+
+    public boolean isSimulated() {
+        return source instanceof SimulatedClock;
+    }
+
+    // Helper methods
+
+    private synchronized void tick() {
+        Clock clock = source;
+        long millis = clock.millis();
+        Tick current = tick;
+        if (current != null && current.epochMillis == millis) {
+            return;
+        }
+
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), clock.getZone());
+        tick = new Tick(millis, dateTime);
+    }
+
+    /**
+     * One reading of the clock with its derived calendar fields
+     */
+    private static final class Tick {
+        private final long epochMillis;
+        private final LocalDateTime dateTime;
+        private final LocalDate date;
+        private final int hour;
+        private final long epochDay;
+
+        private Tick(long epochMillis, LocalDateTime dateTime) {
+            this.epochMillis = epochMillis;
+            this.dateTime = dateTime;
+            this.date = dateTime.toLocalDate();
+            this.hour = dateTime.getHour();
+            this.epochDay = date.toEpochDay();
+        }
+    }
+}
@@ -2,28 +2,219 @@ package com.adopt.services;
 
 import com.adopt.models.AdCampaign;
 import com.adopt.models.BidRequest;
+import com.adopt.models.gametheory.CompetitorIndex;
 import com.adopt.models.gametheory.CompetitorProfile;
+import com.adopt.models.gametheory.CompetitorStats;
+import com.adopt.models.gametheory.CompetitorViewListener;
+import com.adopt.models.gametheory.StrategyClusterer;
+import com.adopt.repositories.CompetitorProfileRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Service for analyzing and tracking competitor behavior in RTB auctions
+ * Service for analyzing and tracking competitor behavior in RTB auctions.
+ *
+ * Competitors are tracked per ad slot in a bounded {@link CompetitorIndex}. Profiles with
+ * new observations are written behind to the database in batches, and cold slots are
+ * evicted; a slot that is not indexed is loaded back asynchronously, and meanwhile bids on
+ * it see the prior profiles of its slot class. A periodic job clusters the observed
+ * competitors by bidding behavior and labels their strategies from the clusters.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CompetitorAnalysisService {
 
-    // In-memory cache of competitor profiles
-    private final Map<String, CompetitorProfile> competitorProfileCache = new ConcurrentHashMap<>();
+    private final ClockService clockService;
+    private final CompetitorProfileRepository competitorProfileRepository;
+    
+    // Models keeping state derived from the published views, e.g. precomputed tables
+    private final List<CompetitorViewListener> viewListeners;
+    
+    // Prior hour-of-day bid factors of the time-sensitive competitor: moderate in the morning,
+    // highest in the afternoon, lower in the evening and lowest at night
+    private static final double[] TIME_SENSITIVE_HOURLY_FACTORS = {
+            0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7,   // 0-8 night
+            1.0, 1.0, 1.0,                                  // 9-11 morning
+            0.7,                                            // 12
+            1.2, 1.2, 1.2, 1.2,                             // 13-16 afternoon
+            0.7,                                            // 17
+            0.9, 0.9, 0.9, 0.9,                             // 18-21 evening
+            0.7, 0.7                                        // 22-23 night
+    };
+    
+    @Value("${adopt.competitor.stats.stripes:4}")
+    private int statsStripes;
+    
+    @Value("${adopt.competitor.index.max-slots:100000}")
+    private int maxSlots;
+    
+    @Value("${adopt.competitor.index.expire-after-access-minutes:60}")
+    private long expireAfterAccessMinutes;
+    
+    @Value("${adopt.competitor.index.max-prior-classes:1024}")
+    private int maxPriorClasses;
+    
+    @Value("${adopt.competitor.index.load-threads:2}")
+    private int loadThreads;
+    
+    @Value("${adopt.competitor.index.load-queue-capacity:10000}")
+    private int loadQueueCapacity;
+    
+    @Value("${adopt.competitor.index.write-batch-size:500}")
+    private int writeBatchSize;
+    
+    @Value("${adopt.competitor.stats.materialize-interval-millis:1000}")
+    private long materializeIntervalMillis;
+    
+    @Value("${adopt.competitor.clustering.enabled:true}")
+    private boolean clusteringEnabled;
+    
+    @Value("${adopt.competitor.clustering.interval-minutes:60}")
+    private long clusteringIntervalMinutes;
+    
+    @Value("${adopt.competitor.clustering.clusters:4}")
+    private int clusterCount;
+    
+    @Value("${adopt.competitor.clustering.max-iterations:50}")
+    private int clusteringMaxIterations;
+    
+    @Value("${adopt.competitor.clustering.min-observations:30}")
+    private int clusteringMinObservations;
+    
+    // Competitor profiles and statistics by slot; views are materialized from the statistics
+    private CompetitorIndex competitorIndex;
+    
+    // Prior profiles by slot class (the floor price), served to bids on slots not indexed yet
+    private final Map<BigDecimal, Map<String, CompetitorProfile>> slotClassPriors = new ConcurrentHashMap<>();
+    
+    // Slots evicted from the index, handed off by the eviction listener on the thread that
+    // evicted them and folded in by the next materialization or write
+    private final Queue<CompetitorIndex.Slot> evictedSlots = new ConcurrentLinkedQueue<>();
+    
+    // Profiles not indexed waiting to be written, evicted or relabeled by clustering, by competitor ID
+    private final Map<String, CompetitorProfile> pendingWrites = new ConcurrentHashMap<>();
+    
+    // Slots with a load queued or running
+    private final Set<String> loadingSlots = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor slotLoader;
+    
+    // Materialization runs on its own thread, so a large index does not hold up the other
+    // scheduled tasks
+    private ScheduledExecutorService materializeExecutor;
+    
+    // Clustering runs on its own thread, and its parallel passes on the fork-join pool
+    private ScheduledExecutorService clusteringExecutor;
+    
+    // Hourly bid factors of each strategy's largest cluster, from the last clustering run
+    private volatile Map<String, double[]> strategyPriors = Collections.emptyMap();
+    private volatile Map<String, Object> lastClustering = Collections.emptyMap();
+    
+    // Clusters of the last run; competitors loaded from the database are assigned to them then
+    private volatile StrategyClusterer.Result strategyClusters;
+    
+    // Hour of day the views were last published for; every slot is republished when it changes
+    private volatile int publishedHour = -1;
+    
+    private volatile int lastMaterializedProfiles;
+    private volatile long lastMaterializeMicros;
+    private volatile long lastWriteMicros;
+    
+    private final LongAdder priorServed = new LongAdder();
+    private final LongAdder loadedSlots = new LongAdder();
+    private final LongAdder reloadedSlots = new LongAdder();
+    private final LongAdder shedLoads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder unindexedObservations = new LongAdder();
+    private final LongAdder writtenProfiles = new LongAdder();
+    private final LongAdder writtenBatches = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        competitorIndex = new CompetitorIndex(maxSlots, TimeUnit.MINUTES.toMillis(expireAfterAccessMinutes),
+                clockService::currentTimeMillis, this::onSlotEvicted);
+        
+        // Loads are discarded when the queue is full; the slot is retried on its next bid
+        slotLoader = new ThreadPoolExecutor(loadThreads, loadThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loadQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "competitor-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    throw new RejectedExecutionException("Competitor load queue full");
+                });
+        
+        materializeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "competitor-materializer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        materializeExecutor.scheduleWithFixedDelay(() -> {
+            // An exception would cancel the schedule, so it is logged and the next run goes ahead
+            try {
+                materializeProfiles();
+            } catch (RuntimeException e) {
+                log.warn("Error materializing competitor profiles: {}", e.getMessage());
+            }
+        }, materializeIntervalMillis, materializeIntervalMillis, TimeUnit.MILLISECONDS);
+        
+        if (clusteringEnabled) {
+            clusteringExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "competitor-clustering");
+                thread.setDaemon(true);
+                return thread;
+            });
+            clusteringExecutor.scheduleWithFixedDelay(this::clusterStrategies,
+                    clusteringIntervalMinutes, clusteringIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        slotLoader.shutdownNow();
+        if (clusteringExecutor != null) {
+            clusteringExecutor.shutdownNow();
+        }
+        materializeExecutor.shutdownNow();
+        try {
+            materializeExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Write what is not persisted yet before the index goes away
+        materializeProfiles();
+        writeProfiles();
+    }
     
     /**
      * Get competitor profiles relevant to the current bid request and campaign
@@ -35,31 +226,24 @@ public class CompetitorAnalysisService {
     public Map<String, CompetitorProfile> getCompetitorProfiles(BidRequest bidRequest, AdCampaign campaign) {
         Map<String, CompetitorProfile> relevantProfiles = new HashMap<>();
         
-        // In a real implementation, we would query a database for known competitors
-        // who typically bid on similar ad slots, audiences, etc.
-        
-        // For demonstration, we'll create some synthetic competitor profiles
-        // representing different bidding behaviors
-        
-        // Aggressive competitor who bids high
-        String aggressiveId = getCompetitorKey("aggressive", bidRequest.getAdSlotId());
-        CompetitorProfile aggressiveCompetitor = competitorProfileCache.computeIfAbsent(
-                aggressiveId, k -> createAggressiveCompetitor(bidRequest));
-        relevantProfiles.put("aggressive", aggressiveCompetitor);
+        // Profiles carry precomputed views per hour of day, so a bid only indexes them
+        int hour = clockService.hourOfDay();
         
-        // Conservative competitor who bids low but consistently
-        String conservativeId = getCompetitorKey("conservative", bidRequest.getAdSlotId());
-        CompetitorProfile conservativeCompetitor = competitorProfileCache.computeIfAbsent(
-                conservativeId, k -> createConservativeCompetitor(bidRequest));
-        relevantProfiles.put("conservative", conservativeCompetitor);
-        
-        // Time-sensitive competitor who bids differently at different times of day
-        String timeSensitiveId = getCompetitorKey("timeSensitive", bidRequest.getAdSlotId());
-        CompetitorProfile timeSensitiveCompetitor = competitorProfileCache.computeIfAbsent(
-                timeSensitiveId, k -> createTimeSensitiveCompetitor(bidRequest));
-        updateTimeSensitiveCompetitor(timeSensitiveCompetitor);
-        relevantProfiles.put("timeSensitive", timeSensitiveCompetitor);
+        // Known competitors of the slot; a slot not indexed is loaded in the background, and
+        // this bid uses the prior competitors of its slot class instead
+        CompetitorIndex.Slot slot = competitorIndex.get(bidRequest.getAdSlotId());
+        Map<String, CompetitorProfile> profiles;
+        if (slot != null) {
+            profiles = slot.getProfiles();
+        } else {
+            profiles = getSlotClassPrior(bidRequest.getAdSlotFloorPrice());
+            priorServed.increment();
+            requestLoad(bidRequest.getAdSlotId(), bidRequest.getAdSlotFloorPrice());
+        }
         
+        for (Map.Entry<String, CompetitorProfile> entry : profiles.entrySet()) {
+            relevantProfiles.put(entry.getKey(), entry.getValue().atHour(hour));
+        }
         return relevantProfiles;
     }
     
@@ -79,95 +263,517 @@ public class CompetitorAnalysisService {
         // based on observed auction outcomes. For instance, in a second-price auction,
         // the price we paid is the highest competitor bid + minimum increment.
         
-        for (CompetitorProfile profile : competitorProfiles.values()) {
-            // For demonstration, we'll just add this observation to the profile
-            // In reality, we'd do more sophisticated updating of our behavioral models
-            BigDecimal estimatedBid = calculateEstimatedBid(profile, actualPrice);
-            profile.addBidObservation(estimatedBid, bidRequest.getAdSlotId(), false);
+        // Observations go to the concurrent statistics; the profiles bids read are
+        // refreshed from them by materializeProfiles
+        long nowMillis = clockService.currentTimeMillis();
+        CompetitorIndex.Slot slot = competitorIndex.get(bidRequest.getAdSlotId());
+        if (slot == null) {
+            // Still loading, or evicted since the bid; the slot-class prior is not learned from
+            unindexedObservations.add(competitorProfiles.size());
+            return;
+        }
+        
+        double price = actualPrice.doubleValue();
+        for (Map.Entry<String, CompetitorProfile> entry : competitorProfiles.entrySet()) {
+            String competitorType = entry.getKey();
+            CompetitorStats stats = slot.getStats().get(competitorType);
+            if (stats == null) {
+                CompetitorProfile seed = slot.getProfiles().getOrDefault(competitorType, entry.getValue());
+                stats = slot.getStats().computeIfAbsent(competitorType, k -> new CompetitorStats(seed, statsStripes));
+            }
+            stats.record(calculateEstimatedBid(entry.getValue(), price), false, nowMillis);
+        }
+    }
+    
+    /**
+     * Refresh the indexed competitor profiles from the statistics observed since the last run,
+     * and from the recent-bid windows when a minute has closed, and publish the changed views
+     */
+    public void materializeProfiles() {
+        long start = System.nanoTime();
+        LocalDateTime now = clockService.now();
+        long nowMillis = clockService.currentTimeMillis();
+        int hour = clockService.hourOfDay();
+        
+        // Idle slots are otherwise only expired by writes to the index
+        competitorIndex.cleanUp();
+        drainEvictedSlots(now, nowMillis);
+        boolean newHour = hour != publishedHour;
+        publishedHour = hour;
+        int materialized = 0;
+        for (CompetitorIndex.Slot slot : competitorIndex.slots()) {
+            boolean changed = newHour;
+            for (Map.Entry<String, CompetitorStats> entry : slot.getStats().entrySet()) {
+                CompetitorStats stats = entry.getValue();
+                boolean rolled = stats.roll(nowMillis, hour);
+                boolean observed = stats.isDirty();
+                if (observed || rolled) {
+                    // Replace rather than update the view, so bids never see a half-written profile
+                    slot.getProfiles().computeIfPresent(entry.getKey(), (key, view) -> stats.materialize(view, now, nowMillis));
+                    materialized++;
+                    changed = true;
+                }
+                if (observed) {
+                    slot.markDirty();
+                }
+            }
+            if (changed) {
+                publishViews(slot, hour);
+            }
         }
+        lastMaterializedProfiles = materialized;
+        lastMaterializeMicros = (System.nanoTime() - start) / 1000;
+    }
+    
+    /**
+     * Write the profiles of slots with new observations, and of evicted slots, to the database
+     * in batches
+     */
+    @Scheduled(fixedDelayString = "${adopt.competitor.index.write-behind-millis:5000}",
+            initialDelayString = "${adopt.competitor.index.write-behind-millis:5000}")
+    public void writeProfiles() {
+        long start = System.nanoTime();
+        drainEvictedSlots(clockService.now(), clockService.currentTimeMillis());
+        
+        // Evicted slots first, so a slot reloaded and observed since overwrites them
+        Map<String, PendingWrite> writes = new LinkedHashMap<>();
+        for (String competitorId : new ArrayList<>(pendingWrites.keySet())) {
+            CompetitorProfile profile = pendingWrites.remove(competitorId);
+            if (profile != null) {
+                writes.put(competitorId, new PendingWrite(null, null, profile));
+            }
+        }
+        for (CompetitorIndex.Slot slot : competitorIndex.slots()) {
+            if (slot.clearDirty()) {
+                for (Map.Entry<String, CompetitorProfile> entry : slot.getProfiles().entrySet()) {
+                    CompetitorProfile profile = entry.getValue();
+                    writes.put(profile.getCompetitorId(), new PendingWrite(slot, entry.getKey(), profile));
+                }
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+        
+        List<PendingWrite> batch = new ArrayList<>(writeBatchSize);
+        for (PendingWrite write : writes.values()) {
+            batch.add(write);
+            if (batch.size() >= writeBatchSize) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        lastWriteMicros = (System.nanoTime() - start) / 1000;
+    }
+    
+    /**
+     * Cluster the indexed competitors with enough observations by bidding behavior, label
+     * each with its cluster's strategy, and keep each strategy's hourly curve as the prior
+     * for competitors reloaded with that label. Competitors only in the database are not read
+     * here; they are assigned to the nearest cluster when their slot is next loaded. Changed
+     * labels are published and written behind.
+     */
+    public void clusterStrategies() {
+        try {
+            long start = System.nanoTime();
+            
+            // Snapshot the competitors into a primitive feature matrix
+            List<CompetitorIndex.Slot> rowSlots = new ArrayList<>();
+            List<String> rowTypes = new ArrayList<>();
+            List<CompetitorProfile> rowProfiles = new ArrayList<>();
+            for (CompetitorIndex.Slot slot : competitorIndex.slots()) {
+                for (Map.Entry<String, CompetitorProfile> entry : slot.getProfiles().entrySet()) {
+                    CompetitorProfile profile = entry.getValue();
+                    if (profile.getBidCount() != null && profile.getBidCount() >= clusteringMinObservations) {
+                        rowSlots.add(slot);
+                        rowTypes.add(entry.getKey());
+                        rowProfiles.add(profile);
+                    }
+                }
+            }
+            int rows = rowProfiles.size();
+            if (rows < clusterCount) {
+                return;
+            }
+            double[] features = new double[rows * StrategyClusterer.FEATURES];
+            for (int row = 0; row < rows; row++) {
+                StrategyClusterer.features(rowProfiles.get(row), features, row);
+            }
+            long extracted = System.nanoTime();
+            
+            StrategyClusterer.Result result = new StrategyClusterer(clusterCount, clusteringMaxIterations,
+                    ForkJoinPool.commonPool()).cluster(features, rows);
+            long clustered = System.nanoTime();
+            
+            // Replace relabeled views with copies rather than updating them, so bids and the
+            // write-behind never see a view change under them; the next materialization
+            // carries the label forward
+            int relabeled = 0;
+            Set<CompetitorIndex.Slot> relabeledSlots = new HashSet<>();
+            for (int row = 0; row < rows; row++) {
+                String label = result.label(result.clusterOf(row));
+                CompetitorIndex.Slot slot = rowSlots.get(row);
+                CompetitorProfile view = slot.getProfiles().get(rowTypes.get(row));
+                if (view != null && !label.equals(view.getCompetitorStrategy())) {
+                    slot.getProfiles().computeIfPresent(rowTypes.get(row), (key, current) -> current.withStrategy(label));
+                    slot.markDirty();
+                    relabeledSlots.add(slot);
+                    relabeled++;
+                }
+            }
+            int hour = clockService.hourOfDay();
+            for (CompetitorIndex.Slot slot : relabeledSlots) {
+                publishViews(slot, hour);
+            }
+            
+            Map<String, double[]> priors = new HashMap<>();
+            Map<String, Integer> priorSizes = new HashMap<>();
+            List<Map<String, Object>> clusters = new ArrayList<>();
+            for (int c = 0; c < result.clusterCount(); c++) {
+                String label = result.label(c);
+                if (result.size(c) > priorSizes.getOrDefault(label, 0)) {
+                    priors.put(label, result.hourlyFactors(c));
+                    priorSizes.put(label, result.size(c));
+                }
+                Map<String, Object> cluster = new HashMap<>();
+                cluster.put("label", label);
+                cluster.put("size", result.size(c));
+                cluster.put("level", result.centroid(c, StrategyClusterer.LEVEL));
+                cluster.put("winRate", result.centroid(c, StrategyClusterer.WIN_RATE));
+                clusters.add(cluster);
+            }
+            strategyPriors = priors;
+            strategyClusters = result;
+            
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("profiles", rows);
+            summary.put("relabeled", relabeled);
+            summary.put("iterations", result.getIterations());
+            summary.put("cost", result.getCost());
+            summary.put("clusters", clusters);
+            summary.put("extractMillis", (extracted - start) / 1_000_000);
+            summary.put("clusterMillis", (clustered - extracted) / 1_000_000);
+            summary.put("totalMillis", (System.nanoTime() - start) / 1_000_000);
+            lastClustering = summary;
+            log.info("Clustered {} competitors in {} ms ({} iterations), {} relabeled",
+                    rows, summary.get("totalMillis"), result.getIterations(), relabeled);
+        } catch (RuntimeException e) {
+            log.error("Error clustering competitor strategies: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Get counts of tracked slots, competitors and observations, the cost of the last
+     * materialization, and index, load, write-behind and clustering statistics
+     */
+    public Map<String, Object> getCompetitorStats() {
+        long observations = 0;
+        int observedCompetitors = 0;
+        int profiles = 0;
+        for (CompetitorIndex.Slot slot : competitorIndex.slots()) {
+            profiles += slot.getProfiles().size();
+            for (CompetitorStats stats : slot.getStats().values()) {
+                observations += stats.getObservations();
+                observedCompetitors++;
+            }
+        }
+        
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("profiles", profiles);
+        summary.put("observedCompetitors", observedCompetitors);
+        summary.put("observations", observations);
+        summary.put("statsStripes", statsStripes);
+        summary.put("lastMaterializedProfiles", lastMaterializedProfiles);
+        summary.put("lastMaterializeMicros", lastMaterializeMicros);
+        summary.put("index", competitorIndex.getStats());
+        summary.put("slotClassPriors", slotClassPriors.size());
+        summary.put("priorServed", priorServed.sum());
+        summary.put("loadingSlots", loadingSlots.size());
+        summary.put("loadedSlots", loadedSlots.sum());
+        summary.put("reloadedSlots", reloadedSlots.sum());
+        summary.put("shedLoads", shedLoads.sum());
+        summary.put("loadFailures", loadFailures.sum());
+        summary.put("unindexedObservations", unindexedObservations.sum());
+        summary.put("pendingWrites", pendingWrites.size());
+        summary.put("pendingEvictedSlots", evictedSlots.size());
+        summary.put("writtenProfiles", writtenProfiles.sum());
+        summary.put("writtenBatches", writtenBatches.sum());
+        summary.put("writeFailures", writeFailures.sum());
+        summary.put("lastWriteMicros", lastWriteMicros);
+        summary.put("lastClustering", lastClustering);
+        return summary;
+    }
+    
+    /**
+     * Get all indexed competitor profiles grouped by ad slot
+     * 
+     * @return map of ad slot ID to the competitor profiles for that slot, identified by ID
+     */
+    public Map<String, Map<String, CompetitorProfile>> getCompetitorProfilesBySlot() {
+        Map<String, Map<String, CompetitorProfile>> profilesBySlot = new HashMap<>();
+        for (CompetitorIndex.Slot slot : competitorIndex.slots()) {
+            profilesBySlot.put(slot.getAdSlotId(), new HashMap<>(slot.getProfiles()));
+        }
+        return profilesBySlot;
     }
     
     // Helper methods
     
-    private String getCompetitorKey(String competitorType, String adSlotId) {
-        return competitorType + "_" + adSlotId;
+    private Map<String, CompetitorProfile> getSlotClassPrior(BigDecimal floorPrice) {
+        Map<String, CompetitorProfile> prior = slotClassPriors.get(floorPrice);
+        if (prior != null) {
+            return prior;
+        }
+        prior = createCompetitors("class_" + floorPrice.toPlainString(), floorPrice);
+        if (slotClassPriors.size() < maxPriorClasses) {
+            Map<String, CompetitorProfile> existing = slotClassPriors.putIfAbsent(floorPrice, prior);
+            return existing != null ? existing : prior;
+        }
+        return prior;
+    }
+    
+    private double[] getStrategyPrior(String strategy) {
+        double[] prior = strategyPriors.get(strategy);
+        if (prior != null) {
+            return prior;
+        }
+        return StrategyClusterer.TIME_SENSITIVE.equals(strategy) ? TIME_SENSITIVE_HOURLY_FACTORS : null;
+    }
+    
+    private void requestLoad(String adSlotId, BigDecimal floorPrice) {
+        if (!loadingSlots.add(adSlotId)) {
+            return;
+        }
+        try {
+            slotLoader.execute(() -> loadSlot(adSlotId, floorPrice));
+        } catch (RejectedExecutionException e) {
+            loadingSlots.remove(adSlotId);
+            shedLoads.increment();
+        }
+    }
+    
+    private void loadSlot(String adSlotId, BigDecimal floorPrice) {
+        try {
+            CompetitorIndex.Slot slot = new CompetitorIndex.Slot(adSlotId);
+            
+            // Profiles evicted but not written yet are newer than the stored ones
+            List<CompetitorProfile> stored = competitorProfileRepository.findByAdSlotId(adSlotId);
+            for (CompetitorProfile profile : stored) {
+                CompetitorProfile pending = pendingWrites.get(profile.getCompetitorId());
+                slot.getProfiles().put(competitorType(profile.getCompetitorId()), pending != null ? pending : profile);
+            }
+            for (Map.Entry<String, CompetitorProfile> entry : createCompetitors(adSlotId, floorPrice).entrySet()) {
+                CompetitorProfile pending = pendingWrites.get(entry.getValue().getCompetitorId());
+                slot.getProfiles().putIfAbsent(entry.getKey(), pending != null ? pending : entry.getValue());
+            }
+            
+            // Competitors clustered while out of the index take the label of their nearest
+            // cluster now; their hourly curves are not persisted, so only the other features count
+            StrategyClusterer.Result clusters = strategyClusters;
+            if (clusters != null) {
+                double[] features = new double[StrategyClusterer.FEATURES];
+                for (Map.Entry<String, CompetitorProfile> entry : slot.getProfiles().entrySet()) {
+                    CompetitorProfile profile = entry.getValue();
+                    if (profile.getBidCount() == null || profile.getBidCount() < clusteringMinObservations) {
+                        continue;
+                    }
+                    StrategyClusterer.features(profile, features, 0);
+                    String label = clusters.label(clusters.assign(features, 0, StrategyClusterer.CURVE));
+                    if (!label.equals(profile.getCompetitorStrategy())) {
+                        entry.setValue(profile.withStrategy(label));
+                        slot.markDirty();
+                    }
+                }
+            }
+            
+            // The hourly curve is not persisted; a reloaded competitor starts from its strategy's prior again
+            for (Map.Entry<String, CompetitorProfile> entry : slot.getProfiles().entrySet()) {
+                CompetitorProfile profile = entry.getValue();
+                double[] prior = getStrategyPrior(profile.getCompetitorStrategy());
+                if (prior != null && !profile.hasHourlyCurve()) {
+                    entry.setValue(profile.withHourlyFactors(prior));
+                }
+            }
+            
+            CompetitorIndex.Slot indexed = competitorIndex.putIfAbsent(slot);
+            publishViews(indexed, clockService.hourOfDay());
+            loadedSlots.increment();
+            if (!stored.isEmpty()) {
+                reloadedSlots.increment();
+            }
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            log.warn("Error loading competitors of slot {}: {}", adSlotId, e.getMessage());
+        } finally {
+            loadingSlots.remove(adSlotId);
+        }
+    }
+    
+    private void onSlotEvicted(CompetitorIndex.Slot slot) {
+        // Called on whichever bid or load thread triggered the removal, so the slot is only queued here
+        evictedSlots.add(slot);
+    }
+    
+    private void drainEvictedSlots(LocalDateTime now, long nowMillis) {
+        CompetitorIndex.Slot slot;
+        while ((slot = evictedSlots.poll()) != null) {
+            // Observations since the last materialization would be lost with the slot, so fold them in now
+            boolean dirty = slot.clearDirty();
+            for (Map.Entry<String, CompetitorStats> entry : slot.getStats().entrySet()) {
+                CompetitorStats stats = entry.getValue();
+                if (stats.isDirty()) {
+                    slot.getProfiles().computeIfPresent(entry.getKey(), (key, view) -> stats.materialize(view, now, nowMillis));
+                    dirty = true;
+                }
+            }
+            if (dirty) {
+                for (CompetitorProfile profile : slot.getProfiles().values()) {
+                    pendingWrites.put(profile.getCompetitorId(), profile);
+                }
+            }
+            for (CompetitorViewListener listener : viewListeners) {
+                listener.onSlotEvicted(slot.getAdSlotId());
+            }
+        }
+    }
+    
+    private void publishViews(CompetitorIndex.Slot slot, int hour) {
+        if (viewListeners.isEmpty()) {
+            return;
+        }
+        Map<String, CompetitorProfile> views = new HashMap<>();
+        for (Map.Entry<String, CompetitorProfile> entry : slot.getProfiles().entrySet()) {
+            views.put(entry.getKey(), entry.getValue().atHour(hour));
+        }
+        for (CompetitorViewListener listener : viewListeners) {
+            try {
+                listener.onProfilesPublished(slot.getAdSlotId(), views);
+            } catch (RuntimeException e) {
+                log.warn("Error publishing competitor views of slot {}: {}", slot.getAdSlotId(), e.getMessage());
+            }
+        }
+    }
+    
+    private void writeBatch(List<PendingWrite> batch) {
+        List<CompetitorProfile> profiles = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            profiles.add(write.profile);
+        }
+        
+        try {
+            List<CompetitorProfile> saved = competitorProfileRepository.saveAll(profiles);
+            // Carry generated IDs to the live views, so the next write updates instead of inserting
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite write = batch.get(i);
+                Long id = saved.get(i).getId();
+                if (write.slot != null && id != null) {
+                    write.slot.getProfiles().computeIfPresent(write.competitorType, (key, view) -> {
+                        if (view.getId() == null) {
+                            view.setId(id);
+                        }
+                        return view;
+                    });
+                }
+            }
+            writtenProfiles.add(batch.size());
+            writtenBatches.increment();
+        } catch (RuntimeException e) {
+            // Retried with the next write, unless a newer profile is queued by then
+            writeFailures.increment();
+            for (PendingWrite write : batch) {
+                pendingWrites.putIfAbsent(write.profile.getCompetitorId(), write.profile);
+            }
+            log.warn("Error writing {} competitor profiles: {}", batch.size(), e.getMessage());
+        }
+    }
+    
+    private static String competitorType(String competitorId) {
+        // Competitor IDs are "<competitorType>_<adSlotId>"
+        return competitorId.substring(0, competitorId.indexOf('_'));
+    }
+    
+    private Map<String, CompetitorProfile> createCompetitors(String adSlotId, BigDecimal floorPrice) {
+        // For demonstration, synthetic competitors representing different bidding behaviors
+        Map<String, CompetitorProfile> competitors = new HashMap<>();
+        competitors.put("aggressive", createAggressiveCompetitor(adSlotId, floorPrice));
+        competitors.put("conservative", createConservativeCompetitor(adSlotId, floorPrice));
+        competitors.put("timeSensitive", createTimeSensitiveCompetitor(adSlotId, floorPrice));
+        return competitors;
     }
     
-    private CompetitorProfile createAggressiveCompetitor(BidRequest bidRequest) {
-        BigDecimal estimatedMax = bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(2.5));
+    private CompetitorProfile createAggressiveCompetitor(String adSlotId, BigDecimal floorPrice) {
+        BigDecimal estimatedMax = floorPrice.multiply(BigDecimal.valueOf(2.5));
         
         return CompetitorProfile.builder()
-                .competitorId("aggressive_" + bidRequest.getAdSlotId())
+                .competitorId("aggressive_" + adSlotId)
+                .adSlotId(adSlotId)
                 .competitorName("Aggressive Bidder")
-                .averageBidPrice(bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(2.0)))
-                .minBidPrice(bidRequest.getAdSlotFloorPrice())
+                .averageBidPrice(floorPrice.multiply(BigDecimal.valueOf(2.0)))
+                .minBidPrice(floorPrice)
                 .maxBidPrice(estimatedMax)
                 .competitorStrategy("aggressive")
                 .bidCount(10) // Start with some synthetic observations
-                .lastUpdated(LocalDateTime.now())
+                .lastUpdated(clockService.now())
                 .build();
     }
     
-    private CompetitorProfile createConservativeCompetitor(BidRequest bidRequest) {
-        BigDecimal estimatedMax = bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(1.3));
+    private CompetitorProfile createConservativeCompetitor(String adSlotId, BigDecimal floorPrice) {
+        BigDecimal estimatedMax = floorPrice.multiply(BigDecimal.valueOf(1.3));
         
         return CompetitorProfile.builder()
-                .competitorId("conservative_" + bidRequest.getAdSlotId())
+                .competitorId("conservative_" + adSlotId)
+                .adSlotId(adSlotId)
                 .competitorName("Conservative Bidder")
-                .averageBidPrice(bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(1.1)))
-                .minBidPrice(bidRequest.getAdSlotFloorPrice())
+                .averageBidPrice(floorPrice.multiply(BigDecimal.valueOf(1.1)))
+                .minBidPrice(floorPrice)
                 .maxBidPrice(estimatedMax)
                 .competitorStrategy("conservative")
                 .bidCount(10) // Start with some synthetic observations
-                .lastUpdated(LocalDateTime.now())
+                .lastUpdated(clockService.now())
                 .build();
     }
     
-    private CompetitorProfile createTimeSensitiveCompetitor(BidRequest bidRequest) {
-        BigDecimal estimatedMax = bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(2.0));
+    private CompetitorProfile createTimeSensitiveCompetitor(String adSlotId, BigDecimal floorPrice) {
+        BigDecimal estimatedMax = floorPrice.multiply(BigDecimal.valueOf(2.0));
         
         return CompetitorProfile.builder()
-                .competitorId("timeSensitive_" + bidRequest.getAdSlotId())
+                .competitorId("timeSensitive_" + adSlotId)
+                .adSlotId(adSlotId)
                 .competitorName("Time Sensitive Bidder")
-                .averageBidPrice(bidRequest.getAdSlotFloorPrice().multiply(BigDecimal.valueOf(1.5)))
-                .minBidPrice(bidRequest.getAdSlotFloorPrice())
+                .averageBidPrice(floorPrice.multiply(BigDecimal.valueOf(1.5)))
+                .minBidPrice(floorPrice)
                 .maxBidPrice(estimatedMax)
                 .competitorStrategy("time_sensitive")
                 .notes("Active during hours: 9-12,13-17,18-22") // Active during these hours
                 .bidCount(10) // Start with some synthetic observations
-                .lastUpdated(LocalDateTime.now())
-                .build();
+                .lastUpdated(clockService.now())
+                .build()
+                .withHourlyFactors(TIME_SENSITIVE_HOURLY_FACTORS);
     }
     
-    private void updateTimeSensitiveCompetitor(CompetitorProfile competitor) {
-        // Adjust the bid prices based on time of day
-        // Morning: moderate bids
-        // Afternoon: highest bids
-        // Evening: lower bids
-        
-        int hour = LocalTime.now().getHour();
-        BigDecimal baseAverage = competitor.getAverageBidPrice();
-        
-        if (hour >= 9 && hour < 12) {
-            // Morning - moderate bids
-            competitor.setAverageBidPrice(baseAverage);
-        } else if (hour >= 13 && hour < 17) {
-            // Afternoon - highest bids
-            competitor.setAverageBidPrice(baseAverage.multiply(BigDecimal.valueOf(1.2)));
-        } else if (hour >= 18 && hour < 22) {
-            // Evening - lower bids
-            competitor.setAverageBidPrice(baseAverage.multiply(BigDecimal.valueOf(0.9)));
-        } else {
-            // Night - lowest bids
-            competitor.setAverageBidPrice(baseAverage.multiply(BigDecimal.valueOf(0.7)));
-        }
-    }
-    
-    private BigDecimal calculateEstimatedBid(CompetitorProfile profile, BigDecimal actualPrice) {
+    private double calculateEstimatedBid(CompetitorProfile profile, double actualPrice) {
         // In a second-price auction, the actual price is close to the second-highest bid
         // So we can estimate that the highest competitor bid was slightly below our bid
         
         // For demonstration, we'll assume our bid was 10% higher than the highest competitor
-        return actualPrice.multiply(BigDecimal.valueOf(0.9));
+        return actualPrice * 0.9;
+    }
+    
+    /**
+     * A profile to write, with the slot and type of its live view if it is still indexed
+     */
+    private static final class PendingWrite {
+        private final CompetitorIndex.Slot slot;
+        private final String competitorType;
+        private final CompetitorProfile profile;
+        
+        private PendingWrite(CompetitorIndex.Slot slot, String competitorType, CompetitorProfile profile) {
+            this.slot = slot;
+            this.competitorType = competitorType;
+            this.profile = profile;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+package com.adopt.services;
+
+import com.adopt.models.gametheory.GameTheoryModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service for choosing which game theory model to bid with under the current load.
+ *
+ * Registered models are arranged in a ladder of tiers from best quality to cheapest.
+ * A once-a-second control loop watches in-flight bids, CPU load and each campaign's
+ * p99 bid latency, and moves a campaign down one tier when any signal is over its
+ * threshold. It only moves back up after every signal has stayed well below its
+ * threshold for several ticks, so the choice does not flap. A model's measured quality is
+ * its surplus per bid, the win rate times the surplus of a won impression, with value and
+ * price both in bid currency.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelSelectionService {
+
+    private static final int LATENCY_BUCKETS = 40; // log2(nanos) buckets, enough for ~18 minutes
+    private static final int MIN_QUALITY_SAMPLES = 1000; // Outcomes needed before measured quality reorders tiers
+    private static final double COST_SMOOTHING = 0.2; // Weight of the latest window in the cost average
+
+    private final Map<GameTheoryModel.GameTheoryType, GameTheoryModel> gameTheoryModels;
+
+    @Value("${adopt.bid-optimization.default-model:NASH_EQUILIBRIUM}")
+    private String defaultModel;
+
+    @Value("${adopt.model-selection.tiers:NASH_EQUILIBRIUM,MULTI_AGENT_LEARNING,STACKELBERG,REINFORCEMENT_LEARNING}")
+    private List<String> tierOrder;
+
+    @Value("${adopt.model-selection.degrade.in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${adopt.model-selection.degrade.cpu-load:0.85}")
+    private double maxCpuLoad;
+
+    @Value("${adopt.model-selection.degrade.p99-micros:5000}")
+    private long maxP99Micros;
+
+    @Value("${adopt.model-selection.recover-ratio:0.6}")
+    private double recoverRatio;
+
+    @Value("${adopt.model-selection.recover-ticks:5}")
+    private int recoverTicks;
+
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+    // Measured cost and quality per model
+    private final Map<GameTheoryModel.GameTheoryType, ModelStats> modelStats =
+            new EnumMap<>(GameTheoryModel.GameTheoryType.class);
+
+    // Tier state per campaign
+    private final Map<Long, CampaignTier> campaignTiers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlightBids = new AtomicInteger();
+    private final AtomicInteger peakInFlightBids = new AtomicInteger();
+
+    // Registered models in configured preference order, best first
+    private List<GameTheoryModel.GameTheoryType> preferredOrder;
+
+    // Current ladder, best quality first; replaced as a whole on each tick
+    private volatile GameTheoryModel.GameTheoryType[] tiers;
+
+    private volatile double lastCpuLoad;
+    private volatile int lastPeakInFlight;
+    private volatile boolean systemOverloaded;
+
+    @PostConstruct
+    public void init() {
+        // The configured default model always heads the preferred order
+        List<GameTheoryModel.GameTheoryType> order = new ArrayList<>();
+        order.add(GameTheoryModel.GameTheoryType.valueOf(defaultModel));
+        for (String type : tierOrder) {
+            GameTheoryModel.GameTheoryType modelType = GameTheoryModel.GameTheoryType.valueOf(type.trim());
+            if (!order.contains(modelType)) {
+                order.add(modelType);
+            }
+        }
+        order.removeIf(type -> !gameTheoryModels.containsKey(type));
+        preferredOrder = order;
+
+        for (GameTheoryModel.GameTheoryType type : gameTheoryModels.keySet()) {
+            modelStats.put(type, new ModelStats());
+        }
+        tiers = order.toArray(new GameTheoryModel.GameTheoryType[0]);
+    }
+
+    /**
+     * Select the model to bid with for a campaign
+     */
+    public GameTheoryModel selectModel(Long campaignId) {
+        GameTheoryModel.GameTheoryType[] ladder = tiers;
+        int tier = Math.min(campaignTier(campaignId).tier, ladder.length - 1);
+        return gameTheoryModels.get(ladder[tier]);
+    }
+
+    /**
+     * Mark the start of a bid, for in-flight tracking
+     */
+    public void bidStarted() {
+        int inFlight = inFlightBids.incrementAndGet();
+        peakInFlightBids.accumulateAndGet(inFlight, Math::max);
+    }
+
+    /**
+     * Mark the end of a bid and record its end-to-end latency
+     */
+    public void bidFinished(Long campaignId, long latencyNanos) {
+        inFlightBids.decrementAndGet();
+        campaignTier(campaignId).recordLatency(latencyNanos);
+    }
+
+    /**
+     * Whether the system-wide load signals are over their thresholds right now
+     */
+    public boolean isOverloaded() {
+        return systemOverloaded || inFlightBids.get() > maxInFlight;
+    }
+
+    /**
+     * Record how long a model took to calculate a bid
+     */
+    public void recordModelCost(GameTheoryModel.GameTheoryType modelType, long nanos) {
+        ModelStats stats = modelStats.get(modelType);
+        if (stats != null) {
+            stats.costNanos.add(nanos);
+            stats.costCount.increment();
+        }
+    }
+
+    /**
+     * Record the auction outcome of a bid placed with a model
+     *
+     * @param surplus the impression's value less the price paid, in bid currency; zero on a loss
+     */
+    public void recordModelOutcome(GameTheoryModel.GameTheoryType modelType, boolean won, double surplus) {
+        ModelStats stats = modelStats.get(modelType);
+        if (stats != null) {
+            stats.rewardSum.add(surplus);
+            stats.rewardCount.increment();
+            if (won) {
+                stats.winCount.increment();
+            }
+        }
+    }
+
+    /**
+     * Re-rank the tiers and move campaigns between them based on the latest load signals
+     */
+    @Scheduled(fixedRate = 1000)
+    public void evaluateLoad() {
+        updateModelCosts();
+        tiers = rankTiers();
+
+        double cpuLoad = currentCpuLoad();
+        int peakInFlight = peakInFlightBids.getAndSet(inFlightBids.get());
+        lastCpuLoad = cpuLoad;
+        lastPeakInFlight = peakInFlight;
+        systemOverloaded = peakInFlight > maxInFlight || cpuLoad > maxCpuLoad;
+
+        int lowestTier = tiers.length - 1;
+        for (Map.Entry<Long, CampaignTier> entry : campaignTiers.entrySet()) {
+            CampaignTier state = entry.getValue();
+            long p99 = state.drainP99();
+            state.lastP99Nanos = p99;
+
+            boolean overloaded = peakInFlight > maxInFlight
+                    || cpuLoad > maxCpuLoad
+                    || p99 > maxP99Micros * 1000;
+            boolean calm = peakInFlight <= maxInFlight * recoverRatio
+                    && cpuLoad <= maxCpuLoad * recoverRatio
+                    && p99 <= maxP99Micros * 1000 * recoverRatio;
+
+            if (overloaded) {
+                state.calmTicks = 0;
+                if (state.tier < lowestTier) {
+                    state.tier++;
+                    log.info("Campaign {} degraded to tier {} ({}): inFlight={}, cpu={}, p99={}us",
+                            entry.getKey(), state.tier, tiers[state.tier], peakInFlight,
+                            String.format("%.2f", cpuLoad), p99 / 1000);
+                }
+            } else if (calm && state.tier > 0) {
+                // Hysteresis: only step back up after a sustained calm period
+                if (++state.calmTicks >= recoverTicks) {
+                    state.tier--;
+                    state.calmTicks = 0;
+                    log.info("Campaign {} recovered to tier {} ({})",
+                            entry.getKey(), state.tier, tiers[state.tier]);
+                }
+            } else {
+                state.calmTicks = 0;
+            }
+        }
+    }
+
+    /**
+     * Get the active tier of every campaign we have bid for
+     */
+    public Map<Long, Map<String, Object>> getCampaignTiers() {
+        Map<Long, Map<String, Object>> result = new HashMap<>();
+        for (Long campaignId : campaignTiers.keySet()) {
+            result.put(campaignId, getCampaignTier(campaignId));
+        }
+        return result;
+    }
+
+    /**
+     * Get the active tier of a campaign
+     */
+    public Map<String, Object> getCampaignTier(Long campaignId) {
+        GameTheoryModel.GameTheoryType[] ladder = tiers;
+        CampaignTier state = campaignTiers.get(campaignId);
+        int tier = state != null ? Math.min(state.tier, ladder.length - 1) : 0;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("campaignId", campaignId);
+        result.put("tier", tier);
+        result.put("model", ladder[tier].name());
+        result.put("p99LatencyMicros", state != null ? state.lastP99Nanos / 1000 : 0L);
+        return result;
+    }
+
+    /**
+     * Get the current tier ladder with each model's measured cost and quality
+     */
+    public Map<String, Object> getTierSummary() {
+        List<Map<String, Object>> ladder = new ArrayList<>();
+        for (GameTheoryModel.GameTheoryType type : tiers) {
+            ModelStats stats = modelStats.get(type);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("model", type.name());
+            entry.put("costNanos", (long) stats.smoothedCostNanos);
+            entry.put("quality", stats.quality());
+            entry.put("winRate", stats.winRate());
+            entry.put("surplusPerWin", stats.surplusPerWin());
+            entry.put("qualitySamples", stats.rewardCount.sum());
+            ladder.add(entry);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("tiers", ladder);
+        summary.put("inFlightBids", inFlightBids.get());
+        summary.put("peakInFlightBids", lastPeakInFlight);
+        summary.put("cpuLoad", lastCpuLoad);
+        return summary;
+    }
+
+    // Helper methods
+
+    private CampaignTier campaignTier(Long campaignId) {
+        return campaignTiers.computeIfAbsent(campaignId != null ? campaignId : 0L, k -> new CampaignTier());
+    }
+
+    private void updateModelCosts() {
+        for (ModelStats stats : modelStats.values()) {
+            long count = stats.costCount.sumThenReset();
+            long nanos = stats.costNanos.sumThenReset();
+            if (count > 0) {
+                double windowCost = (double) nanos / count;
+                stats.smoothedCostNanos = stats.smoothedCostNanos == 0
+                        ? windowCost
+                        : (1 - COST_SMOOTHING) * stats.smoothedCostNanos + COST_SMOOTHING * windowCost;
+            }
+        }
+    }
+
+    private GameTheoryModel.GameTheoryType[] rankTiers() {
+        List<GameTheoryModel.GameTheoryType> ranked = new ArrayList<>(preferredOrder);
+
+        // Models with enough outcomes are reordered by measured quality among the places they
+        // hold in the configured order; the others keep their configured place
+        List<Integer> measuredPlaces = new ArrayList<>();
+        List<GameTheoryModel.GameTheoryType> measured = new ArrayList<>();
+        for (int i = 0; i < ranked.size(); i++) {
+            if (modelStats.get(ranked.get(i)).rewardCount.sum() >= MIN_QUALITY_SAMPLES) {
+                measuredPlaces.add(i);
+                measured.add(ranked.get(i));
+            }
+        }
+        measured.sort(Comparator.comparingDouble(
+                (GameTheoryModel.GameTheoryType type) -> modelStats.get(type).quality()).reversed());
+        for (int i = 0; i < measured.size(); i++) {
+            ranked.set(measuredPlaces.get(i), measured.get(i));
+        }
+
+        // Each lower tier must be measurably cheaper than the one above it; unmeasured models keep their place
+        List<GameTheoryModel.GameTheoryType> ladder = new ArrayList<>();
+        double previousCost = Double.MAX_VALUE;
+        for (GameTheoryModel.GameTheoryType type : ranked) {
+            double cost = modelStats.get(type).smoothedCostNanos;
+            if (ladder.isEmpty() || cost == 0 || cost < previousCost) {
+                ladder.add(type);
+                if (cost > 0) {
+                    previousCost = cost;
+                }
+            }
+        }
+
+        return ladder.toArray(new GameTheoryModel.GameTheoryType[0]);
+    }
+
+    private double currentCpuLoad() {
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) operatingSystem).getCpuLoad();
+            if (load >= 0) {
+                return load;
+            }
+        }
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+        return loadAverage >= 0 ? loadAverage / operatingSystem.getAvailableProcessors() : 0.0;
+    }
+
+    private static int latencyBucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(1L, nanos));
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * Measured cost and quality of one model
+     */
+    private static final class ModelStats {
+        private final LongAdder costNanos = new LongAdder();
+        private final LongAdder costCount = new LongAdder();
+        private final DoubleAdder rewardSum = new DoubleAdder();
+        private final LongAdder rewardCount = new LongAdder();
+        private final LongAdder winCount = new LongAdder();
+        private volatile double smoothedCostNanos;
+
+        // Surplus per bid, which is the win rate times the surplus per won impression
+        private double quality() {
+            long count = rewardCount.sum();
+            return count > 0 ? rewardSum.sum() / count : 0.0;
+        }
+
+        private double winRate() {
+            long count = rewardCount.sum();
+            return count > 0 ? (double) winCount.sum() / count : 0.0;
+        }
+
+        private double surplusPerWin() {
+            long wins = winCount.sum();
+            return wins > 0 ? rewardSum.sum() / wins : 0.0;
+        }
+    }
+
+    /**
+     * Tier state and latency window of one campaign
+     */
+    private static final class CampaignTier {
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+        private volatile int tier;
+        private int calmTicks;
+        private volatile long lastP99Nanos;
+
+        private void recordLatency(long nanos) {
+            latencyHistogram.incrementAndGet(latencyBucket(nanos));
+        }
+
+        private long drainP99() {
+            long[] counts = new long[LATENCY_BUCKETS];
+            long total = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                counts[i] = latencyHistogram.getAndSet(i, 0);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0L;
+            }
+
+            // Upper bound of the bucket holding the 99th percentile
+            long threshold = (long) Math.ceil(total * 0.99);
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= threshold) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (LATENCY_BUCKETS - 1);
+        }
+    }
+}
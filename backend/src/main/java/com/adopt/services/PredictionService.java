@@ -2,19 +2,33 @@ package com.adopt.services;
 
 import com.adopt.models.AdCampaign;
 import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import com.adopt.models.prediction.BidLandscape;
+import com.adopt.models.prediction.BidLandscapeEstimator;
+import com.adopt.models.prediction.FeatureVector;
+import com.adopt.models.prediction.FeatureVectorizer;
+import com.adopt.models.prediction.FtrlModel;
+import com.adopt.models.prediction.InferenceBatcher;
+import com.adopt.models.prediction.ModelRegistry;
+import com.adopt.models.prediction.PredictionCache;
+import com.adopt.models.profile.UserProfile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalTime;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service for predicting click-through rates, conversion rates, and other metrics
@@ -24,20 +38,333 @@ import java.util.Random;
 @RequiredArgsConstructor
 public class PredictionService {
 
+    public static final int NETWORK_INPUT_SIZE = 1 << 10; // Hashed features folded into 1024 network inputs
+
+    private final FeatureVectorizer featureVectorizer;
+    private final BidLandscapeEstimator bidLandscapeEstimator;
+    private final ClockService clockService;
     private final Random random = new Random();
     
-    // In a real implementation, these would be trained ML models
-    private MultiLayerNetwork ctrModel;
-    private MultiLayerNetwork cvrModel;
-    private MultiLayerNetwork userValueModel;
+    @Value("${adopt.prediction.model-dir:models}")
+    private String modelDir;
+    
+    @Value("${adopt.prediction.ctr-model-file:ctr-model.zip}")
+    private String ctrModelFile;
+    
+    @Value("${adopt.prediction.cvr-model-file:cvr-model.zip}")
+    private String cvrModelFile;
+    
+    @Value("${adopt.prediction.user-value-model-file:user-value-model.zip}")
+    private String userValueModelFile;
+    
+    @Value("${adopt.prediction.batch.max-size:32}")
+    private int maxBatchSize;
+    
+    @Value("${adopt.prediction.batch.max-wait-micros:200}")
+    private long maxBatchWaitMicros;
+    
+    @Value("${adopt.prediction.batch.queue-capacity:4096}")
+    private int batchQueueCapacity;
+    
+    @Value("${adopt.prediction.timeout-micros:2000}")
+    private long inferenceTimeoutMicros;
+    
+    @Value("${adopt.prediction.registry.scan-interval-seconds:30}")
+    private long registryScanIntervalSeconds;
+    
+    @Value("${adopt.prediction.registry.warmup-batches:8}")
+    private int registryWarmupBatches;
+    
+    @Value("${adopt.prediction.registry.canary-percent:0}")
+    private int registryCanaryPercent;
+    
+    @Value("${adopt.prediction.ftrl.enabled:true}")
+    private boolean ftrlEnabled;
+    
+    @Value("${adopt.prediction.ftrl.alpha:0.05}")
+    private double ftrlAlpha;
+    
+    @Value("${adopt.prediction.ftrl.beta:1.0}")
+    private double ftrlBeta;
+    
+    @Value("${adopt.prediction.ftrl.l1:1.0}")
+    private double ftrlL1;
+    
+    @Value("${adopt.prediction.ftrl.l2:1.0}")
+    private double ftrlL2;
+    
+    @Value("${adopt.prediction.ftrl.click-window-seconds:600}")
+    private long ftrlClickWindowSeconds;
+    
+    @Value("${adopt.prediction.ftrl.queue-capacity:65536}")
+    private int ftrlQueueCapacity;
+    
+    @Value("${adopt.prediction.ftrl.min-examples:10000}")
+    private long ftrlMinExamples;
+    
+    @Value("${adopt.prediction.ftrl.blend-weight:0.5}")
+    private double ftrlBlendWeight;
+    
+    @Value("${adopt.prediction.cache.enabled:true}")
+    private boolean cacheEnabled;
+    
+    @Value("${adopt.prediction.cache.capacity:65536}")
+    private int cacheCapacity;
+    
+    @Value("${adopt.prediction.cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+    
+    // Versioned trained networks, hot-swapped as new model files appear in the model directory
+    private final Map<String, ModelRegistry> modelRegistries = new HashMap<>();
+    private ModelRegistry ctrModel;
+    private ModelRegistry cvrModel;
+    private ModelRegistry userValueModel;
+    private ScheduledExecutorService registryExecutor;
+    
+    // CTR model learned online from our own impressions and clicks
+    private FtrlModel onlineCtrModel;
+    private final AtomicBoolean onlineCtrServing = new AtomicBoolean();
+    private final LongAdder onlineCtrBlended = new LongAdder();
+    private final LongAdder onlineCtrAlone = new LongAdder();
+    
+    // Predictions shared by requests in the same context segment; null when disabled
+    private PredictionCache predictionCache;
+    
+    private long inferenceTimeoutNanos;
+    
+    @PostConstruct
+    public void init() {
+        inferenceTimeoutNanos = TimeUnit.MICROSECONDS.toNanos(inferenceTimeoutMicros);
+        
+        // Model files are loaded and swapped in off the request path, on a dedicated thread
+        registryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ctrModel = createModelRegistry("ctr", ctrModelFile);
+        cvrModel = createModelRegistry("cvr", cvrModelFile);
+        userValueModel = createModelRegistry("user-value", userValueModelFile);
+        
+        // The first scan runs now so models present at startup serve from the first request
+        for (ModelRegistry registry : modelRegistries.values()) {
+            registry.scan();
+        }
+        registryExecutor.scheduleWithFixedDelay(() -> modelRegistries.values().forEach(ModelRegistry::scan),
+                registryScanIntervalSeconds, registryScanIntervalSeconds, TimeUnit.SECONDS);
+        
+        if (ftrlEnabled) {
+            onlineCtrModel = new FtrlModel(featureVectorizer, clockService, ftrlAlpha, ftrlBeta, ftrlL1, ftrlL2,
+                    ftrlClickWindowSeconds, ftrlQueueCapacity);
+        }
+        
+        if (cacheEnabled) {
+            predictionCache = new PredictionCache(cacheCapacity, TimeUnit.SECONDS.toMillis(cacheTtlSeconds));
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        registryExecutor.shutdownNow();
+        for (ModelRegistry registry : modelRegistries.values()) {
+            registry.shutdown();
+        }
+        if (onlineCtrModel != null) {
+            onlineCtrModel.shutdown();
+        }
+    }
+    
+    /**
+     * Predict CTR, CVR and user value for the given request and campaign, extracting the
+     * request's features at most once for all three models
+     * 
+     * @return the predictions as predictedCtr, predictedCvr and userValueEstimate
+     */
+    public Map<String, Object> predict(BidRequest bidRequest, AdCampaign campaign) {
+        PredictionContext context = new PredictionContext(bidRequest, campaign);
+        
+        Map<String, Object> predictions = new HashMap<>();
+        predictions.put("predictedCtr", cachedPrediction(context, PredictionCache.FIELD_CTR));
+        predictions.put("predictedCvr", cachedPrediction(context, PredictionCache.FIELD_CVR));
+        predictions.put("userValueEstimate", cachedPrediction(context, PredictionCache.FIELD_USER_VALUE));
+        return predictions;
+    }
     
     /**
      * Predict the click-through rate (CTR) for the given request and campaign
      */
     public double predictCtr(BidRequest bidRequest, AdCampaign campaign) {
-        // In a real implementation, we would use a trained ML model
-        // For demonstration, we'll use a combination of heuristics and randomness
+        return cachedPrediction(new PredictionContext(bidRequest, campaign), PredictionCache.FIELD_CTR);
+    }
+    
+    /**
+     * Predict the conversion rate (CVR) for the given request and campaign
+     */
+    public double predictCvr(BidRequest bidRequest, AdCampaign campaign) {
+        return cachedPrediction(new PredictionContext(bidRequest, campaign), PredictionCache.FIELD_CVR);
+    }
+    
+    /**
+     * Estimate the value of a user for the given campaign
+     */
+    public double estimateUserValue(BidRequest bidRequest, AdCampaign campaign) {
+        return cachedPrediction(new PredictionContext(bidRequest, campaign), PredictionCache.FIELD_USER_VALUE);
+    }
+    
+    /**
+     * Predict the probability of winning at different bid levels, as a curve learned
+     * from our auction outcomes on this slot and publisher
+     */
+    public BidLandscape predictWinProbabilities(BidRequest bidRequest, AdCampaign campaign) {
+        return bidLandscapeEstimator.getLandscape(bidRequest);
+    }
+    
+    /**
+     * Train the bid landscape on an auction outcome
+     */
+    public void recordAuctionOutcome(BidResponse bidResponse) {
+        if (bidResponse.getBidRequest() != null) {
+            bidLandscapeEstimator.recordOutcome(bidResponse.getBidRequest(), bidResponse.getBidPrice(),
+                    Boolean.TRUE.equals(bidResponse.getIsWon()));
+        }
+    }
+    
+    /**
+     * Train the online CTR model on a won impression
+     * 
+     * @param bidResponse the won bid, with its request and campaign
+     * @param clicked whether the impression was already clicked when the win was reported
+     */
+    public void recordImpression(BidResponse bidResponse, boolean clicked) {
+        if (onlineCtrModel != null && bidResponse.getBidRequest() != null && bidResponse.getCampaign() != null) {
+            onlineCtrModel.recordImpression(bidResponse.getResponseId(), bidResponse.getBidRequest(),
+                    bidResponse.getCampaign(), clicked);
+        }
+    }
+    
+    /**
+     * Train the online CTR model on a click for a previously won impression
+     */
+    public void recordClick(BidResponse bidResponse) {
+        if (onlineCtrModel != null) {
+            onlineCtrModel.recordClick(bidResponse.getResponseId());
+        }
+    }
+    
+    /**
+     * Get the version registry for a model ("ctr", "cvr" or "user-value")
+     * 
+     * @return the registry, or null for an unknown model name
+     */
+    public ModelRegistry getModelRegistry(String name) {
+        return modelRegistries.get(name);
+    }
+    
+    /**
+     * Get deployed versions and micro-batching statistics for each model, online CTR training statistics,
+     * bid landscape memory usage and prediction cache hit rate
+     */
+    public Map<String, Object> getInferenceStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ctr", ctrModel.getStats());
+        stats.put("cvr", cvrModel.getStats());
+        stats.put("userValue", userValueModel.getStats());
+        stats.put("onlineCtr", onlineCtrModel != null ? getOnlineCtrStats() : "disabled");
+        stats.put("bidLandscape", bidLandscapeEstimator.getStats());
+        stats.put("predictionCache", predictionCache != null ? predictionCache.getStats() : "disabled");
+        return stats;
+    }
+    
+    // Helper methods
+    
+    private Map<String, Object> getOnlineCtrStats() {
+        Map<String, Object> stats = new HashMap<>(onlineCtrModel.getStats());
+        stats.put("serving", onlineCtrServing.get());
+        stats.put("blendWeight", ftrlBlendWeight);
+        stats.put("blended", onlineCtrBlended.sum());
+        stats.put("servedAlone", onlineCtrAlone.sum());
+        return stats;
+    }
+    
+    private double cachedPrediction(PredictionContext context, int field) {
+        if (predictionCache != null) {
+            double cached = predictionCache.get(context.cacheKey, field, context.now);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+        }
         
+        double prediction;
+        switch (field) {
+            case PredictionCache.FIELD_CTR:
+                prediction = modelCtr(context);
+                break;
+            case PredictionCache.FIELD_CVR:
+                prediction = modelCvr(context);
+                break;
+            default:
+                prediction = modelUserValue(context);
+        }
+        
+        if (!Double.isNaN(prediction)) {
+            if (predictionCache != null) {
+                predictionCache.put(context.cacheKey, field, prediction, context.now);
+            }
+            return prediction;
+        }
+        
+        // No model, or inference was shed: fall back to heuristics. These are not cached, so
+        // the segment gets a model prediction as soon as one is available again
+        switch (field) {
+            case PredictionCache.FIELD_CTR:
+                return heuristicCtr(context.bidRequest, context.campaign);
+            case PredictionCache.FIELD_CVR:
+                return heuristicCvr(context.bidRequest, context.campaign);
+            default:
+                return heuristicUserValue(context.bidRequest, context.campaign);
+        }
+    }
+    
+    private double modelCtr(PredictionContext context) {
+        // The registry routes every request, so hot swaps, canaries and rollbacks always
+        // reach the trained network's part of the prediction
+        double predictedCtr = Double.NaN;
+        InferenceBatcher ctrNetwork = ctrModel.select(context.segment);
+        if (ctrNetwork != null) {
+            predictedCtr = ctrNetwork.predict(context.features(), inferenceTimeoutNanos);
+        }
+        
+        // Once it has seen enough traffic, the online model is blended in; it serves alone
+        // only when no network is deployed or inference was shed
+        if (isOnlineCtrServing()) {
+            double onlineCtr = onlineCtrModel.predict(context.features());
+            if (Double.isNaN(predictedCtr)) {
+                onlineCtrAlone.increment();
+                predictedCtr = onlineCtr;
+            } else {
+                onlineCtrBlended.increment();
+                predictedCtr = (1 - ftrlBlendWeight) * predictedCtr + ftrlBlendWeight * onlineCtr;
+            }
+        }
+        
+        if (Double.isNaN(predictedCtr)) {
+            return Double.NaN;
+        }
+        return Math.min(0.1, Math.max(0.001, predictedCtr)); // Keep within 0.1% to 10%
+    }
+    
+    private boolean isOnlineCtrServing() {
+        if (onlineCtrModel == null || onlineCtrModel.getExamples() < ftrlMinExamples) {
+            return false;
+        }
+        if (!onlineCtrServing.get() && onlineCtrServing.compareAndSet(false, true)) {
+            log.info("Online CTR model trained on {} examples, blending it into CTR predictions at weight {}",
+                    onlineCtrModel.getExamples(), ftrlBlendWeight);
+        }
+        return true;
+    }
+    
+    private double heuristicCtr(BidRequest bidRequest, AdCampaign campaign) {
         double baseCtr = campaign.getTargetCTR() != null ? campaign.getTargetCTR() : 0.01;
         
         // Adjust CTR based on user profile
@@ -57,13 +384,18 @@ public class PredictionService {
         return Math.min(0.1, Math.max(0.001, predictedCtr)); // Keep within 0.1% to 10%
     }
     
-    /**
-     * Predict the conversion rate (CVR) for the given request and campaign
-     */
-    public double predictCvr(BidRequest bidRequest, AdCampaign campaign) {
-        // In a real implementation, we would use a trained ML model
-        // For demonstration, we'll use a combination of heuristics and randomness
-        
+    private double modelCvr(PredictionContext context) {
+        InferenceBatcher cvrNetwork = cvrModel.select(context.segment);
+        if (cvrNetwork != null) {
+            double predictedCvr = cvrNetwork.predict(context.features(), inferenceTimeoutNanos);
+            if (!Double.isNaN(predictedCvr)) {
+                return Math.min(0.5, Math.max(0.01, predictedCvr)); // Keep within 1% to 50%
+            }
+        }
+        return Double.NaN;
+    }
+    
+    private double heuristicCvr(BidRequest bidRequest, AdCampaign campaign) {
         double baseCvr = campaign.getTargetConversionRate() != null ? campaign.getTargetConversionRate() : 0.1;
         
         // Adjust CVR based on user profile
@@ -77,12 +409,19 @@ public class PredictionService {
         return Math.min(0.5, Math.max(0.01, predictedCvr)); // Keep within 1% to 50%
     }
     
-    /**
-     * Estimate the value of a user for the given campaign
-     */
-    public double estimateUserValue(BidRequest bidRequest, AdCampaign campaign) {
-        // In a real implementation, we would use a trained ML model
-        // For demonstration, we'll use a simple approach based on user profile and campaign type
+    private double modelUserValue(PredictionContext context) {
+        InferenceBatcher userValueNetwork = userValueModel.select(context.segment);
+        if (userValueNetwork != null) {
+            double userValue = userValueNetwork.predict(context.features(), inferenceTimeoutNanos);
+            if (!Double.isNaN(userValue)) {
+                return Math.max(0.0, userValue);
+            }
+        }
+        return Double.NaN;
+    }
+    
+    private double heuristicUserValue(BidRequest bidRequest, AdCampaign campaign) {
+        // A simple approach based on user profile and campaign type
         
         // Base value depends on campaign type
         double baseValue;
@@ -109,49 +448,33 @@ public class PredictionService {
         return baseValue * userValueMultiplier * randomFactor;
     }
     
-    /**
-     * Predict the probability of winning at different bid levels
-     */
-    public Map<BigDecimal, Double> predictWinProbabilities(BidRequest bidRequest, AdCampaign campaign) {
-        Map<BigDecimal, Double> probabilities = new HashMap<>();
-        
-        // For simplicity, we'll create a sigmoid curve from floor price to 3x floor price
-        BigDecimal floorPrice = bidRequest.getAdSlotFloorPrice();
-        BigDecimal maxPrice = floorPrice.multiply(BigDecimal.valueOf(3.0));
-        
-        // Create 10 price points
-        for (int i = 0; i <= 10; i++) {
-            double ratio = i / 10.0;
-            BigDecimal price = floorPrice.add(
-                    maxPrice.subtract(floorPrice).multiply(BigDecimal.valueOf(ratio))
-            ).setScale(2, RoundingMode.HALF_UP);
-            
-            // Sigmoid function for win probability
-            double winProbability = 1.0 / (1.0 + Math.exp(-10 * (ratio - 0.5)));
-            probabilities.put(price, winProbability);
+    private ModelRegistry createModelRegistry(String name, String fileName) {
+        File file = new File(modelDir, fileName);
+        if (!file.isFile()) {
+            log.info("No {} model at {} yet, using heuristic predictions", name, file.getPath());
         }
-        
-        return probabilities;
+        ModelRegistry registry = new ModelRegistry(name, modelDir, fileName, NETWORK_INPUT_SIZE,
+                maxBatchSize, maxBatchWaitMicros, batchQueueCapacity,
+                registryWarmupBatches, registryCanaryPercent, registryExecutor);
+        modelRegistries.put(name, registry);
+        return registry;
     }
     
-    // Helper methods
-    
     private double getUserProfileCtrMultiplier(BidRequest bidRequest) {
         // In a real implementation, we would use features from the user profile
         // For demonstration, we'll use a simple approach
         
-        Map<String, Object> userProfile = bidRequest.getUserProfile();
-        if (userProfile == null || userProfile.isEmpty()) {
+        UserProfile userProfile = bidRequest.getUserProfile();
+        if (userProfile == null) {
             return 1.0; // No profile data, use baseline
         }
         
         // Check if user is in a target audience
-        boolean isTargetAudience = userProfile.containsKey("isTargetAudience") && 
-                (boolean) userProfile.get("isTargetAudience");
+        boolean isTargetAudience = userProfile.isTargetAudience();
         
         // Check recency of user's interest
-        int daysSinceLastInterest = userProfile.containsKey("daysSinceLastInterest") ? 
-                (int) userProfile.get("daysSinceLastInterest") : 30;
+        int daysSinceLastInterest = userProfile.getDaysSinceLastInterest() != UserProfile.UNKNOWN_DAYS ? 
+                userProfile.getDaysSinceLastInterest() : 30;
         
         double targetMultiplier = isTargetAudience ? 1.5 : 0.8;
         double recencyMultiplier = Math.max(0.5, Math.min(1.5, Math.exp(-daysSinceLastInterest / 10.0)));
@@ -162,18 +485,17 @@ public class PredictionService {
     private double getUserProfileCvrMultiplier(BidRequest bidRequest) {
         // Similar to CTR but with different weights for conversion
         
-        Map<String, Object> userProfile = bidRequest.getUserProfile();
-        if (userProfile == null || userProfile.isEmpty()) {
+        UserProfile userProfile = bidRequest.getUserProfile();
+        if (userProfile == null) {
             return 1.0; // No profile data, use baseline
         }
         
         // Check if user has converted before
-        boolean hasPreviousConversion = userProfile.containsKey("hasPreviousConversion") && 
-                (boolean) userProfile.get("hasPreviousConversion");
+        boolean hasPreviousConversion = userProfile.isPreviousConversion();
         
         // Check if user has visited the site recently
-        int daysSinceLastVisit = userProfile.containsKey("daysSinceLastVisit") ? 
-                (int) userProfile.get("daysSinceLastVisit") : 30;
+        int daysSinceLastVisit = userProfile.getDaysSinceLastVisit() != UserProfile.UNKNOWN_DAYS ? 
+                userProfile.getDaysSinceLastVisit() : 30;
         
         double conversionMultiplier = hasPreviousConversion ? 2.0 : 0.7;
         double recencyMultiplier = Math.max(0.5, Math.min(1.5, Math.exp(-daysSinceLastVisit / 7.0)));
@@ -183,7 +505,7 @@ public class PredictionService {
     
     private double getTimeOfDayCtrMultiplier() {
         // Different times of day have different CTRs
-        int hour = LocalTime.now().getHour();
+        int hour = clockService.hourOfDay();
         
         if (hour >= 7 && hour < 10) {
             return 1.2; // Morning commute - higher engagement
@@ -211,19 +533,61 @@ public class PredictionService {
     }
     
     private double getUserValueMultiplier(BidRequest bidRequest) {
-        Map<String, Object> userProfile = bidRequest.getUserProfile();
-        if (userProfile == null || userProfile.isEmpty()) {
+        UserProfile userProfile = bidRequest.getUserProfile();
+        if (userProfile == null) {
             return 1.0; // No profile data, use baseline
         }
         
         // Check purchasing power
-        double purchasingPower = userProfile.containsKey("purchasingPower") ? 
-                (double) userProfile.get("purchasingPower") : 0.5;
+        double purchasingPower = userProfile.getPurchasingPower();
         
         // Check engagement level
-        double engagementLevel = userProfile.containsKey("engagementLevel") ? 
-                (double) userProfile.get("engagementLevel") : 0.5;
+        double engagementLevel = userProfile.getEngagementLevel();
         
         return (0.7 * purchasingPower) + (0.3 * engagementLevel);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * One request's inputs to the prediction models, shared by the predictions made for it
+     */
+    private final class PredictionContext {
+        private final BidRequest bidRequest;
+        private final AdCampaign campaign;
+        private final long segment;
+        private final long cacheKey;
+        private final long now;
+        private FeatureVector features;
+        
+        private PredictionContext(BidRequest bidRequest, AdCampaign campaign) {
+            this.bidRequest = bidRequest;
+            this.campaign = campaign;
+            
+            // Requests in the same context segment share predictions until they expire. The
+            // segment also routes between primary and canary versions, and the key includes the
+            // deployment generations, so cached predictions follow the traffic split and are
+            // dropped on rollback
+            if (predictionCache != null) {
+                segment = featureVectorizer.segmentFingerprint(bidRequest, campaign);
+                cacheKey = ((segment * 31 + ctrModel.generation()) * 31 + cvrModel.generation()) * 31
+                        + userValueModel.generation();
+                now = clockService.currentTimeMillis();
+            } else {
+                segment = ThreadLocalRandom.current().nextLong();
+                cacheKey = 0L;
+                now = 0L;
+            }
+        }
+        
+        /**
+         * The request's features, extracted on first use; a cache hit for every prediction
+         * needs none. The vector is the vectorizer's per-thread one, so it is only valid until
+         * this thread vectorizes another request
+         */
+        private FeatureVector features() {
+            if (features == null) {
+                features = featureVectorizer.vectorize(bidRequest, campaign);
+            }
+            return features;
+        }
+    }
+}
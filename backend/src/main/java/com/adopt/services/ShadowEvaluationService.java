@@ -0,0 +1,332 @@
+package com.adopt.services;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import com.adopt.models.gametheory.CompetitorProfile;
+import com.adopt.models.gametheory.GameTheoryModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service for evaluating candidate game theory models in shadow.
+ *
+ * For a sampled fraction of live bids, candidate models compute the bid they would have
+ * placed on a single low-priority thread, after the live bid has been calculated. When the
+ * auction outcome for the live bid arrives, each shadow bid is scored against it to estimate
+ * the candidate's win rate and surplus. The work queue and the pending-outcome table are
+ * both bounded, and shadow work is the first thing dropped when the system is under load.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShadowEvaluationService {
+
+    private final Map<GameTheoryModel.GameTheoryType, GameTheoryModel> gameTheoryModels;
+    private final ModelSelectionService modelSelectionService;
+    private final ClockService clockService;
+
+    @Value("${adopt.shadow.candidates:STACKELBERG,MULTI_AGENT_LEARNING,REINFORCEMENT_LEARNING}")
+    private List<String> candidateTypes;
+
+    @Value("${adopt.shadow.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Value("${adopt.shadow.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${adopt.shadow.max-pending-outcomes:10000}")
+    private int maxPendingOutcomes;
+
+    @Value("${adopt.shadow.outcome-ttl-seconds:300}")
+    private long outcomeTtlSeconds;
+
+    private final List<GameTheoryModel> candidates = new ArrayList<>();
+
+    private final Map<GameTheoryModel.GameTheoryType, CandidateStats> candidateStats =
+            new EnumMap<>(GameTheoryModel.GameTheoryType.class);
+
+    // Shadow bids waiting for the live bid's auction outcome, keyed by response ID
+    private final Map<String, PendingOutcome> pendingOutcomes = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder shedUnderLoad = new LongAdder();
+    private final LongAdder shedQueueFull = new LongAdder();
+    private final LongAdder shedPendingFull = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private ThreadPoolExecutor shadowExecutor;
+
+    @PostConstruct
+    public void init() {
+        for (String type : candidateTypes) {
+            GameTheoryModel model = gameTheoryModels.get(GameTheoryModel.GameTheoryType.valueOf(type.trim()));
+            if (model != null) {
+                candidates.add(model);
+                candidateStats.put(model.getType(), new CandidateStats());
+            }
+        }
+
+        // One minimum-priority thread with a bounded queue; anything that does not fit is discarded
+        shadowExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-evaluation");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                (runnable, executor) -> {
+                    throw new RejectedExecutionException("Shadow queue full");
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shadowExecutor.shutdownNow();
+    }
+
+    /**
+     * Offer a live bid for shadow evaluation. Returns immediately; never blocks the bid path.
+     */
+    public void submit(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> predictionParams,
+            BidResponse liveResponse) {
+
+        if (candidates.isEmpty() || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        // Shadow work is the first thing we shed
+        if (modelSelectionService.isOverloaded()) {
+            shedUnderLoad.increment();
+            return;
+        }
+
+        try {
+            shadowExecutor.execute(() ->
+                    evaluate(bidRequest, campaign, competitorProfiles, predictionParams, liveResponse));
+            sampled.increment();
+        } catch (RejectedExecutionException e) {
+            shedQueueFull.increment();
+        }
+    }
+
+    /**
+     * Score the shadow bids for a live bid against its auction outcome
+     *
+     * @param bidResponse the live bid response with auction results
+     * @param realizedValue the value of the impression in bid currency (see {@link com.adopt.models.gametheory.ImpressionValue})
+     */
+    public void recordOutcome(BidResponse bidResponse, double realizedValue) {
+        PendingOutcome pending = pendingOutcomes.remove(bidResponse.getResponseId());
+        if (pending == null) {
+            return;
+        }
+        pendingCount.decrementAndGet();
+
+        boolean liveWon = Boolean.TRUE.equals(bidResponse.getIsWon());
+        BigDecimal clearing = bidResponse.getActualPrice() != null
+                ? bidResponse.getActualPrice()
+                : bidResponse.getBidPrice();
+        double clearingPrice = clearing != null ? clearing.doubleValue() : 0.0;
+
+        for (ShadowBid shadowBid : pending.shadowBids) {
+            CandidateStats stats = candidateStats.get(shadowBid.modelType);
+
+            if (liveWon) {
+                // The clearing price is the highest competing bid: a shadow bid at or above it
+                // would have won and paid the same price for the same impression
+                if (shadowBid.bid >= clearingPrice) {
+                    stats.wins.increment();
+                    stats.surplus.add(realizedValue - clearingPrice);
+                } else {
+                    stats.losses.increment();
+                }
+                stats.liveSurplus.add(realizedValue - clearingPrice);
+            } else if (shadowBid.bid <= pending.liveBid) {
+                // Someone outbid the live bid, so a lower or equal shadow bid loses too
+                stats.losses.increment();
+            } else {
+                // A higher shadow bid might have won; the outcome is censored
+                stats.censored.increment();
+            }
+        }
+    }
+
+    /**
+     * Drop shadow bids whose live outcome never arrived
+     */
+    @Scheduled(fixedRate = 60000)
+    public void expirePendingOutcomes() {
+        long cutoff = clockService.currentTimeMillis() - outcomeTtlSeconds * 1000;
+        pendingOutcomes.entrySet().removeIf(entry -> {
+            if (entry.getValue().createdAtMillis < cutoff) {
+                pendingCount.decrementAndGet();
+                expired.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Get estimated win rate and surplus for each candidate model
+     */
+    public Map<String, Object> getShadowSummary() {
+        Map<String, Object> models = new LinkedHashMap<>();
+        for (Map.Entry<GameTheoryModel.GameTheoryType, CandidateStats> entry : candidateStats.entrySet()) {
+            CandidateStats stats = entry.getValue();
+            long wins = stats.wins.sum();
+            long losses = stats.losses.sum();
+            long decided = wins + losses;
+
+            Map<String, Object> model = new LinkedHashMap<>();
+            model.put("evaluated", stats.evaluated.sum());
+            model.put("wins", wins);
+            model.put("losses", losses);
+            model.put("censored", stats.censored.sum());
+            model.put("winRate", decided > 0 ? (double) wins / decided : 0.0);
+            model.put("surplus", stats.surplus.sum());
+            model.put("liveSurplus", stats.liveSurplus.sum());
+            model.put("avgComputeNanos", stats.evaluated.sum() > 0
+                    ? stats.computeNanos.sum() / stats.evaluated.sum() : 0L);
+            models.put(entry.getKey().name(), model);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sampleRate", sampleRate);
+        summary.put("sampled", sampled.sum());
+        summary.put("queued", shadowExecutor.getQueue().size());
+        summary.put("pendingOutcomes", pendingCount.get());
+        summary.put("shedUnderLoad", shedUnderLoad.sum());
+        summary.put("shedQueueFull", shedQueueFull.sum());
+        summary.put("shedPendingFull", shedPendingFull.sum());
+        summary.put("expired", expired.sum());
+        summary.put("models", models);
+        return summary;
+    }
+
+    // Helper methods
+
+    private void evaluate(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> predictionParams,
+            BidResponse liveResponse) {
+
+        // Load may have risen while this task sat in the queue
+        if (modelSelectionService.isOverloaded()) {
+            shedUnderLoad.increment();
+            return;
+        }
+
+        GameTheoryModel.GameTheoryType liveType = liveResponse.getGameTheoryModelType() != null
+                ? GameTheoryModel.GameTheoryType.valueOf(liveResponse.getGameTheoryModelType())
+                : null;
+
+        List<ShadowBid> shadowBids = new ArrayList<>();
+        for (GameTheoryModel candidate : candidates) {
+            if (candidate.getType() == liveType) {
+                continue;
+            }
+
+            try {
+                long start = System.nanoTime();
+                BigDecimal bid = candidate.calculateOptimalBid(
+                        bidRequest, campaign, competitorProfiles, predictionParams);
+                long elapsed = System.nanoTime() - start;
+
+                // Shadow timings stay out of the selector's cost: they run on a low-priority
+                // thread, so they would overstate what the model costs on the bid path
+                CandidateStats stats = candidateStats.get(candidate.getType());
+                stats.computeNanos.add(elapsed);
+                stats.evaluated.increment();
+
+                shadowBids.add(new ShadowBid(candidate.getType(), bid.doubleValue()));
+            } catch (Exception e) {
+                log.debug("Shadow model {} failed: {}", candidate.getType(), e.getMessage());
+            }
+        }
+
+        if (shadowBids.isEmpty()) {
+            return;
+        }
+
+        if (pendingCount.incrementAndGet() > maxPendingOutcomes) {
+            pendingCount.decrementAndGet();
+            shedPendingFull.increment();
+            return;
+        }
+
+        pendingOutcomes.put(liveResponse.getResponseId(), new PendingOutcome(
+                liveResponse.getBidPrice().doubleValue(), shadowBids, clockService.currentTimeMillis()));
+    }
+
+    /**
+     * Bid a candidate model would have placed
+     */
+    private static final class ShadowBid {
+        private final GameTheoryModel.GameTheoryType modelType;
+        private final double bid;
+
+        private ShadowBid(GameTheoryModel.GameTheoryType modelType, double bid) {
+            this.modelType = modelType;
+            this.bid = bid;
+        }
+    }
+
+    /**
+     * Shadow bids for one live bid, waiting for its auction outcome
+     */
+    private static final class PendingOutcome {
+        private final double liveBid;
+        private final List<ShadowBid> shadowBids;
+        private final long createdAtMillis;
+
+        private PendingOutcome(double liveBid, List<ShadowBid> shadowBids, long createdAtMillis) {
+            this.liveBid = liveBid;
+            this.shadowBids = shadowBids;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    /**
+     * Running evaluation of one candidate model
+     */
+    private static final class CandidateStats {
+        private final LongAdder evaluated = new LongAdder();
+        private final LongAdder computeNanos = new LongAdder();
+        private final LongAdder wins = new LongAdder();
+        private final LongAdder losses = new LongAdder();
+        private final LongAdder censored = new LongAdder();
+        private final DoubleAdder surplus = new DoubleAdder();
+        private final DoubleAdder liveSurplus = new DoubleAdder();
+    }
+}
@@ -1,13 +1,30 @@
 package com.adopt.services;
 
+import com.adopt.models.profile.HeapProfileStore;
+import com.adopt.models.profile.IdentityGraph;
+import com.adopt.models.profile.InterestDictionary;
+import com.adopt.models.profile.MappedProfileStore;
+import com.adopt.models.profile.ProfileSnapshotter;
+import com.adopt.models.profile.ProfileStore;
+import com.adopt.models.profile.UserEvent;
+import com.adopt.models.profile.UserEventBuffer;
+import com.adopt.models.profile.UserProfile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Service for retrieving and managing user profile data
@@ -17,154 +34,500 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class UserProfileService {
 
+    private final ClockService clockService;
+
     private final Random random = new Random();
     
-    // In-memory cache of user profiles (in a real system, this would be a database)
-    private final Map<String, Map<String, Object>> userProfileCache = new ConcurrentHashMap<>();
+    @Value("${adopt.profile.interests.categories:}")
+    private List<String> interestCategories;
+    
+    @Value("${adopt.profile.cache.max-profiles:1000000}")
+    private int maxProfiles;
+    
+    @Value("${adopt.profile.cache.expire-after-access-minutes:60}")
+    private long expireAfterAccessMinutes;
+    
+    @Value("${adopt.profile.identity.max-ids:10000000}")
+    private int maxIdentityIds;
+    
+    @Value("${adopt.profile.store.type:heap}")
+    private String storeType;
+    
+    @Value("${adopt.profile.store.dir:data/profiles}")
+    private String storeDirectory;
+    
+    @Value("${adopt.profile.store.capacity:100000000}")
+    private long storeCapacity;
+    
+    @Value("${adopt.profile.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+    
+    @Value("${adopt.profile.snapshot.dir:data/profile-snapshots}")
+    private String snapshotDirectory;
+    
+    @Value("${adopt.profile.snapshot.restore-threads:0}")
+    private int restoreThreads;
+    
+    @Value("${adopt.profile.snapshot.ready-fraction:0.8}")
+    private double readyFraction;
+    
+    @Value("${adopt.profile.snapshot.ready-timeout-seconds:60}")
+    private long readyTimeoutSeconds;
+    
+    @Value("${adopt.profile.events.stripes:16}")
+    private int eventStripes;
+    
+    @Value("${adopt.profile.events.stripe-capacity:65536}")
+    private int eventStripeCapacity;
+    
+    @Value("${adopt.profile.events.flush-millis:50}")
+    private long eventFlushMillis;
+    
+    // Heap cache of hot profiles, or an off-heap mapped store for the full identity set
+    private ProfileStore userProfileStore;
+    
+    // Links cookie, device and user-profile IDs of the same person to one profile key
+    private IdentityGraph identityGraph;
+    
+    // Snapshots the heap store and the identity graph to disk and restores them on startup;
+    // the mapped store persists itself, so with it only the graph is snapshotted
+    private ProfileSnapshotter snapshotter;
+    
+    // Tracked events, identity links, profile updates and new synthetic profiles wait here
+    // until the folder thread applies them, so it is the only writer to the profile store
+    private UserEventBuffer eventBuffer;
+    private Thread eventFolder;
+    private volatile boolean running = true;
+    
+    // Folder thread only: stores that copy profiles out read into these instead of allocating
+    private final UserProfile foldScratch = new UserProfile();
+    private final UserProfile linkScratch = new UserProfile();
+    
+    private final LongAdder foldedEvents = new LongAdder();
+    private final LongAdder foldedBatches = new LongAdder();
+    private final LongAdder updatedProfiles = new LongAdder();
+    private final LongAdder rejectedAttributes = new LongAdder();
+    private final LongAdder failedUpdates = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        // Interest categories beyond the built-in ones are only learned from configuration
+        for (String category : interestCategories) {
+            if (!category.isBlank() && InterestDictionary.register(category.trim()) < 0) {
+                log.warn("Interest dictionary is full; ignoring category {}", category);
+            }
+        }
+        
+        identityGraph = new IdentityGraph(maxIdentityIds);
+        if ("mapped".equalsIgnoreCase(storeType)) {
+            userProfileStore = new MappedProfileStore(storeDirectory, storeCapacity);
+            snapshotter = new ProfileSnapshotter(storeDirectory);
+            snapshotter.restoreIdentities(identityGraph);
+        } else {
+            userProfileStore = new HeapProfileStore(maxProfiles, TimeUnit.MINUTES.toMillis(expireAfterAccessMinutes));
+            if (snapshotEnabled) {
+                snapshotter = new ProfileSnapshotter(snapshotDirectory);
+                snapshotter.restoreIdentities(identityGraph);
+                restoreSnapshot((HeapProfileStore) userProfileStore);
+            }
+        }
+        
+        eventBuffer = new UserEventBuffer(eventStripes, eventStripeCapacity);
+        eventFolder = new Thread(this::foldLoop, "profile-events");
+        eventFolder.setDaemon(true);
+        eventBuffer.setConsumer(eventFolder);
+        eventFolder.start();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // Apply what is still buffered before closing the store
+        running = false;
+        eventFolder.interrupt();
+        try {
+            eventFolder.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotProfiles();
+        userProfileStore.close();
+    }
+    
+    /**
+     * Periodically snapshot the heap profile store and the identity graph, so a restart
+     * starts warm and linked IDs still find their profile
+     */
+    @Scheduled(fixedDelayString = "${adopt.profile.snapshot.interval-millis:300000}",
+            initialDelayString = "${adopt.profile.snapshot.interval-millis:300000}")
+    public void snapshotProfiles() {
+        if (snapshotter == null) {
+            return;
+        }
+        if (userProfileStore instanceof HeapProfileStore) {
+            snapshotter.write((HeapProfileStore) userProfileStore);
+        }
+        snapshotter.writeIdentities(identityGraph);
+    }
+    
+    /**
+     * Get snapshot size and timing and restore progress and throughput
+     */
+    public Map<String, Object> getSnapshotStats() {
+        if (snapshotter == null) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("enabled", false);
+            return stats;
+        }
+        return snapshotter.getStats();
+    }
     
     /**
      * Get user profile data based on cookie ID or device ID
      * 
      * @param cookieId the browser cookie ID
      * @param deviceId the device ID (for mobile)
-     * @return map of user profile attributes
+     * @return the user profile
+     */
+    public UserProfile getUserProfile(String cookieId, String deviceId) {
+        return getUserProfile(cookieId, deviceId, null);
+    }
+    
+    /**
+     * Get user profile data for all identifiers of a bid request
+     * 
+     * @param cookieId the browser cookie ID
+     * @param deviceId the device ID (for mobile)
+     * @param userProfileIds comma-separated user-profile IDs from the exchange, may be null
+     * @return the user profile
+     */
+    public UserProfile getUserProfile(String cookieId, String deviceId, String userProfileIds) {
+        String profileKey = resolveProfileKey(cookieId, deviceId, userProfileIds);
+        return profileKey != null ? loadProfile(profileKey) : createSyntheticProfile(null);
+    }
+    
+    /**
+     * Link identifiers seen together for the same person, e.g. from login or sync events,
+     * merging their profiles if they had separate ones. Links are queued with the user
+     * events and applied by the folder, so the change is visible within the flush interval.
+     * 
+     * @param ids cookie, device or user-profile IDs
      */
-    public Map<String, Object> getUserProfile(String cookieId, String deviceId) {
-        // Try to get profile by cookie ID first
-        if (cookieId != null && !cookieId.isEmpty()) {
-            Map<String, Object> profile = userProfileCache.get(cookieId);
-            if (profile != null) {
-                return profile;
+    public void linkIdentities(List<String> ids) {
+        String first = null;
+        for (String id : ids) {
+            if (id == null || id.isEmpty()) {
+                continue;
             }
-        }
-        
-        // Try to get profile by device ID next
-        if (deviceId != null && !deviceId.isEmpty()) {
-            Map<String, Object> profile = userProfileCache.get(deviceId);
-            if (profile != null) {
-                return profile;
+            if (first == null) {
+                first = id;
+            } else {
+                requestLink(first, id);
             }
         }
-        
-        // If no profile exists, create a synthetic one for demonstration
-        Map<String, Object> syntheticProfile = createSyntheticProfile(cookieId != null ? cookieId : deviceId);
-        
-        // Cache the synthetic profile
-        String profileKey = cookieId != null && !cookieId.isEmpty() ? cookieId : deviceId;
-        if (profileKey != null && !profileKey.isEmpty()) {
-            userProfileCache.put(profileKey, syntheticProfile);
-        }
-        
-        return syntheticProfile;
     }
     
     /**
-     * Update user profile with new data
+     * Get identity graph size and merge statistics
+     */
+    public Map<String, Object> getIdentityStats() {
+        return identityGraph.getStats();
+    }
+    
+    /**
+     * Update user profile with new data. The update is queued with the user events and
+     * merged by the folder, so the change is visible within the flush interval.
      * 
      * @param cookieId the browser cookie ID
      * @param deviceId the device ID (for mobile)
-     * @param newData the new data to merge into the profile
+     * @param newData the new data to merge into the profile; only profile attributes in
+     *                {@link UserProfile#MERGEABLE_ATTRIBUTES} whose values convert to the
+     *                profile's types are kept
      */
     public void updateUserProfile(String cookieId, String deviceId, Map<String, Object> newData) {
-        Map<String, Object> existingProfile = getUserProfile(cookieId, deviceId);
-        existingProfile.putAll(newData);
+        if ((cookieId == null || cookieId.isEmpty()) && (deviceId == null || deviceId.isEmpty())
+                || newData == null) {
+            return;
+        }
         
-        // Update cache
-        String profileKey = cookieId != null && !cookieId.isEmpty() ? cookieId : deviceId;
-        if (profileKey != null && !profileKey.isEmpty()) {
-            userProfileCache.put(profileKey, existingProfile);
+        Map<String, Object> data = filterAttributes(newData);
+        if (data == null) {
+            return;
         }
+        eventBuffer.append(new UserEvent(cookieId, deviceId, UserEvent.Type.OTHER,
+                clockService.currentTimeMillis(), data));
     }
     
     /**
-     * Track a user event (click, conversion, etc.)
+     * Track a user event (click, conversion, etc.). Events are buffered and folded into the
+     * profile in batches, so the change is visible within the flush interval.
      * 
      * @param cookieId the browser cookie ID
      * @param deviceId the device ID (for mobile)
      * @param eventType the type of event
-     * @param eventData additional event data
+     * @param eventData additional event data; only profile attributes in
+     *                  {@link UserProfile#MERGEABLE_ATTRIBUTES} whose values convert to the
+     *                  profile's types are kept
+     * @return false if the event had no ID or was dropped because its buffer is full
      */
-    public void trackUserEvent(String cookieId, String deviceId, String eventType, Map<String, Object> eventData) {
-        Map<String, Object> profile = getUserProfile(cookieId, deviceId);
-        
-        // Update profile based on event type
-        switch (eventType) {
-            case "click":
-                profile.put("lastClickTimestamp", System.currentTimeMillis());
-                profile.put("totalClicks", ((Integer) profile.getOrDefault("totalClicks", 0)) + 1);
-                break;
-                
-            case "conversion":
-                profile.put("lastConversionTimestamp", System.currentTimeMillis());
-                profile.put("totalConversions", ((Integer) profile.getOrDefault("totalConversions", 0)) + 1);
-                profile.put("hasPreviousConversion", true);
-                break;
-                
-            case "pageview":
-                profile.put("lastPageviewTimestamp", System.currentTimeMillis());
-                profile.put("totalPageviews", ((Integer) profile.getOrDefault("totalPageviews", 0)) + 1);
-                profile.put("daysSinceLastVisit", 0);
+    public boolean trackUserEvent(String cookieId, String deviceId, String eventType, Map<String, Object> eventData) {
+        if ((cookieId == null || cookieId.isEmpty()) && (deviceId == null || deviceId.isEmpty())) {
+            return false;
+        }
+        
+        Map<String, Object> data = eventData != null ? filterAttributes(eventData) : null;
+        return eventBuffer.append(new UserEvent(cookieId, deviceId, UserEvent.Type.fromName(eventType),
+                clockService.currentTimeMillis(), data));
+    }
+    
+    /**
+     * Get event buffer, folding and attribute rejection statistics
+     */
+    public Map<String, Object> getEventStats() {
+        Map<String, Object> stats = eventBuffer.getStats();
+        stats.put("folded", foldedEvents.sum());
+        stats.put("batches", foldedBatches.sum());
+        stats.put("profilesUpdated", updatedProfiles.sum());
+        stats.put("rejectedAttributes", rejectedAttributes.sum());
+        stats.put("failedUpdates", failedUpdates.sum());
+        return stats;
+    }
+    
+    /**
+     * Get profile store size, capacity and access statistics
+     */
+    public Map<String, Object> getCacheStats() {
+        return userProfileStore.getStats();
+    }
+    
+    // Helper methods
+    
+    private String resolveProfileKey(String cookieId, String deviceId, String userProfileIds) {
+        String primaryId = cookieId != null && !cookieId.isEmpty() ? cookieId : deviceId;
+        if (primaryId == null || primaryId.isEmpty()) {
+            return null;
+        }
+        
+        // Known identifiers resolve in a single lookup
+        String profileKey = identityGraph.resolve(primaryId);
+        if (profileKey != null) {
+            return profileKey;
+        }
+        
+        // First sight: have the folder link the other identifiers of the request, so they
+        // share one profile from the next batch on; the graph lock stays off the bid path
+        if (primaryId.equals(cookieId) && deviceId != null && !deviceId.isEmpty()) {
+            requestLink(primaryId, deviceId);
+        }
+        if (userProfileIds != null && !userProfileIds.isEmpty()) {
+            for (String userProfileId : userProfileIds.split(",")) {
+                if (!userProfileId.isBlank()) {
+                    requestLink(primaryId, userProfileId.trim());
+                }
+            }
+        }
+        return primaryId;
+    }
+    
+    private void requestLink(String firstId, String secondId) {
+        eventBuffer.append(new UserEvent(firstId, secondId, UserEvent.Type.LINK,
+                clockService.currentTimeMillis(), null));
+    }
+    
+    /**
+     * Keep only attributes the profile layout can hold, converted to the types it holds
+     *
+     * @return the kept attributes, or null if none were kept
+     */
+    private Map<String, Object> filterAttributes(Map<String, Object> attributes) {
+        Map<String, Object> data = null;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            Object value = UserProfile.MERGEABLE_ATTRIBUTES.contains(entry.getKey())
+                    ? UserProfile.normalizeAttribute(entry.getKey(), entry.getValue())
+                    : null;
+            if (value == null) {
+                rejectedAttributes.increment();
+                continue;
+            }
+            if (data == null) {
+                data = new HashMap<>(4);
+            }
+            data.put(entry.getKey(), value);
+        }
+        return data;
+    }
+    
+    private void restoreSnapshot(HeapProfileStore store) {
+        long start = System.nanoTime();
+        long profiles = snapshotter.restore(store, restoreThreads, clockService.currentTimeMillis());
+        if (profiles == 0) {
+            return;
+        }
+        
+        // Hold startup, and so traffic, until enough of the snapshot is back; the rest loads in the background
+        try {
+            boolean ready = snapshotter.awaitRestored(readyFraction, TimeUnit.SECONDS.toMillis(readyTimeoutSeconds));
+            log.info("Profile store {} after {} ms: {} of {} snapshot profiles restored",
+                    ready ? "ready" : "readiness timed out", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    snapshotter.getStats().get("restoredProfiles"), profiles);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void foldLoop() {
+        List<UserEvent> batch = new ArrayList<>();
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(eventFlushMillis);
+        while (running) {
+            // Woken early when a stripe is half full, and by interrupt on shutdown
+            LockSupport.parkNanos(flushNanos);
+            if (!running) {
                 break;
+            }
+            try {
+                foldEvents(batch);
+            } catch (Exception e) {
+                log.warn("Folding user events failed: {}", e.getMessage());
+            }
+        }
+        foldEvents(batch);
+    }
+    
+    private void foldEvents(List<UserEvent> batch) {
+        batch.clear();
+        if (eventBuffer.drainTo(batch) == 0) {
+            return;
+        }
+        
+        // Apply links first, so the batch's events land on the merged profiles
+        for (UserEvent event : batch) {
+            if (event.getType() == UserEvent.Type.LINK) {
+                link(event.getCookieId(), event.getDeviceId());
+            } else if (event.getPrimaryId().equals(event.getCookieId()) && event.getDeviceId() != null
+                    && !event.getDeviceId().isEmpty() && identityGraph.resolve(event.getCookieId()) == null) {
+                link(event.getCookieId(), event.getDeviceId());
+            }
         }
         
-        // Merge any additional event data
-        if (eventData != null) {
-            profile.putAll(eventData);
+        // Aggregate per user, so each profile is read and written once per batch
+        Map<String, PendingProfileUpdate> updates = new HashMap<>();
+        for (UserEvent event : batch) {
+            if (event.getType() != UserEvent.Type.LINK) {
+                updates.computeIfAbsent(event.getPrimaryId(), id -> new PendingProfileUpdate()).add(event);
+            }
+        }
+        
+        long now = clockService.currentTimeMillis();
+        for (Map.Entry<String, PendingProfileUpdate> entry : updates.entrySet()) {
+            String profileKey = identityGraph.resolve(entry.getKey());
+            if (profileKey == null) {
+                profileKey = entry.getKey();
+            }
+            
+            // One bad update must not lose the rest of the batch
+            try {
+                UserProfile profile = userProfileStore.get(profileKey, foldScratch, now);
+                if (profile == null) {
+                    profile = createSyntheticProfile(profileKey);
+                }
+                entry.getValue().applyTo(profile);
+                userProfileStore.put(profileKey, profile, now);
+            } catch (RuntimeException e) {
+                failedUpdates.increment();
+                log.warn("Folding events into profile {} failed: {}", profileKey, e.getMessage());
+            }
         }
         
-        // Update cache
-        String profileKey = cookieId != null && !cookieId.isEmpty() ? cookieId : deviceId;
-        if (profileKey != null && !profileKey.isEmpty()) {
-            userProfileCache.put(profileKey, profile);
+        foldedEvents.add(batch.size());
+        foldedBatches.increment();
+        updatedProfiles.add(updates.size());
+        batch.clear();
+    }
+    
+    private UserProfile loadProfile(String profileKey) {
+        UserProfile profile = userProfileStore.get(profileKey, clockService.currentTimeMillis());
+        if (profile != null) {
+            return profile;
         }
+        
+        // If no profile exists, create a synthetic one for demonstration; it is derived from
+        // the key, so the folder stores the same one (the heap cache does not admit one-off
+        // IDs once full)
+        UserProfile syntheticProfile = createSyntheticProfile(profileKey);
+        eventBuffer.append(new UserEvent(profileKey, null, UserEvent.Type.OTHER,
+                clockService.currentTimeMillis(), null));
+        
+        return syntheticProfile;
     }
     
-    // Helper methods
+    private void link(String firstId, String secondId) {
+        String absorbedKey = identityGraph.link(firstId, secondId);
+        if (absorbedKey == null) {
+            return;
+        }
+        
+        // Two profiles turned out to be the same person; fold the absorbed one into the
+        // survivor and drop it, since no ID resolves to its key any more
+        long now = clockService.currentTimeMillis();
+        UserProfile absorbed = userProfileStore.get(absorbedKey, linkScratch, now);
+        if (absorbed == null) {
+            return;
+        }
+        String survivorKey = identityGraph.resolve(firstId);
+        UserProfile survivor = userProfileStore.get(survivorKey, foldScratch, now);
+        boolean stored;
+        if (survivor != null) {
+            survivor.merge(absorbed);
+            stored = userProfileStore.put(survivorKey, survivor, now);
+        } else {
+            stored = userProfileStore.put(survivorKey, absorbed, now);
+        }
+        if (stored) {
+            userProfileStore.remove(absorbedKey);
+        }
+    }
     
-    private Map<String, Object> createSyntheticProfile(String userId) {
-        Map<String, Object> profile = new HashMap<>();
+    private UserProfile createSyntheticProfile(String userId) {
+        UserProfile profile = new UserProfile();
+        Random random = userId != null ? new Random(userId.hashCode()) : this.random;
         
         // Basic demographics (synthetic)
-        profile.put("ageGroup", getRandomAgeGroup());
-        profile.put("gender", getRandomGender());
-        profile.put("income", getRandomIncome());
+        profile.setAgeGroup(getRandomAgeGroup(random));
+        profile.setGender(getRandomGender(random));
+        profile.setIncome(getRandomIncome(random));
         
         // Behavioral attributes
-        profile.put("isTargetAudience", random.nextBoolean());
-        profile.put("purchasingPower", 0.1 + (random.nextDouble() * 0.9)); // 0.1 to 1.0
-        profile.put("engagementLevel", 0.1 + (random.nextDouble() * 0.9)); // 0.1 to 1.0
+        profile.setTargetAudience(random.nextBoolean());
+        profile.setPurchasingPower(0.1f + (random.nextFloat() * 0.9f)); // 0.1 to 1.0
+        profile.setEngagementLevel(0.1f + (random.nextFloat() * 0.9f)); // 0.1 to 1.0
         
         // Recency metrics
-        profile.put("daysSinceLastVisit", random.nextInt(30));
-        profile.put("daysSinceLastInterest", random.nextInt(60));
+        profile.setDaysSinceLastVisit(random.nextInt(30));
+        profile.setDaysSinceLastInterest(random.nextInt(60));
         
         // Conversion history
-        boolean hasPreviousConversion = random.nextDouble() < 0.3; // 30% chance
-        profile.put("hasPreviousConversion", hasPreviousConversion);
+        profile.setPreviousConversion(random.nextDouble() < 0.3); // 30% chance
         
         // Interest categories (synthetic)
-        String[] interests = getRandomInterests();
-        profile.put("interests", interests);
+        addRandomInterests(profile, random);
         
         return profile;
     }
     
-    private String getRandomAgeGroup() {
-        String[] ageGroups = {"18-24", "25-34", "35-44", "45-54", "55-64", "65+"};
-        return ageGroups[random.nextInt(ageGroups.length)];
+    private UserProfile.AgeGroup getRandomAgeGroup(Random random) {
+        // Any known age group, excluding UNKNOWN
+        return UserProfile.AgeGroup.values()[random.nextInt(UserProfile.AgeGroup.values().length - 1)];
     }
     
-    private String getRandomGender() {
-        String[] genders = {"male", "female", "other", "unknown"};
-        return genders[random.nextInt(genders.length)];
+    private UserProfile.Gender getRandomGender(Random random) {
+        return UserProfile.Gender.values()[random.nextInt(UserProfile.Gender.values().length)];
     }
     
-    private int getRandomIncome() {
+    private int getRandomIncome(Random random) {
         // Random income between $20,000 and $200,000
         return 20000 + (random.nextInt(18) * 10000);
     }
     
-    private String[] getRandomInterests() {
+    private void addRandomInterests(UserProfile profile, Random random) {
         String[] allInterests = {
             "technology", "travel", "fashion", "sports", "food", "gaming",
             "automotive", "finance", "health", "education", "entertainment",
@@ -173,12 +536,69 @@ public class UserProfileService {
         
         // Select 1-5 random interests
         int numInterests = 1 + random.nextInt(5);
-        String[] interests = new String[numInterests];
-        
         for (int i = 0; i < numInterests; i++) {
-            interests[i] = allInterests[random.nextInt(allInterests.length)];
+            profile.addInterest(allInterests[random.nextInt(allInterests.length)]);
+        }
+    }
+    
+    /**
+     * A batch's events for one user, aggregated into primitive counters
+     */
+    private static final class PendingProfileUpdate {
+        private int clicks;
+        private int conversions;
+        private int pageviews;
+        private long lastClickTimestamp;
+        private long lastConversionTimestamp;
+        private long lastPageviewTimestamp;
+        private Map<String, Object> data;
+        
+        private void add(UserEvent event) {
+            switch (event.getType()) {
+                case CLICK:
+                    clicks++;
+                    lastClickTimestamp = Math.max(lastClickTimestamp, event.getTimestamp());
+                    break;
+                case CONVERSION:
+                    conversions++;
+                    lastConversionTimestamp = Math.max(lastConversionTimestamp, event.getTimestamp());
+                    break;
+                case PAGEVIEW:
+                    pageviews++;
+                    lastPageviewTimestamp = Math.max(lastPageviewTimestamp, event.getTimestamp());
+                    break;
+                default:
+                    break;
+            }
+            
+            // Later events override earlier values of the same attribute
+            if (event.getData() != null) {
+                if (data == null) {
+                    data = new HashMap<>(event.getData());
+                } else {
+                    data.putAll(event.getData());
+                }
+            }
         }
         
-        return interests;
+        private void applyTo(UserProfile profile) {
+            if (clicks > 0) {
+                profile.setLastClickTimestamp(Math.max(profile.getLastClickTimestamp(), lastClickTimestamp));
+                profile.setTotalClicks(profile.getTotalClicks() + clicks);
+            }
+            if (conversions > 0) {
+                profile.setLastConversionTimestamp(Math.max(profile.getLastConversionTimestamp(), lastConversionTimestamp));
+                profile.setTotalConversions(profile.getTotalConversions() + conversions);
+                profile.setPreviousConversion(true);
+            }
+            if (pageviews > 0) {
+                profile.setLastPageviewTimestamp(Math.max(profile.getLastPageviewTimestamp(), lastPageviewTimestamp));
+                profile.setTotalPageviews(profile.getTotalPageviews() + pageviews);
+                profile.setDaysSinceLastVisit(0);
+            }
+            if (data != null) {
+                profile.merge(data);
+            }
+        }
     }
-} 
\ No newline at end of file
+}
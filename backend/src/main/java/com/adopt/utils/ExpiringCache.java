@@ -0,0 +1,100 @@
+package com.adopt.utils;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded map whose entries expire a fixed time after they were written.
+ *
+ * A thin wrapper over a Guava cache, so lookups do not take a lock, that keeps the
+ * statistics the other caches report. Expired entries are dropped on writes, and when the
+ * map is full its oldest entries are evicted. Suited to short-lived state looked up by a
+ * unique key, such as responses awaiting notifications.
+ *
+ * @param <V> the value type
+ */
+public class ExpiringCache<V> {
+
+    private final Cache<String, V> entries;
+    private final int capacity;
+    private final long expireAfterWriteMillis;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param capacity maximum number of entries
+     * @param expireAfterWriteMillis how long an entry stays after it was written
+     * @param clockMillis source of the current time in milliseconds
+     */
+    public ExpiringCache(int capacity, long expireAfterWriteMillis, LongSupplier clockMillis) {
+        this.capacity = capacity;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(capacity)
+                .expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS)
+                .ticker(new Ticker() {
+                    @Override
+                    public long read() {
+                        return TimeUnit.MILLISECONDS.toNanos(clockMillis.getAsLong());
+                    }
+                })
+                .recordStats()
+                .<String, V>removalListener(notification -> {
+                    if (notification.getCause() == RemovalCause.EXPIRED) {
+                        expirations.increment();
+                    } else if (notification.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Get an entry
+     *
+     * @return the value, or null if there is none or it has expired
+     */
+    public V get(String key) {
+        return entries.getIfPresent(key);
+    }
+
+    /**
+     * Add or replace an entry, restarting its time to live and evicting the oldest entry if
+     * the map is full
+     */
+    public void put(String key, V value) {
+        entries.put(key, value);
+    }
+
+    public int size() {
+        return (int) entries.size();
+    }
+
+    /**
+     * Get size, hit rate, eviction and expiry statistics
+     */
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = entries.stats();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", size());
+        stats.put("capacity", capacity);
+        stats.put("expireAfterWriteMillis", expireAfterWriteMillis);
+        stats.put("hits", cacheStats.hitCount());
+        stats.put("misses", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.requestCount() > 0 ? cacheStats.hitRate() : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,72 @@
+package com.adopt.utils;
+
+/**
+ * Count-min sketch of recent key frequencies, for TinyLFU-style cache admission.
+ *
+ * Counters saturate at 15, as 4-bit TinyLFU counters do, and all of them are halved once
+ * the sketch has seen a sample of accesses ten times its width, so frequencies reflect
+ * recent traffic. Increments from concurrent threads race benignly: a lost increment only
+ * makes an estimate slightly low.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4; // Count-min rows
+    private static final int MAX_FREQUENCY = 15;
+    private static final int SAMPLE_FACTOR = 10; // Halve all counters after this many accesses per counter
+
+    private final int[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int accesses;
+
+    /**
+     * @param width counters per row, rounded up to a power of two; usually the cache capacity
+     */
+    public FrequencySketch(int width) {
+        int rowSize = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+        this.counters = new int[rowSize * DEPTH];
+        this.mask = rowSize - 1;
+        this.sampleSize = rowSize * SAMPLE_FACTOR;
+    }
+
+    /**
+     * Count one access to a key
+     */
+    public void increment(long key) {
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (mask + 1) + index(key, row);
+            if (counters[index] < MAX_FREQUENCY) {
+                counters[index]++;
+            }
+        }
+
+        if (++accesses >= sampleSize) {
+            accesses = 0;
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * Estimate how often a key was accessed recently, 0-15
+     */
+    public int frequency(long key) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row * (mask + 1) + index(key, row)]);
+        }
+        return frequency;
+    }
+
+    public long bytes() {
+        return (long) counters.length * Integer.BYTES;
+    }
+
+    // Helper methods
+
+    private int index(long key, int row) {
+        long hash = (key + row * 0x9e3779b97f4a7c15L) * 0xbf58476d1ce4e5b9L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
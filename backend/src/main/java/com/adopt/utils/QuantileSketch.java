@@ -0,0 +1,299 @@
+package com.adopt.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory, mergeable quantile sketch of a stream of values (a merging t-digest).
+ *
+ * Values are buffered and periodically merged into at most {@code compression + 2}
+ * weighted centroids, which are kept small near the tails and larger around the median,
+ * so extreme quantiles stay accurate. All arrays are allocated up front: adding a value,
+ * merging another sketch and querying never allocate. Methods are synchronized; the lock
+ * is uncontended in the common single-writer case.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_COMPRESSION = 100;
+
+    private static final double[] DEFAULT_BOUNDARIES = boundaries(DEFAULT_COMPRESSION);
+
+    // Quantiles at unit steps of the k1 scale; no centroid spans more than one unit
+    private final double[] boundaries;
+
+    // Merged centroids, sorted by mean; the spare arrays receive the next merge
+    private double[] means;
+    private double[] weights;
+    private double[] spareMeans;
+    private double[] spareWeights;
+    private int centroids;
+
+    // Values added since the last merge, each of weight one
+    private final double[] buffer;
+    private int buffered;
+
+    private double totalWeight;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression accuracy/size trade-off; the sketch holds at most compression + 2
+     *                    centroids, and quantile error is roughly 1 / compression near the median
+     */
+    public QuantileSketch(int compression) {
+        compression = Math.max(10, compression);
+        this.boundaries = compression == DEFAULT_COMPRESSION ? DEFAULT_BOUNDARIES : boundaries(compression);
+        int capacity = compression + 2;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.spareMeans = new double[capacity];
+        this.spareWeights = new double[capacity];
+        this.buffer = new double[compression];
+    }
+
+    /**
+     * Add one observation
+     */
+    public synchronized void add(double value) {
+        if (buffered == buffer.length) {
+            compress();
+        }
+        buffer[buffered++] = value;
+
+        totalWeight += 1.0;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all observations summarized by another sketch
+     */
+    public void merge(QuantileSketch other) {
+        if (other == this) {
+            return;
+        }
+        // Lock both sketches in a fixed order so concurrent cross-merges cannot deadlock
+        boolean thisFirst = System.identityHashCode(this) <= System.identityHashCode(other);
+        QuantileSketch first = thisFirst ? this : other;
+        QuantileSketch second = thisFirst ? other : this;
+        synchronized (first) {
+            synchronized (second) {
+                other.compress();
+                if (other.centroids == 0) {
+                    return;
+                }
+                compress();
+                totalWeight += other.totalWeight;
+                sum += other.sum;
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+                merge(other.means, other.weights, other.centroids);
+            }
+        }
+    }
+
+    /**
+     * Estimate the value below which a fraction q of the observations fall
+     *
+     * @return the estimate, or NaN if the sketch is empty
+     */
+    public synchronized double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0.0) {
+            return min;
+        }
+        if (q >= 1.0) {
+            return max;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+
+        // Each centroid's weight is centered on its mean; interpolate between neighbouring
+        // centers, and between the outer centers and the exact extremes
+        double index = q * totalWeight;
+        double firstHalf = weights[0] / 2;
+        if (index < firstHalf) {
+            return min + (means[0] - min) * index / firstHalf;
+        }
+
+        double weightSoFar = firstHalf;
+        for (int i = 0; i < centroids - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (weightSoFar + gap > index) {
+                return means[i] + (means[i + 1] - means[i]) * (index - weightSoFar) / gap;
+            }
+            weightSoFar += gap;
+        }
+
+        int last = centroids - 1;
+        double lastHalf = weights[last] / 2;
+        return means[last] + (max - means[last]) * Math.min(1.0, (index - weightSoFar) / lastHalf);
+    }
+
+    /**
+     * Estimate the fraction of observations at or below a value
+     *
+     * @return the fraction, or NaN if the sketch is empty
+     */
+    public synchronized double cdf(double value) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0.0;
+        }
+        if (value >= max) {
+            return 1.0;
+        }
+        if (centroids == 1) {
+            return (value - min) / (max - min);
+        }
+
+        double firstHalf = weights[0] / 2;
+        if (value < means[0]) {
+            return firstHalf * (value - min) / (means[0] - min) / totalWeight;
+        }
+
+        double weightSoFar = firstHalf;
+        for (int i = 0; i < centroids - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (value < means[i + 1]) {
+                return (weightSoFar + gap * (value - means[i]) / (means[i + 1] - means[i])) / totalWeight;
+            }
+            weightSoFar += gap;
+        }
+
+        int last = centroids - 1;
+        double lastHalf = weights[last] / 2;
+        return Math.min(1.0, (weightSoFar + lastHalf * (value - means[last]) / (max - means[last])) / totalWeight);
+    }
+
+    public synchronized long count() {
+        return (long) totalWeight;
+    }
+
+    public synchronized double mean() {
+        return totalWeight > 0 ? sum / totalWeight : Double.NaN;
+    }
+
+    public synchronized double min() {
+        return totalWeight > 0 ? min : Double.NaN;
+    }
+
+    public synchronized double max() {
+        return totalWeight > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * Get the number of merged centroids, after merging any buffered values
+     */
+    public synchronized int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    // Helper methods
+
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        // Sorting primitives in place does not allocate at this size
+        Arrays.sort(buffer, 0, buffered);
+        merge(buffer, null, buffered);
+        buffered = 0;
+    }
+
+    private void merge(double[] runMeans, double[] runWeights, int runLength) {
+        // Walk the centroids and the sorted run (unit weights if runWeights is null) in
+        // mean order, folding each into the current centroid while its span of the k1
+        // scale stays within one unit; any two neighbours then span more than one unit,
+        // which bounds the centroid count by compression + 2. totalWeight already
+        // includes the run.
+        int capacity = means.length;
+        int out = 0;
+        int i = 0;
+        int j = 0;
+        int boundary = 1;
+        double weightSoFar = 0.0;
+        double quantileLimit = boundaries[1];
+        double currentMean = 0.0;
+        double currentWeight = 0.0;
+        while (i < centroids || j < runLength) {
+            double mean;
+            double weight;
+            if (j >= runLength || (i < centroids && means[i] <= runMeans[j])) {
+                mean = means[i];
+                weight = weights[i++];
+            } else {
+                mean = runMeans[j];
+                weight = runWeights != null ? runWeights[j] : 1.0;
+                j++;
+            }
+
+            if (currentWeight == 0.0) {
+                currentMean = mean;
+                currentWeight = weight;
+            } else if ((weightSoFar + currentWeight + weight) / totalWeight <= quantileLimit
+                    || out == capacity - 1) {
+                currentWeight += weight;
+                currentMean += (mean - currentMean) * weight / currentWeight;
+            } else {
+                spareMeans[out] = currentMean;
+                spareWeights[out] = currentWeight;
+                out++;
+                weightSoFar += currentWeight;
+                double quantile = weightSoFar / totalWeight;
+                while (boundary < boundaries.length - 1 && boundaries[boundary] <= quantile) {
+                    boundary++;
+                }
+                quantileLimit = quantileLimit(quantile, boundary);
+                currentMean = mean;
+                currentWeight = weight;
+            }
+        }
+        spareMeans[out] = currentMean;
+        spareWeights[out] = currentWeight;
+        out++;
+
+        double[] swap = means;
+        means = spareMeans;
+        spareMeans = swap;
+        swap = weights;
+        weights = spareWeights;
+        spareWeights = swap;
+        centroids = out;
+    }
+
+    private double quantileLimit(double quantile, int boundary) {
+        // One unit on from the quantile, interpolating k1 linearly within each step
+        if (boundary == boundaries.length - 1) {
+            return 1.0;
+        }
+        double lower = boundaries[boundary - 1];
+        double fraction = (quantile - lower) / (boundaries[boundary] - lower);
+        return boundaries[boundary] + fraction * (boundaries[boundary + 1] - boundaries[boundary]);
+    }
+
+    private static double[] boundaries(int compression) {
+        // k1(q) = compression / (2 pi) * asin(2q - 1) spans compression / 2 units; trig is
+        // slow, so the quantile at each unit step is computed once
+        int steps = (compression + 1) / 2;
+        double[] boundaries = new double[steps + 1];
+        for (int m = 0; m < steps; m++) {
+            boundaries[m] = (1.0 - Math.cos(2.0 * Math.PI * m / compression)) / 2.0;
+        }
+        boundaries[steps] = 1.0;
+        return boundaries;
+    }
+}
@@ -0,0 +1,68 @@
+package com.adopt.utils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock for replays and load tests: starts at a chosen instant and runs at a multiple of
+ * real time, and can be advanced by hand. A speed of zero stops it between manual advances.
+ */
+public class SimulatedClock extends Clock {
+
+    private final ZoneId zone;
+    private final long startMillis;
+    private final long realStartNanos;
+    private final double speed;
+
+    // Manual advances, in simulated milliseconds
+    private final AtomicLong offsetMillis;
+
+    public SimulatedClock(Instant start, double speed, ZoneId zone) {
+        this(zone, start.toEpochMilli(), System.nanoTime(), speed, new AtomicLong());
+    }
+
+    private SimulatedClock(ZoneId zone, long startMillis, long realStartNanos, double speed, AtomicLong offsetMillis) {
+        this.zone = zone;
+        this.startMillis = startMillis;
+        this.realStartNanos = realStartNanos;
+        this.speed = speed;
+        this.offsetMillis = offsetMillis;
+    }
+
+    /**
+     * Jump ahead in simulated time
+     */
+    public void advance(Duration duration) {
+        offsetMillis.addAndGet(duration.toMillis());
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    @Override
+    public long millis() {
+        long realElapsedNanos = System.nanoTime() - realStartNanos;
+        return startMillis + (long) (realElapsedNanos * speed / 1_000_000) + offsetMillis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        // Shares the timeline, including manual advances
+        return zone.equals(this.zone) ? this
+                : new SimulatedClock(zone, startMillis, realStartNanos, speed, offsetMillis);
+    }
+}
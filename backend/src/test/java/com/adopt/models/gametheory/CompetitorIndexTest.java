@@ -0,0 +1,64 @@
+package com.adopt.models.gametheory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompetitorIndexTest {
+
+    private static final long IDLE_MILLIS = 60_000;
+
+    @Test
+    void putIfAbsentKeepsTheIndexedSlot() {
+        CompetitorIndex index = new CompetitorIndex(100, IDLE_MILLIS, () -> 0L, slot -> { });
+        CompetitorIndex.Slot first = new CompetitorIndex.Slot("slot-1");
+
+        assertSame(first, index.putIfAbsent(first));
+        assertSame(first, index.putIfAbsent(new CompetitorIndex.Slot("slot-1")));
+        assertSame(first, index.get("slot-1"));
+        assertNull(index.get("slot-2"));
+    }
+
+    @Test
+    void idleSlotsExpireToTheListener() {
+        AtomicLong clock = new AtomicLong();
+        List<CompetitorIndex.Slot> evicted = new ArrayList<>();
+        CompetitorIndex index = new CompetitorIndex(100, IDLE_MILLIS, clock::get, evicted::add);
+        index.putIfAbsent(new CompetitorIndex.Slot("idle"));
+        index.putIfAbsent(new CompetitorIndex.Slot("busy"));
+
+        // Reading a slot keeps it indexed
+        clock.set(IDLE_MILLIS / 2);
+        assertNotNull(index.get("busy"));
+        clock.set(IDLE_MILLIS + 1);
+        index.cleanUp();
+
+        assertNull(index.get("idle"));
+        assertNotNull(index.get("busy"));
+        assertEquals(1, evicted.size());
+        assertEquals("idle", evicted.get(0).getAdSlotId());
+        assertEquals(1L, index.getStats().get("expirations"));
+    }
+
+    @Test
+    void fullIndexEvictsToTheListener() {
+        List<CompetitorIndex.Slot> evicted = new ArrayList<>();
+        CompetitorIndex index = new CompetitorIndex(100, IDLE_MILLIS, () -> 0L, evicted::add);
+
+        for (int i = 0; i < 1000; i++) {
+            index.putIfAbsent(new CompetitorIndex.Slot("slot-" + i));
+        }
+
+        assertTrue(index.size() <= 100, "size " + index.size());
+        assertEquals(1000 - index.size(), evicted.size());
+        assertEquals((long) evicted.size(), index.getStats().get("evictions"));
+    }
+}
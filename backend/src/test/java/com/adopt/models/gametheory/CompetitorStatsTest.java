@@ -0,0 +1,92 @@
+package com.adopt.models.gametheory;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompetitorStatsTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final LocalDateTime NOW_TIME = LocalDateTime.of(2023, 11, 14, 22, 13);
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        CompetitorStats stats = new CompetitorStats(seed(), 4);
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            writers[w] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    stats.record(i % 2 == 0 ? 1.0 : 3.0, i % 4 == 0, NOW);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        CompetitorProfile view = stats.materialize(seed(), NOW_TIME, NOW);
+
+        assertEquals(40_000, stats.getObservations());
+        assertEquals(40_000, view.getBidCount());
+        assertEquals(2.0, view.getAverageBidPrice().doubleValue(), 1e-9);
+        assertEquals(1.0, view.getMinBidPrice().doubleValue());
+        assertEquals(3.0, view.getMaxBidPrice().doubleValue());
+        assertEquals(0.25, view.getWinRate(), 1e-9);
+        assertTrue(view.hasBidDistribution());
+        assertEquals(0.5, view.bidCdf(2.0), 0.01);
+    }
+
+    @Test
+    void seedIsThePrior() {
+        CompetitorProfile seed = seed();
+        seed.setBidCount(10);
+        seed.setAverageBidPrice(BigDecimal.valueOf(4.0));
+        CompetitorStats stats = new CompetitorStats(seed, 1);
+
+        stats.record(1.0, false, NOW);
+        CompetitorProfile view = stats.materialize(seed, NOW_TIME, NOW);
+
+        assertEquals(11, view.getBidCount());
+        assertEquals(41.0 / 11, view.getAverageBidPrice().doubleValue(), 1e-9);
+    }
+
+    @Test
+    void viewDistributionIsAPointInTimeSnapshot() {
+        CompetitorStats stats = new CompetitorStats(seed(), 2);
+        for (int i = 0; i < 100; i++) {
+            stats.record(1.0, false, NOW);
+        }
+        CompetitorProfile first = stats.materialize(seed(), NOW_TIME, NOW);
+
+        for (int i = 0; i < 1000; i++) {
+            stats.record(10.0, false, NOW);
+        }
+
+        // Bids recorded since do not reach the earlier view
+        assertEquals(1.0, first.bidQuantile(0.9));
+        assertEquals(1.0, first.bidCdf(1.0));
+        assertTrue(stats.isDirty());
+
+        CompetitorProfile second = stats.materialize(first, NOW_TIME, NOW);
+        assertEquals(10.0, second.bidQuantile(0.9));
+        assertFalse(stats.isDirty());
+        assertNotSame(first, second);
+    }
+
+    // Helper methods
+
+    private static CompetitorProfile seed() {
+        return CompetitorProfile.builder()
+                .competitorId("aggressive_slot-1")
+                .competitorName("aggressive")
+                .adSlotId("slot-1")
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.gametheory.CompetitorWindow.Horizon;
+import com.adopt.models.gametheory.CompetitorWindow.Summary;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompetitorWindowTest {
+
+    private static final long MINUTE = 60_000L;
+
+    // Start of an hour, so minute and hour buckets line up
+    private static final long START = 1_700_000_000_000L / (60 * MINUTE) * (60 * MINUTE);
+
+    @Test
+    void windowsCountRecentBids() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        window.record(1.0, START);
+        window.record(2.0, START + 30_000);
+        window.record(3.0, START + MINUTE);
+
+        Summary summary = window.summarize(START + MINUTE);
+
+        for (Horizon horizon : Horizon.values()) {
+            assertEquals(3, summary.count(horizon), horizon.name());
+            assertEquals(2.0, summary.average(horizon), 1e-9, horizon.name());
+        }
+    }
+
+    @Test
+    void bidsExpireFromEachWindowInTurn() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        window.record(1.5, START);
+
+        Summary afterFiveMinutes = window.summarize(START + 5 * MINUTE);
+        assertEquals(0, afterFiveMinutes.count(Horizon.FIVE_MINUTES));
+        assertTrue(Double.isNaN(afterFiveMinutes.average(Horizon.FIVE_MINUTES)));
+        assertEquals(1, afterFiveMinutes.count(Horizon.HOUR));
+
+        // The minute ring wraps after an hour; the old bucket must not be counted again
+        Summary afterHour = window.summarize(START + 61 * MINUTE);
+        assertEquals(0, afterHour.count(Horizon.HOUR));
+        assertEquals(1, afterHour.count(Horizon.DAY));
+
+        Summary afterDay = window.summarize(START + 24 * 60 * MINUTE);
+        assertEquals(0, afterDay.count(Horizon.DAY));
+    }
+
+    @Test
+    void rollFoldsClosedMinutesIntoDecayedAverages() {
+        CompetitorWindow window = new CompetitorWindow();
+        assertFalse(window.roll(START));
+        window.record(10.0, START);
+        window.record(20.0, START + 1_000);
+
+        assertTrue(window.roll(START + MINUTE));
+        assertEquals(15.0, window.summarize(START + MINUTE).decayedAverage(Horizon.HOUR), 1e-9);
+
+        // The open minute counts in full until it is rolled, then decays with the rest
+        window.record(40.0, START + MINUTE);
+        assertEquals(70.0 / 3, window.summarize(START + MINUTE).decayedAverage(Horizon.HOUR), 1e-9);
+
+        window.roll(START + 2 * MINUTE);
+        double decay = Math.exp(-1.0 / Horizon.FIVE_MINUTES.getMinutes());
+        assertEquals((30.0 * decay + 40.0) / (2.0 * decay + 1.0),
+                window.summarize(START + 2 * MINUTE).decayedAverage(Horizon.FIVE_MINUTES), 1e-9);
+    }
+
+    @Test
+    void rollWithinTheSameMinuteChangesNothing() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        window.record(10.0, START);
+        window.roll(START + MINUTE);
+
+        assertFalse(window.roll(START + MINUTE + 30_000));
+        assertEquals(10.0, window.summarize(START + MINUTE + 30_000).decayedAverage(Horizon.DAY), 1e-9);
+    }
+
+    @Test
+    void longGapResetsDecayedState() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        window.record(10.0, START);
+        window.roll(START + MINUTE);
+
+        long weekLater = START + 8 * 24 * 60 * MINUTE;
+        assertTrue(window.roll(weekLater));
+
+        Summary summary = window.summarize(weekLater);
+        assertTrue(Double.isNaN(summary.decayedAverage(Horizon.DAY)));
+        assertEquals(0, summary.count(Horizon.DAY));
+    }
+
+    @Test
+    void rollReportsChangesOnlyWhenTheWindowsMove() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        assertFalse(window.roll(START + MINUTE));
+
+        window.record(10.0, START + MINUTE);
+        assertTrue(window.roll(START + 2 * MINUTE));
+
+        // Nothing closes with bids until the bid leaves the five-minute window
+        for (int m = 3; m <= 5; m++) {
+            assertFalse(window.roll(START + m * MINUTE), "minute " + m);
+        }
+        assertTrue(window.roll(START + 6 * MINUTE));
+        assertEquals(0, window.summarize(START + 6 * MINUTE).count(Horizon.FIVE_MINUTES));
+
+        // Then again only when it leaves the hour window
+        for (int m = 7; m <= 60; m++) {
+            assertFalse(window.roll(START + m * MINUTE), "minute " + m);
+        }
+        assertTrue(window.roll(START + 61 * MINUTE));
+        assertEquals(0, window.summarize(START + 61 * MINUTE).count(Horizon.HOUR));
+    }
+
+    @Test
+    void lateBidForAnOverwrittenMinuteIsDropped() {
+        CompetitorWindow window = new CompetitorWindow();
+        window.roll(START);
+        window.record(5.0, START + 61 * MINUTE); // Same minute bucket as START, an hour on
+
+        window.record(1.0, START);
+
+        Summary summary = window.summarize(START + 61 * MINUTE);
+        assertEquals(1, summary.count(Horizon.FIVE_MINUTES));
+        assertEquals(5.0, summary.average(Horizon.FIVE_MINUTES), 1e-9);
+    }
+}
@@ -0,0 +1,84 @@
+package com.adopt.models.gametheory;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReinforcementLearningModelTest {
+
+    private static final int ROUNDS = 3000;
+    private static final int MEASURED = 500;
+
+    @Test
+    void learnsToWinImpressionsWorthMoreThanTheClearingPrice() {
+        // At the target CTR an impression is worth about 1.8 against a competitor bidding 0.9
+        double winRate = play(new ReinforcementLearningModel(), 0.9);
+
+        assertTrue(winRate > 0.85, "win rate " + winRate);
+    }
+
+    @Test
+    void learnsToStopWinningImpressionsThatCostMoreThanTheyAreWorth() {
+        double winRate = play(new ReinforcementLearningModel(), 1.95);
+
+        assertTrue(winRate < 0.15, "win rate " + winRate);
+    }
+
+    @Test
+    void expectedValueOfATargetImpressionIsTheMaxBid() {
+        AdCampaign campaign = campaign();
+
+        double value = ImpressionValue.expected(campaign, campaign.getTargetCTR(), campaign.getTargetConversionRate());
+
+        assertTrue(Math.abs(value - campaign.getMaxBidPrice().doubleValue()) < 1e-9, "value " + value);
+    }
+
+    // Helper methods
+
+    private static double play(ReinforcementLearningModel model, double competitorBid) {
+        AdCampaign campaign = campaign();
+        BidRequest request = BidRequest.builder()
+                .adSlotId("slot-1")
+                .adSlotFloorPrice(new BigDecimal("0.01"))
+                .build();
+
+        int wins = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            BigDecimal bid = model.calculateOptimalBid(request, campaign, Collections.emptyMap(), Collections.emptyMap());
+            boolean won = bid.doubleValue() > competitorBid;
+            BidResponse response = BidResponse.builder()
+                    .bidRequest(request)
+                    .campaign(campaign)
+                    .bidPrice(bid)
+                    .actualPrice(won ? BigDecimal.valueOf(competitorBid) : null)
+                    .isWon(won)
+                    .isClicked(false)
+                    .isConverted(false)
+                    .predictedCtr(campaign.getTargetCTR())
+                    .predictedCvr(0.0)
+                    .build();
+            model.updateModel(response, Collections.emptyMap());
+            if (won && round >= ROUNDS - MEASURED) {
+                wins++;
+            }
+        }
+        return (double) wins / MEASURED;
+    }
+
+    private static AdCampaign campaign() {
+        return AdCampaign.builder()
+                .id(1L)
+                .campaignType(AdCampaign.CampaignType.CPC)
+                .maxBidPrice(new BigDecimal("2.00"))
+                .bidFloor(new BigDecimal("0.01"))
+                .targetCTR(0.02)
+                .targetConversionRate(0.1)
+                .build();
+    }
+}
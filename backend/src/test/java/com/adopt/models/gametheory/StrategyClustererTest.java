@@ -0,0 +1,108 @@
+package com.adopt.models.gametheory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StrategyClustererTest {
+
+    private static final int PER_GROUP = 200;
+
+    @Test
+    void separatesBehaviorsAndNamesThem() {
+        double[] matrix = threeStrategies(PER_GROUP, new Random(1));
+        StrategyClusterer.Result result = new StrategyClusterer(3, 50, ForkJoinPool.commonPool())
+                .cluster(matrix, 3 * PER_GROUP);
+
+        assertEquals(3, result.clusterCount());
+        assertGroup(result, 0, StrategyClusterer.AGGRESSIVE);
+        assertGroup(result, 1, StrategyClusterer.CONSERVATIVE);
+        assertGroup(result, 2, StrategyClusterer.TIME_SENSITIVE);
+
+        int timeSensitive = result.clusterOf(2 * PER_GROUP);
+        double[] curve = result.hourlyFactors(timeSensitive);
+        assertTrue(curve[20] > curve[4] + 0.5, "evening " + curve[20] + ", night " + curve[4]);
+    }
+
+    @Test
+    void newCompetitorJoinsTheNearestClusterWithoutItsCurve() {
+        Random random = new Random(2);
+        double[] matrix = threeStrategies(PER_GROUP, random);
+        StrategyClusterer.Result result = new StrategyClusterer(3, 50, ForkJoinPool.commonPool())
+                .cluster(matrix, 3 * PER_GROUP);
+
+        double[] newcomer = new double[StrategyClusterer.FEATURES];
+        row(newcomer, 0, Math.log(3.0), random, false);
+
+        assertEquals(result.clusterOf(0), result.assign(newcomer, 0, StrategyClusterer.CURVE));
+    }
+
+    @Test
+    void parallelPassesGiveTheSameClustersAsOneThread() {
+        // Enough rows that the assignment pass splits over the pool
+        double[] matrix = threeStrategies(10_000, new Random(3));
+        int rows = 30_000;
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            StrategyClusterer.Result sequential = new StrategyClusterer(3, 50, single).cluster(matrix, rows);
+            StrategyClusterer.Result split = new StrategyClusterer(3, 50, parallel).cluster(matrix, rows);
+
+            assertArrayEquals(assignments(sequential, rows), assignments(split, rows));
+            assertEquals(sequential.getIterations(), split.getIterations());
+            assertEquals(sequential.getCost(), split.getCost(), 1e-6 * sequential.getCost());
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    // Helper methods
+
+    private static void assertGroup(StrategyClusterer.Result result, int group, String label) {
+        int cluster = result.clusterOf(group * PER_GROUP);
+        for (int row = group * PER_GROUP; row < (group + 1) * PER_GROUP; row++) {
+            assertEquals(cluster, result.clusterOf(row), "row " + row);
+        }
+        assertEquals(label, result.label(cluster));
+        assertEquals(PER_GROUP, result.size(cluster));
+    }
+
+    /**
+     * Rows of high flat bidders, then low flat bidders, then evening bidders
+     */
+    private static double[] threeStrategies(int perGroup, Random random) {
+        double[] matrix = new double[3 * perGroup * StrategyClusterer.FEATURES];
+        for (int i = 0; i < perGroup; i++) {
+            row(matrix, i, Math.log(3.0), random, false);
+            row(matrix, perGroup + i, Math.log(1.05), random, false);
+            row(matrix, 2 * perGroup + i, Math.log(1.6), random, true);
+        }
+        return matrix;
+    }
+
+    private static void row(double[] matrix, int row, double level, Random random, boolean evening) {
+        int base = row * StrategyClusterer.FEATURES;
+        matrix[base + StrategyClusterer.LEVEL] = level + 0.02 * random.nextGaussian();
+        matrix[base + StrategyClusterer.LOW_SPREAD] = 0.8 + 0.02 * random.nextGaussian();
+        matrix[base + StrategyClusterer.HIGH_SPREAD] = 1.2 + 0.02 * random.nextGaussian();
+        matrix[base + StrategyClusterer.WIN_RATE] = 0.3 + 0.02 * random.nextGaussian();
+        for (int h = 0; h < CompetitorBidCurve.HOURS; h++) {
+            double factor = evening ? (h >= 18 && h <= 22 ? 1.6 : 0.8) : 1.0;
+            matrix[base + StrategyClusterer.CURVE + h] = factor + 0.02 * random.nextGaussian();
+        }
+    }
+
+    private static int[] assignments(StrategyClusterer.Result result, int rows) {
+        int[] assignments = new int[rows];
+        Arrays.setAll(assignments, result::clusterOf);
+        return assignments;
+    }
+}
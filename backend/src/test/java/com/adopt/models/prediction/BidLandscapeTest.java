@@ -0,0 +1,74 @@
+package com.adopt.models.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BidLandscapeTest {
+
+    @Test
+    void floorPriorNeverWinsBelowTheFloor() {
+        BidLandscape prior = BidLandscape.floorPrior(1.0);
+
+        assertEquals(0.0, prior.winProbability(0.5));
+        assertTrue(prior.winProbability(2.0) > 0.4 && prior.winProbability(2.0) < 0.6);
+        assertTrue(prior.winProbability(3.0) > 0.9);
+    }
+
+    @Test
+    void learnsTheClearingPriceFromOutcomes() {
+        BidLandscape prior = BidLandscape.floorPrior(0.5);
+        BidLandscape landscape = BidLandscape.fromPrior(prior);
+
+        // Competitors clear at 2.00 (the prior expects 1.25); enough outcomes outweigh the prior
+        for (int round = 0; round < 500; round++) {
+            for (int bucket = 0; bucket < BidLandscape.PRICE_BUCKETS; bucket++) {
+                double price = bucket * BidLandscape.BUCKET_WIDTH;
+                if (landscape.record(price, price >= 2.0)) {
+                    landscape.rebuild(prior);
+                }
+            }
+        }
+        landscape.rebuild(prior);
+
+        assertTrue(landscape.winProbability(1.5) < 0.1, "at 1.50: " + landscape.winProbability(1.5));
+        assertTrue(landscape.winProbability(2.5) > 0.9, "at 2.50: " + landscape.winProbability(2.5));
+        assertEquals(50_000, landscape.getObservations());
+    }
+
+    @Test
+    void curveNeverFallsAsTheBidRises() {
+        BidLandscape prior = BidLandscape.floorPrior(0.5);
+        BidLandscape landscape = BidLandscape.fromPrior(prior);
+
+        // Noisy outcomes that win cheap and lose dear
+        for (int i = 0; i < 200; i++) {
+            landscape.record(0.5, true);
+            landscape.record(4.0, false);
+        }
+        landscape.rebuild(prior);
+
+        double previous = 0.0;
+        for (int bucket = 0; bucket < BidLandscape.PRICE_BUCKETS; bucket++) {
+            double probability = landscape.winProbability(bucket * BidLandscape.BUCKET_WIDTH);
+            assertTrue(probability >= previous, "falls at bucket " + bucket);
+            previous = probability;
+        }
+    }
+
+    @Test
+    void asksForARebuildOncePerInterval() {
+        BidLandscape landscape = BidLandscape.fromPrior(BidLandscape.floorPrior(0.5));
+
+        int rebuilds = 0;
+        for (int i = 0; i < 64; i++) {
+            if (landscape.record(1.0, i % 2 == 0)) {
+                rebuilds++;
+                landscape.rebuild(BidLandscape.floorPrior(0.5));
+            }
+        }
+
+        assertEquals(2, rebuilds);
+    }
+}
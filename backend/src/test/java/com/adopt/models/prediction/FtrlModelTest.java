@@ -0,0 +1,112 @@
+package com.adopt.models.prediction;
+
+import com.adopt.models.AdCampaign;
+import com.adopt.models.BidRequest;
+import com.adopt.services.ClockService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FtrlModelTest {
+
+    private static final long CLICK_WINDOW_SECONDS = 600;
+
+    @Test
+    void learnsWhichContextsGetClicked() throws InterruptedException {
+        ClockService clock = clock();
+        FeatureVectorizer vectorizer = new FeatureVectorizer(clock);
+        FtrlModel model = new FtrlModel(vectorizer, clock, 0.1, 1.0, 1.0, 1.0, 0, 16384);
+        try {
+            BidRequest clicky = request("clicky.example");
+            BidRequest quiet = request("quiet.example");
+            for (int i = 0; i < 3000; i++) {
+                model.recordImpression("c" + i, clicky, campaign(), i % 3 == 0);
+                model.recordImpression("q" + i, quiet, campaign(), i % 50 == 0);
+            }
+            await(() -> model.getExamples() == 6000);
+
+            double clickyCtr = model.predict(vectorizer.vectorize(clicky, campaign()));
+            double quietCtr = model.predict(vectorizer.vectorize(quiet, campaign()));
+            assertTrue(clickyCtr > 0.2 && clickyCtr < 0.5, "clicky " + clickyCtr);
+            assertTrue(quietCtr < 0.08, "quiet " + quietCtr);
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    @Test
+    void clickWithinTheWindowTrainsAPositive() throws InterruptedException {
+        ClockService clock = clock();
+        FtrlModel model = new FtrlModel(new FeatureVectorizer(clock), clock, 0.1, 1.0, 1.0, 1.0,
+                CLICK_WINDOW_SECONDS, 1024);
+        try {
+            model.recordImpression("r1", request("clicky.example"), campaign(), false);
+            clock.advance(Duration.ofSeconds(CLICK_WINDOW_SECONDS - 1));
+            model.recordClick("r1");
+            await(() -> model.getExamples() == 1);
+
+            assertEquals(1L, model.getStats().get("positives"));
+            assertEquals(0L, model.getStats().get("lateClicks"));
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    @Test
+    void unclickedImpressionTrainsANegativeOnceTheWindowPasses() throws InterruptedException {
+        ClockService clock = clock();
+        FtrlModel model = new FtrlModel(new FeatureVectorizer(clock), clock, 0.1, 1.0, 1.0, 1.0,
+                CLICK_WINDOW_SECONDS, 1024);
+        try {
+            model.recordImpression("r1", request("quiet.example"), campaign(), false);
+
+            // The window follows the clock, not wall time
+            Thread.sleep(300);
+            assertEquals(0L, model.getExamples());
+
+            clock.advance(Duration.ofSeconds(CLICK_WINDOW_SECONDS));
+            await(() -> model.getExamples() == 1);
+            assertEquals(0L, model.getStats().get("positives"));
+
+            model.recordClick("r1");
+            await(() -> (long) model.getStats().get("lateClicks") == 1);
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    // Helper methods
+
+    private static ClockService clock() {
+        ClockService clock = new ClockService();
+        clock.useSimulatedClock(Instant.parse("2026-01-05T12:00:00Z"), 0);
+        return clock;
+    }
+
+    private static BidRequest request(String publisherDomain) {
+        return BidRequest.builder()
+                .publisherDomain(publisherDomain)
+                .adSlotId("slot-1")
+                .build();
+    }
+
+    private static AdCampaign campaign() {
+        return AdCampaign.builder()
+                .id(1L)
+                .campaignType(AdCampaign.CampaignType.CPC)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
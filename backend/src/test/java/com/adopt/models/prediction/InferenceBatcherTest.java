@@ -0,0 +1,127 @@
+package com.adopt.models.prediction;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.jupiter.api.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InferenceBatcherTest {
+
+    private static final int INPUT_SIZE = 16;
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    void predictionIsTheNetworkOutputForTheFoldedFeatures() {
+        MultiLayerNetwork network = network();
+        // Index 21 folds onto input 5, alongside the feature already there
+        FeatureVector features = features(3, 5, 21);
+        double expected = expected(network, features);
+
+        InferenceBatcher batcher = new InferenceBatcher("test", network, INPUT_SIZE, 8, 100, 64);
+        try {
+            assertEquals(expected, batcher.predict(features, TIMEOUT), 1e-6);
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentCallersShareBatchesAndGetTheirOwnRows() throws InterruptedException {
+        MultiLayerNetwork network = network();
+        Thread[] callers = new Thread[8];
+        FeatureVector[] features = new FeatureVector[callers.length];
+        double[] expected = new double[callers.length];
+        for (int c = 0; c < callers.length; c++) {
+            features[c] = features(c, c + 8);
+            expected[c] = expected(network, features[c]);
+        }
+
+        // The dispatcher owns the network from here on
+        InferenceBatcher batcher = new InferenceBatcher("test", network, INPUT_SIZE, 32, 2000, 256);
+        AtomicReference<String> wrongRow = new AtomicReference<>();
+        try {
+            for (int c = 0; c < callers.length; c++) {
+                int caller = c;
+                callers[c] = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        double predicted = batcher.predict(features[caller], TIMEOUT);
+                        if (Math.abs(predicted - expected[caller]) > 1e-6) {
+                            wrongRow.set("caller " + caller + ": " + predicted + " != " + expected[caller]);
+                        }
+                    }
+                });
+                callers[c].start();
+            }
+            for (Thread thread : callers) {
+                thread.join();
+            }
+
+            assertNull(wrongRow.get());
+            assertEquals(800L, batcher.getStats().get("requests"));
+            assertTrue((double) batcher.getStats().get("avgBatchSize") > 1.0,
+                    "avgBatchSize " + batcher.getStats().get("avgBatchSize"));
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    @Test
+    void stoppedBatcherTimesCallersOut() throws InterruptedException {
+        InferenceBatcher batcher = new InferenceBatcher("test", network(), INPUT_SIZE, 8, 100, 64);
+        batcher.shutdown();
+        Thread.sleep(50);
+
+        assertTrue(Double.isNaN(batcher.predict(features(1), TimeUnit.MILLISECONDS.toNanos(10))));
+        assertEquals(1L, batcher.getStats().get("timeouts"));
+    }
+
+    @Test
+    void inputSizeMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new InferenceBatcher("test", network(), 12, 8, 100, 64));
+    }
+
+    // Helper methods
+
+    private static FeatureVector features(int... indices) {
+        FeatureVector features = new FeatureVector(indices.length);
+        for (int index : indices) {
+            features.add(index, 1.0f);
+        }
+        return features;
+    }
+
+    private static double expected(MultiLayerNetwork network, FeatureVector features) {
+        float[] row = new float[INPUT_SIZE];
+        features.foldInto(row, 0, INPUT_SIZE);
+        return network.output(Nd4j.create(row, new int[]{1, INPUT_SIZE}, 'c'), false).getDouble(0, 0);
+    }
+
+    private static MultiLayerNetwork network() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(7)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(INPUT_SIZE).nOut(8).activation(Activation.RELU).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.XENT).nIn(8).nOut(1)
+                        .activation(Activation.SIGMOID).build())
+                .build();
+        MultiLayerNetwork network = new MultiLayerNetwork(conf);
+        network.init();
+        return network;
+    }
+}
@@ -0,0 +1,152 @@
+package com.adopt.models.prediction;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelRegistryTest {
+
+    private static final int INPUT_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private ModelRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void scanDeploysTheNewestVersionAsPrimary() throws IOException {
+        registry = registry(0);
+        assertNull(registry.select());
+
+        writeModel("ctr-model.zip");
+        writeModel("ctr-model-2.zip");
+        writeModel("ctr-model-10.zip");
+        registry.scan();
+
+        assertEquals("10", version("primary"));
+        assertEquals(1L, registry.generation());
+
+        // Nothing newer, so a rescan leaves the deployment alone
+        registry.scan();
+        assertEquals(1L, registry.generation());
+        assertEquals(1L, registry.getStats().get("loads"));
+    }
+
+    @Test
+    void canaryServesItsShareOfKeysUntilPromoted() throws IOException {
+        registry = registry(50);
+        writeModel("ctr-model-1.zip");
+        registry.scan();
+        writeModel("ctr-model-2.zip");
+        registry.scan();
+
+        assertEquals("1", version("primary"));
+        assertEquals("2", version("canary"));
+        Set<InferenceBatcher> serving = new HashSet<>();
+        for (long key = 0; key < 1000; key++) {
+            serving.add(registry.select(key));
+        }
+        assertEquals(2, serving.size());
+        assertEquals(registry.select(42L), registry.select(42L));
+
+        assertTrue(registry.promote());
+        assertEquals("2", version("primary"));
+        assertEquals("none", registry.getStats().get("canary"));
+        assertEquals("1", registry.getStats().get("previous"));
+        assertEquals(3L, registry.generation());
+    }
+
+    @Test
+    void rolledBackVersionIsNotRedeployed() throws IOException {
+        registry = registry(0);
+        writeModel("ctr-model-1.zip");
+        registry.scan();
+        writeModel("ctr-model-2.zip");
+        registry.scan();
+
+        assertTrue(registry.rollback());
+        assertEquals("1", version("primary"));
+
+        registry.scan();
+        assertEquals("1", version("primary"));
+        assertFalse(registry.rollback());
+    }
+
+    @Test
+    void brokenModelFileIsSkippedAndNotRetried() throws IOException {
+        registry = registry(0);
+        writeModel("ctr-model-1.zip");
+        Files.write(directory.resolve("ctr-model-2.zip"), new byte[]{1, 2, 3});
+
+        registry.scan();
+        registry.scan();
+
+        assertEquals("1", version("primary"));
+        assertEquals(1L, registry.getStats().get("failedLoads"));
+    }
+
+    // Helper methods
+
+    private ModelRegistry registry(int canaryPercent) {
+        return new ModelRegistry("ctr", directory.toString(), "ctr-model.zip", INPUT_SIZE,
+                8, 100, 64, 1, canaryPercent, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String version(String role) {
+        Object deployed = registry.getStats().get(role);
+        return deployed instanceof Map ? (String) ((Map<String, Object>) deployed).get("version") : null;
+    }
+
+    private void writeModel(String fileName) throws IOException {
+        File file = directory.resolve(fileName).toFile();
+        ModelSerializer.writeModel(network(), file, false);
+    }
+
+    private static MultiLayerNetwork network() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(7)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(INPUT_SIZE).nOut(8).activation(Activation.RELU).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.XENT).nIn(8).nOut(1)
+                        .activation(Activation.SIGMOID).build())
+                .build();
+        MultiLayerNetwork network = new MultiLayerNetwork(conf);
+        network.init();
+        return network;
+    }
+}
@@ -0,0 +1,54 @@
+package com.adopt.models.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PredictionCacheTest {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    void fieldsOfACachedContextExpireTogether() {
+        PredictionCache cache = new PredictionCache(64, TTL);
+        cache.put(42L, PredictionCache.FIELD_CTR, 0.02, 0);
+        cache.put(42L, PredictionCache.FIELD_CVR, 0.1, 10);
+
+        assertEquals(0.02, cache.get(42L, PredictionCache.FIELD_CTR, TTL / 2), 1e-6);
+        assertEquals(0.1, cache.get(42L, PredictionCache.FIELD_CVR, TTL / 2), 1e-6);
+        assertTrue(Double.isNaN(cache.get(42L, PredictionCache.FIELD_USER_VALUE, TTL / 2)));
+
+        // The second field joined the entry, so it expires with the first
+        assertTrue(Double.isNaN(cache.get(42L, PredictionCache.FIELD_CVR, TTL)));
+        assertEquals(1L, cache.getStats().get("admissions"));
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void hotContextsSurviveABurstOfOneOffs() {
+        PredictionCache cache = new PredictionCache(64, TTL);
+        for (long hot = 1; hot <= 8; hot++) {
+            lookupOrStore(cache, hot, 10);
+        }
+
+        for (long i = 0; i < 200; i++) {
+            lookupOrStore(cache, (i + 1) * 0x9e3779b97f4a7c15L, 1);
+        }
+
+        for (long hot = 1; hot <= 8; hot++) {
+            assertEquals(hot / 100.0, cache.get(hot, PredictionCache.FIELD_CTR, 1), 1e-6, "context " + hot);
+        }
+        assertTrue((long) cache.getStats().get("rejections") > 0);
+    }
+
+    // Helper methods
+
+    private static void lookupOrStore(PredictionCache cache, long key, int lookups) {
+        for (int i = 0; i < lookups; i++) {
+            if (Double.isNaN(cache.get(key, PredictionCache.FIELD_CTR, 0))) {
+                cache.put(key, PredictionCache.FIELD_CTR, (key % 1000) / 100.0, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.adopt.models.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdentityGraphTest {
+
+    @Test
+    void unlinkedIdIsItsOwnCanonicalId() {
+        IdentityGraph graph = new IdentityGraph(100);
+
+        assertNull(graph.resolve("cookie-1"));
+    }
+
+    @Test
+    void linkedIdsResolveToOneCanonicalId() {
+        IdentityGraph graph = new IdentityGraph(100);
+
+        String absorbed = graph.link("cookie-1", "device-1");
+
+        String canonical = graph.resolve("cookie-1");
+        assertEquals(canonical, graph.resolve("device-1"));
+        assertTrue(canonical.equals("cookie-1") || canonical.equals("device-1"));
+        assertEquals(canonical.equals("cookie-1") ? "device-1" : "cookie-1", absorbed);
+    }
+
+    @Test
+    void linkingIdsAlreadyInOneSetMergesNothing() {
+        IdentityGraph graph = new IdentityGraph(100);
+        graph.link("a", "b");
+        graph.link("b", "c");
+
+        assertNull(graph.link("a", "c"));
+        assertNull(graph.link("c", "c"));
+        assertEquals(1, graph.getStats().get("profiles"));
+    }
+
+    @Test
+    void smallerSetJoinsTheLargerOne() {
+        IdentityGraph graph = new IdentityGraph(100);
+        graph.link("a", "b");
+        graph.link("a", "c");
+        graph.link("a", "d");
+        String largeRoot = graph.resolve("a");
+        graph.link("x", "y");
+        String smallRoot = graph.resolve("x");
+
+        // Linked from the small set's side, the large set's canonical ID still survives
+        String absorbed = graph.link("y", "c");
+
+        assertEquals(smallRoot, absorbed);
+        for (String id : Arrays.asList("a", "b", "c", "d", "x", "y")) {
+            assertEquals(largeRoot, graph.resolve(id), id);
+        }
+        assertEquals(1, graph.getStats().get("profiles"));
+    }
+
+    @Test
+    void chainOfMergesEndsInOneSet() {
+        IdentityGraph graph = new IdentityGraph(10_000);
+        for (int i = 0; i < 1000; i += 2) {
+            graph.link("id-" + i, "id-" + (i + 1));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            graph.link("id-0", "id-" + i);
+        }
+
+        String root = graph.resolve("id-0");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(root, graph.resolve("id-" + i));
+        }
+        assertEquals(1000, graph.getStats().get("ids"));
+        assertEquals(999L, graph.getStats().get("merges"));
+    }
+
+    @Test
+    void fullGraphRejectsNewIds() {
+        IdentityGraph graph = new IdentityGraph(2);
+        graph.link("a", "b");
+
+        assertNull(graph.link("a", "c"));
+        assertNull(graph.resolve("c"));
+        assertEquals(1L, graph.getStats().get("rejections"));
+    }
+
+    @Test
+    void restoredSetsKeepTheirCanonicalId() {
+        IdentityGraph graph = new IdentityGraph(100);
+        graph.link("a", "b");
+        graph.link("a", "c");
+        graph.link("x", "y");
+
+        IdentityGraph restored = new IdentityGraph(100);
+        List<List<String>> sets = graph.linkedSets();
+        for (List<String> set : sets) {
+            assertTrue(restored.restore(set));
+        }
+
+        assertEquals(2, sets.size());
+        for (String id : Arrays.asList("a", "b", "c", "x", "y")) {
+            assertEquals(graph.resolve(id), restored.resolve(id), id);
+        }
+    }
+
+    @Test
+    void restoreRejectsSetsBeyondCapacity() {
+        IdentityGraph graph = new IdentityGraph(3);
+
+        assertTrue(graph.restore(Arrays.asList("a", "b")));
+        assertFalse(graph.restore(Arrays.asList("x", "y")));
+        assertNull(graph.resolve("x"));
+    }
+}
@@ -0,0 +1,248 @@
+package com.adopt.models.profile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedProfileStoreTest {
+
+    private static final int CAPACITY = 1000;
+    private static final int SLOTS_PER_STRIPE = 128; // What CAPACITY rounds up to
+    private static final int HEADER_BYTES = 64;
+    private static final int SEQUENCE = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedProfileReadsBack() {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        UserProfile profile = profile(7);
+        profile.setAgeGroup(UserProfile.AgeGroup.values()[1]);
+        profile.setGender(UserProfile.Gender.values()[1]);
+        profile.setTargetAudience(true);
+        profile.addInterest("travel");
+
+        assertTrue(store.put("cookie-1", profile, 0));
+        UserProfile read = store.get("cookie-1", 0);
+
+        assertNotNull(read);
+        assertEquals(7, read.getTotalClicks());
+        assertEquals(7, read.getTotalConversions());
+        assertEquals(7L, read.getLastClickTimestamp());
+        assertEquals(0.25f, read.getPurchasingPower());
+        assertEquals(profile.getAgeGroup(), read.getAgeGroup());
+        assertEquals(profile.getGender(), read.getGender());
+        assertTrue(read.isTargetAudience());
+        assertFalse(read.isPreviousConversion());
+        assertTrue(read.hasInterest("travel"));
+        assertNull(store.get("cookie-2", 0));
+        store.close();
+    }
+
+    @Test
+    void lookupReadsIntoTheSuppliedProfile() {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        store.put("cookie-1", profile(1), 0);
+        store.put("cookie-2", profile(2), 0);
+        UserProfile reuse = new UserProfile();
+
+        assertSame(reuse, store.get("cookie-1", reuse, 0));
+        assertEquals(1, reuse.getTotalClicks());
+        assertSame(reuse, store.get("cookie-2", reuse, 0));
+        assertEquals(2, reuse.getTotalClicks());
+        store.close();
+    }
+
+    @Test
+    void readersNeverSeeAPartialWrite() throws Exception {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        long key = MappedProfileStore.hashId("cookie-1");
+        store.write(key, profile(0));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                UserProfile into = new UserProfile();
+                while (running.get() && torn.get() == null) {
+                    store.read(key, into);
+                    // Every field of a record is written with the same value
+                    int clicks = into.getTotalClicks();
+                    if (into.getTotalConversions() != clicks || into.getTotalPageviews() != clicks
+                            || into.getLastClickTimestamp() != clicks || into.getLastPageviewTimestamp() != clicks) {
+                        torn.set("clicks " + clicks + ", conversions " + into.getTotalConversions()
+                                + ", last pageview " + into.getLastPageviewTimestamp());
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            readers[r].start();
+        }
+
+        UserProfile update = new UserProfile();
+        for (int i = 1; i <= 200_000 && torn.get() == null; i++) {
+            fill(update, i);
+            store.write(key, update);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(torn.get());
+        assertTrue(reads.get() > 0);
+        store.close();
+    }
+
+    @Test
+    void readersRacingDeletesNeverSeeAnotherProfile() throws Exception {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        // Keys with the same home slot in the same stripe, so they share one probe run
+        int run = 20;
+        long[] keys = new long[run];
+        for (int i = 0; i < run; i++) {
+            keys[i] = ((long) (i + 1) << 7) | 5;
+            store.write(keys[i], profile(i + 1));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> wrong = new AtomicReference<>();
+        AtomicLong hits = new AtomicLong();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            int first = r;
+            readers[r] = new Thread(() -> {
+                UserProfile into = new UserProfile();
+                for (int i = first; running.get() && wrong.get() == null; i = (i + 1) % run) {
+                    if (store.read(keys[i], into)) {
+                        if (into.getTotalClicks() != i + 1) {
+                            wrong.set("key " + (i + 1) + " read the profile of key " + into.getTotalClicks());
+                        }
+                        hits.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+
+        // Deleting the head of the run shifts every later record back one slot
+        for (int cycle = 0; cycle < 100_000 && wrong.get() == null; cycle++) {
+            int i = cycle % run;
+            assertTrue(store.delete(keys[i]));
+            assertTrue(store.write(keys[i], profile(i + 1)));
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(wrong.get());
+        assertTrue(hits.get() > 0);
+        store.close();
+    }
+
+    @Test
+    void profilesSurviveReopening() {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        for (int i = 0; i < 500; i++) {
+            store.put("cookie-" + i, profile(i), 0);
+        }
+        store.close();
+
+        MappedProfileStore reopened = new MappedProfileStore(directory.toString(), CAPACITY);
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, reopened.get("cookie-" + i, 0).getTotalClicks());
+        }
+        assertEquals(500L, reopened.getStats().get("size"));
+        reopened.close();
+    }
+
+    @Test
+    void deleteKeepsTheRestOfTheProbeRunReachable() {
+        MappedProfileStore store = new MappedProfileStore(directory.toString(), CAPACITY);
+        for (int i = 0; i < 700; i++) {
+            assertTrue(store.put("cookie-" + i, profile(i), 0));
+        }
+
+        for (int i = 0; i < 700; i += 3) {
+            assertTrue(store.remove("cookie-" + i));
+        }
+        assertFalse(store.remove("cookie-0"));
+
+        for (int i = 0; i < 700; i++) {
+            UserProfile read = store.get("cookie-" + i, 0);
+            if (i % 3 == 0) {
+                assertNull(read, "cookie-" + i);
+            } else {
+                assertNotNull(read, "cookie-" + i);
+                assertEquals(i, read.getTotalClicks());
+            }
+        }
+        store.close();
+    }
+
+    @Test
+    void interruptedWriteIsRecoveredOnOpen() throws IOException {
+        MappedProfileStore crashed = new MappedProfileStore(directory.toString(), CAPACITY);
+        crashed.put("cookie-1", profile(3), 0);
+        crashed.flush();
+
+        // Leave the record as a write cut off midway would: with an odd sequence number
+        long key = MappedProfileStore.hashId("cookie-1");
+        Path stripe = directory.resolve("profiles-" + ((int) (key >>> 60) & 15) + ".dat");
+        long offset = HEADER_BYTES + (long) ((int) key & (SLOTS_PER_STRIPE - 1)) * MappedProfileStore.RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(stripe, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer sequence = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+            channel.read(sequence, offset + SEQUENCE);
+            sequence.flip();
+            int odd = sequence.getInt() | 1;
+            sequence.clear();
+            sequence.putInt(odd).flip();
+            channel.write(sequence, offset + SEQUENCE);
+        }
+
+        MappedProfileStore reopened = new MappedProfileStore(directory.toString(), CAPACITY);
+        UserProfile read = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> reopened.get("cookie-1", 0));
+        assertEquals(3, read.getTotalClicks());
+        reopened.close();
+        crashed.close();
+    }
+
+    // Helper methods
+
+    private static UserProfile profile(int value) {
+        UserProfile profile = new UserProfile();
+        fill(profile, value);
+        profile.setPurchasingPower(0.25f);
+        return profile;
+    }
+
+    private static void fill(UserProfile profile, int value) {
+        profile.setTotalClicks(value);
+        profile.setTotalConversions(value);
+        profile.setTotalPageviews(value);
+        profile.setLastClickTimestamp(value);
+        profile.setLastPageviewTimestamp(value);
+    }
+}
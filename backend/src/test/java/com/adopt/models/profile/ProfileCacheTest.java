@@ -0,0 +1,87 @@
+package com.adopt.models.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileCacheTest {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    void profilesExpireWhenNotAccessed() {
+        ProfileCache<String> cache = new ProfileCache<>(100, TTL);
+        cache.put("user-1", "profile-1", 0);
+
+        // Reading a profile restarts its time to live
+        assertEquals("profile-1", cache.get("user-1", TTL / 2));
+        assertEquals("profile-1", cache.get("user-1", TTL));
+        assertNull(cache.get("user-1", 2 * TTL + 1));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void oneOffIdsDoNotPushOutRegularUsers() {
+        // One profile per segment, so every newcomer must beat a resident
+        ProfileCache<String> cache = new ProfileCache<>(16, TTL);
+        cache.put("regular", "profile", 0);
+        for (int i = 0; i < 5; i++) {
+            cache.get("regular", i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("one-off-" + i, "profile-" + i, 10);
+        }
+
+        assertEquals("profile", cache.get("regular", 20));
+        assertTrue((long) cache.getStats().get("rejections") > 0);
+        assertTrue(cache.size() <= 16, "size " + cache.size());
+    }
+
+    @Test
+    void concurrentReadsAndWritesKeepTheSegmentsConsistent() throws InterruptedException {
+        ProfileCache<String> cache = new ProfileCache<>(64, TTL);
+        AtomicReference<String> wrongValue = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    String key = "user-" + random.nextInt(256);
+                    if (random.nextInt(4) == 0) {
+                        cache.put(key, key, i);
+                    } else if (random.nextInt(16) == 0) {
+                        cache.remove(key);
+                    } else {
+                        String value = cache.get(key, i);
+                        if (value != null && !value.equals(key)) {
+                            wrongValue.set(key + " -> " + value);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(wrongValue.get());
+        int listed = 0;
+        for (int segment = 0; segment < cache.segmentCount(); segment++) {
+            for (Map.Entry<String, String> entry : cache.segmentEntries(segment)) {
+                assertEquals(entry.getKey(), entry.getValue());
+                listed++;
+            }
+        }
+        assertEquals(cache.size(), listed);
+        assertTrue(listed <= 64, "size " + listed);
+    }
+}
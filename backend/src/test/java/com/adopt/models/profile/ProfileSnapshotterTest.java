@@ -0,0 +1,99 @@
+package com.adopt.models.profile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileSnapshotterTest {
+
+    private static final long TTL = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoredStoreHoldsTheSnapshottedProfiles() throws InterruptedException {
+        HeapProfileStore original = new HeapProfileStore(1000, TTL);
+        for (int i = 0; i < 100; i++) {
+            original.put("user-" + i, profile(i), 0);
+        }
+        ProfileSnapshotter writer = new ProfileSnapshotter(directory.toString());
+        assertEquals(100, writer.write(original));
+
+        HeapProfileStore restored = new HeapProfileStore(1000, TTL);
+        ProfileSnapshotter reader = new ProfileSnapshotter(directory.toString());
+        assertEquals(100, reader.restore(restored, 2, 0));
+        assertTrue(reader.awaitRestored(1.0, 5000));
+
+        for (int i = 0; i < 100; i++) {
+            UserProfile profile = restored.get("user-" + i, null, 1);
+            assertNotNull(profile, "user-" + i);
+            assertEquals(i * 1000, profile.getIncome());
+            assertEquals(i, profile.getTotalClicks());
+            assertEquals(UserProfile.Gender.FEMALE, profile.getGender());
+            assertEquals(i % 2 == 0, profile.isTargetAudience());
+        }
+        assertEquals(100L, reader.getStats().get("restoredProfiles"));
+    }
+
+    @Test
+    void profilesStoredSinceStartupAreNotOverwrittenOrCounted() throws InterruptedException {
+        HeapProfileStore original = new HeapProfileStore(1000, TTL);
+        for (int i = 0; i < 50; i++) {
+            original.put("user-" + i, profile(i), 0);
+        }
+        new ProfileSnapshotter(directory.toString()).write(original);
+
+        HeapProfileStore restored = new HeapProfileStore(1000, TTL);
+        for (int i = 0; i < 10; i++) {
+            restored.put("user-" + i, profile(500), 0);
+        }
+        ProfileSnapshotter reader = new ProfileSnapshotter(directory.toString());
+        reader.restore(restored, 2, 0);
+
+        // Ten rejections keep the restored count below the full snapshot, so this waits for the whole restore
+        assertTrue(reader.awaitRestored(1.0, 5000));
+        assertEquals(0, reader.getStats().get("restorePendingSegments"));
+        assertEquals(40L, reader.getStats().get("restoredProfiles"));
+        assertEquals(10L, reader.getStats().get("restoreRejectedProfiles"));
+        assertEquals(500, restored.get("user-3", null, 1).getTotalClicks());
+    }
+
+    @Test
+    void linkedIdentitiesSurviveARestart() {
+        IdentityGraph graph = new IdentityGraph(1000);
+        graph.link("cookie-1", "device-1");
+        graph.link("device-1", "user-1");
+        String canonical = canonical(graph, "cookie-1");
+        new ProfileSnapshotter(directory.toString()).writeIdentities(graph);
+
+        IdentityGraph restored = new IdentityGraph(1000);
+        assertEquals(1, new ProfileSnapshotter(directory.toString()).restoreIdentities(restored));
+
+        for (String id : List.of("cookie-1", "device-1", "user-1")) {
+            assertEquals(canonical, canonical(restored, id), id);
+        }
+    }
+
+    // Helper methods
+
+    private static UserProfile profile(int i) {
+        UserProfile profile = new UserProfile();
+        profile.setIncome(i * 1000);
+        profile.setTotalClicks(i);
+        profile.setGender(UserProfile.Gender.FEMALE);
+        profile.setTargetAudience(i % 2 == 0);
+        return profile;
+    }
+
+    private static String canonical(IdentityGraph graph, String id) {
+        String canonical = graph.resolve(id);
+        return canonical != null ? canonical : id;
+    }
+}
@@ -0,0 +1,79 @@
+package com.adopt.models.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserEventBufferTest {
+
+    @Test
+    void eventsOfOneUserDrainInOrder() {
+        UserEventBuffer buffer = new UserEventBuffer(16, 1024);
+        for (int i = 0; i < 100; i++) {
+            buffer.append(event("cookie-" + (i % 7), i));
+        }
+
+        List<UserEvent> drained = new ArrayList<>();
+        assertEquals(100, buffer.drainTo(drained));
+        assertEquals(0, buffer.drainTo(new ArrayList<>()));
+
+        for (int user = 0; user < 7; user++) {
+            long previous = -1;
+            for (UserEvent event : drained) {
+                if (event.getPrimaryId().equals("cookie-" + user)) {
+                    assertTrue(event.getTimestamp() > previous, "out of order for cookie-" + user);
+                    previous = event.getTimestamp();
+                }
+            }
+        }
+    }
+
+    @Test
+    void fullStripeDropsNewEventsUntilDrained() {
+        UserEventBuffer buffer = new UserEventBuffer(1, 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.append(event("cookie-1", i)));
+        }
+
+        assertFalse(buffer.append(event("cookie-1", 4)));
+        assertEquals(1L, buffer.getStats().get("dropped"));
+
+        buffer.drainTo(new ArrayList<>());
+        assertTrue(buffer.append(event("cookie-1", 5)));
+    }
+
+    @Test
+    void halfFullStripeWakesTheConsumer() throws InterruptedException {
+        UserEventBuffer buffer = new UserEventBuffer(1, 8);
+        CountDownLatch parked = new CountDownLatch(1);
+        CountDownLatch woken = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            parked.countDown();
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(30));
+            woken.countDown();
+        });
+        buffer.setConsumer(consumer);
+        consumer.start();
+        parked.await();
+
+        for (int i = 0; i < 4; i++) {
+            buffer.append(event("cookie-1", i));
+        }
+
+        assertTrue(woken.await(5, TimeUnit.SECONDS));
+    }
+
+    // Helper methods
+
+    private static UserEvent event(String cookieId, long timestamp) {
+        return new UserEvent(cookieId, null, UserEvent.Type.CLICK, timestamp, null);
+    }
+}
@@ -0,0 +1,100 @@
+package com.adopt.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BidStageExecutorTest {
+
+    private BidStageExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void cheapStagesRunOnTheBidThread() {
+        executor = executor(1_000_000);
+
+        BidStageExecutor.Stage<String> stage = executor.fork("cheap", executor.deadline(),
+                () -> Thread.currentThread().getName());
+
+        assertEquals(Thread.currentThread().getName(), stage.join());
+        assertEquals(1L, stageStats("cheap").get("inlineRuns"));
+        assertEquals(0L, stageStats("cheap").get("concurrentRuns"));
+    }
+
+    @Test
+    void costlyStagesOverlapOnThePool() {
+        executor = executor(0);
+
+        BidStageExecutor.Stage<String> stage = executor.fork("costly", executor.deadline(),
+                () -> Thread.currentThread().getName());
+
+        assertTrue(stage.join().startsWith("bid-stage-"));
+        assertEquals(1L, stageStats("costly").get("concurrentRuns"));
+    }
+
+    @Test
+    void stagePastTheDeadlineFailsTheBid() {
+        executor = executor(0);
+
+        BidStageExecutor.Stage<Integer> slow = executor.fork("slow",
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20), () -> {
+                    sleep(1000);
+                    return 1;
+                });
+        assertThrows(BidStageExecutor.DeadlineExceededException.class, slow::join);
+
+        // An inline stage never starts once the deadline has passed
+        assertThrows(BidStageExecutor.DeadlineExceededException.class,
+                () -> executor.run("late", System.nanoTime() - 1, () -> 1));
+
+        assertEquals(1L, stageStats("slow").get("deadlineMisses"));
+        assertEquals(1L, stageStats("late").get("deadlineMisses"));
+    }
+
+    @Test
+    void stageFailureReachesTheCaller() {
+        executor = executor(0);
+
+        BidStageExecutor.Stage<Integer> failing = executor.fork("failing", executor.deadline(), () -> {
+            throw new IllegalArgumentException("bad request");
+        });
+
+        assertEquals("bad request", assertThrows(IllegalArgumentException.class, failing::join).getMessage());
+    }
+
+    // Helper methods
+
+    private static BidStageExecutor executor(long concurrentThresholdMicros) {
+        BidStageExecutor executor = new BidStageExecutor();
+        ReflectionTestUtils.setField(executor, "threads", 2);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 16);
+        ReflectionTestUtils.setField(executor, "concurrentThresholdMicros", concurrentThresholdMicros);
+        ReflectionTestUtils.setField(executor, "deadlineMillis", 1000L);
+        executor.init();
+        return executor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stageStats(String stage) {
+        return (Map<String, Object>) executor.getStageStats().get(stage);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
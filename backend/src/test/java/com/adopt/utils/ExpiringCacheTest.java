@@ -0,0 +1,52 @@
+package com.adopt.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringCacheTest {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    void entriesExpireAfterWriteEvenWhenRead() {
+        AtomicLong clock = new AtomicLong();
+        ExpiringCache<String> cache = new ExpiringCache<>(100, TTL, clock::get);
+        cache.put("bid-1", "response-1");
+
+        clock.set(TTL / 2);
+        assertEquals("response-1", cache.get("bid-1"));
+        clock.set(TTL + 1);
+        assertNull(cache.get("bid-1"));
+    }
+
+    @Test
+    void replacingAnEntryRestartsItsTimeToLive() {
+        AtomicLong clock = new AtomicLong();
+        ExpiringCache<String> cache = new ExpiringCache<>(100, TTL, clock::get);
+        cache.put("bid-1", "pending");
+
+        clock.set(TTL / 2);
+        cache.put("bid-1", "won");
+        clock.set(TTL + 1);
+
+        assertEquals("won", cache.get("bid-1"));
+    }
+
+    @Test
+    void fullCacheEvictsInsteadOfGrowing() {
+        ExpiringCache<String> cache = new ExpiringCache<>(100, TTL, () -> 0L);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("bid-" + i, "response-" + i);
+        }
+
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+        assertEquals((long) (1000 - cache.size()), cache.getStats().get("evictions"));
+        assertEquals("response-999", cache.get("bid-999"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.adopt.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsAccessesUpToTheCounterLimit() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(42L);
+        }
+        assertEquals(5, sketch.frequency(42L));
+        assertEquals(0, sketch.frequency(43L));
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42L);
+        }
+        assertEquals(15, sketch.frequency(42L));
+    }
+
+    @Test
+    void frequenciesAreHalvedAfterEachSample() {
+        // 1024 counters per row, so a sample is 10240 accesses
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment(42L);
+        }
+        for (long key = 1; key < 10240 - 12; key++) {
+            sketch.increment(key * 0x9e3779b97f4a7c15L);
+        }
+        int before = sketch.frequency(42L);
+        assertTrue(before >= 12);
+
+        sketch.increment(0L);
+
+        assertEquals(before / 2, sketch.frequency(42L));
+    }
+
+    @Test
+    void oneOffKeysStayColderThanHotKeys() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (long hot = 1; hot <= 16; hot++) {
+            for (int i = 0; i < 10; i++) {
+                sketch.increment(hot);
+            }
+        }
+        for (long key = 0; key < 1000; key++) {
+            sketch.increment(key * 0x9e3779b97f4a7c15L + 7);
+        }
+
+        for (long hot = 1; hot <= 16; hot++) {
+            assertTrue(sketch.frequency(hot) >= 10, "key " + hot + ": " + sketch.frequency(hot));
+            assertTrue(sketch.frequency(hot * 0x9e3779b97f4a7c15L + 11) < 10);
+        }
+    }
+}
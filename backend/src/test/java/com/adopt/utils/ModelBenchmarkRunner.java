@@ -0,0 +1,1153 @@
+package com.adopt.utils;
+
+import com.adopt.AdoptApplication;
+import com.adopt.models.AdCampaign;
+import com.adopt.models.AdCreative;
+import com.adopt.models.BidRequest;
+import com.adopt.models.BidResponse;
+import com.adopt.models.gametheory.CompetitorProfile;
+import com.adopt.models.gametheory.MultiAgentLearningModel;
+import com.adopt.models.gametheory.NashEquilibriumModel;
+import com.adopt.models.gametheory.ReinforcementLearningModel;
+import com.adopt.models.gametheory.StackelbergModel;
+import com.adopt.models.gametheory.StrategyClusterer;
+import com.adopt.models.prediction.BidLandscape;
+import com.adopt.models.prediction.BidLandscapeEstimator;
+import com.adopt.models.prediction.FeatureVector;
+import com.adopt.models.prediction.FeatureVectorizer;
+import com.adopt.models.prediction.FtrlModel;
+import com.adopt.models.prediction.InferenceBatcher;
+import com.adopt.models.prediction.ModelRegistry;
+import com.adopt.models.prediction.PredictionCache;
+import com.adopt.models.profile.HeapProfileStore;
+import com.adopt.models.profile.IdentityGraph;
+import com.adopt.models.profile.MappedProfileStore;
+import com.adopt.models.profile.ProfileCache;
+import com.adopt.models.profile.ProfileSnapshotter;
+import com.adopt.models.profile.ProfileStore;
+import com.adopt.models.profile.UserProfile;
+import com.adopt.services.BidOptimizationService;
+import com.adopt.services.BidStageExecutor;
+import com.adopt.services.ClockService;
+import com.adopt.services.CompetitorAnalysisService;
+import com.adopt.services.PredictionService;
+import com.adopt.services.UserProfileService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+/**
+ * Utility to benchmark bidding models on synthetic traffic at startup.
+ *
+ * Kept on the test classpath so it does not ship with the application. Run {@link #main}
+ * from there, e.g. {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.adopt.utils.ModelBenchmarkRunner}, which starts the application with
+ * adopt.benchmark.enabled=true; pick groups with --adopt.benchmark.groups=... and the
+ * iteration count with --adopt.benchmark.iterations=...
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "adopt.benchmark.enabled", havingValue = "true")
+public class ModelBenchmarkRunner implements CommandLineRunner {
+
+    private final NashEquilibriumModel nashEquilibriumModel;
+    private final StackelbergModel stackelbergModel;
+    private final ReinforcementLearningModel reinforcementLearningModel;
+    private final MultiAgentLearningModel multiAgentLearningModel;
+    private final CompetitorAnalysisService competitorAnalysisService;
+    private final FeatureVectorizer featureVectorizer;
+    private final BidLandscapeEstimator bidLandscapeEstimator;
+    private final PredictionService predictionService;
+    private final ClockService clockService;
+    private final BidOptimizationService bidOptimizationService;
+    private final BidStageExecutor bidStageExecutor;
+    private final UserProfileService userProfileService;
+
+    @Value("${adopt.benchmark.iterations:100000}")
+    private int iterations;
+
+    // Benchmark groups to run (gametheory, rl, multiagent, features, inference, ftrl, landscape, cache, hotswap, clock, profiles, profilememory, profilestore, identity, pipeline, events, snapshot, quantiles, competitors, clustering); empty runs all
+    @Value("${adopt.benchmark.groups:}")
+    private List<String> groups;
+
+    @Value("${adopt.benchmark.profile-count:10000000}")
+    private int profileCount;
+
+    /**
+     * Start the application with the benchmarks enabled
+     */
+    public static void main(String[] args) {
+        String[] withBenchmarks = Arrays.copyOf(args, args.length + 1);
+        withBenchmarks[args.length] = "--adopt.benchmark.enabled=true";
+        SpringApplication.run(AdoptApplication.class, withBenchmarks);
+    }
+
+    @Override
+    public void run(String... args) {
+        log.info("Running model benchmarks with {} iterations...", iterations);
+
+        BidRequest bidRequest = createSampleBidRequest();
+        AdCampaign campaign = createSampleCampaign();
+        Map<String, CompetitorProfile> competitorProfiles =
+                competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("userValueEstimate", 0.5);
+        parameters.put("predictedCtr", 0.02);
+        parameters.put("predictedCvr", 0.1);
+
+        if (enabled("gametheory")) {
+            benchmarkGameTheoryModels(bidRequest, campaign, competitorProfiles, parameters);
+        }
+        if (enabled("rl")) {
+            benchmarkReinforcementLearningUpdates(campaign);
+        }
+        if (enabled("multiagent")) {
+            benchmarkMultiAgentSolve(campaign);
+        }
+        if (enabled("features")) {
+            benchmarkFeatureExtraction(bidRequest, campaign);
+        }
+        if (enabled("inference")) {
+            benchmarkBatchedInference(bidRequest, campaign);
+        }
+        if (enabled("ftrl")) {
+            benchmarkOnlineCtrLearning(campaign);
+        }
+        if (enabled("landscape")) {
+            benchmarkBidLandscape();
+        }
+        if (enabled("cache")) {
+            benchmarkPredictionCache(bidRequest, campaign);
+        }
+        if (enabled("hotswap")) {
+            benchmarkModelHotSwap(bidRequest, campaign);
+        }
+        if (enabled("clock")) {
+            benchmarkClock();
+        }
+        if (enabled("profiles")) {
+            benchmarkProfileCache();
+        }
+        if (enabled("profilememory")) {
+            benchmarkProfileMemory();
+        }
+        if (enabled("profilestore")) {
+            benchmarkProfileStores();
+        }
+        if (enabled("identity")) {
+            benchmarkIdentityResolution();
+        }
+        if (enabled("pipeline")) {
+            benchmarkBidPipeline(bidRequest);
+        }
+        if (enabled("events")) {
+            benchmarkUserEvents();
+        }
+        if (enabled("snapshot")) {
+            benchmarkProfileSnapshot();
+        }
+        if (enabled("quantiles")) {
+            benchmarkBidQuantiles();
+        }
+        if (enabled("competitors")) {
+            benchmarkCompetitorStats(bidRequest, campaign);
+        }
+        if (enabled("clustering")) {
+            benchmarkStrategyClustering();
+        }
+
+        log.info("Model benchmarks complete");
+    }
+
+    private void benchmarkGameTheoryModels(
+            BidRequest bidRequest,
+            AdCampaign campaign,
+            Map<String, CompetitorProfile> competitorProfiles,
+            Map<String, Object> parameters) {
+
+        // The Nash model solves its equilibrium on every bid
+        benchmark("nash.solve+bid", () ->
+                nashEquilibriumModel.calculateOptimalBid(bidRequest, campaign, competitorProfiles, parameters));
+
+        // The Stackelberg model solves in the background and only looks up at bid time
+        benchmark("stackelberg.solve", () ->
+                stackelbergModel.precompute(bidRequest.getAdSlotId(), competitorProfiles));
+        benchmark("stackelberg.lookup+bid", () ->
+                stackelbergModel.calculateOptimalBid(bidRequest, campaign, competitorProfiles, parameters));
+
+        // The reinforcement learning model selects an action from its learned values
+        benchmark("rl.select+bid", () ->
+                reinforcementLearningModel.calculateOptimalBid(bidRequest, campaign, competitorProfiles, parameters));
+
+        // The multi-agent model solves offline and looks up its equilibrium table at bid time
+        multiAgentLearningModel.solveEquilibria(
+                Map.of(bidRequest.getAdSlotId(), competitorProfiles), Collections.singletonList(campaign));
+        benchmark("multiagent.lookup+bid", () ->
+                multiAgentLearningModel.calculateOptimalBid(bidRequest, campaign, competitorProfiles, parameters));
+    }
+
+    private void benchmarkMultiAgentSolve(AdCampaign campaign) {
+        // Offline solve over many slots on the fork-join pool
+        Map<String, Map<String, CompetitorProfile>> slots = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            BidRequest request = createSampleBidRequest();
+            request.setAdSlotId("benchmark_slot_" + i);
+            request.setAdSlotFloorPrice(BigDecimal.valueOf(0.10 + (i % 50) * 0.02));
+            slots.put(request.getAdSlotId(), competitorAnalysisService.getCompetitorProfiles(request, campaign));
+        }
+
+        multiAgentLearningModel.solveEquilibria(slots, Collections.singletonList(campaign));
+        log.info("Benchmark multiagent.solve: {}", multiAgentLearningModel.getStats());
+    }
+
+    private void benchmarkReinforcementLearningUpdates(AdCampaign campaign) {
+        // Outcomes spread over many slots, the way win/loss notifications arrive
+        BidResponse[] outcomes = new BidResponse[1024];
+        for (int i = 0; i < outcomes.length; i++) {
+            BidRequest request = createSampleBidRequest();
+            request.setAdSlotId("benchmark_slot_" + i);
+            outcomes[i] = BidResponse.builder()
+                    .bidRequest(request)
+                    .campaign(campaign)
+                    .bidPrice(BigDecimal.valueOf(1.00))
+                    .actualPrice(BigDecimal.valueOf(0.80))
+                    .isWon(i % 3 == 0)
+                    .isClicked(i % 30 == 0)
+                    .isConverted(false)
+                    .build();
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            benchmarkConcurrent("rl.update x" + threads, threads, iterations, offset -> {
+                for (int i = 0; i < iterations; i++) {
+                    reinforcementLearningModel.updateModel(outcomes[(offset + i) & (outcomes.length - 1)], null);
+                }
+            });
+        }
+    }
+
+    private void benchmarkFeatureExtraction(BidRequest bidRequest, AdCampaign campaign) {
+        bidRequest.setUserProfile(createSampleUserProfile());
+        bidRequest.setUserAgent("Mozilla/5.0 (iPhone; CPU iPhone OS 16_0 like Mac OS X) Mobile/15E148");
+
+        benchmark("features.vectorize", () -> featureVectorizer.vectorize(bidRequest, campaign));
+
+        // Extraction should not allocate once the thread's vector exists
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            featureVectorizer.vectorize(bidRequest, campaign);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        log.info("Benchmark features.vectorize: {} features/request, {} bytes allocated/request",
+                featureVectorizer.vectorize(bidRequest, campaign).size(), allocated / iterations);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threadCount = 1; threadCount <= cores; threadCount *= 2) {
+            benchmarkConcurrent("features.vectorize x" + threadCount, threadCount, iterations, offset -> {
+                for (int i = 0; i < iterations; i++) {
+                    featureVectorizer.vectorize(bidRequest, campaign);
+                }
+            });
+        }
+    }
+
+    private void benchmarkBatchedInference(BidRequest bidRequest, AdCampaign campaign) {
+        MultiLayerNetwork network = createSampleNetwork(42);
+
+        FeatureVector features = featureVectorizer.vectorize(bidRequest, campaign);
+        int operations = Math.max(1000, iterations / 10);
+
+        // One forward pass per request, the way an unbatched caller would run the network
+        benchmark("inference.single", () -> {
+            float[] row = new float[PredictionService.NETWORK_INPUT_SIZE];
+            features.foldInto(row, 0, row.length);
+            network.output(Nd4j.create(row, new int[]{1, row.length}, 'c'), false);
+        });
+
+        InferenceBatcher batcher = new InferenceBatcher(
+                "benchmark", network, PredictionService.NETWORK_INPUT_SIZE, 32, 200, 4096);
+        for (int threads = 1; threads <= 64; threads *= 4) {
+            int perThread = operations / threads;
+            benchmarkConcurrent("inference.batched x" + threads, threads, perThread, offset -> {
+                for (int i = 0; i < perThread; i++) {
+                    batcher.predict(features, 10_000_000L);
+                }
+            });
+        }
+        log.info("Benchmark inference.batched: {}", batcher.getStats());
+        batcher.shutdown();
+    }
+
+    private void benchmarkOnlineCtrLearning(AdCampaign campaign) {
+        // Two publishers with different true CTRs; the model should learn to tell them apart
+        BidRequest lowCtr = createSampleBidRequest();
+        lowCtr.setPublisherDomain("low-ctr.example.com");
+        BidRequest highCtr = createSampleBidRequest();
+        highCtr.setPublisherDomain("high-ctr.example.com");
+
+        // No click window, so unclicked impressions train as negatives right away
+        FtrlModel model = new FtrlModel(featureVectorizer, clockService, 0.05, 1.0, 1.0, 1.0, 0, iterations);
+        java.util.Random random = new java.util.Random(42);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            boolean high = (i & 1) == 0;
+            boolean clicked = random.nextDouble() < (high ? 0.05 : 0.01);
+            model.recordImpression("benchmark_" + i, high ? highCtr : lowCtr, campaign, clicked);
+        }
+        while (model.getExamples() < iterations && System.nanoTime() - start < 60_000_000_000L) {
+            Thread.onSpinWait();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("Benchmark ftrl.train: {} examples/sec",
+                model.getExamples() * 1_000_000_000L / Math.max(1L, elapsed));
+        benchmark("ftrl.predict", () -> model.predict(featureVectorizer.vectorize(highCtr, campaign)));
+        log.info("Benchmark ftrl.predict: low-ctr publisher {}, high-ctr publisher {}, stats {}",
+                String.format("%.4f", model.predict(featureVectorizer.vectorize(lowCtr, campaign))),
+                String.format("%.4f", model.predict(featureVectorizer.vectorize(highCtr, campaign))),
+                model.getStats());
+        model.shutdown();
+    }
+
+    private void benchmarkBidLandscape() {
+        // Competing bids on this slot are normal around 1.00; our bids are spread from 0 to 2.00
+        BidRequest request = createSampleBidRequest();
+        request.setAdSlotId("benchmark_landscape_slot");
+        request.setPublisherDomain("landscape.example.com");
+        java.util.Random random = new java.util.Random(42);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            double bid = random.nextDouble() * 2.0;
+            double competing = 1.0 + random.nextGaussian() * 0.2;
+            bidLandscapeEstimator.recordOutcome(request, BigDecimal.valueOf(bid), bid > competing);
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("Benchmark landscape.record: {} ns/op", elapsed / iterations);
+
+        BidLandscape landscape = bidLandscapeEstimator.getLandscape(request);
+        benchmark("landscape.lookup", () -> bidLandscapeEstimator.getLandscape(request).winProbability(1.07));
+
+        StringBuilder curve = new StringBuilder();
+        for (double price = 0.6; price <= 1.41; price += 0.2) {
+            double truth = new org.apache.commons.math3.distribution.NormalDistribution(1.0, 0.2).cumulativeProbability(price);
+            curve.append(String.format("%.1f: %.3f (true %.3f) ", price, landscape.winProbability(price), truth));
+        }
+        log.info("Benchmark landscape.curve: {}", curve);
+        log.info("Benchmark landscape: {}", bidLandscapeEstimator.getStats());
+    }
+
+    private void benchmarkPredictionCache(BidRequest bidRequest, AdCampaign campaign) {
+        // Context popularity is Zipf-distributed over 1M contexts, with a scan of one-off
+        // contexts mixed in as every other request
+        int contexts = 1_000_000;
+        org.apache.commons.math3.distribution.ZipfDistribution zipf =
+                new org.apache.commons.math3.distribution.ZipfDistribution(contexts, 1.0);
+        zipf.reseedRandomGenerator(42);
+        long[] keys = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            keys[i] = (i & 1) == 0 ? zipf.sample() * 0x9e3779b97f4a7c15L : -(i + 1L) * 0xbf58476d1ce4e5b9L;
+        }
+
+        PredictionCache cache = new PredictionCache(65536, 60_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (Double.isNaN(cache.get(keys[i], PredictionCache.FIELD_CTR, 0L))) {
+                cache.put(keys[i], PredictionCache.FIELD_CTR, 0.01, 0L);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("Benchmark cache.get+put: {} ns/op, {}", elapsed / iterations, cache.getStats());
+
+        // Same trace through a plain LRU of the same size, for comparison
+        Map<Long, Double> lru = new java.util.LinkedHashMap<Long, Double>(65536, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest) {
+                return size() > 65536;
+            }
+        };
+        long lruHits = 0;
+        for (long key : keys) {
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, 0.01);
+            }
+        }
+        log.info("Benchmark cache.lru: hitRate={}", (double) lruHits / iterations);
+
+        // End to end: a hot context served from the service's cache
+        bidRequest.setUserProfile(createSampleUserProfile());
+        benchmark("prediction.ctr.cached", () -> predictionService.predictCtr(bidRequest, campaign));
+        log.info("Benchmark prediction.ctr.cached: {}", predictionService.getInferenceStats().get("predictionCache"));
+    }
+
+    private void benchmarkModelHotSwap(BidRequest bidRequest, AdCampaign campaign) {
+        // Callers predict continuously while new versions are deployed, promoted and rolled back;
+        // every request should be served by some version, none should fall through
+        File directory;
+        try {
+            directory = Files.createTempDirectory("model-registry").toFile();
+            ModelSerializer.writeModel(createSampleNetwork(1), new File(directory, "ctr-model-1.zip"), false);
+        } catch (IOException e) {
+            log.error("Benchmark model.hotswap: could not write model files: {}", e.getMessage());
+            return;
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ModelRegistry registry = new ModelRegistry("ctr", directory.getPath(), "ctr-model.zip",
+                PredictionService.NETWORK_INPUT_SIZE, 32, 200, 4096, 8, 10, executor);
+        registry.scan();
+
+        FeatureVector features = featureVectorizer.vectorize(bidRequest, campaign);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder served = new LongAdder();
+        LongAdder unserved = new LongAdder();
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread caller = new Thread(() -> {
+                while (running.get()) {
+                    InferenceBatcher batcher = registry.select();
+                    if (batcher != null && !Double.isNaN(batcher.predict(features, 1_000_000_000L))) {
+                        served.increment();
+                    } else {
+                        unserved.increment();
+                    }
+                }
+            }, "benchmark-" + t);
+            caller.start();
+            callers.add(caller);
+        }
+
+        try {
+            for (int version = 2; version <= 4; version++) {
+                ModelSerializer.writeModel(createSampleNetwork(version),
+                        new File(directory, "ctr-model-" + version + ".zip"), false);
+                long start = System.nanoTime();
+                registry.scan(); // Loads as a 10% canary
+                long deployMillis = (System.nanoTime() - start) / 1_000_000;
+                registry.setCanaryPercent(50);
+                Thread.sleep(200);
+                if (version == 3) {
+                    registry.rollback();
+                } else {
+                    registry.promote();
+                }
+                Thread.sleep(200);
+                log.info("Benchmark model.hotswap: version {} loaded and warmed in {} ms", version, deployMillis);
+            }
+            registry.rollback(); // Back to the previous primary
+            registry.scan(); // Rolled-back versions must not be redeployed
+            Thread.sleep(200);
+            running.set(false);
+            for (Thread caller : callers) {
+                caller.join();
+            }
+        } catch (IOException e) {
+            log.error("Benchmark model.hotswap: could not write model files: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.set(false);
+
+        log.info("Benchmark model.hotswap: {} served, {} unserved during swaps; {}",
+                served.sum(), unserved.sum(), registry.getStats());
+        registry.shutdown();
+        executor.shutdownNow();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private void benchmarkProfileCache() {
+        // Returning users are Zipf-distributed over 1M IDs; every other request is a never-seen ID
+        int users = 1_000_000;
+        int capacity = 65536;
+        org.apache.commons.math3.distribution.ZipfDistribution zipf =
+                new org.apache.commons.math3.distribution.ZipfDistribution(users, 1.0);
+        zipf.reseedRandomGenerator(42);
+        String[] ids = new String[iterations];
+        for (int i = 0; i < iterations; i++) {
+            ids[i] = (i & 1) == 0 ? "user-" + zipf.sample() : "once-" + i;
+        }
+
+        UserProfile profile = createSampleUserProfile();
+        ProfileCache<UserProfile> cache = new ProfileCache<>(capacity, 3_600_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (cache.get(ids[i], i) == null) {
+                cache.put(ids[i], profile, i);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        log.info("Benchmark profiles.get+put: {} ns/op, {}", elapsed / iterations, cache.getStats());
+
+        // Same trace through a plain LRU of the same size, for comparison
+        Map<String, Object> lru = new java.util.LinkedHashMap<String, Object>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+        long lruHits = 0;
+        for (String id : ids) {
+            if (lru.get(id) != null) {
+                lruHits++;
+            } else {
+                lru.put(id, profile);
+            }
+        }
+        log.info("Benchmark profiles.lru: hitRate={}", (double) lruHits / iterations);
+    }
+
+    private void benchmarkProfileMemory() {
+        // Retained heap per profile, excluding the holding array. Map profiles are
+        // measured on a sample, since 10M of them do not fit a benchmark heap.
+        Random random = new Random(42);
+        int mapSample = Math.min(profileCount, 1_000_000);
+        Object[] maps = new Object[mapSample];
+        long before = usedHeapAfterGc();
+        for (int i = 0; i < mapSample; i++) {
+            Map<String, Object> profile = new HashMap<>();
+            profile.put("ageGroup", "25-34");
+            profile.put("gender", "female");
+            profile.put("income", 20000 + random.nextInt(18) * 10000);
+            profile.put("isTargetAudience", random.nextBoolean());
+            profile.put("purchasingPower", 0.1 + random.nextDouble() * 0.9);
+            profile.put("engagementLevel", 0.1 + random.nextDouble() * 0.9);
+            profile.put("daysSinceLastVisit", random.nextInt(30));
+            profile.put("daysSinceLastInterest", random.nextInt(60));
+            profile.put("hasPreviousConversion", random.nextDouble() < 0.3);
+            profile.put("interests", new String[]{"technology", "travel", "gaming"});
+            maps[i] = profile;
+        }
+        long mapBytes = (usedHeapAfterGc() - before) / mapSample;
+        Reference.reachabilityFence(maps); // Keep the profiles reachable until measured
+        maps = null;
+
+        UserProfile[] profiles = new UserProfile[profileCount];
+        before = usedHeapAfterGc();
+        for (int i = 0; i < profileCount; i++) {
+            UserProfile profile = new UserProfile();
+            profile.setAgeGroup(UserProfile.AgeGroup.AGE_25_34);
+            profile.setGender(UserProfile.Gender.FEMALE);
+            profile.setIncome(20000 + random.nextInt(18) * 10000);
+            profile.setTargetAudience(random.nextBoolean());
+            profile.setPurchasingPower(0.1f + random.nextFloat() * 0.9f);
+            profile.setEngagementLevel(0.1f + random.nextFloat() * 0.9f);
+            profile.setDaysSinceLastVisit(random.nextInt(30));
+            profile.setDaysSinceLastInterest(random.nextInt(60));
+            profile.setPreviousConversion(random.nextDouble() < 0.3);
+            profile.addInterest("technology");
+            profile.addInterest("travel");
+            profile.addInterest("gaming");
+            profiles[i] = profile;
+        }
+        long typedBytes = (usedHeapAfterGc() - before) / profileCount;
+        Reference.reachabilityFence(profiles);
+        log.info("Benchmark profiles.memory: map {} B/profile, typed {} B/profile; at {} profiles {} MB vs {} MB",
+                mapBytes, typedBytes, profileCount,
+                mapBytes * profileCount >> 20, typedBytes * profileCount >> 20);
+    }
+
+    private void benchmarkProfileStores() {
+        long now = clockService.currentTimeMillis();
+        // Headroom so uneven segments do not turn fill-time inserts away
+        benchmarkProfileStore("heap", new HeapProfileStore(profileCount * 2, Long.MAX_VALUE / 2), now);
+
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("adopt-profiles");
+            MappedProfileStore mapped = new MappedProfileStore(directory.toString(), profileCount);
+            benchmarkProfileStore("mapped", mapped, now);
+
+            // Allocation-free lookup into a reused profile
+            UserProfile into = new UserProfile();
+            long[] keys = new long[1024];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = MappedProfileStore.hashId("user-" + (i * 7919 % profileCount));
+            }
+            int[] next = {0};
+            benchmark("profiles.store.mapped.read", () -> mapped.read(keys[next[0]++ & 1023], into));
+            mapped.close();
+
+            // Reopen as after a restart; the profiles are there without a reload
+            long start = System.nanoTime();
+            MappedProfileStore reopened = new MappedProfileStore(directory.toString(), profileCount);
+            log.info("Benchmark profiles.store.mapped.reopen: {} ms, {} profiles, user-1 clicks {}",
+                    (System.nanoTime() - start) / 1_000_000, reopened.getStats().get("size"),
+                    reopened.get("user-1", now).getTotalClicks());
+            reopened.close();
+        } catch (IOException e) {
+            log.error("Profile store benchmark failed: {}", e.getMessage());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void benchmarkProfileStore(String name, ProfileStore store, long now) {
+        Random random = new Random(42);
+        for (int i = 0; i < profileCount; i++) {
+            UserProfile profile = createSampleUserProfile();
+            profile.setTotalClicks(i % 100);
+            store.put("user-" + i, profile, now);
+        }
+
+        // Request-like churn: short-lived garbage plus a profile lookup and update per request
+        long[] gcBefore = gcCountAndMillis();
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            byte[] garbage = new byte[2048];
+            garbage[i & 2047] = (byte) i;
+            String id = "user-" + random.nextInt(profileCount);
+            UserProfile profile = store.get(id, now);
+            if (profile != null) {
+                profile.setTotalPageviews(profile.getTotalPageviews() + 1);
+                store.put(id, profile, now);
+                sink += profile.getTotalClicks();
+            }
+            sink += garbage[i & 2047];
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        long[] gcAfter = gcCountAndMillis();
+
+        // Time of a full collection, which has to trace every heap-resident profile
+        start = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - start) / 1_000_000;
+
+        log.info("Benchmark profiles.store.{}: {} profiles, {} requests in {} ms, {} GCs taking {} ms, full GC {} ms, heap used {} MB, {}",
+                name, profileCount, iterations, elapsedMillis, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+                fullGcMillis, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20,
+                sink != 0 ? store.getStats() : "");
+    }
+
+    private void benchmarkBidPipeline(BidRequest bidRequest) {
+        // A matching creative, so every request goes through the full pipeline
+        AdCampaign biddingCampaign = createSampleCampaign();
+        biddingCampaign.getCreatives().add(AdCreative.builder()
+                .id(0L)
+                .width(bidRequest.getAdSlotWidth())
+                .height(bidRequest.getAdSlotHeight())
+                .active(true)
+                .build());
+        benchmark("bid.generateBidResponse", () -> bidOptimizationService.generateBidResponse(bidRequest, biddingCampaign));
+        log.info("Benchmark bid.stages: {}", bidStageExecutor.getStageStats());
+    }
+
+    private void benchmarkUserEvents() {
+        // 32 writers clicking on 10k users; every accepted click must show up once folded
+        int threads = 32;
+        int users = 10_000;
+        int perThread = Math.max(1, iterations / threads);
+        Map<String, Object> eventData = Map.of("engagementLevel", 0.8, "utm_campaign", "spring");
+        long start = System.nanoTime();
+        benchmarkConcurrent("profiles.events.track", threads, perThread, offset -> {
+            for (int i = 0; i < perThread; i++) {
+                userProfileService.trackUserEvent("events-user-" + ((offset + i * 31) % users), null, "click", eventData);
+            }
+        });
+
+        // Sustained rate: until the folder has caught up with everything accepted
+        Map<String, Object> stats = userProfileService.getEventStats();
+        while (!stats.get("folded").equals(stats.get("appended"))) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            stats = userProfileService.getEventStats();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long clicks = 0;
+        for (int u = 0; u < users; u++) {
+            clicks += userProfileService.getUserProfile("events-user-" + u, null).getTotalClicks();
+        }
+        log.info("Benchmark profiles.events.fold: {} events/sec folded; {} clicks tracked, {} accepted, {} in profiles, {}",
+                (long) stats.get("folded") * 1_000_000_000L / elapsed, (long) threads * perThread,
+                stats.get("appended"), clicks, stats);
+    }
+
+    private void benchmarkProfileSnapshot() {
+        long now = clockService.currentTimeMillis();
+        HeapProfileStore store = new HeapProfileStore(profileCount * 2, Long.MAX_VALUE / 2);
+        for (int i = 0; i < profileCount; i++) {
+            UserProfile profile = createSampleUserProfile();
+            profile.setTotalClicks(i % 100);
+            store.put("user-" + i, profile, now);
+        }
+
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("adopt-snapshots");
+            new ProfileSnapshotter(directory.toString()).write(store);
+            store = null;
+
+            // A fresh snapshotter and store, as after a restart
+            HeapProfileStore restored = new HeapProfileStore(profileCount * 2, Long.MAX_VALUE / 2);
+            ProfileSnapshotter snapshotter = new ProfileSnapshotter(directory.toString());
+            snapshotter.restore(restored, 0, now);
+            snapshotter.awaitRestored(1.0, 600_000);
+            log.info("Benchmark profiles.snapshot: {} cores, restored store size {}, user-7 clicks {}, {}",
+                    Runtime.getRuntime().availableProcessors(), restored.getStats().get("size"),
+                    restored.get("user-7", now).getTotalClicks(), snapshotter.getStats());
+        } catch (IOException e) {
+            log.error("Profile snapshot benchmark failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private void benchmarkIdentityResolution() {
+        // Each person has a cookie and a device; requests carry both, or only one of them
+        int people = Math.min(profileCount, 1_000_000);
+        Random random = new Random(42);
+        IdentityGraph graph = new IdentityGraph(people * 2);
+        HashSet<String> directProfiles = new HashSet<>();
+        HashSet<String> resolvedProfiles = new HashSet<>();
+        for (int i = 0; i < people * 3; i++) {
+            int person = random.nextInt(people);
+            double mix = random.nextDouble();
+            String cookieId = mix < 0.8 ? "cookie-" + person : null;
+            String deviceId = mix >= 0.3 ? "device-" + person : null;
+            String primaryId = cookieId != null ? cookieId : deviceId;
+
+            // Cookie, then device lookup, creating a profile under the primary ID on a miss
+            if (!directProfiles.contains(primaryId) && (deviceId == null || !directProfiles.contains(deviceId))) {
+                directProfiles.add(primaryId);
+            }
+
+            // Identity graph: link on first sight, then resolve in one lookup
+            String profileKey = graph.resolve(primaryId);
+            if (profileKey == null && cookieId != null && deviceId != null) {
+                String absorbed = graph.link(cookieId, deviceId);
+                if (absorbed != null) {
+                    resolvedProfiles.remove(absorbed);
+                }
+                profileKey = graph.resolve(primaryId);
+            }
+            resolvedProfiles.add(profileKey != null ? profileKey : primaryId);
+        }
+        log.info("Benchmark profiles.identity: {} people, {} profiles with cookie/device lookup, {} with identity graph, {}",
+                people, directProfiles.size(), resolvedProfiles.size(), graph.getStats());
+
+        String[] ids = new String[1024];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (i % 2 == 0 ? "cookie-" : "device-") + random.nextInt(people);
+        }
+        int[] next = {0};
+        benchmark("profiles.identity.resolve", () -> graph.resolve(ids[next[0]++ & 1023]));
+    }
+
+    private void benchmarkBidQuantiles() {
+        // Log-normal bids, as second-price clearing prices tend to be
+        Random random = new Random(42);
+        double[] bids = new double[1_000_000];
+        for (int i = 0; i < bids.length; i++) {
+            bids[i] = Math.exp(0.5 * random.nextGaussian());
+        }
+
+        QuantileSketch sketch = new QuantileSketch();
+        int[] next = {0};
+        benchmark("quantiles.add", () -> sketch.add(bids[next[0]++ % bids.length]));
+
+        // Updates should not allocate
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            sketch.add(bids[i % bids.length]);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        log.info("Benchmark quantiles.add: {} bytes allocated/add", (double) allocated / iterations);
+
+        // Accuracy against exact quantiles, for one sketch and for eight merged shards
+        QuantileSketch single = new QuantileSketch();
+        QuantileSketch merged = new QuantileSketch();
+        QuantileSketch[] shards = new QuantileSketch[8];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < bids.length; i++) {
+            single.add(bids[i]);
+            shards[i % shards.length].add(bids[i]);
+        }
+        for (QuantileSketch shard : shards) {
+            merged.merge(shard);
+        }
+        double[] sorted = bids.clone();
+        Arrays.sort(sorted);
+        double[] quantiles = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+        StringBuilder errors = new StringBuilder();
+        double maxSingleError = 0.0;
+        double maxMergedError = 0.0;
+        for (double q : quantiles) {
+            double singleError = rankError(sorted, single.quantile(q), q);
+            double mergedError = rankError(sorted, merged.quantile(q), q);
+            maxSingleError = Math.max(maxSingleError, singleError);
+            maxMergedError = Math.max(maxMergedError, mergedError);
+            errors.append(String.format(" q%s=%.5f", q, singleError));
+        }
+        log.info("Benchmark quantiles.accuracy: {} values, {} centroids, rank error{}; max {} single, {} merged from {} shards",
+                bids.length, single.centroidCount(), errors, maxSingleError, maxMergedError, shards.length);
+        benchmark("quantiles.query", () -> single.quantile(0.9));
+
+        // Fixed memory: a filled sketch against the raw observations it summarizes
+        int sketchCount = 10_000;
+        QuantileSketch[] sketches = new QuantileSketch[sketchCount];
+        long heapBefore = usedHeapAfterGc();
+        for (int i = 0; i < sketchCount; i++) {
+            sketches[i] = new QuantileSketch();
+            for (int j = 0; j < 1000; j++) {
+                sketches[i].add(bids[(i * 1000 + j) % bids.length]);
+            }
+        }
+        long bytesPerSketch = (usedHeapAfterGc() - heapBefore) / sketchCount;
+        log.info("Benchmark quantiles.memory: {} B/sketch at any count, vs {} B for 1000 raw bids and {} B for 1M",
+                bytesPerSketch, 1000 * Double.BYTES, bids.length * Double.BYTES);
+        Reference.reachabilityFence(sketches);
+
+        // Through the competitor profile, replacing the BigDecimal rolling average
+        CompetitorProfile profile = CompetitorProfile.builder().competitorId("quantiles").build();
+        BigDecimal[] prices = new BigDecimal[1024];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = BigDecimal.valueOf(bids[i]).setScale(4, RoundingMode.HALF_UP);
+        }
+        LocalDateTime observedAt = clockService.now();
+        benchmark("quantiles.addBidObservation", () ->
+                profile.addBidObservation(prices[next[0]++ & 1023], "slot", false, observedAt));
+        log.info("Benchmark quantiles.profile: p10 {}, p50 {}, p90 {}, average {}",
+                profile.bidQuantile(0.1), profile.bidQuantile(0.5), profile.bidQuantile(0.9),
+                profile.getAverageBidPrice());
+    }
+
+    private void benchmarkCompetitorStats(BidRequest bidRequest, AdCampaign campaign) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Math.max(4, cores);
+        int perThread = iterations;
+        BigDecimal price = BigDecimal.valueOf(1.25);
+
+        // Unsynchronized profile updates from several threads, as notifications used to do
+        CompetitorProfile shared = CompetitorProfile.builder().competitorId("shared").bidCount(0).build();
+        LocalDateTime observedAt = clockService.now();
+        benchmarkConcurrent("competitors.addBidObservation x" + threads, threads, perThread, offset -> {
+            for (int i = 0; i < perThread; i++) {
+                shared.addBidObservation(price, "slot", false, observedAt);
+            }
+        });
+        log.info("Benchmark competitors.addBidObservation: {} of {} observations counted",
+                shared.getBidCount(), (long) threads * perThread);
+
+        // Concurrent accumulators through the service, materialized once at the end; the
+        // slot must be indexed first, or its observations are not recorded
+        competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign);
+        long loadDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) competitorAnalysisService.getCompetitorStats().get("loadingSlots") > 0
+                && System.nanoTime() < loadDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Map<String, CompetitorProfile> profiles = competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign);
+        long observationsBefore = (long) competitorAnalysisService.getCompetitorStats().get("observations");
+        for (int threadCount = 1; threadCount <= threads; threadCount *= 2) {
+            int workers = threadCount;
+            benchmarkConcurrent("competitors.record x" + workers, workers, perThread, offset -> {
+                for (int i = 0; i < perThread; i++) {
+                    competitorAnalysisService.updateCompetitorProfiles(bidRequest, price, profiles);
+                }
+            });
+        }
+        long expected = 0;
+        for (int threadCount = 1; threadCount <= threads; threadCount *= 2) {
+            expected += (long) threadCount * perThread * profiles.size();
+        }
+        competitorAnalysisService.materializeProfiles();
+        long observations = (long) competitorAnalysisService.getCompetitorStats().get("observations") - observationsBefore;
+        CompetitorProfile aggressive = competitorAnalysisService.getCompetitorProfiles(bidRequest, campaign).get("aggressive");
+        log.info("Benchmark competitors.record: {} of {} observations counted; aggressive view bidCount {}, average {}, p50 {}, {}",
+                observations, expected, aggressive.getBidCount(), aggressive.getAverageBidPrice(),
+                aggressive.bidQuantile(0.5), competitorAnalysisService.getCompetitorStats());
+        log.info("Benchmark competitors.window: aggressive recent bids {}",
+                aggressive.recentBids() != null ? aggressive.recentBids().toMap() : null);
+    }
+
+    private void benchmarkStrategyClustering() {
+        // Synthetic competitors of the three demo strategies at varied floors, with noisy curves
+        Random random = new Random(42);
+        double[] timeSensitive = new double[24];
+        for (int h = 0; h < 24; h++) {
+            timeSensitive[h] = h >= 13 && h < 17 ? 1.2 : h >= 9 && h < 12 ? 1.0 : h >= 18 && h < 22 ? 0.9 : 0.7;
+        }
+        CompetitorProfile[] templates = new CompetitorProfile[3000];
+        for (int i = 0; i < templates.length; i++) {
+            int strategy = i % 3;
+            double floor = 0.10 + random.nextDouble();
+            double level = strategy == 0 ? 2.0 : strategy == 1 ? 1.1 : 1.5;
+            double[] curve = new double[24];
+            for (int h = 0; h < 24; h++) {
+                curve[h] = (strategy == 2 ? timeSensitive[h] : 1.0) + random.nextGaussian() * 0.03;
+            }
+            templates[i] = CompetitorProfile.builder()
+                    .competitorId("benchmark_" + i)
+                    .averageBidPrice(BigDecimal.valueOf(floor * level * (1 + random.nextGaussian() * 0.05)))
+                    .minBidPrice(BigDecimal.valueOf(floor))
+                    .maxBidPrice(BigDecimal.valueOf(floor * (strategy == 0 ? 2.5 : 1.3)))
+                    .winRate(random.nextDouble() * 0.2)
+                    .bidCount(1000)
+                    .build()
+                    .withHourlyFactors(curve);
+        }
+
+        int rows = Math.min(profileCount, 1_000_000);
+        long start = System.nanoTime();
+        double[] features = new double[rows * StrategyClusterer.FEATURES];
+        for (int row = 0; row < rows; row++) {
+            StrategyClusterer.features(templates[row % templates.length], features, row);
+        }
+        long extracted = System.nanoTime();
+        StrategyClusterer.Result result = new StrategyClusterer(4, 50, ForkJoinPool.commonPool()).cluster(features, rows);
+        long clustered = System.nanoTime();
+
+        int[][] confusion = new int[3][result.clusterCount()];
+        for (int row = 0; row < rows; row++) {
+            confusion[(row % templates.length) % 3][result.clusterOf(row)]++;
+        }
+        List<String> labels = new ArrayList<>();
+        for (int c = 0; c < result.clusterCount(); c++) {
+            labels.add(result.label(c) + "=" + result.size(c));
+        }
+        log.info("Benchmark clustering.kmeans: {} competitors, {} cores, extract {} ms, cluster {} ms, {} iterations, clusters {}, true strategy x cluster {}",
+                rows, Runtime.getRuntime().availableProcessors(), (extracted - start) / 1_000_000,
+                (clustered - extracted) / 1_000_000, result.getIterations(), labels, Arrays.deepToString(confusion));
+
+        // The service job over the indexed competitors
+        competitorAnalysisService.clusterStrategies();
+        log.info("Benchmark clustering.service: {}", competitorAnalysisService.getCompetitorStats().get("lastClustering"));
+    }
+
+    private static double rankError(double[] sorted, double estimate, double q) {
+        // Distance between q and the true rank of the estimated value
+        int index = Arrays.binarySearch(sorted, estimate);
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.abs((double) rank / sorted.length - q);
+    }
+
+    private long[] gcCountAndMillis() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private void deleteDirectory(Path directory) {
+        File[] files = directory != null ? directory.toFile().listFiles() : null;
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                log.warn("Could not delete {}", file);
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    private long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private void benchmarkClock() {
+        benchmark("clock.localDateTimeNow", LocalDateTime::now);
+        benchmark("clock.localTimeHour", () -> LocalTime.now().getHour());
+        benchmark("clock.coarseNow", clockService::now);
+        benchmark("clock.coarseHour", clockService::hourOfDay);
+
+        // A day of simulated time at 3600x passes in about 24 real seconds; check the rate over a short run
+        clockService.useSimulatedClock(Instant.parse("2026-01-01T00:00:00Z"), 3600);
+        try {
+            long simulatedStart = clockService.currentTimeMillis();
+            long realStart = System.nanoTime();
+            Thread.sleep(500);
+            clockService.advance(Duration.ofHours(1));
+            double simulatedSeconds = (clockService.currentTimeMillis() - simulatedStart) / 1000.0;
+            double realSeconds = (System.nanoTime() - realStart) / 1e9;
+            log.info("Benchmark clock.simulated: {} simulated seconds in {} real seconds (including a 1 h advance), hour now {}",
+                    simulatedSeconds, realSeconds, clockService.hourOfDay());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clockService.useSystemClock();
+        }
+    }
+
+    private MultiLayerNetwork createSampleNetwork(long seed) {
+        // An untrained network of production shape; inference cost does not depend on the weights
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(seed)
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                .layer(new DenseLayer.Builder().nIn(PredictionService.NETWORK_INPUT_SIZE).nOut(64)
+                        .activation(Activation.RELU).build())
+                .layer(new DenseLayer.Builder().nIn(64).nOut(32).activation(Activation.RELU).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.XENT).nIn(32).nOut(1)
+                        .activation(Activation.SIGMOID).build())
+                .build();
+        MultiLayerNetwork network = new MultiLayerNetwork(conf);
+        network.init();
+        return network;
+    }
+
+    private boolean enabled(String group) {
+        return groups.isEmpty() || groups.contains(group);
+    }
+
+    private void benchmark(String name, Runnable operation) {
+        // Warm up so the JIT has compiled the hot path before we measure it
+        for (int i = 0; i < Math.min(iterations, 10000); i++) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("Benchmark {}: {} ns/op ({} ops/sec)",
+                name, elapsed / iterations, iterations * 1_000_000_000L / Math.max(1L, elapsed));
+    }
+
+    private void benchmarkConcurrent(String name, int threads, int operationsPerThread, IntConsumer worker) {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 97;
+            workers.add(new Thread(() -> worker.accept(offset), "benchmark-" + t));
+        }
+
+        long start = System.nanoTime();
+        workers.forEach(Thread::start);
+        for (Thread thread : workers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long operations = (long) operationsPerThread * threads;
+        log.info("Benchmark {}: {} ops/sec across {} threads",
+                name, operations * 1_000_000_000L / Math.max(1L, elapsed), threads);
+    }
+
+    private BidRequest createSampleBidRequest() {
+        return BidRequest.builder()
+                .requestId("benchmark")
+                .exchangeId("benchmark_exchange")
+                .cookieId("benchmark_cookie")
+                .geoRegion("US-CA")
+                .publisherDomain("example.com")
+                .adSlotId("benchmark_slot")
+                .adSlotWidth(300)
+                .adSlotHeight(250)
+                .adSlotFloorPrice(BigDecimal.valueOf(0.50))
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private UserProfile createSampleUserProfile() {
+        UserProfile profile = new UserProfile();
+        profile.setAgeGroup(UserProfile.AgeGroup.AGE_25_34);
+        profile.setGender(UserProfile.Gender.FEMALE);
+        profile.setIncome(80000);
+        profile.setTargetAudience(true);
+        profile.setPurchasingPower(0.7f);
+        profile.setEngagementLevel(0.4f);
+        profile.setDaysSinceLastVisit(3);
+        profile.setDaysSinceLastInterest(12);
+        profile.setPreviousConversion(false);
+        profile.addInterest("technology");
+        profile.addInterest("travel");
+        profile.addInterest("gaming");
+        return profile;
+    }
+
+    private AdCampaign createSampleCampaign() {
+        return AdCampaign.builder()
+                .id(0L)
+                .name("Benchmark Campaign")
+                .campaignType(AdCampaign.CampaignType.CPC)
+                .totalBudget(BigDecimal.valueOf(1000.00))
+                .remainingBudget(BigDecimal.valueOf(1000.00))
+                .bidFloor(BigDecimal.valueOf(0.10))
+                .maxBidPrice(BigDecimal.valueOf(2.00))
+                .targetCTR(0.02)
+                .targetConversionRate(0.15)
+                .status(AdCampaign.CampaignStatus.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.adopt.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    @Test
+    void emptySketchHasNoEstimates() {
+        QuantileSketch sketch = new QuantileSketch();
+
+        assertEquals(0, sketch.count());
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertTrue(Double.isNaN(sketch.cdf(1.0)));
+    }
+
+    @Test
+    void quantilesStayWithinRankErrorBound() {
+        double[] values = lognormal(new Random(42), 100_000);
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.count());
+        assertEquals(values[0], sketch.min());
+        assertEquals(values[values.length - 1], sketch.max());
+        for (double q : QUANTILES) {
+            assertRankError(values, q, sketch.quantile(q));
+        }
+    }
+
+    @Test
+    void cdfInvertsQuantile() {
+        double[] values = lognormal(new Random(7), 50_000);
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        for (double q : QUANTILES) {
+            assertEquals(q, sketch.cdf(sketch.quantile(q)), 0.005, "cdf of quantile " + q);
+        }
+        assertEquals(0.0, sketch.cdf(sketch.min() - 1.0));
+        assertEquals(1.0, sketch.cdf(sketch.max()));
+    }
+
+    @Test
+    void mergedSketchMatchesSingleStream() {
+        Random random = new Random(11);
+        double[] values = new double[100_000];
+        QuantileSketch[] parts = new QuantileSketch[4];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < values.length; i++) {
+            // Each part sees a different range, so the merge has to interleave centroids
+            int part = i % parts.length;
+            values[i] = part * 10.0 + random.nextDouble() * 15.0;
+            parts[part].add(values[i]);
+        }
+
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, merged.count());
+        assertEquals(values[0], merged.min());
+        assertEquals(values[values.length - 1], merged.max());
+        assertTrue(merged.centroidCount() <= QuantileSketch.DEFAULT_COMPRESSION + 2);
+        for (double q : QUANTILES) {
+            assertRankError(values, q, merged.quantile(q));
+        }
+    }
+
+    @Test
+    void mergeWithSelfOrEmptyChangesNothing() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(i);
+        }
+        double median = sketch.quantile(0.5);
+
+        sketch.merge(sketch);
+        sketch.merge(new QuantileSketch());
+
+        assertEquals(100, sketch.count());
+        assertEquals(median, sketch.quantile(0.5));
+    }
+
+    // Helper methods
+
+    private static double[] lognormal(Random random, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static void assertRankError(double[] sorted, double q, double estimate) {
+        int rank = Arrays.binarySearch(sorted, estimate);
+        int position = rank >= 0 ? rank : -rank - 1;
+        double error = Math.abs((double) position / sorted.length - q);
+        // The k1 scale keeps tail centroids small, so the tails must be tighter than the middle
+        double bound = Math.min(0.01, 0.005 + q * (1 - q) * 0.02);
+        assertTrue(error <= bound, "rank error " + error + " at quantile " + q);
+    }
+}